@@ -33,6 +33,7 @@ import com.android.settings.datetime.TimeChangeListenerMixin;
 import com.android.settings.datetime.TimeFormatPreferenceController;
 import com.android.settings.datetime.TimePreferenceController;
 import com.android.settings.datetime.TimeZonePreferenceController;
+import com.android.settings.datetime.timezone.TimeZonePickerModel;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.search.Indexable;
 import com.android.settingslib.core.AbstractPreferenceController;
@@ -71,6 +72,8 @@ public class DateTimeSettings extends DashboardFragment implements
     public void onAttach(Context context) {
         super.onAttach(context);
         getSettingsLifecycle().addObserver(new TimeChangeListenerMixin(context, this));
+        // Get the time zone pickers ready in case the user opens them.
+        TimeZonePickerModel.preload(context);
     }
 
     @Override
@@ -33,6 +33,7 @@ import android.telephony.TelephonyManager;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
 import com.android.settingslib.net.DataUsageController;
 
@@ -58,6 +59,8 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_PREFERENCE_XML_CACHE = "preference_xml_cache";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -77,6 +80,7 @@ public class SettingsDumpService extends Service {
             dump.put(KEY_MEMORY, dumpMemory());
             dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
             dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+            dump.put(KEY_PREFERENCE_XML_CACHE, dumpPreferenceXmlCache());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -180,4 +184,15 @@ public class SettingsDumpService extends Service {
 
         return obj;
     }
+
+    @VisibleForTesting
+    JSONObject dumpPreferenceXmlCache() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final PreferenceXmlMetadataCache cache = PreferenceXmlMetadataCache.getInstance();
+        obj.put("parses", cache.getParseCount());
+        obj.put("hits", cache.getHitCount());
+        obj.put("time_saved_ms", cache.getTimeSavedMillis());
+
+        return obj;
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Process wide cache of what {@link TrustedCredentialsSettings} shows for each CA certificate of
+ * each profile, persisted across processes so the certificates are only parsed again when they
+ * change.
+ *
+ * <p>An entry is keyed by the alias of the certificate and holds the digest of its encoding, so a
+ * user certificate installed again under the same alias is noticed. System certificates are read
+ * only and can only change with a system update, which drops the whole cache, so their entries
+ * can be used without fetching the certificate.
+ */
+class TrustedCertificateCache {
+    private static final String TAG = "TrustedCertificateCache";
+    private static final String FILE_NAME = "trusted_certificates";
+    private static final int FILE_VERSION = 1;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static TrustedCertificateCache sInstance;
+
+    private final AtomicFile mFile;
+    private final String mBuildFingerprint;
+    private final Object mLock = new Object();
+    // Entries of each profile, by alias.
+    @GuardedBy("mLock")
+    private final SparseArray<ArrayMap<String, Entry>> mEntries = new SparseArray<>();
+    @GuardedBy("mLock")
+    private boolean mLoaded;
+    @GuardedBy("mLock")
+    private boolean mDirty;
+
+    static synchronized TrustedCertificateCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TrustedCertificateCache(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME),
+                    Build.FINGERPRINT);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    TrustedCertificateCache(File file, String buildFingerprint) {
+        mFile = new AtomicFile(file);
+        mBuildFingerprint = buildFingerprint;
+    }
+
+    /** Returns the digest used to notice a certificate changed under the same alias. */
+    static byte[] digest(byte[] encodedCertificate) {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(encodedCertificate);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns the entry of {@code alias} for {@code userId}, whatever its digest. */
+    Entry get(int userId, String alias) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            final ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            return userEntries != null ? userEntries.get(alias) : null;
+        }
+    }
+
+    /**
+     * Returns the entry of {@code alias} for {@code userId} if it was created for a certificate
+     * with {@code digest}, otherwise {@code null}.
+     */
+    Entry get(int userId, String alias, byte[] digest) {
+        final Entry entry = get(userId, alias);
+        return entry != null && Arrays.equals(entry.digest, digest) ? entry : null;
+    }
+
+    void put(int userId, Entry entry) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            if (userEntries == null) {
+                userEntries = new ArrayMap<>();
+                mEntries.put(userId, userEntries);
+            }
+            userEntries.put(entry.alias, entry);
+            mDirty = true;
+        }
+    }
+
+    /**
+     * Drops the entries of the system or user certificates of {@code userId} whose alias is not
+     * in {@code aliases}.
+     */
+    void retainAliases(int userId, boolean system, Collection<String> aliases) {
+        synchronized (mLock) {
+            final ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            if (userEntries == null) {
+                return;
+            }
+            for (int i = userEntries.size() - 1; i >= 0; i--) {
+                final Entry entry = userEntries.valueAt(i);
+                if (entry.system == system && !aliases.contains(entry.alias)) {
+                    userEntries.removeAt(i);
+                    mDirty = true;
+                }
+            }
+        }
+    }
+
+    /** Writes the entries to disk if they changed. Must not be called on the main thread. */
+    void save() {
+        synchronized (mLock) {
+            if (!mDirty) {
+                return;
+            }
+            FileOutputStream fos = null;
+            try {
+                fos = mFile.startWrite();
+                final DataOutputStream out = new DataOutputStream(fos);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(mBuildFingerprint);
+                int count = 0;
+                for (int i = 0, size = mEntries.size(); i < size; i++) {
+                    count += mEntries.valueAt(i).size();
+                }
+                out.writeInt(count);
+                for (int i = 0, size = mEntries.size(); i < size; i++) {
+                    final int userId = mEntries.keyAt(i);
+                    final ArrayMap<String, Entry> userEntries = mEntries.valueAt(i);
+                    for (int j = 0, entryCount = userEntries.size(); j < entryCount; j++) {
+                        final Entry entry = userEntries.valueAt(j);
+                        out.writeInt(userId);
+                        out.writeUTF(entry.alias);
+                        out.writeBoolean(entry.system);
+                        out.writeInt(entry.digest.length);
+                        out.write(entry.digest);
+                        out.writeUTF(entry.subjectPrimary);
+                        out.writeUTF(entry.subjectSecondary);
+                    }
+                }
+                out.flush();
+                mFile.finishWrite(fos);
+                mDirty = false;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write certificates", e);
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void ensureLoadedLocked() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != FILE_VERSION || !mBuildFingerprint.equals(in.readUTF())) {
+                // The system certificates may have changed.
+                return;
+            }
+            for (int i = 0, count = in.readInt(); i < count; i++) {
+                final int userId = in.readInt();
+                final String alias = in.readUTF();
+                final boolean system = in.readBoolean();
+                final byte[] digest = new byte[in.readInt()];
+                in.readFully(digest);
+                final Entry entry = new Entry(alias, system, digest,
+                        in.readUTF() /* subjectPrimary */, in.readUTF() /* subjectSecondary */);
+                ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+                if (userEntries == null) {
+                    userEntries = new ArrayMap<>();
+                    mEntries.put(userId, userEntries);
+                }
+                userEntries.put(alias, entry);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing cached yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read certificates", e);
+            mEntries.clear();
+        }
+    }
+
+    /** What is shown for a certificate in the list. */
+    static class Entry {
+        final String alias;
+        final boolean system;
+        final byte[] digest;
+        final String subjectPrimary;
+        final String subjectSecondary;
+
+        Entry(String alias, boolean system, byte[] digest, String subjectPrimary,
+                String subjectSecondary) {
+            this.alias = alias;
+            this.system = system;
+            this.digest = digest;
+            this.subjectPrimary = subjectPrimary;
+            this.subjectSecondary = subjectSecondary;
+        }
+    }
+}
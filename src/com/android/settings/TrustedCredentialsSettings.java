@@ -67,12 +67,18 @@ import com.android.internal.app.UnlaunchableAppActivity;
 import com.android.internal.widget.LockPatternUtils;
 import com.android.settings.core.InstrumentedFragment;
 
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
 
 public class TrustedCredentialsSettings extends InstrumentedFragment
@@ -90,6 +96,18 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
     private static final String SAVED_CONFIRMING_CREDENTIAL_USER = "ConfirmingCredentialUser";
     private static final String USER_ACTION = "com.android.settings.TRUSTED_CREDENTIALS_USER";
     private static final int REQUEST_CONFIRM_CREDENTIALS = 1;
+    // Number of certificates added to the list at once while they are loaded.
+    private static final int LOAD_BATCH_SIZE = 16;
+
+    // Parses the certificates in parallel, there are 150+ system certificates.
+    private static final ThreadPoolExecutor sCertExecutor;
+
+    static {
+        final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        sCertExecutor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        sCertExecutor.allowCoreThreadTimeOut(true);
+    }
 
     @Override
     public int getMetricsCategory() {
@@ -663,7 +681,13 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
             mTab = tab;
         }
 
-        private class AliasLoader extends AsyncTask<Void, Integer, SparseArray<List<CertHolder>>> {
+        /**
+         * Loads the certificates of every profile. They are parsed in parallel and added to the
+         * list in batches as they are loaded, what was already parsed is reused from
+         * {@link TrustedCertificateCache}.
+         */
+        private class AliasLoader
+                extends AsyncTask<Void, CertHolder, SparseArray<List<CertHolder>>> {
             private ProgressBar mProgressBar;
             private View mContentView;
             private Context mContext;
@@ -686,26 +710,24 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                 View content = mTabHost.getTabContentView();
                 mProgressBar = (ProgressBar) content.findViewById(mTab.mProgress);
                 mContentView = content.findViewById(mTab.mContentView);
+                // Only shown until the first certificates are loaded.
+                mProgressBar.setIndeterminate(true);
                 mProgressBar.setVisibility(View.VISIBLE);
                 mContentView.setVisibility(View.GONE);
             }
             @Override protected SparseArray<List<CertHolder>> doInBackground(Void... params) {
                 SparseArray<List<CertHolder>> certHoldersByProfile =
                         new SparseArray<List<CertHolder>>();
+                final TrustedCertificateCache cache = TrustedCertificateCache.getInstance(mContext);
                 try {
                     synchronized(mKeyChainConnectionByProfileId) {
                         List<UserHandle> profiles = mUserManager.getUserProfiles();
                         final int n = profiles.size();
-                        // First we get all aliases for all profiles in order to show progress
-                        // correctly. Otherwise this could all be in a single loop.
-                        SparseArray<List<String>> aliasesByProfileId = new SparseArray<
-                                List<String>>(n);
-                        int max = 0;
-                        int progress = 0;
                         for (int i = 0; i < n; ++i) {
                             UserHandle profile = profiles.get(i);
                             int profileId = profile.getIdentifier();
                             if (shouldSkipProfile(profile)) {
+                                certHoldersByProfile.put(profileId, new ArrayList<CertHolder>(0));
                                 continue;
                             }
                             KeyChainConnection keyChainConnection = KeyChain.bindAsUser(mContext,
@@ -717,38 +739,15 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                             if (isCancelled()) {
                                 return new SparseArray<List<CertHolder>>();
                             }
-                            max += aliases.size();
-                            aliasesByProfileId.put(profileId, aliases);
-                        }
-                        for (int i = 0; i < n; ++i) {
-                            UserHandle profile = profiles.get(i);
-                            int profileId = profile.getIdentifier();
-                            List<String> aliases = aliasesByProfileId.get(profileId);
-                            if (isCancelled()) {
+                            List<CertHolder> certHolders = loadCertHolders(service, profileId,
+                                    aliases, cache);
+                            if (certHolders == null) {
                                 return new SparseArray<List<CertHolder>>();
                             }
-                            KeyChainConnection keyChainConnection = mKeyChainConnectionByProfileId.get(
-                                    profileId);
-                            if (shouldSkipProfile(profile) || aliases == null
-                                    || keyChainConnection == null) {
-                                certHoldersByProfile.put(profileId, new ArrayList<CertHolder>(0));
-                                continue;
-                            }
-                            IKeyChainService service = keyChainConnection.getService();
-                            List<CertHolder> certHolders = new ArrayList<CertHolder>(max);
-                            final int aliasMax = aliases.size();
-                            for (int j = 0; j < aliasMax; ++j) {
-                                String alias = aliases.get(j);
-                                byte[] encodedCertificate = service.getEncodedCaCertificate(alias,
-                                        true);
-                                X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
-                                certHolders.add(new CertHolder(service, mAdapter,
-                                        mTab, alias, cert, profileId));
-                                publishProgress(++progress, max);
-                            }
-                            Collections.sort(certHolders);
+                            cache.retainAliases(profileId, mTab == Tab.SYSTEM, aliases);
                             certHoldersByProfile.put(profileId, certHolders);
                         }
+                        cache.save();
                         return certHoldersByProfile;
                     }
                 } catch (RemoteException e) {
@@ -759,13 +758,89 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                     return new SparseArray<List<CertHolder>>();
                 }
             }
-            @Override protected void onProgressUpdate(Integer... progressAndMax) {
-                int progress = progressAndMax[0];
-                int max = progressAndMax[1];
-                if (max != mProgressBar.getMax()) {
-                    mProgressBar.setMax(max);
+
+            /**
+             * Returns the sorted certificates of {@code aliases}, or null if the loader was
+             * cancelled.
+             */
+            private List<CertHolder> loadCertHolders(IKeyChainService service, int profileId,
+                    List<String> aliases, TrustedCertificateCache cache)
+                    throws RemoteException, InterruptedException {
+                final CompletionService<CertHolder> completionService =
+                        new ExecutorCompletionService<>(sCertExecutor);
+                final List<Future<CertHolder>> futures = new ArrayList<>(aliases.size());
+                for (String alias : aliases) {
+                    futures.add(completionService.submit(
+                            () -> loadCertHolder(service, profileId, alias, cache)));
                 }
-                mProgressBar.setProgress(progress);
+                final List<CertHolder> certHolders = new ArrayList<>(aliases.size());
+                final List<CertHolder> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+                try {
+                    for (int i = 0; i < futures.size(); i++) {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        final CertHolder certHolder = completionService.take().get();
+                        certHolders.add(certHolder);
+                        batch.add(certHolder);
+                        if (batch.size() == LOAD_BATCH_SIZE) {
+                            publishProgress(batch.toArray(new CertHolder[batch.size()]));
+                            batch.clear();
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RemoteException) {
+                        throw (RemoteException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } finally {
+                    for (Future<CertHolder> future : futures) {
+                        future.cancel(true /* mayInterruptIfRunning */);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    publishProgress(batch.toArray(new CertHolder[batch.size()]));
+                }
+                Collections.sort(certHolders);
+                return certHolders;
+            }
+
+            private CertHolder loadCertHolder(IKeyChainService service, int profileId,
+                    String alias, TrustedCertificateCache cache) throws RemoteException {
+                TrustedCertificateCache.Entry entry = cache.get(profileId, alias);
+                // System certificates only change with a system update, which drops the cache.
+                if (entry == null || !entry.system) {
+                    byte[] encodedCertificate = service.getEncodedCaCertificate(alias, true);
+                    byte[] digest = TrustedCertificateCache.digest(encodedCertificate);
+                    entry = cache.get(profileId, alias, digest);
+                    if (entry == null) {
+                        X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
+                        entry = CertHolder.createCacheEntry(alias, mTab == Tab.SYSTEM, digest,
+                                cert);
+                        cache.put(profileId, entry);
+                    }
+                }
+                return new CertHolder(service, mAdapter, mTab, alias, entry.subjectPrimary,
+                        entry.subjectSecondary, profileId);
+            }
+
+            @Override protected void onProgressUpdate(CertHolder... certHolders) {
+                if (mProgressBar.getVisibility() == View.VISIBLE) {
+                    mProgressBar.setVisibility(View.GONE);
+                    mContentView.setVisibility(View.VISIBLE);
+                }
+                for (CertHolder certHolder : certHolders) {
+                    List<CertHolder> profileCertHolders =
+                            mCertHoldersByUserId.get(certHolder.mProfileId);
+                    if (profileCertHolders == null) {
+                        profileCertHolders = new ArrayList<CertHolder>();
+                        mCertHoldersByUserId.put(certHolder.mProfileId, profileCertHolders);
+                    }
+                    // Keep the rows sorted while they are loaded.
+                    int index = Collections.binarySearch(profileCertHolders, certHolder);
+                    profileCertHolders.add(index < 0 ? -index - 1 : index, certHolder);
+                }
+                mAdapter.notifyDataSetChanged();
             }
             @Override protected void onPostExecute(SparseArray<List<CertHolder>> certHolders) {
                 mCertHoldersByUserId.clear();
@@ -776,7 +851,6 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                 mAdapter.notifyDataSetChanged();
                 mProgressBar.setVisibility(View.GONE);
                 mContentView.setVisibility(View.VISIBLE);
-                mProgressBar.setProgress(0);
                 mAliasLoaders.remove(this);
                 showTrustAllCaDialogIfNeeded();
             }
@@ -828,9 +902,6 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
         private final GroupAdapter mAdapter;
         private final Tab mTab;
         private final String mAlias;
-        private final X509Certificate mX509Cert;
-
-        private final SslCertificate mSslCert;
         private final String mSubjectPrimary;
         private final String mSubjectSecondary;
         private boolean mDeleted;
@@ -839,48 +910,57 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                            GroupAdapter adapter,
                            Tab tab,
                            String alias,
-                           X509Certificate x509Cert,
+                           String subjectPrimary,
+                           String subjectSecondary,
                            int profileId) {
             mProfileId = profileId;
             mService = service;
             mAdapter = adapter;
             mTab = tab;
             mAlias = alias;
-            mX509Cert = x509Cert;
-
-            mSslCert = new SslCertificate(x509Cert);
+            mSubjectPrimary = subjectPrimary;
+            mSubjectSecondary = subjectSecondary;
+            try {
+                mDeleted = mTab.deleted(mService, mAlias);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Remote exception while checking if alias " + mAlias + " is deleted.",
+                        e);
+                mDeleted = false;
+            }
+        }
+        private static TrustedCertificateCache.Entry createCacheEntry(String alias,
+                boolean system, byte[] digest, X509Certificate x509Cert) {
+            final SslCertificate sslCert = new SslCertificate(x509Cert);
 
-            String cn = mSslCert.getIssuedTo().getCName();
-            String o = mSslCert.getIssuedTo().getOName();
-            String ou = mSslCert.getIssuedTo().getUName();
+            String cn = sslCert.getIssuedTo().getCName();
+            String o = sslCert.getIssuedTo().getOName();
+            String ou = sslCert.getIssuedTo().getUName();
             // if we have a O, use O as primary subject, secondary prefer CN over OU
             // if we don't have an O, use CN as primary, empty secondary
             // if we don't have O or CN, use DName as primary, empty secondary
+            final String subjectPrimary;
+            final String subjectSecondary;
             if (!o.isEmpty()) {
                 if (!cn.isEmpty()) {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = cn;
+                    subjectPrimary = o;
+                    subjectSecondary = cn;
                 } else {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = ou;
+                    subjectPrimary = o;
+                    subjectSecondary = ou;
                 }
             } else {
                 if (!cn.isEmpty()) {
-                    mSubjectPrimary = cn;
-                    mSubjectSecondary = "";
+                    subjectPrimary = cn;
+                    subjectSecondary = "";
                 } else {
-                    mSubjectPrimary = mSslCert.getIssuedTo().getDName();
-                    mSubjectSecondary = "";
+                    subjectPrimary = sslCert.getIssuedTo().getDName();
+                    subjectSecondary = "";
                 }
             }
-            try {
-                mDeleted = mTab.deleted(mService, mAlias);
-            } catch (RemoteException e) {
-                Log.e(TAG, "Remote exception while checking if alias " + mAlias + " is deleted.",
-                        e);
-                mDeleted = false;
-            }
+            return new TrustedCertificateCache.Entry(alias, system, digest, subjectPrimary,
+                    subjectSecondary);
         }
+
         @Override public int compareTo(CertHolder o) {
             int primary = this.mSubjectPrimary.compareToIgnoreCase(o.mSubjectPrimary);
             if (primary != 0) {
@@ -1003,15 +1083,14 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                             mCertHolder.mProfileId);
                     IKeyChainService service = keyChainConnection.getService();
                     if (mCertHolder.mDeleted) {
-                        byte[] bytes = mCertHolder.mX509Cert.getEncoded();
+                        byte[] bytes = service.getEncodedCaCertificate(mCertHolder.mAlias, true);
                         service.installCaCertificate(bytes);
                         return true;
                     } else {
                         return service.deleteCaCertificate(mCertHolder.mAlias);
                     }
                 }
-            } catch (CertificateEncodingException | SecurityException | IllegalStateException
-                    | RemoteException e) {
+            } catch (SecurityException | IllegalStateException | RemoteException e) {
                 Log.w(TAG, "Error while toggling alias " + mCertHolder.mAlias, e);
                 return false;
             }
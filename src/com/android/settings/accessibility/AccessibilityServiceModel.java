@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.app.admin.DevicePolicyManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.view.accessibility.AccessibilityManager;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.ContextCompat;
+
+import com.android.settings.R;
+import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
+import com.android.settingslib.RestrictedLockUtilsInternal;
+import com.android.settingslib.accessibility.AccessibilityUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Installed accessibility services shown by {@link AccessibilitySettings}, with whether each of
+ * them is enabled, has crashed or is disallowed by an admin.
+ *
+ * <p>It is loaded on a background thread. The label, icon, description and summary of a service
+ * are kept for the life of the process, and only loaded again when the version of its package or
+ * the locale changes. They are dropped once the service is no longer installed.
+ */
+class AccessibilityServiceModel {
+
+    private static final Object sLock = new Object();
+    @GuardedBy("sLock")
+    private static final Map<ComponentName, ServiceEntry> sEntryCache = new ArrayMap<>();
+
+    final List<ServiceEntry> services;
+    private final Set<ComponentName> mEnabledServices;
+    private final List<AccessibilityServiceInfo> mEnabledServiceInfos;
+    private final List<String> mPermittedServices;
+    // Admins disallowing the services that are not permitted, by package name.
+    private final Map<String, EnforcedAdmin> mDisallowingAdmins;
+
+    @VisibleForTesting
+    AccessibilityServiceModel(List<ServiceEntry> services,
+            Set<ComponentName> enabledServices, List<AccessibilityServiceInfo> enabledServiceInfos,
+            List<String> permittedServices, Map<String, EnforcedAdmin> disallowingAdmins) {
+        this.services = services;
+        mEnabledServices = enabledServices;
+        mEnabledServiceInfos = enabledServiceInfos;
+        mPermittedServices = permittedServices;
+        mDisallowingAdmins = disallowingAdmins;
+    }
+
+    @WorkerThread
+    static AccessibilityServiceModel load(Context context) {
+        final AccessibilityManager accessibilityManager = AccessibilityManager.getInstance(context);
+        final List<AccessibilityServiceInfo> installedServices =
+                accessibilityManager.getInstalledAccessibilityServiceList();
+        final List<ServiceEntry> services = new ArrayList<>(installedServices.size());
+        for (AccessibilityServiceInfo info : installedServices) {
+            services.add(getServiceEntry(context, info));
+        }
+        retainServiceEntries(services);
+        final List<String> permittedServices = context.getSystemService(DevicePolicyManager.class)
+                .getPermittedAccessibilityServices(UserHandle.myUserId());
+        final Map<String, EnforcedAdmin> disallowingAdmins = new ArrayMap<>();
+        if (permittedServices != null) {
+            for (ServiceEntry entry : services) {
+                final String packageName = entry.componentName.getPackageName();
+                if (!permittedServices.contains(packageName)
+                        && !disallowingAdmins.containsKey(packageName)) {
+                    disallowingAdmins.put(packageName,
+                            RestrictedLockUtilsInternal.checkIfAccessibilityServiceDisallowed(
+                                    context, packageName, UserHandle.myUserId()));
+                }
+            }
+        }
+        return new AccessibilityServiceModel(Collections.unmodifiableList(services),
+                AccessibilityUtils.getEnabledServicesFromSettings(context),
+                accessibilityManager.getEnabledAccessibilityServiceList(
+                        AccessibilityServiceInfo.FEEDBACK_ALL_MASK),
+                permittedServices, disallowingAdmins);
+    }
+
+    /**
+     * Returns a copy of this model with the current enabled and crashed state of the services,
+     * for when only the enabled services changed.
+     */
+    @WorkerThread
+    AccessibilityServiceModel reloadEnabledState(Context context) {
+        return new AccessibilityServiceModel(services,
+                AccessibilityUtils.getEnabledServicesFromSettings(context),
+                AccessibilityManager.getInstance(context).getEnabledAccessibilityServiceList(
+                        AccessibilityServiceInfo.FEEDBACK_ALL_MASK),
+                mPermittedServices, mDisallowingAdmins);
+    }
+
+    boolean isEnabled(ServiceEntry entry) {
+        return mEnabledServices.contains(entry.componentName);
+    }
+
+    boolean hasCrashed(ServiceEntry entry) {
+        return isEnabled(entry) && AccessibilityUtils.hasServiceCrashed(
+                entry.componentName.getPackageName(), entry.componentName.getClassName(),
+                mEnabledServiceInfos);
+    }
+
+    boolean isAllowed(ServiceEntry entry) {
+        return mPermittedServices == null
+                || mPermittedServices.contains(entry.componentName.getPackageName());
+    }
+
+    /** Returns the admin disallowing the service if it is not allowed, or null. */
+    EnforcedAdmin getDisallowingAdmin(ServiceEntry entry) {
+        return mDisallowingAdmins.get(entry.componentName.getPackageName());
+    }
+
+    /** Returns whether the row of the service shows the same state in {@code other}. */
+    boolean hasSameState(ServiceEntry entry, AccessibilityServiceModel other) {
+        return isEnabled(entry) == other.isEnabled(entry)
+                && hasCrashed(entry) == other.hasCrashed(entry);
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    static ServiceEntry getServiceEntry(Context context, AccessibilityServiceInfo info) {
+        final ResolveInfo resolveInfo = info.getResolveInfo();
+        final ServiceInfo serviceInfo = resolveInfo.serviceInfo;
+        final ComponentName componentName =
+                new ComponentName(serviceInfo.packageName, serviceInfo.name);
+        final long versionCode = serviceInfo.applicationInfo != null
+                ? serviceInfo.applicationInfo.longVersionCode : 0;
+        final Locale locale = context.getResources().getConfiguration().getLocales().get(0);
+        synchronized (sLock) {
+            final ServiceEntry entry = sEntryCache.get(componentName);
+            if (entry != null && entry.versionCode == versionCode
+                    && entry.locale.equals(locale)) {
+                return entry;
+            }
+        }
+        final ServiceEntry entry = new ServiceEntry(context, info, componentName, versionCode,
+                locale);
+        synchronized (sLock) {
+            sEntryCache.put(componentName, entry);
+        }
+        return entry;
+    }
+
+    /** Drops the cached entries of the services not in {@code services}. */
+    @VisibleForTesting
+    static void retainServiceEntries(List<ServiceEntry> services) {
+        final Set<ComponentName> installedServices = new ArraySet<>(services.size());
+        for (ServiceEntry entry : services) {
+            installedServices.add(entry.componentName);
+        }
+        synchronized (sLock) {
+            sEntryCache.keySet().retainAll(installedServices);
+        }
+    }
+
+    /** What is shown for a service whatever its state. */
+    static class ServiceEntry {
+        final AccessibilityServiceInfo info;
+        final ComponentName componentName;
+        final String title;
+        // Empty if the service has no description
+        final String description;
+        final CharSequence summary;
+        private final long versionCode;
+        private final Locale locale;
+        private final Drawable mIcon;
+
+        private ServiceEntry(Context context, AccessibilityServiceInfo info,
+                ComponentName componentName, long versionCode, Locale locale) {
+            final PackageManager packageManager = context.getPackageManager();
+            final ResolveInfo resolveInfo = info.getResolveInfo();
+            this.info = info;
+            this.componentName = componentName;
+            this.versionCode = versionCode;
+            this.locale = locale;
+            title = resolveInfo.loadLabel(packageManager).toString();
+            final String loadedDescription = info.loadDescription(packageManager);
+            description = loadedDescription != null ? loadedDescription : "";
+            summary = info.loadSummary(packageManager);
+            if (resolveInfo.getIconResource() == 0) {
+                mIcon = ContextCompat.getDrawable(context, R.drawable.ic_accessibility_generic);
+            } else {
+                mIcon = resolveInfo.loadIcon(packageManager);
+            }
+        }
+
+        /** Returns a new instance of the icon, which can't be shared between preferences. */
+        Drawable newIcon() {
+            final Drawable.ConstantState state = mIcon != null ? mIcon.getConstantState() : null;
+            return state != null ? state.newDrawable() : mIcon;
+        }
+    }
+}
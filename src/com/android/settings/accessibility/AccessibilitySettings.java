@@ -21,15 +21,11 @@ import static android.os.Vibrator.VibrationIntensity;
 import static com.android.settingslib.TwoTargetPreference.ICON_SIZE_MEDIUM;
 
 import android.accessibilityservice.AccessibilityServiceInfo;
-import android.app.admin.DevicePolicyManager;
 import android.app.settings.SettingsEnums;
 import android.content.ComponentName;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.content.pm.ResolveInfo;
-import android.content.pm.ServiceInfo;
 import android.content.res.Resources;
-import android.graphics.drawable.Drawable;
 import android.hardware.display.ColorDisplayManager;
 import android.net.Uri;
 import android.os.Bundle;
@@ -46,7 +42,6 @@ import android.view.KeyEvent;
 import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.VisibleForTesting;
-import androidx.core.content.ContextCompat;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceCategory;
@@ -60,23 +55,24 @@ import com.android.internal.view.RotationPolicy.RotationPolicyListener;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.accessibility.AccessibilityServiceModel.ServiceEntry;
 import com.android.settings.display.DarkUIPreferenceController;
 import com.android.settings.display.ToggleFontSizePreferenceFragment;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
-import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.RestrictedPreference;
 import com.android.settingslib.accessibility.AccessibilityUtils;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import com.google.common.primitives.Ints;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Activity with the accessibility settings.
@@ -166,6 +162,12 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
             Settings.Global.WINDOW_ANIMATION_SCALE, Settings.Global.TRANSITION_ANIMATION_SCALE,
             Settings.Global.ANIMATOR_DURATION_SCALE
     };
+    // Settings changing which services are enabled, the other observed settings are features the
+    // accessibility shortcut can toggle.
+    private static final List<Uri> ENABLED_STATE_URIS = Arrays.asList(
+            Settings.Secure.getUriFor(Settings.Secure.ACCESSIBILITY_ENABLED),
+            Settings.Secure.getUriFor(Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES));
+
     private static final String ANIMATION_ON_VALUE = "1";
     private static final String ANIMATION_OFF_VALUE = "0";
 
@@ -225,6 +227,14 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
             new ArrayMap<>();
     private final Map<ComponentName, PreferenceCategory> mPreBundledServiceComponentToCategoryMap =
             new ArrayMap<>();
+    private final Map<ComponentName, RestrictedPreference> mServicePreferences = new ArrayMap<>();
+    // The entry each service preference was bound to.
+    private final Map<ComponentName, ServiceEntry> mBoundServiceEntries = new ArrayMap<>();
+    // The services shown, null until they are first loaded.
+    private AccessibilityServiceModel mServiceModel;
+    // Incremented each time the services are loaded, so only the latest load is shown.
+    private int mServiceModelGeneration;
+    private boolean mServiceModelLoading;
 
     private SwitchPreference mToggleHighTextContrastPreference;
     private SwitchPreference mTogglePowerButtonEndsCallPreference;
@@ -251,8 +261,6 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
 
     private int mLongPressTimeoutDefault;
 
-    private DevicePolicyManager mDpm;
-
     /**
      * Check if the color transforms are color accelerated. Some transforms are experimental only
      * on non-accelerated platforms due to the performance implications.
@@ -275,7 +283,10 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
         mSettingsContentObserver = new SettingsContentObserver(mHandler, shortcutFeatureKeys) {
             @Override
             public void onChange(boolean selfChange, Uri uri) {
-                updateAllPreferences();
+                updateSystemPreferences();
+                if (ENABLED_STATE_URIS.contains(uri)) {
+                    updateServiceStates();
+                }
             }
         };
     }
@@ -295,8 +306,6 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
         super.onCreate(icicle);
         addPreferencesFromResource(R.xml.accessibility_settings);
         initializeAllPreferences();
-        mDpm = (DevicePolicyManager) (getActivity()
-                .getSystemService(Context.DEVICE_POLICY_SERVICE));
     }
 
     @Override
@@ -379,10 +388,15 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
 
     public static CharSequence getServiceSummary(Context context, AccessibilityServiceInfo info,
             boolean serviceEnabled) {
+        return getServiceSummary(context, info.loadSummary(context.getPackageManager()),
+                serviceEnabled);
+    }
+
+    private static CharSequence getServiceSummary(Context context, CharSequence serviceSummary,
+            boolean serviceEnabled) {
         final String serviceState = serviceEnabled
                 ? context.getString(R.string.accessibility_summary_state_enabled)
                 : context.getString(R.string.accessibility_summary_state_disabled);
-        final CharSequence serviceSummary = info.loadSummary(context.getPackageManager());
         final String stateSummaryCombo = context.getString(
                 R.string.preference_summary_default_combination,
                 serviceState, serviceSummary);
@@ -543,19 +557,69 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
         updateServicePreferences();
     }
 
+    /**
+     * Loads the installed services on a background thread and then shows them. The labels and
+     * icons are cached by {@link AccessibilityServiceModel}, and the preferences of the services
+     * already shown are kept.
+     */
     protected void updateServicePreferences() {
+        final Context context = getActivity();
+        final int generation = ++mServiceModelGeneration;
+        mServiceModelLoading = true;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final AccessibilityServiceModel model = AccessibilityServiceModel.load(context);
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation != mServiceModelGeneration || getActivity() == null) {
+                    return;
+                }
+                mServiceModelLoading = false;
+                showServices(model);
+            });
+        });
+    }
+
+    /**
+     * Only updates the rows of the services whose enabled or crashed state changed, the installed
+     * services are the same.
+     */
+    private void updateServiceStates() {
+        if (mServiceModel == null || mServiceModelLoading) {
+            // The pending load will get the new state
+            updateServicePreferences();
+            return;
+        }
+        final Context context = getActivity();
+        final AccessibilityServiceModel oldModel = mServiceModel;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final AccessibilityServiceModel model = oldModel.reloadEnabledState(context);
+            ThreadUtils.postOnMainThread(() -> {
+                if (mServiceModel != oldModel || getActivity() == null) {
+                    // The services were loaded again in the meantime
+                    return;
+                }
+                showServiceStates(oldModel, model);
+            });
+        });
+    }
+
+    /** Updates the rows of the services whose state in {@code model} differs from the old one. */
+    @VisibleForTesting
+    void showServiceStates(AccessibilityServiceModel oldModel, AccessibilityServiceModel model) {
+        mServiceModel = model;
+        for (ServiceEntry entry : model.services) {
+            final RestrictedPreference preference = mServicePreferences.get(entry.componentName);
+            if (preference != null && !model.hasSameState(entry, oldModel)) {
+                updateServicePreferenceState(preference, entry, model);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void showServices(AccessibilityServiceModel model) {
         // Since services category is auto generated we have to do a pass
         // to generate it since services can come and go and then based on
         // the global accessibility state to decided whether it is enabled.
-
-        // Generate.
-        ArrayList<Preference> servicePreferences =
-                new ArrayList<>(mServicePreferenceToPreferenceCategoryMap.keySet());
-        for (int i = 0; i < servicePreferences.size(); i++) {
-            Preference service = servicePreferences.get(i);
-            PreferenceCategory category = mServicePreferenceToPreferenceCategoryMap.get(service);
-            category.removePreference(service);
-        }
+        mServiceModel = model;
 
         initializePreBundledServicesMapFromArray(CATEGORY_SCREEN_READER,
                 R.array.config_preinstalled_screen_reader_services);
@@ -566,17 +630,6 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
         initializePreBundledServicesMapFromArray(CATEGORY_INTERACTION_CONTROL,
                 R.array.config_preinstalled_interaction_control_services);
 
-        AccessibilityManager accessibilityManager = AccessibilityManager.getInstance(getActivity());
-
-        List<AccessibilityServiceInfo> installedServices =
-                accessibilityManager.getInstalledAccessibilityServiceList();
-        List<AccessibilityServiceInfo> enabledServiceInfos = accessibilityManager
-                .getEnabledAccessibilityServiceList(AccessibilityServiceInfo.FEEDBACK_ALL_MASK);
-        Set<ComponentName> enabledServices = AccessibilityUtils.getEnabledServicesFromSettings(
-                getActivity());
-        List<String> permittedServices = mDpm.getPermittedAccessibilityServices(
-                UserHandle.myUserId());
-
         PreferenceCategory downloadedServicesCategory =
                 mCategoryToPrefCategoryMap.get(CATEGORY_DOWNLOADED_SERVICES);
         // Temporarily add the downloaded services category back if it was previously removed.
@@ -584,90 +637,36 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
             getPreferenceScreen().addPreference(downloadedServicesCategory);
         }
 
-        for (int i = 0, count = installedServices.size(); i < count; ++i) {
-            final AccessibilityServiceInfo info = installedServices.get(i);
-            final ResolveInfo resolveInfo = info.getResolveInfo();
-
-            final RestrictedPreference preference =
-                    new RestrictedPreference(downloadedServicesCategory.getContext());
-            final String title = resolveInfo.loadLabel(getPackageManager()).toString();
-
-            Drawable icon;
-            if (resolveInfo.getIconResource() == 0) {
-                icon = ContextCompat.getDrawable(getContext(), R.drawable.ic_accessibility_generic);
-            } else {
-                icon = resolveInfo.loadIcon(getPackageManager());
-            }
-
-            final ServiceInfo serviceInfo = resolveInfo.serviceInfo;
-            final String packageName = serviceInfo.packageName;
-            final ComponentName componentName = new ComponentName(packageName, serviceInfo.name);
-
-            preference.setKey(componentName.flattenToString());
-
-            preference.setTitle(title);
-            preference.setIconSize(ICON_SIZE_MEDIUM);
-            Utils.setSafeIcon(preference, icon);
-            final boolean serviceEnabled = enabledServices.contains(componentName);
-            String description = info.loadDescription(getPackageManager());
-            if (TextUtils.isEmpty(description)) {
-                description = getString(R.string.accessibility_service_default_description);
-            }
-
-            if (serviceEnabled && AccessibilityUtils.hasServiceCrashed(
-                    packageName, serviceInfo.name, enabledServiceInfos)) {
-                // Update the summaries for services that have crashed.
-                preference.setSummary(R.string.accessibility_summary_state_stopped);
-                description = getString(R.string.accessibility_description_state_stopped);
-            } else {
-                final CharSequence serviceSummary = getServiceSummary(getContext(), info,
-                        serviceEnabled);
-                preference.setSummary(serviceSummary);
-            }
-
-            // Disable all accessibility services that are not permitted.
-            final boolean serviceAllowed =
-                    permittedServices == null || permittedServices.contains(packageName);
-            if (!serviceAllowed && !serviceEnabled) {
-                final EnforcedAdmin admin =
-                        RestrictedLockUtilsInternal.checkIfAccessibilityServiceDisallowed(
-                                getActivity(), packageName, UserHandle.myUserId());
-                if (admin != null) {
-                    preference.setDisabledByAdmin(admin);
-                } else {
-                    preference.setEnabled(false);
+        final Map<ComponentName, RestrictedPreference> preferencesToRemove =
+                new ArrayMap<>(mServicePreferences);
+        for (ServiceEntry entry : model.services) {
+            final ComponentName componentName = entry.componentName;
+            RestrictedPreference preference = preferencesToRemove.remove(componentName);
+            if (preference == null) {
+                preference = new RestrictedPreference(downloadedServicesCategory.getContext());
+                preference.setOrder(FIRST_PREFERENCE_IN_CATEGORY_INDEX);
+                PreferenceCategory prefCategory = downloadedServicesCategory;
+                // Set the appropriate category if the service comes pre-installed.
+                if (mPreBundledServiceComponentToCategoryMap.containsKey(componentName)) {
+                    prefCategory = mPreBundledServiceComponentToCategoryMap.get(componentName);
                 }
-            } else {
-                preference.setEnabled(true);
+                prefCategory.addPreference(preference);
+                mServicePreferenceToPreferenceCategoryMap.put(preference, prefCategory);
+                mServicePreferences.put(componentName, preference);
             }
-
-            preference.setFragment(ToggleAccessibilityServicePreferenceFragment.class.getName());
-            preference.setPersistent(true);
-
-            final Bundle extras = preference.getExtras();
-            extras.putString(EXTRA_PREFERENCE_KEY, preference.getKey());
-            extras.putBoolean(EXTRA_CHECKED, serviceEnabled);
-            extras.putString(EXTRA_TITLE, title);
-            extras.putParcelable(EXTRA_RESOLVE_INFO, resolveInfo);
-            extras.putString(EXTRA_SUMMARY, description);
-
-            final String settingsClassName = info.getSettingsActivityName();
-            if (!TextUtils.isEmpty(settingsClassName)) {
-                extras.putString(EXTRA_SETTINGS_TITLE,
-                        getString(R.string.accessibility_menu_item_settings));
-                extras.putString(EXTRA_SETTINGS_COMPONENT_NAME,
-                        new ComponentName(packageName, settingsClassName).flattenToString());
-            }
-            extras.putParcelable(EXTRA_COMPONENT_NAME, componentName);
-
-            PreferenceCategory prefCategory = downloadedServicesCategory;
-            // Set the appropriate category if the service comes pre-installed.
-            if (mPreBundledServiceComponentToCategoryMap.containsKey(componentName)) {
-                prefCategory = mPreBundledServiceComponentToCategoryMap.get(componentName);
+            if (mBoundServiceEntries.get(componentName) != entry) {
+                bindServicePreference(preference, entry);
+                mBoundServiceEntries.put(componentName, entry);
             }
-            preference.setOrder(FIRST_PREFERENCE_IN_CATEGORY_INDEX);
-            prefCategory.addPreference(preference);
-            mServicePreferenceToPreferenceCategoryMap.put(preference, prefCategory);
+            updateServicePreferenceState(preference, entry, model);
+        }
+        for (Map.Entry<ComponentName, RestrictedPreference> removed
+                : preferencesToRemove.entrySet()) {
+            final Preference preference = removed.getValue();
+            mServicePreferenceToPreferenceCategoryMap.remove(preference)
+                    .removePreference(preference);
+            mServicePreferences.remove(removed.getKey());
+            mBoundServiceEntries.remove(removed.getKey());
         }
 
         // Update the order of all the category according to the order defined in xml file.
@@ -687,6 +686,75 @@ public class AccessibilitySettings extends SettingsPreferenceFragment implements
         }
     }
 
+    /** Binds what is shown for the service whatever its state. */
+    private void bindServicePreference(RestrictedPreference preference, ServiceEntry entry) {
+        final AccessibilityServiceInfo info = entry.info;
+        final ComponentName componentName = entry.componentName;
+
+        preference.setKey(componentName.flattenToString());
+
+        preference.setTitle(entry.title);
+        preference.setIconSize(ICON_SIZE_MEDIUM);
+        Utils.setSafeIcon(preference, entry.newIcon());
+
+        preference.setFragment(ToggleAccessibilityServicePreferenceFragment.class.getName());
+        preference.setPersistent(true);
+
+        final Bundle extras = preference.getExtras();
+        extras.putString(EXTRA_PREFERENCE_KEY, preference.getKey());
+        extras.putString(EXTRA_TITLE, entry.title);
+        extras.putParcelable(EXTRA_RESOLVE_INFO, info.getResolveInfo());
+
+        final String settingsClassName = info.getSettingsActivityName();
+        if (!TextUtils.isEmpty(settingsClassName)) {
+            extras.putString(EXTRA_SETTINGS_TITLE,
+                    getString(R.string.accessibility_menu_item_settings));
+            extras.putString(EXTRA_SETTINGS_COMPONENT_NAME,
+                    new ComponentName(componentName.getPackageName(), settingsClassName)
+                            .flattenToString());
+        } else {
+            extras.remove(EXTRA_SETTINGS_TITLE);
+            extras.remove(EXTRA_SETTINGS_COMPONENT_NAME);
+        }
+        extras.putParcelable(EXTRA_COMPONENT_NAME, componentName);
+    }
+
+    /** Updates the summary and enabled state of the service. */
+    private void updateServicePreferenceState(RestrictedPreference preference, ServiceEntry entry,
+            AccessibilityServiceModel model) {
+        final boolean serviceEnabled = model.isEnabled(entry);
+        String description = entry.description;
+        if (TextUtils.isEmpty(description)) {
+            description = getString(R.string.accessibility_service_default_description);
+        }
+
+        if (model.hasCrashed(entry)) {
+            // Update the summaries for services that have crashed.
+            preference.setSummary(R.string.accessibility_summary_state_stopped);
+            description = getString(R.string.accessibility_description_state_stopped);
+        } else {
+            final CharSequence serviceSummary = getServiceSummary(getContext(), entry.summary,
+                    serviceEnabled);
+            preference.setSummary(serviceSummary);
+        }
+
+        // Disable all accessibility services that are not permitted.
+        if (!model.isAllowed(entry) && !serviceEnabled) {
+            final EnforcedAdmin admin = model.getDisallowingAdmin(entry);
+            if (admin != null) {
+                preference.setDisabledByAdmin(admin);
+            } else {
+                preference.setEnabled(false);
+            }
+        } else {
+            preference.setEnabled(true);
+        }
+
+        final Bundle extras = preference.getExtras();
+        extras.putBoolean(EXTRA_CHECKED, serviceEnabled);
+        extras.putString(EXTRA_SUMMARY, description);
+    }
+
     private void initializePreBundledServicesMapFromArray(String categoryKey, int key) {
         String[] services = getResources().getStringArray(key);
         PreferenceCategory category = mCategoryToPrefCategoryMap.get(categoryKey);
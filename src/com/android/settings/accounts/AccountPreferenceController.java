@@ -32,8 +32,9 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
 import android.content.res.Resources;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.BidiFormatter;
@@ -42,6 +43,7 @@ import android.util.Log;
 import android.util.SparseArray;
 
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.preference.Preference;
 import androidx.preference.Preference.OnPreferenceClickListener;
 import androidx.preference.PreferenceGroup;
@@ -62,6 +64,7 @@ import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnPause;
 import com.android.settingslib.core.lifecycle.events.OnResume;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -90,6 +93,8 @@ public class AccountPreferenceController extends AbstractPreferenceController
     private int mAccountProfileOrder = ORDER_ACCOUNT_PROFILES;
     private AccountRestrictionHelper mHelper;
     private MetricsFeatureProvider mMetricsFeatureProvider;
+    private final AccountTypeInfoCache mTypeInfoCache = AccountTypeInfoCache.getInstance();
+    private boolean mListeningToAccountUpdates;
 
     /**
      * Holds data related to the accounts belonging to one profile.
@@ -127,6 +132,10 @@ public class AccountPreferenceController extends AbstractPreferenceController
          * The map from account key to account preference
          */
         public ArrayMap<String, AccountTypePreference> accountPreferences = new ArrayMap<>();
+        /**
+         * Incremented each time the accounts are loaded, so only the latest load is shown.
+         */
+        public int accountsGeneration;
     }
 
     public AccountPreferenceController(Context context, SettingsPreferenceFragment parent,
@@ -260,6 +269,14 @@ public class AccountPreferenceController extends AbstractPreferenceController
     }
 
     private void updateUi() {
+        updateUi(true /* reloadAllProfiles */);
+    }
+
+    /**
+     * @param reloadAllProfiles whether to reload the accounts of the profiles already shown, or
+     *                          only of the new ones.
+     */
+    private void updateUi(boolean reloadAllProfiles) {
         if (!isAvailable()) {
             // This should not happen
             Log.e(TAG, "We should not be showing settings for a managed profile");
@@ -287,7 +304,10 @@ public class AccountPreferenceController extends AbstractPreferenceController
         // value of UserHandle.USER_OWNER being smaller than all the rest.
         final int profilesCount = mProfiles.size();
         for (int i = 0; i < profilesCount; i++) {
-            updateAccountTypes(mProfiles.valueAt(i));
+            final ProfileData profileData = mProfiles.valueAt(i);
+            if (reloadAllProfiles || profileData.authenticatorHelper == null) {
+                updateAccountTypes(profileData);
+            }
         }
     }
 
@@ -297,13 +317,9 @@ public class AccountPreferenceController extends AbstractPreferenceController
         }
         final ProfileData data = mProfiles.get(userInfo.id);
         if (data != null) {
+            // The authentication helper is recreated when the accounts are loaded
             data.pendingRemoval = false;
             data.userInfo = userInfo;
-            if (userInfo.isEnabled()) {
-                // recreate the authentication helper to refresh the list of enabled accounts
-                data.authenticatorHelper =
-                    new AuthenticatorHelper(mContext, userInfo.getUserHandle(), this);
-            }
             return;
         }
         final Context context = mContext;
@@ -338,8 +354,6 @@ public class AccountPreferenceController extends AbstractPreferenceController
         }
         profileData.preferenceGroup = preferenceGroup;
         if (userInfo.isEnabled()) {
-            profileData.authenticatorHelper = new AuthenticatorHelper(context,
-                    userInfo.getUserHandle(), this);
             profileData.addAccountPreference = newAddAccountPreference();
             mHelper.enforceRestrictionOnPreference(profileData.addAccountPreference,
                 DISALLOW_MODIFY_ACCOUNTS, userInfo.id);
@@ -396,6 +410,9 @@ public class AccountPreferenceController extends AbstractPreferenceController
         for (int i = count-1; i >= 0; i--) {
             final ProfileData data = mProfiles.valueAt(i);
             if (data.pendingRemoval) {
+                if (mListeningToAccountUpdates && data.authenticatorHelper != null) {
+                    data.authenticatorHelper.stopListeningToAccountUpdates();
+                }
                 screen.removePreference(data.preferenceGroup);
                 mProfiles.removeAt(i);
             }
@@ -403,6 +420,7 @@ public class AccountPreferenceController extends AbstractPreferenceController
     }
 
     private void listenToAccountUpdates() {
+        mListeningToAccountUpdates = true;
         final int count = mProfiles.size();
         for (int i = 0; i < count; i++) {
             AuthenticatorHelper authenticatorHelper = mProfiles.valueAt(i).authenticatorHelper;
@@ -413,6 +431,7 @@ public class AccountPreferenceController extends AbstractPreferenceController
     }
 
     private void stopListeningToAccountUpdates() {
+        mListeningToAccountUpdates = false;
         final int count = mProfiles.size();
         for (int i = 0; i < count; i++) {
             AuthenticatorHelper authenticatorHelper = mProfiles.valueAt(i).authenticatorHelper;
@@ -429,43 +448,104 @@ public class AccountPreferenceController extends AbstractPreferenceController
             return;
         }
         if (profileData.userInfo.isEnabled()) {
-            final ArrayMap<String, AccountTypePreference> preferenceToRemove =
-                    new ArrayMap<>(profileData.accountPreferences);
-            final ArrayList<AccountTypePreference> preferences = getAccountTypePreferences(
-                    profileData.authenticatorHelper, profileData.userInfo.getUserHandle(),
-                    preferenceToRemove);
-            final int count = preferences.size();
-            for (int i = 0; i < count; i++) {
-                final AccountTypePreference preference = preferences.get(i);
-                preference.setOrder(i);
-                final String key = preference.getKey();
-                if (!profileData.accountPreferences.containsKey(key)) {
-                    profileData.preferenceGroup.addPreference(preference);
-                    profileData.accountPreferences.put(key, preference);
+            loadAccountTypes(profileData);
+            return;
+        }
+        // Drop any pending load of the accounts
+        profileData.accountsGeneration++;
+        profileData.preferenceGroup.removeAll();
+        // Put a label instead of the accounts list
+        if (mProfileNotAvailablePreference == null) {
+            mProfileNotAvailablePreference =
+                new Preference(mParent.getPreferenceManager().getContext());
+        }
+        mProfileNotAvailablePreference.setEnabled(false);
+        mProfileNotAvailablePreference.setIcon(R.drawable.empty_icon);
+        mProfileNotAvailablePreference.setTitle(null);
+        mProfileNotAvailablePreference.setSummary(
+                R.string.managed_profile_not_available_label);
+        profileData.preferenceGroup.addPreference(mProfileNotAvailablePreference);
+        addProfileActionPreferences(profileData);
+    }
+
+    /**
+     * Loads the accounts of the profile with their labels and icons in the background, and then
+     * shows them. Only the profile is refreshed, the other ones are left as they are.
+     */
+    private void loadAccountTypes(ProfileData profileData) {
+        final int generation = ++profileData.accountsGeneration;
+        final UserHandle userHandle = profileData.userInfo.getUserHandle();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final long loadStartTime = SystemClock.elapsedRealtime();
+            Trace.beginSection("AccountPrefController#loadAccounts");
+            // A new helper reloads the authenticators, accounts and sync adapters of the profile
+            final AuthenticatorHelper helper = new AuthenticatorHelper(mContext, userHandle,
+                    this);
+            final List<AccountEntry> entries = loadAccountEntries(helper, userHandle);
+            Trace.endSection();
+            final long loadTime = SystemClock.elapsedRealtime() - loadStartTime;
+            ThreadUtils.postOnMainThread(() -> {
+                if (profileData.accountsGeneration != generation
+                        || mProfiles.get(userHandle.getIdentifier()) != profileData) {
+                    // A newer load is pending or the profile was removed
+                    return;
                 }
+                final long showStartTime = SystemClock.elapsedRealtime();
+                Trace.beginSection("AccountPrefController#showAccounts");
+                setAuthenticatorHelper(profileData, helper);
+                showAccountTypes(profileData, entries);
+                Trace.endSection();
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Accounts of user " + userHandle.getIdentifier() + " loaded in "
+                            + loadTime + "ms off the main thread, shown in "
+                            + (SystemClock.elapsedRealtime() - showStartTime) + "ms");
+                }
+            });
+        });
+    }
+
+    private void setAuthenticatorHelper(ProfileData profileData, AuthenticatorHelper helper) {
+        if (mListeningToAccountUpdates) {
+            if (profileData.authenticatorHelper != null) {
+                profileData.authenticatorHelper.stopListeningToAccountUpdates();
             }
-            if (profileData.addAccountPreference != null) {
-                profileData.preferenceGroup.addPreference(profileData.addAccountPreference);
-            }
-            for (String key : preferenceToRemove.keySet()) {
-                profileData.preferenceGroup.removePreference(
-                    profileData.accountPreferences.get(key));
-                profileData.accountPreferences.remove(key);
-            }
-        } else {
-            profileData.preferenceGroup.removeAll();
-            // Put a label instead of the accounts list
-            if (mProfileNotAvailablePreference == null) {
-                mProfileNotAvailablePreference =
-                    new Preference(mParent.getPreferenceManager().getContext());
+            helper.listenToAccountUpdates();
+        }
+        profileData.authenticatorHelper = helper;
+    }
+
+    private void showAccountTypes(ProfileData profileData, List<AccountEntry> entries) {
+        if (mParent.getPreferenceManager() == null
+                || profileData.preferenceGroup.getPreferenceManager() == null) {
+            // This could happen if activity is finishing
+            return;
+        }
+        final ArrayMap<String, AccountTypePreference> preferenceToRemove =
+                new ArrayMap<>(profileData.accountPreferences);
+        final ArrayList<AccountTypePreference> preferences = getAccountTypePreferences(entries,
+                profileData.userInfo.getUserHandle(), preferenceToRemove);
+        final int count = preferences.size();
+        for (int i = 0; i < count; i++) {
+            final AccountTypePreference preference = preferences.get(i);
+            preference.setOrder(i);
+            final String key = preference.getKey();
+            if (!profileData.accountPreferences.containsKey(key)) {
+                profileData.preferenceGroup.addPreference(preference);
+                profileData.accountPreferences.put(key, preference);
             }
-            mProfileNotAvailablePreference.setEnabled(false);
-            mProfileNotAvailablePreference.setIcon(R.drawable.empty_icon);
-            mProfileNotAvailablePreference.setTitle(null);
-            mProfileNotAvailablePreference.setSummary(
-                    R.string.managed_profile_not_available_label);
-            profileData.preferenceGroup.addPreference(mProfileNotAvailablePreference);
         }
+        if (profileData.addAccountPreference != null) {
+            profileData.preferenceGroup.addPreference(profileData.addAccountPreference);
+        }
+        for (String key : preferenceToRemove.keySet()) {
+            profileData.preferenceGroup.removePreference(
+                profileData.accountPreferences.get(key));
+            profileData.accountPreferences.remove(key);
+        }
+        addProfileActionPreferences(profileData);
+    }
+
+    private void addProfileActionPreferences(ProfileData profileData) {
         if (profileData.removeWorkProfilePreference != null) {
             profileData.preferenceGroup.addPreference(profileData.removeWorkProfilePreference);
         }
@@ -474,61 +554,70 @@ public class AccountPreferenceController extends AbstractPreferenceController
         }
     }
 
-    private ArrayList<AccountTypePreference> getAccountTypePreferences(AuthenticatorHelper helper,
-            UserHandle userHandle, ArrayMap<String, AccountTypePreference> preferenceToRemove) {
+    @WorkerThread
+    private List<AccountEntry> loadAccountEntries(AuthenticatorHelper helper,
+            UserHandle userHandle) {
         final String[] accountTypes = helper.getEnabledAccountTypes();
-        final ArrayList<AccountTypePreference> accountTypePreferences =
-                new ArrayList<>(accountTypes.length);
-
-        for (int i = 0; i < accountTypes.length; i++) {
-            final String accountType = accountTypes[i];
+        final List<AccountEntry> entries = new ArrayList<>(accountTypes.length);
+        for (String accountType : accountTypes) {
             // Skip showing any account that does not have any of the requested authorities
             if (!accountTypeHasAnyRequestedAuthorities(helper, accountType)) {
                 continue;
             }
-            final CharSequence label = helper.getLabelForType(mContext, accountType);
-            if (label == null) {
+            final AccountTypeInfoCache.Entry typeInfo = mTypeInfoCache.get(mContext, helper,
+                    userHandle, accountType);
+            if (typeInfo == null) {
+                continue;
+            }
+            final ArrayList<String> auths = helper.getAuthoritiesForAccountType(accountType);
+            if (!AccountRestrictionHelper.showAccount(mAuthorities, auths)) {
                 continue;
             }
             final String titleResPackageName = helper.getPackageForType(accountType);
             final int titleResId = helper.getLabelIdForType(accountType);
-
             final Account[] accounts = AccountManager.get(mContext)
                     .getAccountsByTypeAsUser(accountType, userHandle);
-            final Drawable icon = helper.getDrawableForType(mContext, accountType);
-            final Context prefContext = mParent.getPreferenceManager().getContext();
-
-            // Add a preference row for each individual account
             for (Account account : accounts) {
-                final AccountTypePreference preference =
-                        preferenceToRemove.remove(AccountTypePreference.buildKey(account));
-                if (preference != null) {
-                    accountTypePreferences.add(preference);
-                    continue;
-                }
-                final ArrayList<String> auths =
-                    helper.getAuthoritiesForAccountType(account.type);
-                if (!AccountRestrictionHelper.showAccount(mAuthorities, auths)) {
-                    continue;
-                }
-                final Bundle fragmentArguments = new Bundle();
-                fragmentArguments.putParcelable(AccountDetailDashboardFragment.KEY_ACCOUNT,
-                    account);
-                fragmentArguments.putParcelable(AccountDetailDashboardFragment.KEY_USER_HANDLE,
-                    userHandle);
-                fragmentArguments.putString(AccountDetailDashboardFragment.KEY_ACCOUNT_TYPE,
-                    accountType);
-                fragmentArguments.putString(AccountDetailDashboardFragment.KEY_ACCOUNT_LABEL,
-                    label.toString());
-                fragmentArguments.putInt(AccountDetailDashboardFragment.KEY_ACCOUNT_TITLE_RES,
-                    titleResId);
-                fragmentArguments.putParcelable(EXTRA_USER, userHandle);
-                accountTypePreferences.add(new AccountTypePreference(
-                    prefContext, mMetricsFeatureProvider.getMetricsCategory(mParent),
-                    account, titleResPackageName, titleResId, label,
-                    AccountDetailDashboardFragment.class.getName(), fragmentArguments, icon));
+                entries.add(new AccountEntry(account, typeInfo, titleResPackageName,
+                        titleResId));
+            }
+        }
+        return entries;
+    }
+
+    private ArrayList<AccountTypePreference> getAccountTypePreferences(List<AccountEntry> entries,
+            UserHandle userHandle, ArrayMap<String, AccountTypePreference> preferenceToRemove) {
+        final ArrayList<AccountTypePreference> accountTypePreferences =
+                new ArrayList<>(entries.size());
+        final Context prefContext = mParent.getPreferenceManager().getContext();
+
+        // Add a preference row for each individual account
+        for (AccountEntry entry : entries) {
+            final Account account = entry.account;
+            final AccountTypePreference preference =
+                    preferenceToRemove.remove(AccountTypePreference.buildKey(account));
+            if (preference != null) {
+                accountTypePreferences.add(preference);
+                continue;
             }
-            helper.preloadDrawableForType(mContext, accountType);
+            final CharSequence label = entry.typeInfo.label;
+            final Bundle fragmentArguments = new Bundle();
+            fragmentArguments.putParcelable(AccountDetailDashboardFragment.KEY_ACCOUNT,
+                account);
+            fragmentArguments.putParcelable(AccountDetailDashboardFragment.KEY_USER_HANDLE,
+                userHandle);
+            fragmentArguments.putString(AccountDetailDashboardFragment.KEY_ACCOUNT_TYPE,
+                account.type);
+            fragmentArguments.putString(AccountDetailDashboardFragment.KEY_ACCOUNT_LABEL,
+                label.toString());
+            fragmentArguments.putInt(AccountDetailDashboardFragment.KEY_ACCOUNT_TITLE_RES,
+                entry.titleResId);
+            fragmentArguments.putParcelable(EXTRA_USER, userHandle);
+            accountTypePreferences.add(new AccountTypePreference(
+                prefContext, mMetricsFeatureProvider.getMetricsCategory(mParent),
+                account, entry.titleResPackageName, entry.titleResId, label,
+                AccountDetailDashboardFragment.class.getName(), fragmentArguments,
+                entry.typeInfo.newIcon()));
         }
         // Sort by label
         Collections.sort(accountTypePreferences, new Comparator<AccountTypePreference>() {
@@ -566,6 +655,24 @@ public class AccountPreferenceController extends AbstractPreferenceController
         return mUm.isLinkedUser() || mUm.getProfiles(UserHandle.myUserId()).size() == 1;
     }
 
+    /**
+     * An account to show, with the label and icon of its type.
+     */
+    private static class AccountEntry {
+        final Account account;
+        final AccountTypeInfoCache.Entry typeInfo;
+        final String titleResPackageName;
+        final int titleResId;
+
+        AccountEntry(Account account, AccountTypeInfoCache.Entry typeInfo,
+                String titleResPackageName, int titleResId) {
+            this.account = account;
+            this.typeInfo = typeInfo;
+            this.titleResPackageName = titleResPackageName;
+            this.titleResId = titleResId;
+        }
+    }
+
     private class ManagedProfileBroadcastReceiver extends BroadcastReceiver {
         private boolean mListeningToManagedProfileEvents;
 
@@ -575,11 +682,8 @@ public class AccountPreferenceController extends AbstractPreferenceController
             Log.v(TAG, "Received broadcast: " + action);
             if (action.equals(Intent.ACTION_MANAGED_PROFILE_REMOVED)
                     || action.equals(Intent.ACTION_MANAGED_PROFILE_ADDED)) {
-                // Clean old state
-                stopListeningToAccountUpdates();
-                // Build new state
-                updateUi();
-                listenToAccountUpdates();
+                // Only the accounts of the added profile need to be loaded
+                updateUi(false /* reloadAllProfiles */);
                 return;
             }
             Log.w(TAG, "Cannot handle received broadcast: " + intent.getAction());
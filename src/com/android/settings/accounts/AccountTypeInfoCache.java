@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import android.accounts.AuthenticatorDescription;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.accounts.AuthenticatorHelper;
+
+import java.util.Locale;
+
+/**
+ * Process wide cache of the label and icon of each account type of each user, so they are not
+ * loaded from the authenticator package every time the accounts are shown.
+ *
+ * <p>An entry is only used for the authenticator description and locale it was loaded for, so it
+ * is loaded again when the authenticator of the type or the locale changes.
+ */
+class AccountTypeInfoCache {
+
+    private static AccountTypeInfoCache sInstance;
+
+    private final Object mLock = new Object();
+    // Entries by user id and account type.
+    @GuardedBy("mLock")
+    private final ArrayMap<String, Entry> mEntries = new ArrayMap<>();
+
+    static synchronized AccountTypeInfoCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new AccountTypeInfoCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the label and icon of {@code accountType} for {@code userHandle}, or {@code null} if
+     * the type has no label.
+     */
+    @WorkerThread
+    Entry get(Context context, AuthenticatorHelper helper, UserHandle userHandle,
+            String accountType) {
+        final AuthenticatorDescription description = helper.getAccountTypeDescription(accountType);
+        final String key = userHandle.getIdentifier() + "/" + accountType;
+        final Locale locale = context.getResources().getConfiguration().getLocales().get(0);
+        synchronized (mLock) {
+            final Entry entry = mEntries.get(key);
+            if (entry != null && entry.isFor(description, locale)) {
+                return entry;
+            }
+        }
+        final CharSequence label = helper.getLabelForType(context, accountType);
+        if (label == null) {
+            return null;
+        }
+        final Entry entry = new Entry(description, locale, label,
+                helper.getDrawableForType(context, accountType));
+        synchronized (mLock) {
+            mEntries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /** The label and icon of an account type. */
+    static class Entry {
+        final CharSequence label;
+        private final String mPackageName;
+        private final int mLabelId;
+        private final int mIconId;
+        private final Locale mLocale;
+        private final Drawable mIcon;
+
+        private Entry(AuthenticatorDescription description, Locale locale, CharSequence label,
+                Drawable icon) {
+            this.label = label;
+            mPackageName = description != null ? description.packageName : null;
+            mLabelId = description != null ? description.labelId : 0;
+            mIconId = description != null ? description.iconId : 0;
+            mLocale = locale;
+            mIcon = icon;
+        }
+
+        private boolean isFor(AuthenticatorDescription description, Locale locale) {
+            return description != null && TextUtils.equals(mPackageName, description.packageName)
+                    && mLabelId == description.labelId && mIconId == description.iconId
+                    && mLocale.equals(locale);
+        }
+
+        /** Returns a new instance of the icon, which can't be shared between preferences. */
+        Drawable newIcon() {
+            if (mIcon == null) {
+                return null;
+            }
+            final Drawable.ConstantState state = mIcon.getConstantState();
+            return state != null ? state.newDrawable() : mIcon;
+        }
+    }
+}
@@ -40,10 +40,13 @@ import com.android.internal.app.procstats.ServiceState;
 import com.android.internal.util.MemInfoReader;
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -54,6 +57,7 @@ public class ProcStatsData {
     private static final boolean DEBUG = ProcessStatsUi.DEBUG;
 
     private static ProcessStats sStatsXfer;
+    private static long sDurationXfer;
 
     private PackageManager mPm;
     private Context mContext;
@@ -71,7 +75,15 @@ public class ProcStatsData {
 
     private MemInfo mMemInfo;
 
-    private ArrayList<ProcStatsPackageEntry> pkgEntries;
+    private List<ProcStatsPackageEntry> pkgEntries;
+
+    // Parsed stats per duration, so each sample is only read from its parcel once.
+    private final LongSparseArray<ProcessStats> mStatsCache = new LongSparseArray<>();
+    // Aggregated results per (duration, mem states, proc states).
+    private final ArrayMap<String, Aggregation> mAggregationCache = new ArrayMap<>();
+    private int mAsyncRequest;
+    private String mPendingKey;
+    private Runnable mPendingCallback;
 
     public ProcStatsData(Context context, boolean useXfer) {
         mContext = context;
@@ -80,8 +92,10 @@ public class ProcStatsData {
                 ServiceManager.getService(ProcessStats.SERVICE_NAME));
         mMemStates = ProcessStats.ALL_MEM_ADJ;
         mStates = ProcessStats.BACKGROUND_PROC_STATES;
-        if (useXfer) {
+        if (useXfer && sStatsXfer != null) {
             mStats = sStatsXfer;
+            mDuration = sDurationXfer;
+            mStatsCache.put(mDuration, mStats);
         }
     }
 
@@ -91,6 +105,7 @@ public class ProcStatsData {
 
     public void xferStats() {
         sStatsXfer = mStats;
+        sDurationXfer = mDuration;
     }
 
     public void setMemStates(int[] memStates) {
@@ -123,87 +138,203 @@ public class ProcStatsData {
     }
 
     public void setDuration(long duration) {
-        if (duration != mDuration) {
+        if (duration != mDuration || mStats == null) {
             mDuration = duration;
-            refreshStats(true);
+            refreshStats(false);
         }
     }
 
+    /**
+     * Switches to another duration without computing anything on the calling thread, then
+     * runs {@code onLoaded} on the main thread once the entries are available.
+     */
+    public void setDurationAsync(long duration, Runnable onLoaded) {
+        mDuration = duration;
+        refreshStatsAsync(false, onLoaded);
+    }
+
     public long getDuration() {
         return mDuration;
     }
 
+    /**
+     * Returns the package entries of the last loaded stats.  The list is shared with the cached
+     * results and can't be modified.
+     */
     public List<ProcStatsPackageEntry> getEntries() {
         return pkgEntries;
     }
 
+    /**
+     * Loads and aggregates the stats for the current duration and states on the calling thread.
+     * With {@code forceLoad}, previously parsed stats and results for the duration are dropped.
+     */
     public void refreshStats(boolean forceLoad) {
-        if (mStats == null || forceLoad) {
-            load();
+        apply(getAggregation(mDuration, mMemStates, mStates, forceLoad));
+    }
+
+    /**
+     * Like {@link #refreshStats}, but loads on a background thread and runs {@code onLoaded} on
+     * the main thread once done.  A cached result is applied and reported right away.  Results
+     * of requests superseded by a later call are cached but not applied.
+     */
+    public void refreshStatsAsync(boolean forceLoad, Runnable onLoaded) {
+        final long duration = mDuration;
+        final int[] memStates = mMemStates;
+        final int[] states = mStates;
+        final String key = getAggregationKey(duration, memStates, states);
+        if (!forceLoad) {
+            final Aggregation cached = getCachedAggregation(duration, memStates, states);
+            if (cached != null) {
+                mAsyncRequest++;
+                mPendingKey = null;
+                mPendingCallback = null;
+                apply(cached);
+                onLoaded.run();
+                return;
+            }
+            if (key.equals(mPendingKey)) {
+                // Already loading this; report to the latest caller only.
+                mPendingCallback = onLoaded;
+                return;
+            }
         }
+        final int request = ++mAsyncRequest;
+        mPendingKey = key;
+        mPendingCallback = onLoaded;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final Aggregation aggregation = getAggregation(duration, memStates, states, forceLoad);
+            ThreadUtils.postOnMainThread(() -> {
+                if (request == mAsyncRequest) {
+                    final Runnable callback = mPendingCallback;
+                    mPendingKey = null;
+                    mPendingCallback = null;
+                    apply(aggregation);
+                    callback.run();
+                }
+            });
+        });
+    }
+
+    private void apply(Aggregation aggregation) {
+        mStats = aggregation.stats;
+        memTotalTime = aggregation.memTotalTime;
+        mMemInfo = aggregation.memInfo;
+        pkgEntries = aggregation.entries;
+    }
+
+    private static String getAggregationKey(long duration, int[] memStates, int[] states) {
+        return duration + "/" + Arrays.toString(memStates) + "/" + Arrays.toString(states);
+    }
 
-        pkgEntries = new ArrayList<>();
+    private synchronized Aggregation getCachedAggregation(long duration, int[] memStates,
+            int[] states) {
+        return mAggregationCache.get(getAggregationKey(duration, memStates, states));
+    }
+
+    private Aggregation getAggregation(long duration, int[] memStates, int[] states,
+            boolean forceLoad) {
+        final String key = getAggregationKey(duration, memStates, states);
+        ProcessStats stats;
+        synchronized (this) {
+            if (forceLoad) {
+                mStatsCache.remove(duration);
+                for (int i = mAggregationCache.size() - 1; i >= 0; i--) {
+                    if (mAggregationCache.valueAt(i).duration == duration) {
+                        mAggregationCache.removeAt(i);
+                    }
+                }
+            } else {
+                final Aggregation cached = mAggregationCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            stats = mStatsCache.get(duration);
+        }
+        if (stats == null) {
+            stats = load(duration);
+        }
+        final long startTime = SystemClock.uptimeMillis();
+        final Aggregation aggregation = aggregate(stats, duration, memStates, states);
+        if (DEBUG) {
+            Log.d(TAG, "Aggregated " + key + " in " + (SystemClock.uptimeMillis() - startTime)
+                    + "ms");
+        }
+        synchronized (this) {
+            mStatsCache.put(duration, stats);
+            mAggregationCache.put(key, aggregation);
+        }
+        return aggregation;
+    }
+
+    private Aggregation aggregate(ProcessStats stats, long duration, int[] memStates,
+            int[] states) {
+        final Aggregation result = new Aggregation(stats, duration);
 
         long now = SystemClock.uptimeMillis();
 
-        memTotalTime = DumpUtils.dumpSingleTime(null, null, mStats.mMemFactorDurations,
-                mStats.mMemFactor, mStats.mStartTime, now);
+        result.memTotalTime = DumpUtils.dumpSingleTime(null, null, stats.mMemFactorDurations,
+                stats.mMemFactor, stats.mStartTime, now);
 
         ProcessStats.TotalMemoryUseCollection totalMem = new ProcessStats.TotalMemoryUseCollection(
-                ProcessStats.ALL_SCREEN_ADJ, mMemStates);
-        mStats.computeTotalMemoryUse(totalMem, now);
+                ProcessStats.ALL_SCREEN_ADJ, memStates);
+        stats.computeTotalMemoryUse(totalMem, now);
 
-        mMemInfo = new MemInfo(mContext, totalMem, memTotalTime);
+        result.memInfo = new MemInfo(mContext, totalMem, result.memTotalTime);
 
         ProcessDataCollection bgTotals = new ProcessDataCollection(
-                ProcessStats.ALL_SCREEN_ADJ, mMemStates, mStates);
+                ProcessStats.ALL_SCREEN_ADJ, memStates, states);
         ProcessDataCollection runTotals = new ProcessDataCollection(
-                ProcessStats.ALL_SCREEN_ADJ, mMemStates, ProcessStats.NON_CACHED_PROC_STATES);
+                ProcessStats.ALL_SCREEN_ADJ, memStates, ProcessStats.NON_CACHED_PROC_STATES);
 
-        createPkgMap(getProcs(bgTotals, runTotals), bgTotals, runTotals);
+        createPkgMap(result, getProcs(stats, result.memTotalTime, bgTotals, runTotals), bgTotals,
+                runTotals);
         if (totalMem.sysMemZRamWeight > 0 && !totalMem.hasSwappedOutPss) {
-            distributeZRam(totalMem.sysMemZRamWeight);
+            distributeZRam(result, totalMem.sysMemZRamWeight);
         }
 
-        ProcStatsPackageEntry osPkg = createOsEntry(bgTotals, runTotals, totalMem,
-                mMemInfo.baseCacheRam);
-        pkgEntries.add(osPkg);
+        ProcStatsPackageEntry osPkg = createOsEntry(result, bgTotals, runTotals, totalMem,
+                result.memInfo.baseCacheRam);
+        result.pkgEntries.add(osPkg);
+        return result;
     }
 
-    private void createPkgMap(ArrayList<ProcStatsEntry> procEntries, ProcessDataCollection bgTotals,
-            ProcessDataCollection runTotals) {
+    private void createPkgMap(Aggregation result, ArrayList<ProcStatsEntry> procEntries,
+            ProcessDataCollection bgTotals, ProcessDataCollection runTotals) {
         // Combine processes into packages.
         ArrayMap<String, ProcStatsPackageEntry> pkgMap = new ArrayMap<>();
         for (int i = procEntries.size() - 1; i >= 0; i--) {
             ProcStatsEntry proc = procEntries.get(i);
-            proc.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+            proc.evaluateTargetPackage(mPm, result.stats, bgTotals, runTotals, sEntryCompare,
+                    mUseUss);
             ProcStatsPackageEntry pkg = pkgMap.get(proc.mBestTargetPackage);
             if (pkg == null) {
-                pkg = new ProcStatsPackageEntry(proc.mBestTargetPackage, memTotalTime);
+                pkg = new ProcStatsPackageEntry(proc.mBestTargetPackage, result.memTotalTime);
                 pkgMap.put(proc.mBestTargetPackage, pkg);
-                pkgEntries.add(pkg);
+                result.pkgEntries.add(pkg);
             }
             pkg.addEntry(proc);
         }
     }
 
-    private void distributeZRam(double zramWeight) {
+    private void distributeZRam(Aggregation result, double zramWeight) {
         // Distribute kernel's Z-Ram across processes, based on how much they have been running.
         // The idea is that the memory used by the kernel for this is not really the kernel's
         // responsibility, but that of whoever got swapped in to it...  and we will take how
         // much a process runs for as a sign of the proportion of Z-Ram it is responsible for.
 
-        long zramMem = (long) (zramWeight / memTotalTime);
+        long zramMem = (long) (zramWeight / result.memTotalTime);
         long totalTime = 0;
-        for (int i = pkgEntries.size() - 1; i >= 0; i--) {
-            ProcStatsPackageEntry entry = pkgEntries.get(i);
+        for (int i = result.pkgEntries.size() - 1; i >= 0; i--) {
+            ProcStatsPackageEntry entry = result.pkgEntries.get(i);
             for (int j = entry.mEntries.size() - 1; j >= 0; j--) {
                 ProcStatsEntry proc = entry.mEntries.get(j);
                 totalTime += proc.mRunDuration;
             }
         }
-        for (int i = pkgEntries.size() - 1; i >= 0 && totalTime > 0; i--) {
-            ProcStatsPackageEntry entry = pkgEntries.get(i);
+        for (int i = result.pkgEntries.size() - 1; i >= 0 && totalTime > 0; i--) {
+            ProcStatsPackageEntry entry = result.pkgEntries.get(i);
             long pkgRunTime = 0;
             long maxRunTime = 0;
             for (int j = entry.mEntries.size() - 1; j >= 0; j--) {
@@ -219,59 +350,67 @@ public class ProcStatsData {
                 totalTime -= pkgRunTime;
                 ProcStatsEntry procEntry = new ProcStatsEntry(entry.mPackage, 0,
                         mContext.getString(R.string.process_stats_os_zram), maxRunTime,
-                        pkgZRam, memTotalTime);
-                procEntry.evaluateTargetPackage(mPm, mStats, null, null, sEntryCompare, mUseUss);
+                        pkgZRam, result.memTotalTime);
+                procEntry.evaluateTargetPackage(mPm, result.stats, null, null, sEntryCompare,
+                        mUseUss);
                 entry.addEntry(procEntry);
             }
         }
     }
 
-    private ProcStatsPackageEntry createOsEntry(ProcessDataCollection bgTotals,
-            ProcessDataCollection runTotals, TotalMemoryUseCollection totalMem, long baseCacheRam) {
+    private ProcStatsPackageEntry createOsEntry(Aggregation result,
+            ProcessDataCollection bgTotals, ProcessDataCollection runTotals,
+            TotalMemoryUseCollection totalMem, long baseCacheRam) {
         // Add in fake entry representing the OS itself.
-        ProcStatsPackageEntry osPkg = new ProcStatsPackageEntry("os", memTotalTime);
+        ProcStatsPackageEntry osPkg = new ProcStatsPackageEntry("os", result.memTotalTime);
         ProcStatsEntry osEntry;
         if (totalMem.sysMemNativeWeight > 0) {
             osEntry = new ProcStatsEntry(Utils.OS_PKG, 0,
-                    mContext.getString(R.string.process_stats_os_native), memTotalTime,
-                    (long) (totalMem.sysMemNativeWeight / memTotalTime), memTotalTime);
-            osEntry.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+                    mContext.getString(R.string.process_stats_os_native), result.memTotalTime,
+                    (long) (totalMem.sysMemNativeWeight / result.memTotalTime),
+                    result.memTotalTime);
+            osEntry.evaluateTargetPackage(mPm, result.stats, bgTotals, runTotals, sEntryCompare,
+                    mUseUss);
             osPkg.addEntry(osEntry);
         }
         if (totalMem.sysMemKernelWeight > 0) {
             osEntry = new ProcStatsEntry(Utils.OS_PKG, 0,
-                    mContext.getString(R.string.process_stats_os_kernel), memTotalTime,
-                    (long) (totalMem.sysMemKernelWeight / memTotalTime), memTotalTime);
-            osEntry.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+                    mContext.getString(R.string.process_stats_os_kernel), result.memTotalTime,
+                    (long) (totalMem.sysMemKernelWeight / result.memTotalTime),
+                    result.memTotalTime);
+            osEntry.evaluateTargetPackage(mPm, result.stats, bgTotals, runTotals, sEntryCompare,
+                    mUseUss);
             osPkg.addEntry(osEntry);
         }
         /*  Turned off now -- zram is being distributed across running apps.
         if (totalMem.sysMemZRamWeight > 0) {
             osEntry = new ProcStatsEntry(Utils.OS_PKG, 0,
-                    mContext.getString(R.string.process_stats_os_zram), memTotalTime,
-                    (long) (totalMem.sysMemZRamWeight / memTotalTime));
-            osEntry.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+                    mContext.getString(R.string.process_stats_os_zram), result.memTotalTime,
+                    (long) (totalMem.sysMemZRamWeight / result.memTotalTime));
+            osEntry.evaluateTargetPackage(mPm, result.stats, bgTotals, runTotals, sEntryCompare,
+                    mUseUss);
             osPkg.addEntry(osEntry);
         }
         */
         if (baseCacheRam > 0) {
             osEntry = new ProcStatsEntry(Utils.OS_PKG, 0,
-                    mContext.getString(R.string.process_stats_os_cache), memTotalTime,
-                    baseCacheRam / 1024, memTotalTime);
-            osEntry.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+                    mContext.getString(R.string.process_stats_os_cache), result.memTotalTime,
+                    baseCacheRam / 1024, result.memTotalTime);
+            osEntry.evaluateTargetPackage(mPm, result.stats, bgTotals, runTotals, sEntryCompare,
+                    mUseUss);
             osPkg.addEntry(osEntry);
         }
         return osPkg;
     }
 
-    private ArrayList<ProcStatsEntry> getProcs(ProcessDataCollection bgTotals,
-            ProcessDataCollection runTotals) {
+    private ArrayList<ProcStatsEntry> getProcs(ProcessStats stats, long memTotalTime,
+            ProcessDataCollection bgTotals, ProcessDataCollection runTotals) {
         final ArrayList<ProcStatsEntry> procEntries = new ArrayList<>();
         if (DEBUG) Log.d(TAG, "-------------------- PULLING PROCESSES");
 
         final ProcessMap<ProcStatsEntry> entriesMap = new ProcessMap<ProcStatsEntry>();
-        for (int ipkg = 0, N = mStats.mPackages.getMap().size(); ipkg < N; ipkg++) {
-            final SparseArray<LongSparseArray<ProcessStats.PackageState>> pkgUids = mStats.mPackages
+        for (int ipkg = 0, N = stats.mPackages.getMap().size(); ipkg < N; ipkg++) {
+            final SparseArray<LongSparseArray<ProcessStats.PackageState>> pkgUids = stats.mPackages
                     .getMap().valueAt(ipkg);
             for (int iu = 0; iu < pkgUids.size(); iu++) {
                 final LongSparseArray<ProcessStats.PackageState> vpkgs = pkgUids.valueAt(iu);
@@ -279,7 +418,7 @@ public class ProcStatsData {
                     final ProcessStats.PackageState st = vpkgs.valueAt(iv);
                     for (int iproc = 0; iproc < st.mProcesses.size(); iproc++) {
                         final ProcessState pkgProc = st.mProcesses.valueAt(iproc);
-                        final ProcessState proc = mStats.mProcesses.get(pkgProc.getName(),
+                        final ProcessState proc = stats.mProcesses.get(pkgProc.getName(),
                                 pkgProc.getUid());
                         if (proc == null) {
                             Log.w(TAG, "No process found for pkg " + st.mPackageName
@@ -311,8 +450,8 @@ public class ProcStatsData {
         if (DEBUG) Log.d(TAG, "-------------------- MAPPING SERVICES");
 
         // Add in service info.
-        for (int ip = 0, N = mStats.mPackages.getMap().size(); ip < N; ip++) {
-            SparseArray<LongSparseArray<ProcessStats.PackageState>> uids = mStats.mPackages.getMap()
+        for (int ip = 0, N = stats.mPackages.getMap().size(); ip < N; ip++) {
+            SparseArray<LongSparseArray<ProcessStats.PackageState>> uids = stats.mPackages.getMap()
                     .valueAt(ip);
             for (int iu = 0; iu < uids.size(); iu++) {
                 LongSparseArray<ProcessStats.PackageState> vpkgs = uids.valueAt(iu);
@@ -341,22 +480,41 @@ public class ProcStatsData {
         return procEntries;
     }
 
-    private void load() {
+    private ProcessStats load(long duration) {
+        final ProcessStats stats = new ProcessStats(false);
         try {
-            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(mDuration);
-            mStats = new ProcessStats(false);
+            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(duration);
             InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
-            mStats.read(is);
+            stats.read(is);
             try {
                 is.close();
             } catch (IOException e) {
             }
-            if (mStats.mReadError != null) {
-                Log.w(TAG, "Failure reading process stats: " + mStats.mReadError);
+            if (stats.mReadError != null) {
+                Log.w(TAG, "Failure reading process stats: " + stats.mReadError);
             }
         } catch (RemoteException e) {
             Log.e(TAG, "RemoteException:", e);
         }
+        return stats;
+    }
+
+    /**
+     * Package entries and memory info aggregated from one stats sample.
+     */
+    private static final class Aggregation {
+        final ProcessStats stats;
+        final long duration;
+        final ArrayList<ProcStatsPackageEntry> pkgEntries = new ArrayList<>();
+        // Read-only view of pkgEntries handed out to callers, as the aggregation is cached.
+        final List<ProcStatsPackageEntry> entries = Collections.unmodifiableList(pkgEntries);
+        long memTotalTime;
+        MemInfo memInfo;
+
+        Aggregation(ProcessStats stats, long duration) {
+            this.stats = stats;
+            this.duration = duration;
+        }
     }
 
     public static class MemInfo {
@@ -74,8 +74,8 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
         mDurationIndex = icicle != null
                 ? icicle.getInt(ARG_DURATION_INDEX)
                 : args != null ? args.getInt(ARG_DURATION_INDEX) : 0;
-        mStatsManager.setDuration(icicle != null
-                ? icicle.getLong(DURATION, sDurations[0]) : sDurations[0]);
+        mStatsManager.setDurationAsync(icicle != null
+                ? icicle.getLong(DURATION, sDurations[0]) : sDurations[0], this::onStatsLoaded);
     }
 
     @Override
@@ -88,8 +88,14 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
-        mStatsManager.refreshStats(false);
-        refreshUi();
+        mStatsManager.refreshStatsAsync(false, this::onStatsLoaded);
+    }
+
+    private void onStatsLoaded() {
+        // Loads finishing while paused are picked up from the cache on the next resume.
+        if (isResumed()) {
+            refreshUi();
+        }
     }
 
     @Override
@@ -118,8 +124,7 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
     @Override
     public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
         mDurationIndex = position;
-        mStatsManager.setDuration(sDurations[position]);
-        refreshUi();
+        mStatsManager.setDurationAsync(sDurations[position], this::onStatsLoaded);
     }
 
     @Override
@@ -128,6 +133,9 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
         mFilterSpinner.setSelection(0);
     }
 
+    /**
+     * Shows the current stats.  Only called once {@link #mStatsManager} has loaded them.
+     */
     public abstract void refreshUi();
 
     public static void launchMemoryDetail(SettingsActivity activity, MemInfo memInfo,
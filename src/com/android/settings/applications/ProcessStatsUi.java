@@ -20,6 +20,7 @@ import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.util.TimeUtils;
 import android.view.Menu;
@@ -34,6 +35,7 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.applications.ProcStatsData.MemInfo;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -47,6 +49,9 @@ public class ProcessStatsUi extends ProcessStatsBase {
     private static final int MENU_SHOW_AVG = Menu.FIRST;
     private static final int MENU_SHOW_MAX = Menu.FIRST + 1;
 
+    // Rows are added in batches so the first apps show up before all labels and icons load.
+    private static final int PREFERENCE_BATCH_SIZE = 15;
+
     private PreferenceGroup mAppListGroup;
     private PackageManager mPm;
 
@@ -54,6 +59,8 @@ public class ProcessStatsUi extends ProcessStatsBase {
     private MenuItem mMenuAvg;
     private MenuItem mMenuMax;
 
+    private final Handler mHandler = new Handler();
+
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
@@ -106,6 +113,12 @@ public class ProcessStatsUi extends ProcessStatsBase {
         super.onSaveInstanceState(outState);
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
     @Override
     public boolean onPreferenceTreeClick(Preference preference) {
         if (!(preference instanceof ProcessStatsPreference)) {
@@ -150,6 +163,11 @@ public class ProcessStatsUi extends ProcessStatsBase {
 
     @Override
     public void refreshUi() {
+        if (mStatsManager.getEntries() == null) {
+            // Still loading; refreshUi is called again once the stats are available.
+            return;
+        }
+        mHandler.removeCallbacksAndMessages(null);
         mAppListGroup.removeAll();
         mAppListGroup.setOrderingAsAdded(false);
         mAppListGroup.setTitle(mShowMax ? R.string.maximum_memory_use
@@ -158,7 +176,8 @@ public class ProcessStatsUi extends ProcessStatsBase {
         final Context context = getActivity();
         MemInfo memInfo = mStatsManager.getMemInfo();
 
-        List<ProcStatsPackageEntry> pkgEntries = mStatsManager.getEntries();
+        // Sort a copy, the entries are shared with the cached stats.
+        List<ProcStatsPackageEntry> pkgEntries = new ArrayList<>(mStatsManager.getEntries());
 
         // Update everything and get the absolute maximum of memory usage for scaling.
         for (int i=0, N=pkgEntries.size(); i<N; i++) {
@@ -175,7 +194,13 @@ public class ProcessStatsUi extends ProcessStatsBase {
 
         double maxMemory = mShowMax ? memInfo.realTotalRam
                 : memInfo.usedWeight * memInfo.weightToRam;
-        for (int i = 0; i < pkgEntries.size(); i++) {
+        addPreferences(context, pkgEntries, 0, memInfo, maxMemory);
+    }
+
+    private void addPreferences(Context context, List<ProcStatsPackageEntry> pkgEntries,
+            int start, MemInfo memInfo, double maxMemory) {
+        final int end = Math.min(start + PREFERENCE_BATCH_SIZE, pkgEntries.size());
+        for (int i = start; i < end; i++) {
             ProcStatsPackageEntry pkg = pkgEntries.get(i);
             ProcessStatsPreference pref = new ProcessStatsPreference(getPrefContext());
             pkg.retrieveUiData(context, mPm);
@@ -184,6 +209,9 @@ public class ProcessStatsUi extends ProcessStatsBase {
             pref.setOrder(i);
             mAppListGroup.addPreference(pref);
         }
+        if (end < pkgEntries.size()) {
+            mHandler.post(() -> addPreferences(context, pkgEntries, end, memInfo, maxMemory));
+        }
     }
 
     final static Comparator<ProcStatsPackageEntry> sPackageEntryCompare
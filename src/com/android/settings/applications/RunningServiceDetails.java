@@ -462,6 +462,13 @@ public class RunningServiceDetails extends InstrumentedFragment
     }
     
     void refreshUi(boolean dataChanged) {
+        // The published items are refreshed by the background update thread.
+        synchronized (mState.mLock) {
+            refreshUiLocked(dataChanged);
+        }
+    }
+
+    private void refreshUiLocked(boolean dataChanged) {
         if (findMergedItem()) {
             dataChanged = true;
         }
@@ -629,11 +636,13 @@ public class RunningServiceDetails extends InstrumentedFragment
     }
     
     void updateTimes() {
-        if (mSnippetActiveItem != null) {
-            mSnippetActiveItem.updateTime(getActivity(), mBuilder);
-        }
-        for (int i=0; i<mActiveDetails.size(); i++) {
-            mActiveDetails.get(i).mActiveItem.updateTime(getActivity(), mBuilder);
+        synchronized (mState.mLock) {
+            if (mSnippetActiveItem != null) {
+                mSnippetActiveItem.updateTime(getActivity(), mBuilder);
+            }
+            for (int i=0; i<mActiveDetails.size(); i++) {
+                mActiveDetails.get(i).mActiveItem.updateTime(getActivity(), mBuilder);
+            }
         }
     }
 
@@ -32,11 +32,13 @@ import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.Drawable.ConstantState;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.Formatter;
@@ -53,6 +55,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -69,6 +73,7 @@ public class RunningState {
     static final int MSG_UPDATE_CONTENTS = 2;
     static final int MSG_REFRESH_UI = 3;
     static final int MSG_UPDATE_TIME = 4;
+    static final int MSG_PACKAGE_CHANGED = 5;
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
@@ -137,6 +142,23 @@ public class RunningState {
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
 
+    // Service metadata from the package manager, organized by user and
+    // component, so that restarted services don't need to be looked up again.
+    // Entries of a package are dropped when it is updated or removed.
+    final SparseArray<HashMap<ComponentName, ServiceInfo>> mServiceInfoCache
+            = new SparseArray<HashMap<ComponentName, ServiceInfo>>();
+
+    // The filtered services and processes seen by the last update, used to
+    // detect cycles where nothing but memory usage can have changed.
+    List<ActivityManager.RunningServiceInfo> mLastServices;
+    List<ActivityManager.RunningAppProcessInfo> mLastProcesses;
+
+    // Update cycle statistics, for diagnosing refresh cost.
+    int mNumUpdates;
+    int mNumUnchangedUpdates;
+    long mLastUpdateDuration;
+    long mTotalUpdateDuration;
+
     int mSequence = 0;
 
     final Comparator<RunningState.MergedItem> mBackgroundComparator
@@ -203,14 +225,10 @@ public class RunningState {
     final Object mLock = new Object();
     
     boolean mResumed;
-    boolean mHaveData;
+    // Also read without the lock by hasData().
+    volatile boolean mHaveData;
     boolean mWatchingBackgroundItems;
 
-    ArrayList<BaseItem> mItems = new ArrayList<BaseItem>();
-    ArrayList<MergedItem> mMergedItems = new ArrayList<MergedItem>();
-    ArrayList<MergedItem> mBackgroundItems = new ArrayList<MergedItem>();
-    ArrayList<MergedItem> mUserBackgroundItems = new ArrayList<MergedItem>();
-    
     int mNumBackgroundProcesses;
     long mBackgroundProcessMemory;
     int mNumForegroundProcesses;
@@ -218,6 +236,24 @@ public class RunningState {
     int mNumServiceProcesses;
     long mServiceProcessMemory;
 
+    // The copies of the items published to the UI, see BaseItem#mShown.
+    // They are refreshed by the background thread at the end of an update
+    // with mLock held, and must be read with mLock held too.
+
+    // ----- end of state protected by mLock -----
+
+    // The items built by the background thread.  Only that thread reads or
+    // changes them, so an update, and the binder calls it makes, run without
+    // mLock.
+    ArrayList<BaseItem> mItems = new ArrayList<BaseItem>();
+    ArrayList<MergedItem> mMergedItems = new ArrayList<MergedItem>();
+    ArrayList<MergedItem> mBackgroundItems = new ArrayList<MergedItem>();
+    ArrayList<MergedItem> mUserBackgroundItems = new ArrayList<MergedItem>();
+
+    // The lists and totals published by the last completed update.  UI
+    // readers get them without taking mLock.
+    volatile Snapshot mSnapshot = new Snapshot();
+
     // ----- BACKGROUND MONITORING THREAD -----
 
     final HandlerThread mBackgroundThread;
@@ -232,6 +268,9 @@ public class RunningState {
                 case MSG_RESET_CONTENTS:
                     reset();
                     break;
+                case MSG_PACKAGE_CHANGED:
+                    removeServiceInfos((String) msg.obj);
+                    break;
                 case MSG_UPDATE_CONTENTS:
                     synchronized (mLock) {
                         if (!mResumed) {
@@ -319,8 +358,69 @@ public class RunningState {
     private final UserManagerBroadcastReceiver mUmBroadcastReceiver =
             new UserManagerBroadcastReceiver();
 
+    private final class PackageBroadcastReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            // The service info cache is only used by the background thread.
+            mBackgroundHandler.obtainMessage(MSG_PACKAGE_CHANGED,
+                    data.getSchemeSpecificPart()).sendToTarget();
+        }
+
+        void register(Context context) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiverAsUser(this, UserHandle.ALL, filter, null, null);
+        }
+    }
+
+    private final PackageBroadcastReceiver mPackageBroadcastReceiver =
+            new PackageBroadcastReceiver();
+
     // ----- DATA STRUCTURES -----
 
+    /**
+     * The lists and totals from one update.  A new instance is published at
+     * the end of every update, and its lists are never modified afterwards.
+     * The lists hold the copies of the items published to the UI, which are
+     * refreshed by later updates, so their fields must only be read with
+     * {@link #mLock} held.
+     */
+    static final class Snapshot {
+        final ArrayList<MergedItem> mMergedItems;
+        final ArrayList<MergedItem> mBackgroundItems;
+        final int mNumBackgroundProcesses;
+        final long mBackgroundProcessMemory;
+        final int mNumForegroundProcesses;
+        final long mForegroundProcessMemory;
+        final int mNumServiceProcesses;
+        final long mServiceProcessMemory;
+
+        Snapshot() {
+            this(new ArrayList<MergedItem>(), new ArrayList<MergedItem>(), 0, 0, 0, 0, 0, 0);
+        }
+
+        Snapshot(ArrayList<MergedItem> mergedItems, ArrayList<MergedItem> backgroundItems,
+                int numBackgroundProcesses, long backgroundProcessMemory,
+                int numForegroundProcesses, long foregroundProcessMemory,
+                int numServiceProcesses, long serviceProcessMemory) {
+            mMergedItems = mergedItems;
+            mBackgroundItems = backgroundItems;
+            mNumBackgroundProcesses = numBackgroundProcesses;
+            mBackgroundProcessMemory = backgroundProcessMemory;
+            mNumForegroundProcesses = numForegroundProcesses;
+            mForegroundProcessMemory = foregroundProcessMemory;
+            mNumServiceProcesses = numServiceProcesses;
+            mServiceProcessMemory = serviceProcessMemory;
+        }
+    }
+
     static interface OnRefreshUiListener {
         public static final int REFRESH_TIME = 0;
         public static final int REFRESH_DATA = 1;
@@ -353,11 +453,33 @@ public class RunningState {
         boolean mNeedDivider;
         boolean mBackground;
 
+        // The copy of this item published to the UI.  It is kept for as long
+        // as this item, so the UI can tell items apart by identity, and is
+        // only changed with mLock held.
+        BaseItem mShown;
+
         public BaseItem(boolean isProcess, int userId) {
             mIsProcess = isProcess;
             mUserId = userId;
         }
 
+        void publishFieldsLocked(BaseItem shown) {
+            // Labels the background thread didn't load may have been loaded
+            // by the UI, keep those.
+            if (mDisplayLabel != null) {
+                shown.mPackageInfo = mPackageInfo;
+                shown.mDisplayLabel = mDisplayLabel;
+                shown.mLabel = mLabel;
+            }
+            shown.mDescription = mDescription;
+            shown.mCurSeq = mCurSeq;
+            shown.mActiveSince = mActiveSince;
+            shown.mSize = mSize;
+            shown.mSizeStr = mSizeStr;
+            shown.mNeedDivider = mNeedDivider;
+            shown.mBackground = mBackground;
+        }
+
         public Drawable loadIcon(Context context, RunningState state) {
             if (mPackageInfo != null) {
                 Drawable unbadgedIcon = mPackageInfo.loadUnbadgedIcon(state.mPm);
@@ -378,6 +500,19 @@ public class RunningState {
         public ServiceItem(int userId) {
             super(false, userId);
         }
+
+        /** Returns the copy of this item published to the UI, brought up to date. */
+        ServiceItem publishLocked() {
+            if (mShown == null) {
+                mShown = new ServiceItem(mUserId);
+            }
+            final ServiceItem shown = (ServiceItem) mShown;
+            publishFieldsLocked(shown);
+            shown.mRunningService = mRunningService;
+            shown.mServiceInfo = mServiceInfo;
+            shown.mShownAsStarted = mShownAsStarted;
+            return shown;
+        }
     }
 
     static class ProcessItem extends BaseItem {
@@ -412,7 +547,39 @@ public class RunningState {
             mUid = uid;
             mProcessName = processName;
         }
-        
+
+        private ProcessItem(ProcessItem item) {
+            super(true, item.mUserId);
+            mUid = item.mUid;
+            mProcessName = item.mProcessName;
+        }
+
+        /**
+         * Returns the copy of this item published to the UI, brought up to
+         * date.  The links to client and dependent processes are not
+         * published, the UI doesn't use them.
+         */
+        ProcessItem publishLocked() {
+            if (mShown == null) {
+                mShown = new ProcessItem(this);
+            }
+            final ProcessItem shown = (ProcessItem) mShown;
+            publishFieldsLocked(shown);
+            shown.mPid = mPid;
+            shown.mLastNumDependentProcesses = mLastNumDependentProcesses;
+            shown.mRunningSeq = mRunningSeq;
+            shown.mRunningProcessInfo = mRunningProcessInfo;
+            shown.mInteresting = mInteresting;
+            shown.mIsSystem = mIsSystem;
+            shown.mIsStarted = mIsStarted;
+            shown.mActiveSince = mActiveSince;
+            shown.mServices.clear();
+            for (Map.Entry<ComponentName, ServiceItem> entry : mServices.entrySet()) {
+                shown.mServices.put(entry.getKey(), entry.getValue().publishLocked());
+            }
+            return shown;
+        }
+
         void ensureLabel(PackageManager pm) {
             if (mLabel != null) {
                 return;
@@ -489,7 +656,8 @@ public class RunningState {
             }
         }
 
-        boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
+        boolean updateService(Context context, RunningState state,
+                ActivityManager.RunningServiceInfo service) {
             final PackageManager pm = context.getPackageManager();
 
             boolean changed = false;
@@ -498,17 +666,12 @@ public class RunningState {
                 changed = true;
                 si = new ServiceItem(mUserId);
                 si.mRunningService = service;
-                try {
-                    si.mServiceInfo = ActivityThread.getPackageManager().getServiceInfo(
-                            service.service, PackageManager.MATCH_ANY_USER,
-                            UserHandle.getUserId(service.uid));
-
-                    if (si.mServiceInfo == null) {
-                        Log.d("RunningService", "getServiceInfo returned null for: "
-                                + service.service);
-                        return false;
-                    }
-                } catch (RemoteException e) {
+                si.mServiceInfo = state.getServiceInfo(service.service,
+                        UserHandle.getUserId(service.uid));
+                if (si.mServiceInfo == null) {
+                    Log.d("RunningService", "getServiceInfo returned null for: "
+                            + service.service);
+                    return false;
                 }
                 si.mDisplayLabel = makeLabel(pm,
                         si.mRunningService.service.getClassName(), si.mServiceInfo);
@@ -613,6 +776,32 @@ public class RunningState {
             super(false, userId);
         }
 
+        /** Returns the copy of this item published to the UI, brought up to date. */
+        MergedItem publishLocked() {
+            if (mShown == null) {
+                mShown = new MergedItem(mUserId);
+            }
+            final MergedItem shown = (MergedItem) mShown;
+            publishFieldsLocked(shown);
+            shown.mProcess = mProcess != null ? mProcess.publishLocked() : null;
+            shown.mUser = mUser;
+            shown.mOtherProcesses.clear();
+            for (int i=0; i<mOtherProcesses.size(); i++) {
+                shown.mOtherProcesses.add(mOtherProcesses.get(i).publishLocked());
+            }
+            shown.mServices.clear();
+            for (int i=0; i<mServices.size(); i++) {
+                shown.mServices.add(mServices.get(i).publishLocked());
+            }
+            shown.mChildren.clear();
+            for (int i=0; i<mChildren.size(); i++) {
+                shown.mChildren.add(mChildren.get(i).publishLocked());
+            }
+            shown.mLastNumProcesses = mLastNumProcesses;
+            shown.mLastNumServices = mLastNumServices;
+            return shown;
+        }
+
         private void setDescription(Context context, int numProcesses, int numServices) {
             if (mLastNumProcesses != numProcesses || mLastNumServices != numServices) {
                 mLastNumProcesses = numProcesses;
@@ -787,6 +976,7 @@ public class RunningState {
         mBackgroundThread.start();
         mBackgroundHandler = new BackgroundHandler(mBackgroundThread.getLooper());
         mUmBroadcastReceiver.register(mApplicationContext);
+        mPackageBroadcastReceiver.register(mApplicationContext);
     }
 
     void resume(OnRefreshUiListener listener) {
@@ -817,9 +1007,7 @@ public class RunningState {
     }
 
     boolean hasData() {
-        synchronized (mLock) {
-            return mHaveData;
-        }
+        return mHaveData;
     }
 
     void waitForData() {
@@ -862,6 +1050,97 @@ public class RunningState {
         mRunningProcesses.clear();
         mProcessItems.clear();
         mAllProcessItems.clear();
+        mServiceInfoCache.clear();
+        mLastServices = null;
+        mLastProcesses = null;
+    }
+
+    /**
+     * Drops the service metadata of {@code packageName}, and the services
+     * created from it, so they are looked up again by the next update.
+     */
+    void removeServiceInfos(String packageName) {
+        for (int i=0; i<mServiceInfoCache.size(); i++) {
+            Iterator<ComponentName> it = mServiceInfoCache.valueAt(i).keySet().iterator();
+            while (it.hasNext()) {
+                if (packageName.equals(it.next().getPackageName())) {
+                    it.remove();
+                }
+            }
+        }
+        for (int i=0; i<mServiceProcessesByName.size(); i++) {
+            for (ProcessItem pi : mServiceProcessesByName.valueAt(i).values()) {
+                Iterator<ComponentName> it = pi.mServices.keySet().iterator();
+                while (it.hasNext()) {
+                    if (packageName.equals(it.next().getPackageName())) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        // Make the next update rebuild the items, even if no service or
+        // process changed.
+        mLastServices = null;
+    }
+
+    ServiceInfo getServiceInfo(ComponentName component, int userId) {
+        HashMap<ComponentName, ServiceInfo> infos = mServiceInfoCache.get(userId);
+        if (infos == null) {
+            infos = new HashMap<ComponentName, ServiceInfo>();
+            mServiceInfoCache.put(userId, infos);
+        }
+        ServiceInfo info = infos.get(component);
+        if (info == null) {
+            try {
+                info = ActivityThread.getPackageManager().getServiceInfo(
+                        component, PackageManager.MATCH_ANY_USER, userId);
+            } catch (RemoteException e) {
+            }
+            if (info != null) {
+                infos.put(component, info);
+            }
+        }
+        return info;
+    }
+
+    private static boolean sameServices(List<ActivityManager.RunningServiceInfo> lhs,
+            List<ActivityManager.RunningServiceInfo> rhs) {
+        if (lhs == null || rhs == null || lhs.size() != rhs.size()) {
+            return false;
+        }
+        for (int i=0; i<lhs.size(); i++) {
+            final ActivityManager.RunningServiceInfo l = lhs.get(i);
+            final ActivityManager.RunningServiceInfo r = rhs.get(i);
+            if (l.pid != r.pid || l.uid != r.uid || l.foreground != r.foreground
+                    || l.started != r.started || l.restarting != r.restarting
+                    || l.activeSince != r.activeSince || l.flags != r.flags
+                    || l.clientLabel != r.clientLabel
+                    || !Objects.equals(l.service, r.service)
+                    || !Objects.equals(l.process, r.process)
+                    || !Objects.equals(l.clientPackage, r.clientPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameProcesses(List<ActivityManager.RunningAppProcessInfo> lhs,
+            List<ActivityManager.RunningAppProcessInfo> rhs) {
+        if (lhs == null || rhs == null || lhs.size() != rhs.size()) {
+            return false;
+        }
+        for (int i=0; i<lhs.size(); i++) {
+            final ActivityManager.RunningAppProcessInfo l = lhs.get(i);
+            final ActivityManager.RunningAppProcessInfo r = rhs.get(i);
+            if (l.pid != r.pid || l.uid != r.uid || l.importance != r.importance
+                    || l.lru != r.lru || l.flags != r.flags
+                    || l.importanceReasonCode != r.importanceReasonCode
+                    || l.importanceReasonPid != r.importanceReasonPid
+                    || !Objects.equals(l.processName, r.processName)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void addOtherUserItem(Context context, ArrayList<MergedItem> newMergedItems,
@@ -894,11 +1173,24 @@ public class RunningState {
     }
 
     private boolean update(Context context, ActivityManager am) {
-        final PackageManager pm = context.getPackageManager();
+        final long startTime = SystemClock.uptimeMillis();
+        final boolean changed = updateContents(context, am);
+        final long duration = SystemClock.uptimeMillis() - startTime;
+        synchronized (mLock) {
+            mNumUpdates++;
+            mLastUpdateDuration = duration;
+            mTotalUpdateDuration += duration;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Update #" + mNumUpdates + " took " + duration + "ms, changed="
+                    + changed + ", unchanged snapshots=" + mNumUnchangedUpdates
+                    + ", average=" + (mTotalUpdateDuration / mNumUpdates) + "ms");
+        }
+        return changed;
+    }
 
-        mSequence++;
-        
-        boolean changed = false;
+    private boolean updateContents(Context context, ActivityManager am) {
+        final PackageManager pm = context.getPackageManager();
 
         // Retrieve list of services, filtering out anything that definitely
         // won't be shown in the UI.
@@ -931,7 +1223,33 @@ public class RunningState {
         // array for easy retrieval.
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
+
+        // If neither the services nor the processes changed since the last
+        // pass, the process model is still valid and only memory usage needs
+        // to be refreshed.  Keeping the same sequence number leaves all items
+        // marked as seen in this pass.
+        final boolean snapshotChanged = !sameServices(services, mLastServices)
+                || !sameProcesses(processes, mLastProcesses);
+        mLastServices = services;
+        mLastProcesses = processes;
+        if (!snapshotChanged) {
+            mNumUnchangedUpdates++;
+            return updateMemory(context, false);
+        }
+
+        final boolean changed = updateItems(context, pm, services, processes);
+        return updateMemory(context, changed);
+    }
+
+    private boolean updateItems(Context context, PackageManager pm,
+            List<ActivityManager.RunningServiceInfo> services,
+            List<ActivityManager.RunningAppProcessInfo> processes) {
+        final int NS = services != null ? services.size() : 0;
         final int NP = processes != null ? processes.size() : 0;
+        boolean changed = false;
+
+        mSequence++;
+
         mTmpAppProcesses.clear();
         for (int i=0; i<NP; i++) {
             ActivityManager.RunningAppProcessInfo pi = processes.get(i);
@@ -1019,7 +1337,7 @@ public class RunningState {
                 proc.mDependentProcesses.clear();
                 proc.mCurSeq = mSequence;
             }
-            changed |= proc.updateService(context, si);
+            changed |= proc.updateService(context, this, si);
         }
         
         // Now update the map of other processes that are running (but
@@ -1271,12 +1589,14 @@ public class RunningState {
                 }
             }
 
-            synchronized (mLock) {
-                mItems = newItems;
-                mMergedItems = newMergedItems;
-            }
+            mItems = newItems;
+            mMergedItems = newMergedItems;
         }
-        
+
+        return changed;
+    }
+
+    private boolean updateMemory(Context context, boolean changed) {
         // Count number of interesting other (non-active) processes, and
         // build a list of all processes we will retrieve memory for.
         mAllProcessItems.clear();
@@ -1284,7 +1604,7 @@ public class RunningState {
         int numBackgroundProcesses = 0;
         int numForegroundProcesses = 0;
         int numServiceProcesses = 0;
-        NRP = mRunningProcesses.size();
+        final int NRP = mRunningProcesses.size();
         for (int i=0; i<NRP; i++) {
             ProcessItem proc = mRunningProcesses.valueAt(i);
             if (proc.mCurSeq != mSequence) {
@@ -1307,22 +1627,32 @@ public class RunningState {
             }
         }
         
+        final int numProc = mAllProcessItems.size();
+        int[] pids = new int[numProc];
+        for (int i=0; i<numProc; i++) {
+            pids[i] = mAllProcessItems.get(i).mPid;
+        }
+        long[] pss = null;
+        try {
+            pss = ActivityManager.getService().getProcessPss(pids);
+        } catch (RemoteException e) {
+        }
+
+        return updateSizes(context, changed, pss, numBackgroundProcesses,
+                numForegroundProcesses, numServiceProcesses);
+    }
+
+    private boolean updateSizes(Context context, boolean changed, long[] pss,
+            int numBackgroundProcesses, int numForegroundProcesses, int numServiceProcesses) {
         long backgroundProcessMemory = 0;
         long foregroundProcessMemory = 0;
         long serviceProcessMemory = 0;
         ArrayList<MergedItem> newBackgroundItems = null;
         ArrayList<MergedItem> newUserBackgroundItems = null;
         boolean diffUsers = false;
-        try {
-            final int numProc = mAllProcessItems.size();
-            int[] pids = new int[numProc];
-            for (int i=0; i<numProc; i++) {
-                pids[i] = mAllProcessItems.get(i).mPid;
-            }
-            long[] pss = ActivityManager.getService()
-                    .getProcessPss(pids);
+        if (pss != null) {
             int bgIndex = 0;
-            for (int i=0; i<pids.length; i++) {
+            for (int i=0; i<pss.length; i++) {
                 ProcessItem proc = mAllProcessItems.get(i);
                 changed |= proc.updateSize(context, pss[i], mSequence);
                 if (proc.mCurSeq == mSequence) {
@@ -1361,7 +1691,6 @@ public class RunningState {
                     foregroundProcessMemory += proc.mSize;
                 }
             }
-        } catch (RemoteException e) {
         }
         
         if (newBackgroundItems == null) {
@@ -1413,6 +1742,12 @@ public class RunningState {
             mMergedItems.get(i).updateSize(context);
         }
         
+        if (newBackgroundItems != null) {
+            mBackgroundItems = newBackgroundItems;
+            mUserBackgroundItems = newUserBackgroundItems;
+        }
+
+        // Publishing only copies fields, so the UI waits little for mLock.
         synchronized (mLock) {
             mNumBackgroundProcesses = numBackgroundProcesses;
             mNumForegroundProcesses = numForegroundProcesses;
@@ -1420,21 +1755,30 @@ public class RunningState {
             mBackgroundProcessMemory = backgroundProcessMemory;
             mForegroundProcessMemory = foregroundProcessMemory;
             mServiceProcessMemory = serviceProcessMemory;
-            if (newBackgroundItems != null) {
-                mBackgroundItems = newBackgroundItems;
-                mUserBackgroundItems = newUserBackgroundItems;
-                if (mWatchingBackgroundItems) {
-                    changed = true;
-                }
+            if (newBackgroundItems != null && mWatchingBackgroundItems) {
+                changed = true;
             }
+            mSnapshot = new Snapshot(publishLocked(mMergedItems),
+                    publishLocked(mUserBackgroundItems),
+                    numBackgroundProcesses, backgroundProcessMemory,
+                    numForegroundProcesses, foregroundProcessMemory,
+                    numServiceProcesses, serviceProcessMemory);
             if (!mHaveData) {
                 mHaveData = true;
                 mLock.notifyAll();
             }
         }
-        
+
         return changed;
     }
+
+    private static ArrayList<MergedItem> publishLocked(ArrayList<MergedItem> items) {
+        final ArrayList<MergedItem> shown = new ArrayList<MergedItem>(items.size());
+        for (int i=0; i<items.size(); i++) {
+            shown.add(items.get(i).publishLocked());
+        }
+        return shown;
+    }
     
     void setWatchingBackgroundItems(boolean watching) {
         synchronized (mLock) {
@@ -1442,15 +1786,19 @@ public class RunningState {
         }
     }
 
+    /**
+     * Returns the state published by the last update, without waiting for
+     * an update in progress.
+     */
+    Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
     ArrayList<MergedItem> getCurrentMergedItems() {
-        synchronized (mLock) {
-            return mMergedItems;
-        }
+        return getSnapshot().mMergedItems;
     }
 
     ArrayList<MergedItem> getCurrentBackgroundItems() {
-        synchronized (mLock) {
-            return mUserBackgroundItems;
-        }
+        return getSnapshot().mBackgroundItems;
     }
 }
@@ -19,7 +19,9 @@ import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.os.Bundle;
+import android.util.ArrayMap;
 import android.util.Log;
+import android.view.Choreographer;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
@@ -46,6 +48,10 @@ import java.util.Map;
  *
  * In {@link BluetoothDeviceUpdater}, it uses {@link BluetoothDeviceFilter.Filter} to detect
  * whether the {@link CachedBluetoothDevice} is relevant.
+ *
+ * Device events are batched until the next frame: a device that gets several events in the same
+ * frame, e.g. a headset connecting each of its profiles, is checked against the filter only once
+ * and its {@link Preference} is added or removed at most once.
  */
 public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         LocalBluetoothProfileManager.ServiceListener {
@@ -54,6 +60,12 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
 
     protected final DevicePreferenceCallback mDevicePreferenceCallback;
     protected final Map<BluetoothDevice, Preference> mPreferenceMap;
+    // Devices with events since the last frame, applied together in the next frame.
+    private final Map<BluetoothDevice, CachedBluetoothDevice> mPendingDevices = new ArrayMap<>();
+    private Choreographer.FrameCallback mFrameCallback;
+    private int mPendingEventCount;
+    @VisibleForTesting
+    int mLastFrameEventCount;
     protected Context mPrefContext;
     protected DashboardFragment mFragment;
     @VisibleForTesting
@@ -103,6 +115,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         mLocalManager.setForegroundActivity(null);
         mLocalManager.getEventManager().unregisterCallback(this);
         mLocalManager.getProfileManager().removeServiceListener(this);
+        cancelPendingUpdates();
     }
 
     /**
@@ -117,7 +130,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             final Collection<CachedBluetoothDevice> cachedDevices =
                     mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
             for (CachedBluetoothDevice cachedBluetoothDevice : cachedDevices) {
-                update(cachedBluetoothDevice);
+                scheduleUpdate(cachedBluetoothDevice);
             }
         } else {
           removeAllDevicesFromPreference();
@@ -129,6 +142,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             Log.e(TAG, "removeAllDevicesFromPreference() BT is not supported on this device");
             return;
         }
+        cancelPendingUpdates();
         final Collection<CachedBluetoothDevice> cachedDevices =
                 mLocalManager.getCachedDeviceManager().getCachedDevicesCopy();
         for (CachedBluetoothDevice cachedBluetoothDevice : cachedDevices) {
@@ -147,7 +161,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
 
     @Override
     public void onDeviceAdded(CachedBluetoothDevice cachedDevice) {
-        update(cachedDevice);
+        scheduleUpdate(cachedDevice);
     }
 
     @Override
@@ -155,12 +169,13 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         // Used to combine the hearing aid entries just after pairing. Once both the hearing aids
         // get connected and their hiSyncId gets populated, this gets called for one of the
         // 2 hearing aids so that only one entry in the connected devices list will be seen.
+        mPendingDevices.remove(cachedDevice.getDevice());
         removePreference(cachedDevice);
     }
 
     @Override
     public void onDeviceBondStateChanged(CachedBluetoothDevice cachedDevice, int bondState) {
-        update(cachedDevice);
+        scheduleUpdate(cachedDevice);
     }
 
     @Override
@@ -170,7 +185,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             Log.d(TAG, "onProfileConnectionStateChanged() device: " + cachedDevice.getName()
                     + ", state: " + state + ", bluetoothProfile: " + bluetoothProfile);
         }
-        update(cachedDevice);
+        scheduleUpdate(cachedDevice);
     }
 
     @Override
@@ -179,7 +194,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             Log.d(TAG, "onAclConnectionStateChanged() device: " + cachedDevice.getName()
                     + ", state: " + state);
         }
-        update(cachedDevice);
+        scheduleUpdate(cachedDevice);
     }
 
     @Override
@@ -218,6 +233,47 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         }
     }
 
+    /**
+     * Update {@code cachedDevice} in the next frame, together with the other devices that get
+     * events before it.
+     */
+    protected void scheduleUpdate(CachedBluetoothDevice cachedDevice) {
+        mPendingDevices.put(cachedDevice.getDevice(), cachedDevice);
+        mPendingEventCount++;
+        if (mFrameCallback == null) {
+            // One callback per frame: it is only set while posted, so events until the frame
+            // just add their device to mPendingDevices.
+            mFrameCallback = frameTimeNanos -> applyPendingUpdates();
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    @VisibleForTesting
+    void applyPendingUpdates() {
+        mFrameCallback = null;
+        mLastFrameEventCount = mPendingEventCount;
+        mPendingEventCount = 0;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "applyPendingUpdates() events: " + mLastFrameEventCount + ", devices: "
+                    + mPendingDevices.size());
+        }
+        final CachedBluetoothDevice[] devices =
+                mPendingDevices.values().toArray(new CachedBluetoothDevice[0]);
+        mPendingDevices.clear();
+        for (CachedBluetoothDevice cachedDevice : devices) {
+            update(cachedDevice);
+        }
+    }
+
+    private void cancelPendingUpdates() {
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFrameCallback = null;
+        }
+        mPendingDevices.clear();
+        mPendingEventCount = 0;
+    }
+
     /**
      * Add the {@link Preference} that represents the {@code cachedDevice}
      */
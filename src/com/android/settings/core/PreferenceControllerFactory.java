@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+/**
+ * Creates the {@link BasePreferenceController}s declared in preference xml.
+ *
+ * <p>The controllers declared in res/xml are created from {@link PreferenceControllerTable},
+ * without reflection. Other controllers are created through reflection, and the constructors
+ * found are kept so each class is only looked up once per process.
+ */
+public class PreferenceControllerFactory {
+
+    private static final String TAG = "PrefControllerFactory";
+
+    // Whether to create the controllers from the generated table.
+    private static volatile boolean sTableEnabled = true;
+
+    private static final Object sLock = new Object();
+    // The constructors of each controller class created through reflection.
+    @GuardedBy("sLock")
+    private static final Map<String, ControllerClass> sClasses = new ArrayMap<>();
+
+    private PreferenceControllerFactory() {
+    }
+
+    /**
+     * Returns a new controller of {@code controllerName} for the preference with {@code key}.
+     *
+     * <p>The (Context) constructor of the controller is used if it has one. Otherwise, or if it
+     * fails, its (Context, String) constructor is used with {@code key}.
+     *
+     * @return the controller, or {@code null} if it needs a key and {@code key} is empty
+     * @throws IllegalStateException if the controller class is invalid or its constructor fails
+     */
+    @Nullable
+    public static BasePreferenceController createController(Context context,
+            String controllerName, @Nullable String key) {
+        if (hasContextConstructor(controllerName)) {
+            try {
+                return newInstance(context, controllerName, false /* withKey */, null /* key */);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not create Context-only controller: " + controllerName, e);
+            }
+        }
+        if (TextUtils.isEmpty(key)) {
+            return null;
+        }
+        return newInstance(context, controllerName, true /* withKey */, key);
+    }
+
+    /**
+     * Returns a new controller of {@code controllerName}, created with its (Context, String)
+     * constructor if {@code withKey}, or else with its (Context) constructor.
+     *
+     * @throws IllegalStateException if the controller has no such constructor or it fails
+     */
+    static BasePreferenceController newInstance(Context context, String controllerName,
+            boolean withKey, @Nullable String key) {
+        if (sTableEnabled) {
+            final BasePreferenceController controller;
+            try {
+                controller = withKey
+                        ? PreferenceControllerTable.createWithContextAndKey(context,
+                        controllerName, key)
+                        : PreferenceControllerTable.createWithContext(context, controllerName);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException(
+                        "Invalid preference controller: " + controllerName, e);
+            }
+            if (controller != null) {
+                return controller;
+            }
+        }
+
+        final ControllerClass controllerClass = getControllerClass(controllerName);
+        final Constructor<?> constructor = withKey
+                ? controllerClass.contextAndKeyConstructor
+                : controllerClass.contextConstructor;
+        if (constructor == null) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName,
+                    withKey ? controllerClass.contextAndKeyError : controllerClass.contextError);
+        }
+        try {
+            return (BasePreferenceController) (withKey
+                    ? constructor.newInstance(context, key)
+                    : constructor.newInstance(context));
+        } catch (InstantiationException | IllegalArgumentException | InvocationTargetException
+                | IllegalAccessException | ClassCastException e) {
+            throw new IllegalStateException(
+                    "Invalid preference controller: " + controllerName, e);
+        }
+    }
+
+    /**
+     * Sets whether to create the controllers from the generated table or only through reflection,
+     * and drops the constructors found through reflection so far. Only used to benchmark the table.
+     */
+    @VisibleForTesting
+    static void setTableEnabled(boolean enabled) {
+        sTableEnabled = enabled;
+        synchronized (sLock) {
+            sClasses.clear();
+        }
+    }
+
+    private static boolean hasContextConstructor(String controllerName) {
+        if (sTableEnabled && PreferenceControllerTable.contains(controllerName)) {
+            return PreferenceControllerTable.hasContextConstructor(controllerName);
+        }
+        return getControllerClass(controllerName).contextConstructor != null;
+    }
+
+    private static ControllerClass getControllerClass(String controllerName) {
+        synchronized (sLock) {
+            final ControllerClass controllerClass = sClasses.get(controllerName);
+            if (controllerClass != null) {
+                return controllerClass;
+            }
+        }
+        final ControllerClass controllerClass = new ControllerClass(controllerName);
+        synchronized (sLock) {
+            sClasses.put(controllerName, controllerClass);
+        }
+        return controllerClass;
+    }
+
+    /** The public constructors of a controller class, or why they can't be found. */
+    private static class ControllerClass {
+        Constructor<?> contextConstructor;
+        Constructor<?> contextAndKeyConstructor;
+        ReflectiveOperationException contextError;
+        ReflectiveOperationException contextAndKeyError;
+
+        ControllerClass(String controllerName) {
+            final Class<?> clazz;
+            try {
+                clazz = Class.forName(controllerName);
+            } catch (ClassNotFoundException e) {
+                contextError = e;
+                contextAndKeyError = e;
+                return;
+            }
+            try {
+                contextConstructor = clazz.getConstructor(Context.class);
+            } catch (NoSuchMethodException e) {
+                contextError = e;
+            }
+            try {
+                contextAndKeyConstructor = clazz.getConstructor(Context.class, String.class);
+            } catch (NoSuchMethodException e) {
+                contextAndKeyError = e;
+            }
+        }
+    }
+}
@@ -66,24 +66,19 @@ public class PreferenceControllerListHelper {
             if (TextUtils.isEmpty(controllerName)) {
                 continue;
             }
-            BasePreferenceController controller;
+            final String key = metadata.getString(METADATA_KEY);
+            final BasePreferenceController controller;
             try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
+                controller = PreferenceControllerFactory.createController(context,
+                        controllerName, key);
             } catch (IllegalStateException e) {
-                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
-                final String key = metadata.getString(METADATA_KEY);
-                if (TextUtils.isEmpty(key)) {
-                    Log.w(TAG, "Controller requires key but it's not defined in xml: "
-                            + controllerName);
-                    continue;
-                }
-                try {
-                    controller = BasePreferenceController.createInstance(context, controllerName,
-                            key);
-                } catch (IllegalStateException e2) {
-                    Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
-                    continue;
-                }
+                Log.w(TAG, "Cannot instantiate controller: " + controllerName);
+                continue;
+            }
+            if (controller == null) {
+                Log.w(TAG, "Controller requires key but it's not defined in xml: "
+                        + controllerName);
+                continue;
             }
             controllers.add(controller);
         }
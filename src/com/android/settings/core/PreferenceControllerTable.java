@@ -0,0 +1,815 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+
+/**
+ * Creates the preference controllers declared in res/xml without reflection.
+ *
+ * <p>Generated by tools/generate_controller_table.py, do not edit.
+ */
+final class PreferenceControllerTable {
+
+    private PreferenceControllerTable() {
+    }
+
+    /** Returns whether {@code className} is in the table. */
+    static boolean contains(String className) {
+        switch (className) {
+            case "com.android.settings.accessibility.ColorInversionPreferenceController":
+            case "com.android.settings.accessibility.LiveCaptionPreferenceController":
+            case "com.android.settings.accessibility.MagnificationGesturesPreferenceController":
+            case "com.android.settings.accessibility.MagnificationNavbarPreferenceController":
+            case "com.android.settings.accessibility.TopLevelAccessibilityPreferenceController":
+            case "com.android.settings.accounts.ChooseAccountPreferenceController":
+            case "com.android.settings.accounts.ContactSearchPreferenceController":
+            case "com.android.settings.accounts.CrossProfileCalendarDisabledPreferenceController":
+            case "com.android.settings.accounts.CrossProfileCalendarPreferenceController":
+            case "com.android.settings.accounts.EmergencyInfoPreferenceController":
+            case "com.android.settings.accounts.TopLevelAccountEntryPreferenceController":
+            case "com.android.settings.accounts.WorkModePreferenceController":
+            case "com.android.settings.applications.AllAppsInfoPreferenceController":
+            case "com.android.settings.applications.AppPermissionsPreferenceController":
+            case "com.android.settings.applications.DefaultAppsPreferenceController":
+            case "com.android.settings.applications.RecentAppsPreferenceController":
+            case "com.android.settings.applications.SpecialAppAccessPreferenceController":
+            case "com.android.settings.applications.appinfo.AdvancedAppInfoPreferenceCategoryController":
+            case "com.android.settings.applications.appinfo.AppDataUsagePreferenceController":
+            case "com.android.settings.applications.appinfo.AppInstallerInfoPreferenceController":
+            case "com.android.settings.applications.appinfo.AppInstallerPreferenceCategoryController":
+            case "com.android.settings.applications.appinfo.AppNotificationPreferenceController":
+            case "com.android.settings.applications.appinfo.AppOpenByDefaultPreferenceController":
+            case "com.android.settings.applications.appinfo.AppPackageNamePreferenceController":
+            case "com.android.settings.applications.appinfo.AppPermissionPreferenceController":
+            case "com.android.settings.applications.appinfo.AppSettingPreferenceController":
+            case "com.android.settings.applications.appinfo.AppStoragePreferenceController":
+            case "com.android.settings.applications.appinfo.AppVersionPreferenceController":
+            case "com.android.settings.applications.appinfo.DrawOverlayDetailPreferenceController":
+            case "com.android.settings.applications.appinfo.ExternalSourceDetailPreferenceController":
+            case "com.android.settings.applications.appinfo.InstantAppDomainsPreferenceController":
+            case "com.android.settings.applications.appinfo.TimeSpentInAppPreferenceController":
+            case "com.android.settings.applications.appinfo.WriteSystemSettingsPreferenceController":
+            case "com.android.settings.applications.managedomainurls.DomainAppPreferenceController":
+            case "com.android.settings.applications.managedomainurls.InstantAppAccountPreferenceController":
+            case "com.android.settings.applications.managedomainurls.InstantAppWebActionPreferenceController":
+            case "com.android.settings.applications.managedomainurls.WebActionCategoryController":
+            case "com.android.settings.applications.specialaccess.DataSaverController":
+            case "com.android.settings.applications.specialaccess.DefaultPaymentSettingsPreferenceController":
+            case "com.android.settings.applications.specialaccess.HighPowerAppsController":
+            case "com.android.settings.applications.specialaccess.MoreSpecialAccessPreferenceController":
+            case "com.android.settings.applications.specialaccess.SystemAlertWindowPreferenceController":
+            case "com.android.settings.applications.specialaccess.deviceadmin.DeviceAdminListPreferenceController":
+            case "com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessController":
+            case "com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessScreenPreferenceController":
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureController":
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureDetailPreferenceController":
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureScreenPreferenceController":
+            case "com.android.settings.applications.specialaccess.premiumsms.PremiumSmsController":
+            case "com.android.settings.applications.specialaccess.premiumsms.PremiumSmsScreenPreferenceController":
+            case "com.android.settings.applications.specialaccess.vrlistener.EnabledVrListenersController":
+            case "com.android.settings.applications.specialaccess.vrlistener.VrListenerScreenPreferenceController":
+            case "com.android.settings.applications.specialaccess.zenaccess.ZenAccessController":
+            case "com.android.settings.backup.AutoRestorePreferenceController":
+            case "com.android.settings.backup.BackupDataPreferenceController":
+            case "com.android.settings.backup.BackupInactivePreferenceController":
+            case "com.android.settings.backup.ConfigureAccountPreferenceController":
+            case "com.android.settings.backup.DataManagementPreferenceController":
+            case "com.android.settings.biometrics.face.FaceSettingsLockscreenBypassPreferenceController":
+            case "com.android.settings.bluetooth.AdvancedBluetoothDetailsHeaderController":
+            case "com.android.settings.bluetooth.BluetoothDeviceRenamePreferenceController":
+            case "com.android.settings.connecteddevice.AddDevicePreferenceController":
+            case "com.android.settings.connecteddevice.AdvancedConnectedDeviceController":
+            case "com.android.settings.connecteddevice.AvailableMediaDeviceGroupController":
+            case "com.android.settings.connecteddevice.ConnectedDeviceGroupController":
+            case "com.android.settings.connecteddevice.PreviouslyConnectedDevicePreferenceController":
+            case "com.android.settings.connecteddevice.SavedDeviceGroupController":
+            case "com.android.settings.connecteddevice.TopLevelConnectedDevicesPreferenceController":
+            case "com.android.settings.datausage.BillingCyclePreferenceController":
+            case "com.android.settings.datausage.UnrestrictedDataAccessPreferenceController":
+            case "com.android.settings.datetime.timezone.TimeZoneInfoPreferenceController":
+            case "com.android.settings.development.featureflags.FeatureFlagsPreferenceController":
+            case "com.android.settings.development.gamedriver.GameDriverAppPreferenceController":
+            case "com.android.settings.development.gamedriver.GameDriverEnableForAllAppsPreferenceController":
+            case "com.android.settings.development.gamedriver.GameDriverFooterPreferenceController":
+            case "com.android.settings.development.qstile.DevelopmentTilePreferenceController":
+            case "com.android.settings.deviceinfo.BrandedAccountPreferenceController":
+            case "com.android.settings.deviceinfo.BuildNumberPreferenceController":
+            case "com.android.settings.deviceinfo.DeviceNamePreferenceController":
+            case "com.android.settings.deviceinfo.HardwareInfoPreferenceController":
+            case "com.android.settings.deviceinfo.PhoneNumberPreferenceController":
+            case "com.android.settings.deviceinfo.TopLevelStoragePreferenceController":
+            case "com.android.settings.deviceinfo.aboutphone.TopLevelAboutDevicePreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.BasebandVersionPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.FirmwareVersionDetailPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.FirmwareVersionPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.KernelVersionPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.LineageApiVersionPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.LineageBuildDatePreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.LineageVendorSecurityPatchLevelPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.LineageVersionDetailPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.MainlineModuleVersionPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.SecurityPatchLevelPreferenceController":
+            case "com.android.settings.deviceinfo.firmwareversion.SimpleBuildNumberPreferenceController":
+            case "com.android.settings.deviceinfo.hardwareinfo.DeviceModelPreferenceController":
+            case "com.android.settings.deviceinfo.hardwareinfo.HardwareRevisionPreferenceController":
+            case "com.android.settings.deviceinfo.hardwareinfo.SerialNumberPreferenceController":
+            case "com.android.settings.deviceinfo.imei.ImeiInfoPreferenceController":
+            case "com.android.settings.deviceinfo.legal.CopyrightPreferenceController":
+            case "com.android.settings.deviceinfo.legal.LicensePreferenceController":
+            case "com.android.settings.deviceinfo.legal.ModuleLicensesListPreferenceController":
+            case "com.android.settings.deviceinfo.legal.ModuleLicensesPreferenceController":
+            case "com.android.settings.deviceinfo.legal.TermsPreferenceController":
+            case "com.android.settings.deviceinfo.legal.WallpaperAttributionsPreferenceController":
+            case "com.android.settings.deviceinfo.legal.WebViewLicensePreferenceController":
+            case "com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController":
+            case "com.android.settings.display.AdaptiveSleepDetailPreferenceController":
+            case "com.android.settings.display.AdaptiveSleepPermissionPreferenceController":
+            case "com.android.settings.display.AdaptiveSleepPreferenceController":
+            case "com.android.settings.display.AmbientDisplayAlwaysOnPreferenceController":
+            case "com.android.settings.display.AmbientDisplayNotificationsPreferenceController":
+            case "com.android.settings.display.AutoBrightnessDetailPreferenceController":
+            case "com.android.settings.display.AutoBrightnessPreferenceController":
+            case "com.android.settings.display.AutoRotatePreferenceController":
+            case "com.android.settings.display.BatteryPercentagePreferenceController":
+            case "com.android.settings.display.ColorModePreferenceController":
+            case "com.android.settings.display.DarkUIPreferenceController":
+            case "com.android.settings.display.DisplayWhiteBalancePreferenceController":
+            case "com.android.settings.display.FontSizePreferenceController":
+            case "com.android.settings.display.NightDisplayActivationPreferenceController":
+            case "com.android.settings.display.NightDisplayAutoModePreferenceController":
+            case "com.android.settings.display.NightDisplayCustomEndTimePreferenceController":
+            case "com.android.settings.display.NightDisplayCustomStartTimePreferenceController":
+            case "com.android.settings.display.NightDisplayIntensityPreferenceController":
+            case "com.android.settings.display.TopLevelDisplayPreferenceController":
+            case "com.android.settings.display.WallpaperPreferenceController":
+            case "com.android.settings.display.darkmode.DarkModeActivationPreferenceController":
+            case "com.android.settings.display.darkmode.DarkModeScheduleSelectorController":
+            case "com.android.settings.dream.CurrentDreamPreferenceController":
+            case "com.android.settings.enterprise.ManageDeviceAdminPreferenceController":
+            case "com.android.settings.fuelgauge.AutoRestrictionPreferenceController":
+            case "com.android.settings.fuelgauge.BatteryHeaderPreferenceController":
+            case "com.android.settings.fuelgauge.BatterySaverController":
+            case "com.android.settings.fuelgauge.SmartBatteryPreferenceController":
+            case "com.android.settings.fuelgauge.TopLevelBatteryPreferenceController":
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverButtonPreferenceController":
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverSchedulePreferenceController":
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverStickyPreferenceController":
+            case "com.android.settings.fuelgauge.batterytip.BatteryManagerPreferenceController":
+            case "com.android.settings.fuelgauge.batterytip.BatteryTipPreferenceController":
+            case "com.android.settings.gestures.AssistGestureSettingsPreferenceController":
+            case "com.android.settings.gestures.DoubleTapPowerPreferenceController":
+            case "com.android.settings.gestures.DoubleTapScreenPreferenceController":
+            case "com.android.settings.gestures.DoubleTwistPreferenceController":
+            case "com.android.settings.gestures.GesturesSettingPreferenceController":
+            case "com.android.settings.gestures.GlobalActionsPanelPreferenceController":
+            case "com.android.settings.gestures.PickupGesturePreferenceController":
+            case "com.android.settings.gestures.PreventRingingParentPreferenceController":
+            case "com.android.settings.gestures.SwipeToNotificationPreferenceController":
+            case "com.android.settings.gestures.SystemNavigationPreferenceController":
+            case "com.android.settings.gestures.TapScreenGesturePreferenceController":
+            case "com.android.settings.inputmethod.GameControllerPreferenceController":
+            case "com.android.settings.inputmethod.InputMethodAndSubtypePreferenceController":
+            case "com.android.settings.inputmethod.KeyboardLayoutPickerController":
+            case "com.android.settings.inputmethod.SpellCheckerForWorkPreferenceController":
+            case "com.android.settings.inputmethod.UserDictionaryListPreferenceController":
+            case "com.android.settings.inputmethod.VirtualKeyboardForWorkPreferenceController":
+            case "com.android.settings.language.UserDictionaryForWorkPreferenceController":
+            case "com.android.settings.language.UserDictionaryPreferenceController":
+            case "com.android.settings.location.TopLevelLocationPreferenceController":
+            case "com.android.settings.network.AirplaneModePreferenceController":
+            case "com.android.settings.network.MultiNetworkHeaderController":
+            case "com.android.settings.network.NetworkScorerPickerPreferenceController":
+            case "com.android.settings.network.TopLevelNetworkEntryPreferenceController":
+            case "com.android.settings.network.telephony.ApnPreferenceController":
+            case "com.android.settings.network.telephony.CallsDefaultSubscriptionController":
+            case "com.android.settings.network.telephony.CarrierPreferenceController":
+            case "com.android.settings.network.telephony.CarrierSettingsVersionPreferenceController":
+            case "com.android.settings.network.telephony.DataDuringCallsPreferenceController":
+            case "com.android.settings.network.telephony.DataServiceSetupPreferenceController":
+            case "com.android.settings.network.telephony.DataUsagePreferenceController":
+            case "com.android.settings.network.telephony.DeleteSimProfilePreferenceController":
+            case "com.android.settings.network.telephony.DisableSimFooterPreferenceController":
+            case "com.android.settings.network.telephony.DisabledSubscriptionController":
+            case "com.android.settings.network.telephony.EnabledNetworkModePreferenceController":
+            case "com.android.settings.network.telephony.Enhanced4gLtePreferenceController":
+            case "com.android.settings.network.telephony.EuiccPreferenceController":
+            case "com.android.settings.network.telephony.MmsMessagePreferenceController":
+            case "com.android.settings.network.telephony.MobileDataPreferenceController":
+            case "com.android.settings.network.telephony.MobileNetworkSwitchController":
+            case "com.android.settings.network.telephony.PreferredNetworkModePreferenceController":
+            case "com.android.settings.network.telephony.RoamingPreferenceController":
+            case "com.android.settings.network.telephony.SmsDefaultSubscriptionController":
+            case "com.android.settings.network.telephony.VideoCallingPreferenceController":
+            case "com.android.settings.network.telephony.WifiCallingPreferenceController":
+            case "com.android.settings.network.telephony.cdma.CdmaSubscriptionPreferenceController":
+            case "com.android.settings.network.telephony.cdma.CdmaSystemSelectPreferenceController":
+            case "com.android.settings.network.telephony.gsm.AutoSelectPreferenceController":
+            case "com.android.settings.network.telephony.gsm.OpenNetworkSelectPagePreferenceController":
+            case "com.android.settings.nfc.AndroidBeamPreferenceController":
+            case "com.android.settings.nfc.NfcForegroundPreferenceController":
+            case "com.android.settings.nfc.NfcPaymentPreferenceController":
+            case "com.android.settings.nfc.NfcPreferenceController":
+            case "com.android.settings.nfc.SecureNfcPreferenceController":
+            case "com.android.settings.notification.AlarmVolumePreferenceController":
+            case "com.android.settings.notification.AssistantCapabilityPreferenceController":
+            case "com.android.settings.notification.BadgingNotificationPreferenceController":
+            case "com.android.settings.notification.CallVolumePreferenceController":
+            case "com.android.settings.notification.IncreasingRingPreferenceController":
+            case "com.android.settings.notification.IncreasingRingVolumePreferenceController":
+            case "com.android.settings.notification.LinkedVolumesPreferenceController":
+            case "com.android.settings.notification.MediaVolumePreferenceController":
+            case "com.android.settings.notification.NotificationAssistantPreferenceController":
+            case "com.android.settings.notification.NotificationVolumePreferenceController":
+            case "com.android.settings.notification.PulseNotificationPreferenceController":
+            case "com.android.settings.notification.RedactNotificationPreferenceController":
+            case "com.android.settings.notification.RemoteVolumePreferenceController":
+            case "com.android.settings.notification.RingVolumePreferenceController":
+            case "com.android.settings.notification.SnoozeNotificationPreferenceController":
+            case "com.android.settings.notification.VibrateWhenRingPreferenceController":
+            case "com.android.settings.notification.ZenModePreferenceController":
+            case "com.android.settings.print.PrintJobMessagePreferenceController":
+            case "com.android.settings.print.PrintJobPreferenceController":
+            case "com.android.settings.privacy.AccessibilityUsagePreferenceController":
+            case "com.android.settings.privacy.EnableContentCapturePreferenceController":
+            case "com.android.settings.privacy.EnableContentCaptureWithServiceSettingsPreferenceController":
+            case "com.android.settings.privacy.PermissionBarChartPreferenceController":
+            case "com.android.settings.privacy.WorkPolicyInfoPreferenceController":
+            case "com.android.settings.security.LockdownButtonPreferenceController":
+            case "com.android.settings.security.ShowPasswordPreferenceController":
+            case "com.android.settings.security.TopLevelSecurityEntryPreferenceController":
+            case "com.android.settings.security.VisiblePatternProfilePreferenceController":
+            case "com.android.settings.security.screenlock.LockScreenPreferenceController":
+            case "com.android.settings.security.trustagent.TrustAgentsPreferenceController":
+            case "com.android.settings.shortcut.CreateShortcutPreferenceController":
+            case "com.android.settings.slices.BlockingSlicePrefController":
+            case "com.android.settings.slices.SlicePreferenceController":
+            case "com.android.settings.sound.HandsFreeProfileOutputPreferenceController":
+            case "com.android.settings.sound.MediaOutputPreferenceController":
+            case "com.android.settings.support.SupportPreferenceController":
+            case "com.android.settings.system.AdditionalSystemUpdatePreferenceController":
+            case "com.android.settings.system.ResetPreferenceController":
+            case "com.android.settings.system.SystemUpdatePreferenceController":
+            case "com.android.settings.users.AddUserWhenLockedPreferenceController":
+            case "com.android.settings.wallpaper.WallpaperTypePreferenceController":
+            case "com.android.settings.widget.PreferenceCategoryController":
+            case "com.android.settings.widget.VideoPreferenceController":
+            case "com.android.settings.wifi.CellularFallbackPreferenceController":
+            case "com.android.settings.wifi.savedaccesspoints.SavedAccessPointsPreferenceController":
+            case "com.android.settings.wifi.savedaccesspoints.SubscribedAccessPointsPreferenceController":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Returns whether {@code className} is in the table with a (Context) constructor. */
+    static boolean hasContextConstructor(String className) {
+        switch (className) {
+            case "com.android.settings.connecteddevice.AvailableMediaDeviceGroupController":
+            case "com.android.settings.connecteddevice.ConnectedDeviceGroupController":
+            case "com.android.settings.connecteddevice.SavedDeviceGroupController":
+            case "com.android.settings.datetime.timezone.TimeZoneInfoPreferenceController":
+            case "com.android.settings.development.gamedriver.GameDriverFooterPreferenceController":
+            case "com.android.settings.fuelgauge.AutoRestrictionPreferenceController":
+            case "com.android.settings.fuelgauge.BatterySaverController":
+            case "com.android.settings.fuelgauge.SmartBatteryPreferenceController":
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverSchedulePreferenceController":
+            case "com.android.settings.fuelgauge.batterytip.BatteryManagerPreferenceController":
+            case "com.android.settings.gestures.GesturesSettingPreferenceController":
+            case "com.android.settings.notification.AlarmVolumePreferenceController":
+            case "com.android.settings.notification.IncreasingRingPreferenceController":
+            case "com.android.settings.notification.IncreasingRingVolumePreferenceController":
+            case "com.android.settings.notification.MediaVolumePreferenceController":
+            case "com.android.settings.notification.NotificationVolumePreferenceController":
+            case "com.android.settings.notification.RemoteVolumePreferenceController":
+            case "com.android.settings.notification.RingVolumePreferenceController":
+            case "com.android.settings.security.ShowPasswordPreferenceController":
+            case "com.android.settings.security.VisiblePatternProfilePreferenceController":
+            case "com.android.settings.system.AdditionalSystemUpdatePreferenceController":
+            case "com.android.settings.system.SystemUpdatePreferenceController":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns a new controller of {@code className} created with its (Context)
+     * constructor, or {@code null} if it is not in the table.
+     */
+    static BasePreferenceController createWithContext(Context context, String className) {
+        switch (className) {
+            case "com.android.settings.connecteddevice.AvailableMediaDeviceGroupController":
+                return new com.android.settings.connecteddevice.AvailableMediaDeviceGroupController(context);
+            case "com.android.settings.connecteddevice.ConnectedDeviceGroupController":
+                return new com.android.settings.connecteddevice.ConnectedDeviceGroupController(context);
+            case "com.android.settings.connecteddevice.SavedDeviceGroupController":
+                return new com.android.settings.connecteddevice.SavedDeviceGroupController(context);
+            case "com.android.settings.datetime.timezone.TimeZoneInfoPreferenceController":
+                return new com.android.settings.datetime.timezone.TimeZoneInfoPreferenceController(context);
+            case "com.android.settings.development.gamedriver.GameDriverFooterPreferenceController":
+                return new com.android.settings.development.gamedriver.GameDriverFooterPreferenceController(context);
+            case "com.android.settings.fuelgauge.AutoRestrictionPreferenceController":
+                return new com.android.settings.fuelgauge.AutoRestrictionPreferenceController(context);
+            case "com.android.settings.fuelgauge.BatterySaverController":
+                return new com.android.settings.fuelgauge.BatterySaverController(context);
+            case "com.android.settings.fuelgauge.SmartBatteryPreferenceController":
+                return new com.android.settings.fuelgauge.SmartBatteryPreferenceController(context);
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverSchedulePreferenceController":
+                return new com.android.settings.fuelgauge.batterysaver.BatterySaverSchedulePreferenceController(context);
+            case "com.android.settings.fuelgauge.batterytip.BatteryManagerPreferenceController":
+                return new com.android.settings.fuelgauge.batterytip.BatteryManagerPreferenceController(context);
+            case "com.android.settings.gestures.GesturesSettingPreferenceController":
+                return new com.android.settings.gestures.GesturesSettingPreferenceController(context);
+            case "com.android.settings.notification.AlarmVolumePreferenceController":
+                return new com.android.settings.notification.AlarmVolumePreferenceController(context);
+            case "com.android.settings.notification.IncreasingRingPreferenceController":
+                return new com.android.settings.notification.IncreasingRingPreferenceController(context);
+            case "com.android.settings.notification.IncreasingRingVolumePreferenceController":
+                return new com.android.settings.notification.IncreasingRingVolumePreferenceController(context);
+            case "com.android.settings.notification.MediaVolumePreferenceController":
+                return new com.android.settings.notification.MediaVolumePreferenceController(context);
+            case "com.android.settings.notification.NotificationVolumePreferenceController":
+                return new com.android.settings.notification.NotificationVolumePreferenceController(context);
+            case "com.android.settings.notification.RemoteVolumePreferenceController":
+                return new com.android.settings.notification.RemoteVolumePreferenceController(context);
+            case "com.android.settings.notification.RingVolumePreferenceController":
+                return new com.android.settings.notification.RingVolumePreferenceController(context);
+            case "com.android.settings.security.ShowPasswordPreferenceController":
+                return new com.android.settings.security.ShowPasswordPreferenceController(context);
+            case "com.android.settings.security.VisiblePatternProfilePreferenceController":
+                return new com.android.settings.security.VisiblePatternProfilePreferenceController(context);
+            case "com.android.settings.system.AdditionalSystemUpdatePreferenceController":
+                return new com.android.settings.system.AdditionalSystemUpdatePreferenceController(context);
+            case "com.android.settings.system.SystemUpdatePreferenceController":
+                return new com.android.settings.system.SystemUpdatePreferenceController(context);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a new controller of {@code className} created with its (Context, String)
+     * constructor, or {@code null} if it is not in the table.
+     */
+    static BasePreferenceController createWithContextAndKey(Context context,
+            String className, String key) {
+        switch (className) {
+            case "com.android.settings.accessibility.ColorInversionPreferenceController":
+                return new com.android.settings.accessibility.ColorInversionPreferenceController(context, key);
+            case "com.android.settings.accessibility.LiveCaptionPreferenceController":
+                return new com.android.settings.accessibility.LiveCaptionPreferenceController(context, key);
+            case "com.android.settings.accessibility.MagnificationGesturesPreferenceController":
+                return new com.android.settings.accessibility.MagnificationGesturesPreferenceController(context, key);
+            case "com.android.settings.accessibility.MagnificationNavbarPreferenceController":
+                return new com.android.settings.accessibility.MagnificationNavbarPreferenceController(context, key);
+            case "com.android.settings.accessibility.TopLevelAccessibilityPreferenceController":
+                return new com.android.settings.accessibility.TopLevelAccessibilityPreferenceController(context, key);
+            case "com.android.settings.accounts.ChooseAccountPreferenceController":
+                return new com.android.settings.accounts.ChooseAccountPreferenceController(context, key);
+            case "com.android.settings.accounts.ContactSearchPreferenceController":
+                return new com.android.settings.accounts.ContactSearchPreferenceController(context, key);
+            case "com.android.settings.accounts.CrossProfileCalendarDisabledPreferenceController":
+                return new com.android.settings.accounts.CrossProfileCalendarDisabledPreferenceController(context, key);
+            case "com.android.settings.accounts.CrossProfileCalendarPreferenceController":
+                return new com.android.settings.accounts.CrossProfileCalendarPreferenceController(context, key);
+            case "com.android.settings.accounts.EmergencyInfoPreferenceController":
+                return new com.android.settings.accounts.EmergencyInfoPreferenceController(context, key);
+            case "com.android.settings.accounts.TopLevelAccountEntryPreferenceController":
+                return new com.android.settings.accounts.TopLevelAccountEntryPreferenceController(context, key);
+            case "com.android.settings.accounts.WorkModePreferenceController":
+                return new com.android.settings.accounts.WorkModePreferenceController(context, key);
+            case "com.android.settings.applications.AllAppsInfoPreferenceController":
+                return new com.android.settings.applications.AllAppsInfoPreferenceController(context, key);
+            case "com.android.settings.applications.AppPermissionsPreferenceController":
+                return new com.android.settings.applications.AppPermissionsPreferenceController(context, key);
+            case "com.android.settings.applications.DefaultAppsPreferenceController":
+                return new com.android.settings.applications.DefaultAppsPreferenceController(context, key);
+            case "com.android.settings.applications.RecentAppsPreferenceController":
+                return new com.android.settings.applications.RecentAppsPreferenceController(context, key);
+            case "com.android.settings.applications.SpecialAppAccessPreferenceController":
+                return new com.android.settings.applications.SpecialAppAccessPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AdvancedAppInfoPreferenceCategoryController":
+                return new com.android.settings.applications.appinfo.AdvancedAppInfoPreferenceCategoryController(context, key);
+            case "com.android.settings.applications.appinfo.AppDataUsagePreferenceController":
+                return new com.android.settings.applications.appinfo.AppDataUsagePreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppInstallerInfoPreferenceController":
+                return new com.android.settings.applications.appinfo.AppInstallerInfoPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppInstallerPreferenceCategoryController":
+                return new com.android.settings.applications.appinfo.AppInstallerPreferenceCategoryController(context, key);
+            case "com.android.settings.applications.appinfo.AppNotificationPreferenceController":
+                return new com.android.settings.applications.appinfo.AppNotificationPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppOpenByDefaultPreferenceController":
+                return new com.android.settings.applications.appinfo.AppOpenByDefaultPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppPackageNamePreferenceController":
+                return new com.android.settings.applications.appinfo.AppPackageNamePreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppPermissionPreferenceController":
+                return new com.android.settings.applications.appinfo.AppPermissionPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppSettingPreferenceController":
+                return new com.android.settings.applications.appinfo.AppSettingPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppStoragePreferenceController":
+                return new com.android.settings.applications.appinfo.AppStoragePreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.AppVersionPreferenceController":
+                return new com.android.settings.applications.appinfo.AppVersionPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.DrawOverlayDetailPreferenceController":
+                return new com.android.settings.applications.appinfo.DrawOverlayDetailPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.ExternalSourceDetailPreferenceController":
+                return new com.android.settings.applications.appinfo.ExternalSourceDetailPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.InstantAppDomainsPreferenceController":
+                return new com.android.settings.applications.appinfo.InstantAppDomainsPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.TimeSpentInAppPreferenceController":
+                return new com.android.settings.applications.appinfo.TimeSpentInAppPreferenceController(context, key);
+            case "com.android.settings.applications.appinfo.WriteSystemSettingsPreferenceController":
+                return new com.android.settings.applications.appinfo.WriteSystemSettingsPreferenceController(context, key);
+            case "com.android.settings.applications.managedomainurls.DomainAppPreferenceController":
+                return new com.android.settings.applications.managedomainurls.DomainAppPreferenceController(context, key);
+            case "com.android.settings.applications.managedomainurls.InstantAppAccountPreferenceController":
+                return new com.android.settings.applications.managedomainurls.InstantAppAccountPreferenceController(context, key);
+            case "com.android.settings.applications.managedomainurls.InstantAppWebActionPreferenceController":
+                return new com.android.settings.applications.managedomainurls.InstantAppWebActionPreferenceController(context, key);
+            case "com.android.settings.applications.managedomainurls.WebActionCategoryController":
+                return new com.android.settings.applications.managedomainurls.WebActionCategoryController(context, key);
+            case "com.android.settings.applications.specialaccess.DataSaverController":
+                return new com.android.settings.applications.specialaccess.DataSaverController(context, key);
+            case "com.android.settings.applications.specialaccess.DefaultPaymentSettingsPreferenceController":
+                return new com.android.settings.applications.specialaccess.DefaultPaymentSettingsPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.HighPowerAppsController":
+                return new com.android.settings.applications.specialaccess.HighPowerAppsController(context, key);
+            case "com.android.settings.applications.specialaccess.MoreSpecialAccessPreferenceController":
+                return new com.android.settings.applications.specialaccess.MoreSpecialAccessPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.SystemAlertWindowPreferenceController":
+                return new com.android.settings.applications.specialaccess.SystemAlertWindowPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.deviceadmin.DeviceAdminListPreferenceController":
+                return new com.android.settings.applications.specialaccess.deviceadmin.DeviceAdminListPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessController":
+                return new com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessController(context, key);
+            case "com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessScreenPreferenceController":
+                return new com.android.settings.applications.specialaccess.notificationaccess.NotificationAccessScreenPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureController":
+                return new com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureController(context, key);
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureDetailPreferenceController":
+                return new com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureDetailPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureScreenPreferenceController":
+                return new com.android.settings.applications.specialaccess.pictureinpicture.PictureInPictureScreenPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.premiumsms.PremiumSmsController":
+                return new com.android.settings.applications.specialaccess.premiumsms.PremiumSmsController(context, key);
+            case "com.android.settings.applications.specialaccess.premiumsms.PremiumSmsScreenPreferenceController":
+                return new com.android.settings.applications.specialaccess.premiumsms.PremiumSmsScreenPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.vrlistener.EnabledVrListenersController":
+                return new com.android.settings.applications.specialaccess.vrlistener.EnabledVrListenersController(context, key);
+            case "com.android.settings.applications.specialaccess.vrlistener.VrListenerScreenPreferenceController":
+                return new com.android.settings.applications.specialaccess.vrlistener.VrListenerScreenPreferenceController(context, key);
+            case "com.android.settings.applications.specialaccess.zenaccess.ZenAccessController":
+                return new com.android.settings.applications.specialaccess.zenaccess.ZenAccessController(context, key);
+            case "com.android.settings.backup.AutoRestorePreferenceController":
+                return new com.android.settings.backup.AutoRestorePreferenceController(context, key);
+            case "com.android.settings.backup.BackupDataPreferenceController":
+                return new com.android.settings.backup.BackupDataPreferenceController(context, key);
+            case "com.android.settings.backup.BackupInactivePreferenceController":
+                return new com.android.settings.backup.BackupInactivePreferenceController(context, key);
+            case "com.android.settings.backup.ConfigureAccountPreferenceController":
+                return new com.android.settings.backup.ConfigureAccountPreferenceController(context, key);
+            case "com.android.settings.backup.DataManagementPreferenceController":
+                return new com.android.settings.backup.DataManagementPreferenceController(context, key);
+            case "com.android.settings.biometrics.face.FaceSettingsLockscreenBypassPreferenceController":
+                return new com.android.settings.biometrics.face.FaceSettingsLockscreenBypassPreferenceController(context, key);
+            case "com.android.settings.bluetooth.AdvancedBluetoothDetailsHeaderController":
+                return new com.android.settings.bluetooth.AdvancedBluetoothDetailsHeaderController(context, key);
+            case "com.android.settings.bluetooth.BluetoothDeviceRenamePreferenceController":
+                return new com.android.settings.bluetooth.BluetoothDeviceRenamePreferenceController(context, key);
+            case "com.android.settings.connecteddevice.AddDevicePreferenceController":
+                return new com.android.settings.connecteddevice.AddDevicePreferenceController(context, key);
+            case "com.android.settings.connecteddevice.AdvancedConnectedDeviceController":
+                return new com.android.settings.connecteddevice.AdvancedConnectedDeviceController(context, key);
+            case "com.android.settings.connecteddevice.PreviouslyConnectedDevicePreferenceController":
+                return new com.android.settings.connecteddevice.PreviouslyConnectedDevicePreferenceController(context, key);
+            case "com.android.settings.connecteddevice.TopLevelConnectedDevicesPreferenceController":
+                return new com.android.settings.connecteddevice.TopLevelConnectedDevicesPreferenceController(context, key);
+            case "com.android.settings.datausage.BillingCyclePreferenceController":
+                return new com.android.settings.datausage.BillingCyclePreferenceController(context, key);
+            case "com.android.settings.datausage.UnrestrictedDataAccessPreferenceController":
+                return new com.android.settings.datausage.UnrestrictedDataAccessPreferenceController(context, key);
+            case "com.android.settings.development.featureflags.FeatureFlagsPreferenceController":
+                return new com.android.settings.development.featureflags.FeatureFlagsPreferenceController(context, key);
+            case "com.android.settings.development.gamedriver.GameDriverAppPreferenceController":
+                return new com.android.settings.development.gamedriver.GameDriverAppPreferenceController(context, key);
+            case "com.android.settings.development.gamedriver.GameDriverEnableForAllAppsPreferenceController":
+                return new com.android.settings.development.gamedriver.GameDriverEnableForAllAppsPreferenceController(context, key);
+            case "com.android.settings.development.qstile.DevelopmentTilePreferenceController":
+                return new com.android.settings.development.qstile.DevelopmentTilePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.BrandedAccountPreferenceController":
+                return new com.android.settings.deviceinfo.BrandedAccountPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.BuildNumberPreferenceController":
+                return new com.android.settings.deviceinfo.BuildNumberPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.DeviceNamePreferenceController":
+                return new com.android.settings.deviceinfo.DeviceNamePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.HardwareInfoPreferenceController":
+                return new com.android.settings.deviceinfo.HardwareInfoPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.PhoneNumberPreferenceController":
+                return new com.android.settings.deviceinfo.PhoneNumberPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.TopLevelStoragePreferenceController":
+                return new com.android.settings.deviceinfo.TopLevelStoragePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.aboutphone.TopLevelAboutDevicePreferenceController":
+                return new com.android.settings.deviceinfo.aboutphone.TopLevelAboutDevicePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.BasebandVersionPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.BasebandVersionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.FirmwareVersionDetailPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.FirmwareVersionDetailPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.FirmwareVersionPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.FirmwareVersionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.KernelVersionPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.KernelVersionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.LineageApiVersionPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.LineageApiVersionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.LineageBuildDatePreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.LineageBuildDatePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.LineageVendorSecurityPatchLevelPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.LineageVendorSecurityPatchLevelPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.LineageVersionDetailPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.LineageVersionDetailPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.MainlineModuleVersionPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.MainlineModuleVersionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.SecurityPatchLevelPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.SecurityPatchLevelPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.firmwareversion.SimpleBuildNumberPreferenceController":
+                return new com.android.settings.deviceinfo.firmwareversion.SimpleBuildNumberPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.hardwareinfo.DeviceModelPreferenceController":
+                return new com.android.settings.deviceinfo.hardwareinfo.DeviceModelPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.hardwareinfo.HardwareRevisionPreferenceController":
+                return new com.android.settings.deviceinfo.hardwareinfo.HardwareRevisionPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.hardwareinfo.SerialNumberPreferenceController":
+                return new com.android.settings.deviceinfo.hardwareinfo.SerialNumberPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.imei.ImeiInfoPreferenceController":
+                return new com.android.settings.deviceinfo.imei.ImeiInfoPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.CopyrightPreferenceController":
+                return new com.android.settings.deviceinfo.legal.CopyrightPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.LicensePreferenceController":
+                return new com.android.settings.deviceinfo.legal.LicensePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.ModuleLicensesListPreferenceController":
+                return new com.android.settings.deviceinfo.legal.ModuleLicensesListPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.ModuleLicensesPreferenceController":
+                return new com.android.settings.deviceinfo.legal.ModuleLicensesPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.TermsPreferenceController":
+                return new com.android.settings.deviceinfo.legal.TermsPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.WallpaperAttributionsPreferenceController":
+                return new com.android.settings.deviceinfo.legal.WallpaperAttributionsPreferenceController(context, key);
+            case "com.android.settings.deviceinfo.legal.WebViewLicensePreferenceController":
+                return new com.android.settings.deviceinfo.legal.WebViewLicensePreferenceController(context, key);
+            case "com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController":
+                return new com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController(context, key);
+            case "com.android.settings.display.AdaptiveSleepDetailPreferenceController":
+                return new com.android.settings.display.AdaptiveSleepDetailPreferenceController(context, key);
+            case "com.android.settings.display.AdaptiveSleepPermissionPreferenceController":
+                return new com.android.settings.display.AdaptiveSleepPermissionPreferenceController(context, key);
+            case "com.android.settings.display.AdaptiveSleepPreferenceController":
+                return new com.android.settings.display.AdaptiveSleepPreferenceController(context, key);
+            case "com.android.settings.display.AmbientDisplayAlwaysOnPreferenceController":
+                return new com.android.settings.display.AmbientDisplayAlwaysOnPreferenceController(context, key);
+            case "com.android.settings.display.AmbientDisplayNotificationsPreferenceController":
+                return new com.android.settings.display.AmbientDisplayNotificationsPreferenceController(context, key);
+            case "com.android.settings.display.AutoBrightnessDetailPreferenceController":
+                return new com.android.settings.display.AutoBrightnessDetailPreferenceController(context, key);
+            case "com.android.settings.display.AutoBrightnessPreferenceController":
+                return new com.android.settings.display.AutoBrightnessPreferenceController(context, key);
+            case "com.android.settings.display.AutoRotatePreferenceController":
+                return new com.android.settings.display.AutoRotatePreferenceController(context, key);
+            case "com.android.settings.display.BatteryPercentagePreferenceController":
+                return new com.android.settings.display.BatteryPercentagePreferenceController(context, key);
+            case "com.android.settings.display.ColorModePreferenceController":
+                return new com.android.settings.display.ColorModePreferenceController(context, key);
+            case "com.android.settings.display.DarkUIPreferenceController":
+                return new com.android.settings.display.DarkUIPreferenceController(context, key);
+            case "com.android.settings.display.DisplayWhiteBalancePreferenceController":
+                return new com.android.settings.display.DisplayWhiteBalancePreferenceController(context, key);
+            case "com.android.settings.display.FontSizePreferenceController":
+                return new com.android.settings.display.FontSizePreferenceController(context, key);
+            case "com.android.settings.display.NightDisplayActivationPreferenceController":
+                return new com.android.settings.display.NightDisplayActivationPreferenceController(context, key);
+            case "com.android.settings.display.NightDisplayAutoModePreferenceController":
+                return new com.android.settings.display.NightDisplayAutoModePreferenceController(context, key);
+            case "com.android.settings.display.NightDisplayCustomEndTimePreferenceController":
+                return new com.android.settings.display.NightDisplayCustomEndTimePreferenceController(context, key);
+            case "com.android.settings.display.NightDisplayCustomStartTimePreferenceController":
+                return new com.android.settings.display.NightDisplayCustomStartTimePreferenceController(context, key);
+            case "com.android.settings.display.NightDisplayIntensityPreferenceController":
+                return new com.android.settings.display.NightDisplayIntensityPreferenceController(context, key);
+            case "com.android.settings.display.TopLevelDisplayPreferenceController":
+                return new com.android.settings.display.TopLevelDisplayPreferenceController(context, key);
+            case "com.android.settings.display.WallpaperPreferenceController":
+                return new com.android.settings.display.WallpaperPreferenceController(context, key);
+            case "com.android.settings.display.darkmode.DarkModeActivationPreferenceController":
+                return new com.android.settings.display.darkmode.DarkModeActivationPreferenceController(context, key);
+            case "com.android.settings.display.darkmode.DarkModeScheduleSelectorController":
+                return new com.android.settings.display.darkmode.DarkModeScheduleSelectorController(context, key);
+            case "com.android.settings.dream.CurrentDreamPreferenceController":
+                return new com.android.settings.dream.CurrentDreamPreferenceController(context, key);
+            case "com.android.settings.enterprise.ManageDeviceAdminPreferenceController":
+                return new com.android.settings.enterprise.ManageDeviceAdminPreferenceController(context, key);
+            case "com.android.settings.fuelgauge.BatteryHeaderPreferenceController":
+                return new com.android.settings.fuelgauge.BatteryHeaderPreferenceController(context, key);
+            case "com.android.settings.fuelgauge.TopLevelBatteryPreferenceController":
+                return new com.android.settings.fuelgauge.TopLevelBatteryPreferenceController(context, key);
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverButtonPreferenceController":
+                return new com.android.settings.fuelgauge.batterysaver.BatterySaverButtonPreferenceController(context, key);
+            case "com.android.settings.fuelgauge.batterysaver.BatterySaverStickyPreferenceController":
+                return new com.android.settings.fuelgauge.batterysaver.BatterySaverStickyPreferenceController(context, key);
+            case "com.android.settings.fuelgauge.batterytip.BatteryTipPreferenceController":
+                return new com.android.settings.fuelgauge.batterytip.BatteryTipPreferenceController(context, key);
+            case "com.android.settings.gestures.AssistGestureSettingsPreferenceController":
+                return new com.android.settings.gestures.AssistGestureSettingsPreferenceController(context, key);
+            case "com.android.settings.gestures.DoubleTapPowerPreferenceController":
+                return new com.android.settings.gestures.DoubleTapPowerPreferenceController(context, key);
+            case "com.android.settings.gestures.DoubleTapScreenPreferenceController":
+                return new com.android.settings.gestures.DoubleTapScreenPreferenceController(context, key);
+            case "com.android.settings.gestures.DoubleTwistPreferenceController":
+                return new com.android.settings.gestures.DoubleTwistPreferenceController(context, key);
+            case "com.android.settings.gestures.GlobalActionsPanelPreferenceController":
+                return new com.android.settings.gestures.GlobalActionsPanelPreferenceController(context, key);
+            case "com.android.settings.gestures.PickupGesturePreferenceController":
+                return new com.android.settings.gestures.PickupGesturePreferenceController(context, key);
+            case "com.android.settings.gestures.PreventRingingParentPreferenceController":
+                return new com.android.settings.gestures.PreventRingingParentPreferenceController(context, key);
+            case "com.android.settings.gestures.SwipeToNotificationPreferenceController":
+                return new com.android.settings.gestures.SwipeToNotificationPreferenceController(context, key);
+            case "com.android.settings.gestures.SystemNavigationPreferenceController":
+                return new com.android.settings.gestures.SystemNavigationPreferenceController(context, key);
+            case "com.android.settings.gestures.TapScreenGesturePreferenceController":
+                return new com.android.settings.gestures.TapScreenGesturePreferenceController(context, key);
+            case "com.android.settings.inputmethod.GameControllerPreferenceController":
+                return new com.android.settings.inputmethod.GameControllerPreferenceController(context, key);
+            case "com.android.settings.inputmethod.InputMethodAndSubtypePreferenceController":
+                return new com.android.settings.inputmethod.InputMethodAndSubtypePreferenceController(context, key);
+            case "com.android.settings.inputmethod.KeyboardLayoutPickerController":
+                return new com.android.settings.inputmethod.KeyboardLayoutPickerController(context, key);
+            case "com.android.settings.inputmethod.SpellCheckerForWorkPreferenceController":
+                return new com.android.settings.inputmethod.SpellCheckerForWorkPreferenceController(context, key);
+            case "com.android.settings.inputmethod.UserDictionaryListPreferenceController":
+                return new com.android.settings.inputmethod.UserDictionaryListPreferenceController(context, key);
+            case "com.android.settings.inputmethod.VirtualKeyboardForWorkPreferenceController":
+                return new com.android.settings.inputmethod.VirtualKeyboardForWorkPreferenceController(context, key);
+            case "com.android.settings.language.UserDictionaryForWorkPreferenceController":
+                return new com.android.settings.language.UserDictionaryForWorkPreferenceController(context, key);
+            case "com.android.settings.language.UserDictionaryPreferenceController":
+                return new com.android.settings.language.UserDictionaryPreferenceController(context, key);
+            case "com.android.settings.location.TopLevelLocationPreferenceController":
+                return new com.android.settings.location.TopLevelLocationPreferenceController(context, key);
+            case "com.android.settings.network.AirplaneModePreferenceController":
+                return new com.android.settings.network.AirplaneModePreferenceController(context, key);
+            case "com.android.settings.network.MultiNetworkHeaderController":
+                return new com.android.settings.network.MultiNetworkHeaderController(context, key);
+            case "com.android.settings.network.NetworkScorerPickerPreferenceController":
+                return new com.android.settings.network.NetworkScorerPickerPreferenceController(context, key);
+            case "com.android.settings.network.TopLevelNetworkEntryPreferenceController":
+                return new com.android.settings.network.TopLevelNetworkEntryPreferenceController(context, key);
+            case "com.android.settings.network.telephony.ApnPreferenceController":
+                return new com.android.settings.network.telephony.ApnPreferenceController(context, key);
+            case "com.android.settings.network.telephony.CallsDefaultSubscriptionController":
+                return new com.android.settings.network.telephony.CallsDefaultSubscriptionController(context, key);
+            case "com.android.settings.network.telephony.CarrierPreferenceController":
+                return new com.android.settings.network.telephony.CarrierPreferenceController(context, key);
+            case "com.android.settings.network.telephony.CarrierSettingsVersionPreferenceController":
+                return new com.android.settings.network.telephony.CarrierSettingsVersionPreferenceController(context, key);
+            case "com.android.settings.network.telephony.DataDuringCallsPreferenceController":
+                return new com.android.settings.network.telephony.DataDuringCallsPreferenceController(context, key);
+            case "com.android.settings.network.telephony.DataServiceSetupPreferenceController":
+                return new com.android.settings.network.telephony.DataServiceSetupPreferenceController(context, key);
+            case "com.android.settings.network.telephony.DataUsagePreferenceController":
+                return new com.android.settings.network.telephony.DataUsagePreferenceController(context, key);
+            case "com.android.settings.network.telephony.DeleteSimProfilePreferenceController":
+                return new com.android.settings.network.telephony.DeleteSimProfilePreferenceController(context, key);
+            case "com.android.settings.network.telephony.DisableSimFooterPreferenceController":
+                return new com.android.settings.network.telephony.DisableSimFooterPreferenceController(context, key);
+            case "com.android.settings.network.telephony.DisabledSubscriptionController":
+                return new com.android.settings.network.telephony.DisabledSubscriptionController(context, key);
+            case "com.android.settings.network.telephony.EnabledNetworkModePreferenceController":
+                return new com.android.settings.network.telephony.EnabledNetworkModePreferenceController(context, key);
+            case "com.android.settings.network.telephony.Enhanced4gLtePreferenceController":
+                return new com.android.settings.network.telephony.Enhanced4gLtePreferenceController(context, key);
+            case "com.android.settings.network.telephony.EuiccPreferenceController":
+                return new com.android.settings.network.telephony.EuiccPreferenceController(context, key);
+            case "com.android.settings.network.telephony.MmsMessagePreferenceController":
+                return new com.android.settings.network.telephony.MmsMessagePreferenceController(context, key);
+            case "com.android.settings.network.telephony.MobileDataPreferenceController":
+                return new com.android.settings.network.telephony.MobileDataPreferenceController(context, key);
+            case "com.android.settings.network.telephony.MobileNetworkSwitchController":
+                return new com.android.settings.network.telephony.MobileNetworkSwitchController(context, key);
+            case "com.android.settings.network.telephony.PreferredNetworkModePreferenceController":
+                return new com.android.settings.network.telephony.PreferredNetworkModePreferenceController(context, key);
+            case "com.android.settings.network.telephony.RoamingPreferenceController":
+                return new com.android.settings.network.telephony.RoamingPreferenceController(context, key);
+            case "com.android.settings.network.telephony.SmsDefaultSubscriptionController":
+                return new com.android.settings.network.telephony.SmsDefaultSubscriptionController(context, key);
+            case "com.android.settings.network.telephony.VideoCallingPreferenceController":
+                return new com.android.settings.network.telephony.VideoCallingPreferenceController(context, key);
+            case "com.android.settings.network.telephony.WifiCallingPreferenceController":
+                return new com.android.settings.network.telephony.WifiCallingPreferenceController(context, key);
+            case "com.android.settings.network.telephony.cdma.CdmaSubscriptionPreferenceController":
+                return new com.android.settings.network.telephony.cdma.CdmaSubscriptionPreferenceController(context, key);
+            case "com.android.settings.network.telephony.cdma.CdmaSystemSelectPreferenceController":
+                return new com.android.settings.network.telephony.cdma.CdmaSystemSelectPreferenceController(context, key);
+            case "com.android.settings.network.telephony.gsm.AutoSelectPreferenceController":
+                return new com.android.settings.network.telephony.gsm.AutoSelectPreferenceController(context, key);
+            case "com.android.settings.network.telephony.gsm.OpenNetworkSelectPagePreferenceController":
+                return new com.android.settings.network.telephony.gsm.OpenNetworkSelectPagePreferenceController(context, key);
+            case "com.android.settings.nfc.AndroidBeamPreferenceController":
+                return new com.android.settings.nfc.AndroidBeamPreferenceController(context, key);
+            case "com.android.settings.nfc.NfcForegroundPreferenceController":
+                return new com.android.settings.nfc.NfcForegroundPreferenceController(context, key);
+            case "com.android.settings.nfc.NfcPaymentPreferenceController":
+                return new com.android.settings.nfc.NfcPaymentPreferenceController(context, key);
+            case "com.android.settings.nfc.NfcPreferenceController":
+                return new com.android.settings.nfc.NfcPreferenceController(context, key);
+            case "com.android.settings.nfc.SecureNfcPreferenceController":
+                return new com.android.settings.nfc.SecureNfcPreferenceController(context, key);
+            case "com.android.settings.notification.AssistantCapabilityPreferenceController":
+                return new com.android.settings.notification.AssistantCapabilityPreferenceController(context, key);
+            case "com.android.settings.notification.BadgingNotificationPreferenceController":
+                return new com.android.settings.notification.BadgingNotificationPreferenceController(context, key);
+            case "com.android.settings.notification.CallVolumePreferenceController":
+                return new com.android.settings.notification.CallVolumePreferenceController(context, key);
+            case "com.android.settings.notification.LinkedVolumesPreferenceController":
+                return new com.android.settings.notification.LinkedVolumesPreferenceController(context, key);
+            case "com.android.settings.notification.NotificationAssistantPreferenceController":
+                return new com.android.settings.notification.NotificationAssistantPreferenceController(context, key);
+            case "com.android.settings.notification.PulseNotificationPreferenceController":
+                return new com.android.settings.notification.PulseNotificationPreferenceController(context, key);
+            case "com.android.settings.notification.RedactNotificationPreferenceController":
+                return new com.android.settings.notification.RedactNotificationPreferenceController(context, key);
+            case "com.android.settings.notification.RingVolumePreferenceController":
+                return new com.android.settings.notification.RingVolumePreferenceController(context, key);
+            case "com.android.settings.notification.SnoozeNotificationPreferenceController":
+                return new com.android.settings.notification.SnoozeNotificationPreferenceController(context, key);
+            case "com.android.settings.notification.VibrateWhenRingPreferenceController":
+                return new com.android.settings.notification.VibrateWhenRingPreferenceController(context, key);
+            case "com.android.settings.notification.ZenModePreferenceController":
+                return new com.android.settings.notification.ZenModePreferenceController(context, key);
+            case "com.android.settings.print.PrintJobMessagePreferenceController":
+                return new com.android.settings.print.PrintJobMessagePreferenceController(context, key);
+            case "com.android.settings.print.PrintJobPreferenceController":
+                return new com.android.settings.print.PrintJobPreferenceController(context, key);
+            case "com.android.settings.privacy.AccessibilityUsagePreferenceController":
+                return new com.android.settings.privacy.AccessibilityUsagePreferenceController(context, key);
+            case "com.android.settings.privacy.EnableContentCapturePreferenceController":
+                return new com.android.settings.privacy.EnableContentCapturePreferenceController(context, key);
+            case "com.android.settings.privacy.EnableContentCaptureWithServiceSettingsPreferenceController":
+                return new com.android.settings.privacy.EnableContentCaptureWithServiceSettingsPreferenceController(context, key);
+            case "com.android.settings.privacy.PermissionBarChartPreferenceController":
+                return new com.android.settings.privacy.PermissionBarChartPreferenceController(context, key);
+            case "com.android.settings.privacy.WorkPolicyInfoPreferenceController":
+                return new com.android.settings.privacy.WorkPolicyInfoPreferenceController(context, key);
+            case "com.android.settings.security.LockdownButtonPreferenceController":
+                return new com.android.settings.security.LockdownButtonPreferenceController(context, key);
+            case "com.android.settings.security.TopLevelSecurityEntryPreferenceController":
+                return new com.android.settings.security.TopLevelSecurityEntryPreferenceController(context, key);
+            case "com.android.settings.security.screenlock.LockScreenPreferenceController":
+                return new com.android.settings.security.screenlock.LockScreenPreferenceController(context, key);
+            case "com.android.settings.security.trustagent.TrustAgentsPreferenceController":
+                return new com.android.settings.security.trustagent.TrustAgentsPreferenceController(context, key);
+            case "com.android.settings.shortcut.CreateShortcutPreferenceController":
+                return new com.android.settings.shortcut.CreateShortcutPreferenceController(context, key);
+            case "com.android.settings.slices.BlockingSlicePrefController":
+                return new com.android.settings.slices.BlockingSlicePrefController(context, key);
+            case "com.android.settings.slices.SlicePreferenceController":
+                return new com.android.settings.slices.SlicePreferenceController(context, key);
+            case "com.android.settings.sound.HandsFreeProfileOutputPreferenceController":
+                return new com.android.settings.sound.HandsFreeProfileOutputPreferenceController(context, key);
+            case "com.android.settings.sound.MediaOutputPreferenceController":
+                return new com.android.settings.sound.MediaOutputPreferenceController(context, key);
+            case "com.android.settings.support.SupportPreferenceController":
+                return new com.android.settings.support.SupportPreferenceController(context, key);
+            case "com.android.settings.system.ResetPreferenceController":
+                return new com.android.settings.system.ResetPreferenceController(context, key);
+            case "com.android.settings.users.AddUserWhenLockedPreferenceController":
+                return new com.android.settings.users.AddUserWhenLockedPreferenceController(context, key);
+            case "com.android.settings.wallpaper.WallpaperTypePreferenceController":
+                return new com.android.settings.wallpaper.WallpaperTypePreferenceController(context, key);
+            case "com.android.settings.widget.PreferenceCategoryController":
+                return new com.android.settings.widget.PreferenceCategoryController(context, key);
+            case "com.android.settings.widget.VideoPreferenceController":
+                return new com.android.settings.widget.VideoPreferenceController(context, key);
+            case "com.android.settings.wifi.CellularFallbackPreferenceController":
+                return new com.android.settings.wifi.CellularFallbackPreferenceController(context, key);
+            case "com.android.settings.wifi.savedaccesspoints.SavedAccessPointsPreferenceController":
+                return new com.android.settings.wifi.savedaccesspoints.SavedAccessPointsPreferenceController(context, key);
+            case "com.android.settings.wifi.savedaccesspoints.SubscribedAccessPointsPreferenceController":
+                return new com.android.settings.wifi.savedaccesspoints.SubscribedAccessPointsPreferenceController(context, key);
+            default:
+                return null;
+        }
+    }
+}
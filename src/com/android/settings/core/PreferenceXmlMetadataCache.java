@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.annotation.XmlRes;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils.PreferenceMetadata;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process wide cache of the metadata parsed from preference xml, so the same xml is not parsed
+ * again by the screens, search indexing and slices.
+ *
+ * <p>The metadata is keyed by xml res id and is only kept for the current configuration, since the
+ * titles and summaries depend on it. Only the configuration changes resources depend on drop the
+ * metadata, not changes to the window bounds of an activity or to the assets sequence number.
+ */
+public class PreferenceXmlMetadataCache {
+
+    private static final String TAG = "PrefXmlMetadataCache";
+
+    // The configuration changes the resources referenced by the metadata can depend on.
+    private static final int RESOURCE_CONFIG_CHANGES = ActivityInfo.CONFIG_MCC
+            | ActivityInfo.CONFIG_MNC
+            | ActivityInfo.CONFIG_LOCALE
+            | ActivityInfo.CONFIG_TOUCHSCREEN
+            | ActivityInfo.CONFIG_KEYBOARD
+            | ActivityInfo.CONFIG_KEYBOARD_HIDDEN
+            | ActivityInfo.CONFIG_NAVIGATION
+            | ActivityInfo.CONFIG_ORIENTATION
+            | ActivityInfo.CONFIG_SCREEN_LAYOUT
+            | ActivityInfo.CONFIG_UI_MODE
+            | ActivityInfo.CONFIG_SCREEN_SIZE
+            | ActivityInfo.CONFIG_SMALLEST_SCREEN_SIZE
+            | ActivityInfo.CONFIG_DENSITY
+            | ActivityInfo.CONFIG_LAYOUT_DIRECTION
+            | ActivityInfo.CONFIG_COLOR_MODE
+            | ActivityInfo.CONFIG_FONT_SCALE;
+
+    private static PreferenceXmlMetadataCache sInstance;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final SparseArray<List<PreferenceMetadata>> mEntries = new SparseArray<>();
+    // The configuration the entries were parsed with.
+    @GuardedBy("mLock")
+    private Configuration mConfiguration;
+    @GuardedBy("mLock")
+    private int mParseCount;
+    @GuardedBy("mLock")
+    private int mHitCount;
+    @GuardedBy("mLock")
+    private long mParseTimeNanos;
+
+    public static synchronized PreferenceXmlMetadataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new PreferenceXmlMetadataCache();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PreferenceXmlMetadataCache() {
+    }
+
+    /** Returns the metadata of all the preferences in {@code xmlResId}. */
+    List<PreferenceMetadata> get(Context context, @XmlRes int xmlResId)
+            throws IOException, XmlPullParserException {
+        final Configuration configuration = context.getResources().getConfiguration();
+        if (configuration == null) {
+            // Can't tell what the metadata depends on.
+            return PreferenceXmlParserUtils.parseMetadata(context, xmlResId);
+        }
+        synchronized (mLock) {
+            if (isCurrentConfigurationLocked(configuration)) {
+                final List<PreferenceMetadata> metadata = mEntries.get(xmlResId);
+                if (metadata != null) {
+                    mHitCount++;
+                    return metadata;
+                }
+            }
+        }
+
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        final List<PreferenceMetadata> metadata = Collections.unmodifiableList(
+                PreferenceXmlParserUtils.parseMetadata(context, xmlResId));
+        final long parseTime = SystemClock.elapsedRealtimeNanos() - startTime;
+
+        synchronized (mLock) {
+            if (!isCurrentConfigurationLocked(configuration)) {
+                mEntries.clear();
+                mConfiguration = new Configuration(configuration);
+            }
+            mEntries.put(xmlResId, metadata);
+            mParseCount++;
+            mParseTimeNanos += parseTime;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Parsed " + xmlResId + " in " + parseTime / 1000 + "us, "
+                        + mParseCount + " parses, " + mHitCount + " hits, "
+                        + getTimeSavedMillisLocked() + "ms saved");
+            }
+        }
+        return metadata;
+    }
+
+    /** Returns how many times preference xml was parsed. */
+    public int getParseCount() {
+        synchronized (mLock) {
+            return mParseCount;
+        }
+    }
+
+    /** Returns how many times metadata was returned without parsing the xml. */
+    public int getHitCount() {
+        synchronized (mLock) {
+            return mHitCount;
+        }
+    }
+
+    /** Returns about how long parsing the xml again would have taken without this cache. */
+    public long getTimeSavedMillis() {
+        synchronized (mLock) {
+            return getTimeSavedMillisLocked();
+        }
+    }
+
+    /** Returns whether the entries can be used for resources with {@code configuration}. */
+    @GuardedBy("mLock")
+    private boolean isCurrentConfigurationLocked(Configuration configuration) {
+        return mConfiguration != null
+                && (mConfiguration.diff(configuration) & RESOURCE_CONFIG_CHANGES) == 0;
+    }
+
+    @GuardedBy("mLock")
+    private long getTimeSavedMillisLocked() {
+        if (mParseCount == 0) {
+            return 0;
+        }
+        return mParseTimeNanos / mParseCount * mHitCount / 1000000;
+    }
+}
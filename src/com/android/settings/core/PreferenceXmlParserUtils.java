@@ -170,6 +170,8 @@ public class PreferenceXmlParserUtils {
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
      *
+     * <p>The xml is only parsed once per configuration, see {@link PreferenceXmlMetadataCache}.
+     *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
      */
@@ -181,6 +183,25 @@ public class PreferenceXmlParserUtils {
             Log.d(TAG, xmlResId + " is invalid.");
             return metadata;
         }
+        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        for (PreferenceMetadata preference
+                : PreferenceXmlMetadataCache.getInstance().get(context, xmlResId)) {
+            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, preference.type)) {
+                continue;
+            }
+            metadata.add(preference.toBundle(flags));
+        }
+        return metadata;
+    }
+
+    /**
+     * Parses the metadata of all the preferences in preference xml, whatever metadata the callers
+     * need.
+     */
+    @NonNull
+    static List<PreferenceMetadata> parseMetadata(Context context, @XmlRes int xmlResId)
+            throws IOException, XmlPullParserException {
+        final List<PreferenceMetadata> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -189,70 +210,35 @@ public class PreferenceXmlParserUtils {
             // Parse next until start tag is found
         }
         final int outerDepth = parser.getDepth();
-        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
         do {
             if (type != XmlPullParser.START_TAG) {
                 continue;
             }
             final String nodeName = parser.getName();
-            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, nodeName)) {
-                continue;
-            }
             if (!SUPPORTED_PREF_TYPES.contains(nodeName) && !nodeName.endsWith("Preference")) {
                 continue;
             }
-            final Bundle preferenceMetadata = new Bundle();
             final AttributeSet attrs = Xml.asAttributeSet(parser);
 
             final TypedArray preferenceAttributes = context.obtainStyledAttributes(attrs,
                     R.styleable.Preference);
-            TypedArray preferenceScreenAttributes = null;
-            if (hasPrefScreenFlag) {
-                preferenceScreenAttributes = context.obtainStyledAttributes(
-                        attrs, R.styleable.PreferenceScreen);
-            }
-
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
-                preferenceMetadata.putString(METADATA_PREF_TYPE, nodeName);
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
-                preferenceMetadata.putString(METADATA_KEY, getKey(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
-                preferenceMetadata.putString(METADATA_CONTROLLER,
-                        getController(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
-                preferenceMetadata.putString(METADATA_TITLE, getTitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
-                preferenceMetadata.putString(METADATA_SUMMARY, getSummary(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
-                preferenceMetadata.putInt(METADATA_ICON, getIcon(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PLATFORM_SLICE_FLAG)) {
-                preferenceMetadata.putBoolean(METADATA_PLATFORM_SLICE_FLAG,
-                        getPlatformSlice(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
-                preferenceMetadata.putString(METADATA_KEYWORDS, getKeywords(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
-                preferenceMetadata.putBoolean(METADATA_SEARCHABLE,
-                        isSearchable(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND) && hasPrefScreenFlag) {
-                preferenceMetadata.putBoolean(METADATA_APPEND,
-                        isAppended(preferenceScreenAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
-                preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
-                        getUnavailableSliceSubtitle(preferenceAttributes));
-            }
-            metadata.add(preferenceMetadata);
+            final TypedArray preferenceScreenAttributes = context.obtainStyledAttributes(
+                    attrs, R.styleable.PreferenceScreen);
+
+            metadata.add(new PreferenceMetadata(nodeName,
+                    getKey(preferenceAttributes),
+                    getController(preferenceAttributes),
+                    getTitle(preferenceAttributes),
+                    getSummary(preferenceAttributes),
+                    getIcon(preferenceAttributes),
+                    getPlatformSlice(preferenceAttributes),
+                    getKeywords(preferenceAttributes),
+                    isSearchable(preferenceAttributes),
+                    isAppended(preferenceScreenAttributes),
+                    getUnavailableSliceSubtitle(preferenceAttributes)));
 
             preferenceAttributes.recycle();
+            preferenceScreenAttributes.recycle();
         } while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
                 && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth));
         parser.close();
@@ -339,4 +325,76 @@ public class PreferenceXmlParserUtils {
         return styledAttributes.getString(
                 R.styleable.Preference_unavailableSliceSubtitle);
     }
-}
\ No newline at end of file
+
+    /** All the metadata of a preference in preference xml. */
+    static final class PreferenceMetadata {
+        final String type;
+        final String key;
+        final String controller;
+        final String title;
+        final String summary;
+        final int icon;
+        final boolean platformSlice;
+        final String keywords;
+        final boolean searchable;
+        final boolean appended;
+        final String unavailableSliceSubtitle;
+
+        PreferenceMetadata(String type, String key, String controller, String title,
+                String summary, int icon, boolean platformSlice, String keywords,
+                boolean searchable, boolean appended, String unavailableSliceSubtitle) {
+            this.type = type;
+            this.key = key;
+            this.controller = controller;
+            this.title = title;
+            this.summary = summary;
+            this.icon = icon;
+            this.platformSlice = platformSlice;
+            this.keywords = keywords;
+            this.searchable = searchable;
+            this.appended = appended;
+            this.unavailableSliceSubtitle = unavailableSliceSubtitle;
+        }
+
+        /** Returns a new {@link Bundle} with the metadata requested by {@code flags}. */
+        Bundle toBundle(int flags) {
+            final Bundle preferenceMetadata = new Bundle();
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
+                preferenceMetadata.putString(METADATA_PREF_TYPE, type);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
+                preferenceMetadata.putString(METADATA_KEY, key);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
+                preferenceMetadata.putString(METADATA_CONTROLLER, controller);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
+                preferenceMetadata.putString(METADATA_TITLE, title);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
+                preferenceMetadata.putString(METADATA_SUMMARY, summary);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
+                preferenceMetadata.putInt(METADATA_ICON, icon);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PLATFORM_SLICE_FLAG)) {
+                preferenceMetadata.putBoolean(METADATA_PLATFORM_SLICE_FLAG, platformSlice);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
+                preferenceMetadata.putString(METADATA_KEYWORDS, keywords);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
+                preferenceMetadata.putBoolean(METADATA_SEARCHABLE, searchable);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND)
+                    && hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN)) {
+                preferenceMetadata.putBoolean(METADATA_APPEND, appended);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
+                preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
+                        unavailableSliceSubtitle);
+            }
+            return preferenceMetadata;
+        }
+    }
+}
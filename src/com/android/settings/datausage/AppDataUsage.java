@@ -243,8 +243,16 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
         if (mDataSaverBackend != null) {
             mDataSaverBackend.addListener(this);
         }
-        LoaderManager.getInstance(this).restartLoader(LOADER_APP_USAGE_DATA, null /* args */,
-                mUidDataCallbacks);
+        final List<NetworkCycleDataForUid> cachedData = mCycles != null
+                ? DataUsageCycleCache.getInstance().getAppUsage(mTemplate, mAppItem.key, mCycles)
+                : null;
+        if (cachedData != null) {
+            // This app was loaded for the same cycles recently, show them right away.
+            onUsageDataLoaded(cachedData);
+        } else {
+            LoaderManager.getInstance(this).restartLoader(LOADER_APP_USAGE_DATA,
+                    null /* args */, mUidDataCallbacks);
+        }
         updatePrefs();
     }
 
@@ -310,7 +318,7 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
 
     @VisibleForTesting
     UidDetailProvider getUidDetailProvider() {
-        return new UidDetailProvider(mContext);
+        return new SharedUidDetailProvider(mContext);
     }
 
     private void updatePrefs(boolean restrictBackground, boolean unrestrictData,
@@ -501,25 +509,11 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             @Override
             public void onLoadFinished(Loader<List<NetworkCycleDataForUid>> loader,
                     List<NetworkCycleDataForUid> data) {
-                mUsageData = data;
-                mCycleAdapter.updateCycleList(data);
-                if (mSelectedCycle > 0L) {
-                    final int numCycles = data.size();
-                    int position = 0;
-                    for (int i = 0; i < numCycles; i++) {
-                        final NetworkCycleDataForUid cycleData = data.get(i);
-                        if (cycleData.getEndTime() == mSelectedCycle) {
-                            position = i;
-                            break;
-                        }
-                    }
-                    if (position > 0) {
-                        mCycle.setSelection(position);
-                    }
-                    bindData(position);
-                } else {
-                    bindData(0 /* position */);
+                if (mCycles != null) {
+                    DataUsageCycleCache.getInstance().putAppUsage(mTemplate, mAppItem.key,
+                            mCycles, data);
                 }
+                onUsageDataLoaded(data);
             }
 
             @Override
@@ -527,6 +521,28 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             }
         };
 
+    private void onUsageDataLoaded(List<NetworkCycleDataForUid> data) {
+        mUsageData = data;
+        mCycleAdapter.updateCycleList(data);
+        if (mSelectedCycle > 0L) {
+            final int numCycles = data.size();
+            int position = 0;
+            for (int i = 0; i < numCycles; i++) {
+                final NetworkCycleDataForUid cycleData = data.get(i);
+                if (cycleData.getEndTime() == mSelectedCycle) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position > 0) {
+                mCycle.setSelection(position);
+            }
+            bindData(position);
+        } else {
+            bindData(0 /* position */);
+        }
+    }
+
     private final LoaderManager.LoaderCallbacks<ArraySet<Preference>> mAppPrefCallbacks =
         new LoaderManager.LoaderCallbacks<ArraySet<Preference>>() {
             @Override
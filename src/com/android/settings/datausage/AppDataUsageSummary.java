@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStats.Bucket;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data usage of the apps and users in a network cycle, collapsed and sorted the way
+ * {@link DataUsageList} shows them. Instances are not modified once created, so they can be
+ * built on a background thread and bound on the main thread.
+ */
+public class AppDataUsageSummary {
+    private final List<AppItem> mItems;
+    private final long mLargest;
+
+    private AppDataUsageSummary(List<AppItem> items, long largest) {
+        mItems = Collections.unmodifiableList(items);
+        mLargest = largest;
+    }
+
+    /**
+     * Returns the items to show, sorted by category and usage.
+     */
+    public List<AppItem> getItems() {
+        return mItems;
+    }
+
+    /**
+     * Returns the usage of the item using the most data, or 0 if there is no usage.
+     */
+    public long getLargest() {
+        return mLargest;
+    }
+
+    /**
+     * Sums the rx and tx bytes of all the buckets in {@code stats} per uid, and closes it.
+     */
+    public static SparseLongArray collectUsageByUid(NetworkStats stats) {
+        final SparseLongArray usageByUid = new SparseLongArray();
+        final Bucket bucket = new Bucket();
+        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+            final int uid = bucket.getUid();
+            usageByUid.put(uid, usageByUid.get(uid) + bucket.getRxBytes() + bucket.getTxBytes());
+        }
+        stats.close();
+        return usageByUid;
+    }
+
+    /**
+     * Collapses the usage of each uid into the items shown in the list.
+     *
+     * @param usageByUid     bytes used by each uid, see {@link #collectUsageByUid(NetworkStats)}.
+     * @param restrictedUids uids with background data restricted.
+     * @param currentUserId  the user the list is shown to.
+     * @param profileIds     ids of the profiles of the current user, including itself.
+     * @param userManager    used to tell other users from removed ones.
+     */
+    public static AppDataUsageSummary create(SparseLongArray usageByUid, int[] restrictedUids,
+            int currentUserId, SparseBooleanArray profileIds, UserManager userManager) {
+        final ArrayList<AppItem> items = new ArrayList<>();
+        final SparseArray<AppItem> knownItems = new SparseArray<>();
+        // Whether each user not in profileIds still exists, looked up once per user.
+        final SparseBooleanArray existingUsers = new SparseBooleanArray();
+        long largest = 0;
+
+        for (int i = 0, size = usageByUid.size(); i < size; i++) {
+            // Decide how to collapse items together
+            final int uid = usageByUid.keyAt(i);
+            final long usage = usageByUid.valueAt(i);
+            final int collapseKey;
+            final int category;
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid)) {
+                if (profileIds.get(userId)) {
+                    if (userId != currentUserId) {
+                        // Add to a managed user item.
+                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
+                        largest = accumulate(managedKey, knownItems, uid, usage,
+                                AppItem.CATEGORY_USER, items, largest);
+                    }
+                    // Add to app item.
+                    collapseKey = uid;
+                    category = AppItem.CATEGORY_APP;
+                } else {
+                    final int index = existingUsers.indexOfKey(userId);
+                    final boolean exists;
+                    if (index >= 0) {
+                        exists = existingUsers.valueAt(index);
+                    } else {
+                        exists = userManager.getUserInfo(userId) != null;
+                        existingUsers.put(userId, exists);
+                    }
+                    if (!exists) {
+                        // If it is a removed user add it to the removed users' key
+                        collapseKey = UID_REMOVED;
+                        category = AppItem.CATEGORY_APP;
+                    } else {
+                        // Add to other user item.
+                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
+                        category = AppItem.CATEGORY_USER;
+                    }
+                }
+            } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                    || uid == Process.OTA_UPDATE_UID) {
+                collapseKey = uid;
+                category = AppItem.CATEGORY_APP;
+            } else {
+                collapseKey = Process.SYSTEM_UID;
+                category = AppItem.CATEGORY_APP;
+            }
+            largest = accumulate(collapseKey, knownItems, uid, usage, category, items, largest);
+        }
+
+        for (int i = 0; i < restrictedUids.length; ++i) {
+            final int uid = restrictedUids[i];
+            // Only splice in restricted state for current user or managed users
+            if (!profileIds.get(UserHandle.getUserId(uid))) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        Collections.sort(items);
+        return new AppDataUsageSummary(items, largest);
+    }
+
+    /**
+     * Accumulate data usage of a uid for the item mapped by the collapse key.
+     * Creates the item if needed.
+     */
+    private static long accumulate(int collapseKey, SparseArray<AppItem> knownItems, int uid,
+            long usage, int itemCategory, ArrayList<AppItem> items, long largest) {
+        AppItem item = knownItems.get(collapseKey);
+        if (item == null) {
+            item = new AppItem(collapseKey);
+            item.category = itemCategory;
+            items.add(item);
+            knownItems.put(item.key, item);
+        }
+        item.addUid(uid);
+        item.total += usage;
+        return Math.max(largest, item.total);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import android.app.ActivityManager;
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.os.RemoteException;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.utils.AsyncLoaderCompat;
+
+import java.util.List;
+
+/**
+ * Loads the data usage of a network cycle and aggregates it into an {@link AppDataUsageSummary},
+ * so the main thread only binds the result. The usage is shared through
+ * {@link DataUsageCycleCache}, so going back to a cycle doesn't query it again.
+ */
+public class AppDataUsageSummaryLoader extends AsyncLoaderCompat<AppDataUsageSummary> {
+    private static final String TAG = "AppDataUsageSummaryLdr";
+
+    private final NetworkStatsManager mNetworkStatsManager;
+    private final NetworkPolicyManager mPolicyManager;
+    private final UserManager mUserManager;
+    private final NetworkTemplate mTemplate;
+    private final long mStart;
+    private final long mEnd;
+
+    public AppDataUsageSummaryLoader(Context context, NetworkPolicyManager policyManager,
+            NetworkTemplate template, long start, long end) {
+        super(context);
+        mNetworkStatsManager = context.getSystemService(NetworkStatsManager.class);
+        mUserManager = context.getSystemService(UserManager.class);
+        mPolicyManager = policyManager;
+        mTemplate = template;
+        mStart = start;
+        mEnd = end;
+    }
+
+    @Override
+    public AppDataUsageSummary loadInBackground() {
+        final DataUsageCycleCache cache = DataUsageCycleCache.getInstance();
+        SparseLongArray usageByUid = cache.getUsageByUid(mTemplate, mStart, mEnd);
+        if (usageByUid == null) {
+            final NetworkStats stats;
+            try {
+                stats = mNetworkStatsManager.querySummary(mTemplate, mStart, mEnd);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Exception querying network detail.", e);
+                return null;
+            }
+            if (stats == null) {
+                return null;
+            }
+            usageByUid = AppDataUsageSummary.collectUsageByUid(stats);
+            cache.putUsageByUid(mTemplate, mStart, mEnd, usageByUid);
+        }
+        // Restrictions can change at any time, so they are not cached with the usage.
+        final int[] restrictedUids =
+                mPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND);
+
+        final List<UserHandle> profiles = mUserManager.getUserProfiles();
+        final SparseBooleanArray profileIds = new SparseBooleanArray(profiles.size());
+        for (int i = 0, size = profiles.size(); i < size; i++) {
+            profileIds.put(profiles.get(i).getIdentifier(), true);
+        }
+        return AppDataUsageSummary.create(usageByUid, restrictedUids,
+                ActivityManager.getCurrentUser(), profileIds, mUserManager);
+    }
+
+    @Override
+    protected void onDiscardResult(AppDataUsageSummary result) {
+    }
+}
@@ -13,6 +13,9 @@
  */
 package com.android.settings.datausage;
 
+import static android.net.NetworkPolicyManager.POLICY_ALLOW_METERED_BACKGROUND;
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
 import com.android.settings.applications.AppStateBaseBridge;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
@@ -37,15 +40,19 @@ public class AppStateDataUsageBridge extends AppStateBaseBridge {
         final int N = apps.size();
         for (int i = 0; i < N; i++) {
             AppEntry app = apps.get(i);
-            app.extraInfo = new DataUsageState(mDataSaverBackend.isWhitelisted(app.info.uid),
-                    mDataSaverBackend.isBlacklisted(app.info.uid));
+            app.extraInfo = getDataUsageState(app.info.uid);
         }
     }
 
     @Override
     protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
-        app.extraInfo = new DataUsageState(mDataSaverBackend.isWhitelisted(uid),
-                mDataSaverBackend.isBlacklisted(uid));
+        app.extraInfo = getDataUsageState(uid);
+    }
+
+    private DataUsageState getDataUsageState(int uid) {
+        final int policy = mDataSaverBackend.getUidPolicy(uid);
+        return new DataUsageState(policy == POLICY_ALLOW_METERED_BACKGROUND,
+                policy == POLICY_REJECT_METERED_BACKGROUND);
     }
 
     public static class DataUsageState {
@@ -23,7 +23,6 @@ import android.content.Context;
 import android.net.INetworkPolicyListener;
 import android.net.NetworkPolicyManager;
 import android.os.RemoteException;
-import android.util.SparseIntArray;
 
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
@@ -39,22 +38,22 @@ public class DataSaverBackend {
     private final MetricsFeatureProvider mMetricsFeatureProvider;
 
     private final NetworkPolicyManager mPolicyManager;
+    private final UidPolicySnapshot mUidPolicies;
     private final ArrayList<Listener> mListeners = new ArrayList<>();
-    private SparseIntArray mUidPolicies = new SparseIntArray();
-    private boolean mWhitelistInitialized;
-    private boolean mBlacklistInitialized;
 
     // TODO: Staticize into only one.
     public DataSaverBackend(Context context) {
         mContext = context;
         mMetricsFeatureProvider = FeatureFactory.getFactory(context).getMetricsFeatureProvider();
         mPolicyManager = NetworkPolicyManager.from(context);
+        mUidPolicies = UidPolicySnapshot.getInstance(context);
     }
 
     public void addListener(Listener listener) {
         mListeners.add(listener);
         if (mListeners.size() == 1) {
             mPolicyManager.registerListener(mPolicyListener);
+            mUidPolicies.addCallback(mUidPolicyCallback);
         }
         listener.onDataSaverChanged(isDataSaverEnabled());
     }
@@ -63,6 +62,7 @@ public class DataSaverBackend {
         mListeners.remove(listener);
         if (mListeners.size() == 0) {
             mPolicyManager.unregisterListener(mPolicyListener);
+            mUidPolicies.removeCallback(mUidPolicyCallback);
         }
     }
 
@@ -76,13 +76,17 @@ public class DataSaverBackend {
                 mContext, SettingsEnums.ACTION_DATA_SAVER_MODE, enabled ? 1 : 0);
     }
 
+    /**
+     * Loads the uid policies if they have not been loaded in this process yet. Once loaded they
+     * are kept up to date, so this doesn't reload them.
+     */
     public void refreshWhitelist() {
-        loadWhitelist();
+        mUidPolicies.ensureLoaded();
     }
 
     public void setIsWhitelisted(int uid, String packageName, boolean whitelisted) {
         final int policy = whitelisted ? POLICY_ALLOW_METERED_BACKGROUND : POLICY_NONE;
-        mUidPolicies.put(uid, policy);
+        mUidPolicies.setPolicy(uid, policy);
         if (whitelisted) {
             mPolicyManager.addUidPolicy(uid, POLICY_ALLOW_METERED_BACKGROUND);
             mMetricsFeatureProvider.action(
@@ -94,28 +98,19 @@ public class DataSaverBackend {
     }
 
     public boolean isWhitelisted(int uid) {
-        loadWhitelist();
-        return mUidPolicies.get(uid, POLICY_NONE) == POLICY_ALLOW_METERED_BACKGROUND;
-    }
-
-    private void loadWhitelist() {
-        if (mWhitelistInitialized) {
-            return;
-        }
-
-        for (int uid : mPolicyManager.getUidsWithPolicy(POLICY_ALLOW_METERED_BACKGROUND)) {
-            mUidPolicies.put(uid, POLICY_ALLOW_METERED_BACKGROUND);
-        }
-        mWhitelistInitialized = true;
+        return mUidPolicies.getPolicy(uid) == POLICY_ALLOW_METERED_BACKGROUND;
     }
 
+    /**
+     * See {@link #refreshWhitelist()}.
+     */
     public void refreshBlacklist() {
-        loadBlacklist();
+        mUidPolicies.ensureLoaded();
     }
 
     public void setIsBlacklisted(int uid, String packageName, boolean blacklisted) {
         final int policy = blacklisted ? POLICY_REJECT_METERED_BACKGROUND : POLICY_NONE;
-        mUidPolicies.put(uid, policy);
+        mUidPolicies.setPolicy(uid, policy);
         if (blacklisted) {
             mPolicyManager.addUidPolicy(uid, POLICY_REJECT_METERED_BACKGROUND);
             mMetricsFeatureProvider.action(
@@ -127,18 +122,17 @@ public class DataSaverBackend {
     }
 
     public boolean isBlacklisted(int uid) {
-        loadBlacklist();
-        return mUidPolicies.get(uid, POLICY_NONE) == POLICY_REJECT_METERED_BACKGROUND;
+        return mUidPolicies.getPolicy(uid) == POLICY_REJECT_METERED_BACKGROUND;
     }
 
-    private void loadBlacklist() {
-        if (mBlacklistInitialized) {
-            return;
-        }
-        for (int uid : mPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND)) {
-            mUidPolicies.put(uid, POLICY_REJECT_METERED_BACKGROUND);
-        }
-        mBlacklistInitialized = true;
+    /**
+     * Returns the metered background policy of {@code uid}, either
+     * {@link NetworkPolicyManager#POLICY_NONE},
+     * {@link NetworkPolicyManager#POLICY_ALLOW_METERED_BACKGROUND} or
+     * {@link NetworkPolicyManager#POLICY_REJECT_METERED_BACKGROUND}.
+     */
+    public int getUidPolicy(int uid) {
+        return mUidPolicies.getPolicy(uid);
     }
 
     private void handleRestrictBackgroundChanged(boolean isDataSaving) {
@@ -159,20 +153,7 @@ public class DataSaverBackend {
         }
     }
 
-    private void handleUidPoliciesChanged(int uid, int newPolicy) {
-        loadWhitelist();
-        loadBlacklist();
-
-        // We only care about allow/reject metered background policy here.
-        newPolicy &= POLICY_ALLOW_METERED_BACKGROUND | POLICY_REJECT_METERED_BACKGROUND;
-
-        final int oldPolicy = mUidPolicies.get(uid, POLICY_NONE);
-        if (newPolicy == POLICY_NONE) {
-            mUidPolicies.delete(uid);
-        } else {
-            mUidPolicies.put(uid, newPolicy);
-        }
-
+    private final UidPolicySnapshot.Callback mUidPolicyCallback = (uid, oldPolicy, newPolicy) -> {
         final boolean wasWhitelisted = oldPolicy == POLICY_ALLOW_METERED_BACKGROUND;
         final boolean wasBlacklisted = oldPolicy == POLICY_REJECT_METERED_BACKGROUND;
         final boolean isWhitelisted = newPolicy == POLICY_ALLOW_METERED_BACKGROUND;
@@ -185,8 +166,7 @@ public class DataSaverBackend {
         if (wasBlacklisted != isBlacklisted) {
             handleBlacklistChanged(uid, isBlacklisted);
         }
-
-    }
+    };
 
     private final INetworkPolicyListener mPolicyListener = new INetworkPolicyListener.Stub() {
         @Override
@@ -195,7 +175,7 @@ public class DataSaverBackend {
 
         @Override
         public void onUidPoliciesChanged(final int uid, final int uidPolicies) {
-            ThreadUtils.postOnMainThread(() -> handleUidPoliciesChanged(uid, uidPolicies));
+            // Handled by UidPolicySnapshot, which reports the changes in batches.
         }
 
         @Override
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.net.NetworkTemplate;
+import android.util.ArrayMap;
+import android.util.LruCache;
+import android.util.Pair;
+import android.util.RecurrenceRule;
+import android.util.SparseLongArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.net.DataUsageController.DataUsageInfo;
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide cache of the data usage of network cycles, shared by {@link DataUsageList},
+ * {@link AppDataUsage} and {@link DataUsageSummaryPreferenceController}.
+ *
+ * <p>Usage of a cycle that had already ended when it was loaded doesn't change anymore and is
+ * kept until it is evicted by more recently used cycles or apps. Usage of the current cycle is
+ * kept for {@link #CURRENT_CYCLE_TTL_MS}.
+ */
+public class DataUsageCycleCache {
+    @VisibleForTesting
+    static final long CURRENT_CYCLE_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+    // A year of monthly cycles, for a couple of templates.
+    @VisibleForTesting
+    static final int MAX_USAGE_BY_UID_CYCLES = 24;
+    @VisibleForTesting
+    static final int MAX_APP_USAGES = 32;
+
+    private static DataUsageCycleCache sInstance;
+
+    private final LongSupplier mClock;
+    // Bytes used by each uid in a cycle, for the app list.
+    private final LruCache<CycleKey, Entry<SparseLongArray>> mUsageByUid =
+            new LruCache<>(MAX_USAGE_BY_UID_CYCLES);
+    // Usage of an app item in the cycles it was loaded for, by template and app key.
+    private final LruCache<Pair<NetworkTemplate, Integer>, Entry<AppUsage>> mAppUsage =
+            new LruCache<>(MAX_APP_USAGES);
+    private final ArrayMap<Pair<NetworkTemplate, RecurrenceRule>, Entry<DataUsageInfo>>
+            mDataUsageInfos = new ArrayMap<>();
+
+    public static synchronized DataUsageCycleCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new DataUsageCycleCache(System::currentTimeMillis);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    DataUsageCycleCache(LongSupplier clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Returns the bytes used by each uid between {@code start} and {@code end}, or {@code null}
+     * if not cached. The returned array must not be modified.
+     */
+    public synchronized SparseLongArray getUsageByUid(NetworkTemplate template, long start,
+            long end) {
+        final CycleKey key = new CycleKey(template, start, end);
+        final Entry<SparseLongArray> entry = mUsageByUid.get(key);
+        if (isExpired(entry)) {
+            mUsageByUid.remove(key);
+            return null;
+        }
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized void putUsageByUid(NetworkTemplate template, long start, long end,
+            SparseLongArray usageByUid) {
+        mUsageByUid.put(new CycleKey(template, start, end),
+                new Entry<>(usageByUid, end, mClock.getAsLong()));
+    }
+
+    /**
+     * Returns the usage of the app item with {@code appKey} in each cycle with usage, the same
+     * way {@link com.android.settingslib.net.NetworkCycleDataForUidLoader} loads them, or
+     * {@code null} if it was not cached for the same cycles.
+     *
+     * @param cycles the end of the latest cycle followed by the start of each cycle.
+     */
+    public synchronized List<NetworkCycleDataForUid> getAppUsage(NetworkTemplate template,
+            int appKey, List<Long> cycles) {
+        final Pair<NetworkTemplate, Integer> key = Pair.create(template, appKey);
+        final Entry<AppUsage> entry = mAppUsage.get(key);
+        if (isExpired(entry)) {
+            mAppUsage.remove(key);
+            return null;
+        }
+        if (entry == null || !entry.value.cycles.equals(cycles)) {
+            return null;
+        }
+        return new ArrayList<>(entry.value.data);
+    }
+
+    /**
+     * Caches the usage of the app item with {@code appKey} loaded for {@code cycles}, replacing
+     * what was cached for other cycles.
+     */
+    public synchronized void putAppUsage(NetworkTemplate template, int appKey,
+            List<Long> cycles, List<NetworkCycleDataForUid> data) {
+        // The first cycle is the latest, the usage is final once it has ended.
+        final long end = cycles.isEmpty() ? 0 : cycles.get(0);
+        mAppUsage.put(Pair.create(template, appKey),
+                new Entry<>(new AppUsage(cycles, data), end, mClock.getAsLong()));
+    }
+
+    /**
+     * Returns a copy of the usage info of the current cycle of {@code template}, or {@code null}
+     * if it is not cached or was cached for a different cycle rule. Callers apply the policy
+     * limits to the info they get, so they never share it.
+     */
+    public synchronized DataUsageInfo getDataUsageInfo(NetworkTemplate template,
+            RecurrenceRule cycleRule) {
+        final Pair<NetworkTemplate, RecurrenceRule> key = Pair.create(template, cycleRule);
+        final Entry<DataUsageInfo> entry = mDataUsageInfos.get(key);
+        if (isExpired(entry)) {
+            mDataUsageInfos.remove(key);
+            return null;
+        }
+        return entry != null ? copyOf(entry.value) : null;
+    }
+
+    public synchronized void putDataUsageInfo(NetworkTemplate template, RecurrenceRule cycleRule,
+            DataUsageInfo info) {
+        mDataUsageInfos.put(Pair.create(template, cycleRule),
+                new Entry<>(copyOf(info), info.cycleEnd, mClock.getAsLong()));
+    }
+
+    public synchronized void clear() {
+        mUsageByUid.evictAll();
+        mAppUsage.evictAll();
+        mDataUsageInfos.clear();
+    }
+
+    private static DataUsageInfo copyOf(DataUsageInfo info) {
+        final DataUsageInfo copy = new DataUsageInfo();
+        copy.carrier = info.carrier;
+        copy.period = info.period;
+        copy.startDate = info.startDate;
+        copy.limitLevel = info.limitLevel;
+        copy.warningLevel = info.warningLevel;
+        copy.usageLevel = info.usageLevel;
+        copy.cycleStart = info.cycleStart;
+        copy.cycleEnd = info.cycleEnd;
+        return copy;
+    }
+
+    private boolean isExpired(Entry<?> entry) {
+        return entry != null && entry.loadedTime < entry.cycleEnd
+                && mClock.getAsLong() - entry.loadedTime >= CURRENT_CYCLE_TTL_MS;
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long cycleEnd;
+        final long loadedTime;
+
+        Entry(V value, long cycleEnd, long loadedTime) {
+            this.value = value;
+            this.cycleEnd = cycleEnd;
+            this.loadedTime = loadedTime;
+        }
+    }
+
+    private static class AppUsage {
+        final List<Long> cycles;
+        // Only the cycles with usage, like NetworkCycleDataForUidLoader returns them.
+        final List<NetworkCycleDataForUid> data;
+
+        AppUsage(List<Long> cycles, List<NetworkCycleDataForUid> data) {
+            this.cycles = new ArrayList<>(cycles);
+            this.data = new ArrayList<>(data);
+        }
+    }
+
+    private static class CycleKey {
+        final NetworkTemplate template;
+        final long start;
+        final long end;
+
+        CycleKey(NetworkTemplate template, long start, long end) {
+            this.template = template;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CycleKey)) {
+                return false;
+            }
+            final CycleKey other = (CycleKey) o;
+            return start == other.start && end == other.end
+                    && Objects.equals(template, other.template);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(template, start, end);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.android.settings.datausage;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.net.NetworkPolicy;
 import android.net.NetworkPolicyManager;
 import android.net.NetworkTemplate;
 import android.telephony.SubscriptionInfo;
@@ -65,6 +66,7 @@ public class DataUsageSummaryPreferenceController extends BasePreferenceControll
     private final Lifecycle mLifecycle;
     private final PreferenceFragmentCompat mFragment;
     protected final DataUsageController mDataUsageController;
+    private final DataUsageCycleCache mCycleCache;
     protected final DataUsageInfoController mDataInfoController;
     private final NetworkTemplate mDefaultTemplate;
     protected final NetworkPolicyEditor mPolicyEditor;
@@ -119,6 +121,7 @@ public class DataUsageSummaryPreferenceController extends BasePreferenceControll
 
         mDataUsageController = new DataUsageController(activity);
         mDataUsageController.setSubscriptionId(mSubscriptionId);
+        mCycleCache = DataUsageCycleCache.getInstance();
         mDataInfoController = new DataUsageInfoController();
 
         if (mHasMobileData) {
@@ -149,6 +152,7 @@ public class DataUsageSummaryPreferenceController extends BasePreferenceControll
             int subscriptionId) {
         super(activity, KEY);
         mDataUsageController = dataUsageController;
+        mCycleCache = new DataUsageCycleCache(System::currentTimeMillis);
         mDataInfoController = dataInfoController;
         mDefaultTemplate = defaultTemplate;
         mPolicyEditor = policyEditor;
@@ -197,13 +201,14 @@ public class DataUsageSummaryPreferenceController extends BasePreferenceControll
 
         final DataUsageController.DataUsageInfo info;
         if (DataUsageUtils.hasSim(mActivity)) {
-            info = mDataUsageController.getDataUsageInfo(mDefaultTemplate);
-            mDataInfoController.updateDataLimit(info, mPolicyEditor.getPolicy(mDefaultTemplate));
+            final NetworkPolicy policy = mPolicyEditor.getPolicy(mDefaultTemplate);
+            info = getDataUsageInfo(mDefaultTemplate, policy != null ? policy.cycleRule : null);
+            mDataInfoController.updateDataLimit(info, policy);
             summaryPreference.setWifiMode(/* isWifiMode */ false,
                     /* usagePeriod */ null, /* isSingleWifi */ false);
         } else {
-            info = mDataUsageController.getDataUsageInfo(
-                    NetworkTemplate.buildTemplateWifiWildcard());
+            info = getDataUsageInfo(NetworkTemplate.buildTemplateWifiWildcard(),
+                    null /* cycleRule */);
             summaryPreference.setWifiMode(/* isWifiMode */ true, /* usagePeriod */
                     info.period, /* isSingleWifi */ false);
             summaryPreference.setLimitInfo(null);
@@ -254,6 +259,18 @@ public class DataUsageSummaryPreferenceController extends BasePreferenceControll
                 mDataplanCount, mManageSubscriptionIntent);
     }
 
+    private DataUsageController.DataUsageInfo getDataUsageInfo(NetworkTemplate template,
+            RecurrenceRule cycleRule) {
+        DataUsageController.DataUsageInfo info = mCycleCache.getDataUsageInfo(template, cycleRule);
+        if (info == null) {
+            info = mDataUsageController.getDataUsageInfo(template);
+            if (info != null) {
+                mCycleCache.putDataUsageInfo(template, cycleRule, info);
+            }
+        }
+        return info;
+    }
+
     // TODO(b/70950124) add test for this method once the robolectric shadow run script is
     // completed (b/3526807)
     private void refreshDataplanInfo(DataUsageController.DataUsageInfo info) {
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+
+import com.android.settings.utils.UidDetailCache;
+import com.android.settingslib.net.UidDetail;
+import com.android.settingslib.net.UidDetailProvider;
+
+/**
+ * {@link UidDetailProvider} that shares the labels and icons of apps through the process wide
+ * {@link UidDetailCache}, so apps already resolved by another screen, such as battery usage,
+ * are shown without loading them again.
+ */
+public class SharedUidDetailProvider extends UidDetailProvider {
+    private final PackageManager mPackageManager;
+    private final UidDetailCache mSharedCache;
+
+    public SharedUidDetailProvider(Context context) {
+        super(context);
+        mPackageManager = context.getPackageManager();
+        mSharedCache = UidDetailCache.getInstance();
+    }
+
+    @Override
+    public UidDetail getUidDetail(int uid, boolean blocking) {
+        if (!isShared(uid)) {
+            return super.getUidDetail(uid, blocking);
+        }
+        final UidDetailCache.Entry entry = mSharedCache.get(uid);
+        if (entry != null) {
+            final UidDetail detail = new UidDetail();
+            detail.label = entry.label;
+            detail.contentDescription = entry.label;
+            detail.icon = entry.getIcon();
+            return detail;
+        }
+
+        final UidDetail detail = super.getUidDetail(uid, blocking);
+        if (detail != null && detail.label != null) {
+            final String[] packages = mPackageManager.getPackagesForUid(uid);
+            final String packageName =
+                    packages != null && packages.length == 1 ? packages[0] : null;
+            mSharedCache.put(uid,
+                    new UidDetailCache.Entry(detail.label.toString(), packageName, detail.icon));
+        }
+        return detail;
+    }
+
+    private static boolean isShared(int uid) {
+        // Apps of the current user have no work badge on their icon, same as in battery usage.
+        return UserHandle.isApp(uid) && UserHandle.getUserId(uid) == UserHandle.myUserId();
+    }
+}
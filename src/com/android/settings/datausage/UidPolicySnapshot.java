@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_ALLOW_METERED_BACKGROUND;
+import static android.net.NetworkPolicyManager.POLICY_NONE;
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import android.content.Context;
+import android.net.INetworkPolicyListener;
+import android.net.NetworkPolicyManager;
+import android.util.SparseIntArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+
+/**
+ * Process wide snapshot of the metered background policy of every uid, loaded once and then
+ * kept up to date from {@link INetworkPolicyListener#onUidPoliciesChanged(int, int)}, so screens
+ * listing apps don't have to fetch the policies again.
+ *
+ * <p>Changes are delivered to {@link Callback}s on the main thread in batches: all the changes
+ * received before the main thread gets to them are reported together, once per uid.
+ */
+class UidPolicySnapshot {
+
+    private static final int POLICY_MASK =
+            POLICY_ALLOW_METERED_BACKGROUND | POLICY_REJECT_METERED_BACKGROUND;
+
+    private static UidPolicySnapshot sInstance;
+
+    private final NetworkPolicyManager mPolicyManager;
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final SparseIntArray mUidPolicies = new SparseIntArray();
+    // Policy of each changed uid before its first change not yet reported.
+    @GuardedBy("mLock")
+    private SparseIntArray mPendingChanges = new SparseIntArray();
+    @GuardedBy("mLock")
+    private boolean mLoaded;
+    // Only accessed on the main thread.
+    private final ArrayList<Callback> mCallbacks = new ArrayList<>();
+
+    static synchronized UidPolicySnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new UidPolicySnapshot(
+                    NetworkPolicyManager.from(context.getApplicationContext()));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void setInstance(UidPolicySnapshot snapshot) {
+        sInstance = snapshot;
+    }
+
+    @VisibleForTesting
+    UidPolicySnapshot(NetworkPolicyManager policyManager) {
+        mPolicyManager = policyManager;
+    }
+
+    /**
+     * Returns the metered background policy of {@code uid}, loading the policies of all uids if
+     * this is the first call in the process.
+     */
+    int getPolicy(int uid) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            return mUidPolicies.get(uid, POLICY_NONE);
+        }
+    }
+
+    /**
+     * Records a policy set by Settings itself and reports it to the callbacks, so every screen
+     * showing the uid is updated, not only the one that set it. The system reports the policy
+     * back later, which is dropped as it doesn't change anything.
+     */
+    void setPolicy(int uid, int policy) {
+        ensureLoaded();
+        handleUidPoliciesChanged(uid, policy);
+    }
+
+    void ensureLoaded() {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+        }
+    }
+
+    void addCallback(Callback callback) {
+        mCallbacks.add(callback);
+    }
+
+    void removeCallback(Callback callback) {
+        mCallbacks.remove(callback);
+    }
+
+    @GuardedBy("mLock")
+    private void ensureLoadedLocked() {
+        if (mLoaded) {
+            return;
+        }
+        // Registered for the life of the process so the snapshot never goes stale.
+        mPolicyManager.registerListener(mPolicyListener);
+        for (int uid : mPolicyManager.getUidsWithPolicy(POLICY_ALLOW_METERED_BACKGROUND)) {
+            mUidPolicies.put(uid, POLICY_ALLOW_METERED_BACKGROUND);
+        }
+        for (int uid : mPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND)) {
+            mUidPolicies.put(uid, POLICY_REJECT_METERED_BACKGROUND);
+        }
+        mLoaded = true;
+    }
+
+    @GuardedBy("mLock")
+    private void putPolicyLocked(int uid, int policy) {
+        if (policy == POLICY_NONE) {
+            mUidPolicies.delete(uid);
+        } else {
+            mUidPolicies.put(uid, policy);
+        }
+    }
+
+    @VisibleForTesting
+    void handleUidPoliciesChanged(int uid, int uidPolicies) {
+        // We only care about allow/reject metered background policy here.
+        final int newPolicy = uidPolicies & POLICY_MASK;
+        final boolean scheduleFlush;
+        synchronized (mLock) {
+            if (!mLoaded) {
+                return;
+            }
+            final int oldPolicy = mUidPolicies.get(uid, POLICY_NONE);
+            if (oldPolicy == newPolicy) {
+                return;
+            }
+            scheduleFlush = mPendingChanges.size() == 0;
+            if (mPendingChanges.indexOfKey(uid) < 0) {
+                mPendingChanges.put(uid, oldPolicy);
+            }
+            putPolicyLocked(uid, newPolicy);
+        }
+        if (scheduleFlush) {
+            ThreadUtils.postOnMainThread(this::flushPendingChanges);
+        }
+    }
+
+    @VisibleForTesting
+    void flushPendingChanges() {
+        final SparseIntArray changes;
+        synchronized (mLock) {
+            changes = mPendingChanges;
+            mPendingChanges = new SparseIntArray();
+        }
+        for (int i = 0, size = changes.size(); i < size; i++) {
+            final int uid = changes.keyAt(i);
+            final int oldPolicy = changes.valueAt(i);
+            final int newPolicy = getPolicy(uid);
+            if (oldPolicy == newPolicy) {
+                continue;
+            }
+            for (int j = 0; j < mCallbacks.size(); j++) {
+                mCallbacks.get(j).onUidPolicyChanged(uid, oldPolicy, newPolicy);
+            }
+        }
+    }
+
+    private final INetworkPolicyListener mPolicyListener = new INetworkPolicyListener.Stub() {
+        @Override
+        public void onUidRulesChanged(int uid, int uidRules) {
+        }
+
+        @Override
+        public void onUidPoliciesChanged(final int uid, final int uidPolicies) {
+            handleUidPoliciesChanged(uid, uidPolicies);
+        }
+
+        @Override
+        public void onMeteredIfacesChanged(String[] strings) {
+        }
+
+        @Override
+        public void onRestrictBackgroundChanged(boolean isDataSaving) {
+        }
+
+        @Override
+        public void onSubscriptionOverride(int subId, int overrideMask, int overrideValue) {
+        }
+    };
+
+    interface Callback {
+        void onUidPolicyChanged(int uid, int oldPolicy, int newPolicy);
+    }
+}
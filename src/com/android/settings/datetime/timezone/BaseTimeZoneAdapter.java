@@ -16,8 +16,6 @@
 
 package com.android.settings.datetime.timezone;
 
-import android.icu.text.BreakIterator;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -34,6 +32,7 @@ import com.android.settings.R;
 import com.android.settings.datetime.timezone.BaseTimeZonePicker.OnListItemClickListener;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Locale;
 
@@ -57,13 +56,28 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
 
     private List<T> mItems;
     private ArrayFilter mFilter;
+    // Only accessed by the filter thread once created.
+    private TimeZoneSearchIndex mSearchIndex;
 
     /**
      * @param headerText the text shown in the header, or null to show no header.
      */
     public BaseTimeZoneAdapter(List<T> items, OnListItemClickListener<T> onListItemClickListener,
             Locale locale, boolean showItemSummary, @Nullable CharSequence headerText) {
+        this(items, onListItemClickListener, locale, showItemSummary, headerText,
+                null /* searchIndex */);
+    }
+
+    /**
+     * @param headerText the text shown in the header, or null to show no header.
+     * @param searchIndex the index of the search keys of {@code items}, or null to build it when
+     *                    the items are first filtered.
+     */
+    public BaseTimeZoneAdapter(List<T> items, OnListItemClickListener<T> onListItemClickListener,
+            Locale locale, boolean showItemSummary, @Nullable CharSequence headerText,
+            @Nullable TimeZoneSearchIndex searchIndex) {
         mOriginalItems = items;
+        mSearchIndex = searchIndex;
         mItems = items;
         mOnListItemClickListener = onListItemClickListener;
         mLocale = locale;
@@ -225,47 +239,26 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
      * a prefix. Each item that does not start with the supplied prefix
      * is removed from the list.</p>
      *
-     * The filtering operation is not optimized, due to small data size (~260 regions),
-     * require additional pre-processing. Potentially, a trie structure can be used to match
-     * prefixes of the search keys.
+     * The search keys are indexed by {@link TimeZoneSearchIndex}, so they are only split into
+     * words once rather than on every keystroke.
      */
     @VisibleForTesting
     public class ArrayFilter extends Filter {
 
-        private BreakIterator mBreakIterator = BreakIterator.getWordInstance(mLocale);
-
         @WorkerThread
         @Override
         protected FilterResults performFiltering(CharSequence prefix) {
+            if (mSearchIndex == null) {
+                mSearchIndex = TimeZoneSearchIndex.create(mOriginalItems, mLocale);
+            }
+            final BitSet positions = mSearchIndex.search(prefix);
             final List<T> newItems;
-            if (TextUtils.isEmpty(prefix)) {
+            if (positions == null) {
                 newItems = mOriginalItems;
             } else {
-                final String prefixString = prefix.toString().toLowerCase(mLocale);
-                newItems = new ArrayList<>();
-
-                for (T item : mOriginalItems) {
-                    outer:
-                    for (String searchKey : item.getSearchKeys()) {
-                        searchKey = searchKey.toLowerCase(mLocale);
-                        // First match against the whole, non-splitted value
-                        if (searchKey.startsWith(prefixString)) {
-                            newItems.add(item);
-                            break outer;
-                        } else {
-                            mBreakIterator.setText(searchKey);
-                            for (int wordStart = 0, wordLimit = mBreakIterator.next();
-                                    wordLimit != BreakIterator.DONE;
-                                    wordStart = wordLimit,
-                                            wordLimit = mBreakIterator.next()) {
-                                if (mBreakIterator.getRuleStatus() != BreakIterator.WORD_NONE
-                                        && searchKey.startsWith(prefixString, wordStart)) {
-                                    newItems.add(item);
-                                    break outer;
-                                }
-                            }
-                        }
-                    }
+                newItems = new ArrayList<>(positions.cardinality());
+                for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                    newItems.add(mOriginalItems.get(i));
                 }
             }
 
@@ -50,16 +50,15 @@ public class FixedOffsetPicker extends BaseTimeZoneInfoPicker {
 
     @Override
     public List<TimeZoneInfo> getAllTimeZoneInfos(TimeZoneData timeZoneData) {
-        return loadFixedOffsets();
+        return TimeZonePickerModel.getInstance(timeZoneData, getLocale()).getFixedOffsets();
     }
 
     /**
      * Returns a {@link TimeZoneInfo} for each fixed offset time zone, such as UTC or GMT+4. The
      * returned list will be sorted in a reasonable way for display.
      */
-    private List<TimeZoneInfo> loadFixedOffsets() {
-        final TimeZoneInfo.Formatter formatter = new TimeZoneInfo.Formatter(getLocale(),
-                new Date());
+    static List<TimeZoneInfo> loadFixedOffsets(Locale locale) {
+        final TimeZoneInfo.Formatter formatter = new TimeZoneInfo.Formatter(locale, new Date());
         final List<TimeZoneInfo> timeZoneInfos = new ArrayList<>();
         timeZoneInfos.add(formatter.format(TimeZone.getFrozenTimeZone("Etc/UTC")));
         for (int hoursOffset = MAX_HOURS_OFFSET; hoursOffset >= MIN_HOURS_OFFSET; --hoursOffset) {
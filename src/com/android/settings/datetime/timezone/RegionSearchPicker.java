@@ -35,6 +35,7 @@ import com.android.settings.datetime.timezone.model.TimeZoneData;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -60,9 +61,11 @@ public class RegionSearchPicker extends BaseTimeZonePicker {
     @Override
     protected BaseTimeZoneAdapter createAdapter(TimeZoneData timeZoneData) {
         mTimeZoneData = timeZoneData;
-        mAdapter = new BaseTimeZoneAdapter<>(createAdapterItem(timeZoneData.getRegionIds()),
+        final TimeZonePickerModel model =
+                TimeZonePickerModel.getInstance(timeZoneData, getLocale());
+        mAdapter = new BaseTimeZoneAdapter<>(model.getRegionItems(),
                 this::onListItemClick, getLocale(), false /* showItemSummary */,
-                    null /* headerText */);
+                    null /* headerText */, model.getRegionSearchIndex());
         return mAdapter;
     }
 
@@ -110,10 +113,10 @@ public class RegionSearchPicker extends BaseTimeZonePicker {
         }
     }
 
-    private List<RegionItem> createAdapterItem(Set<String> regionIds) {
-        final Collator collator = Collator.getInstance(getLocale());
+    static List<RegionItem> createRegionItems(Set<String> regionIds, Locale locale) {
+        final Collator collator = Collator.getInstance(locale);
         final TreeSet<RegionItem> items = new TreeSet<>(new RegionInfoComparator(collator));
-        final LocaleDisplayNames localeDisplayNames = LocaleDisplayNames.getInstance(getLocale());
+        final LocaleDisplayNames localeDisplayNames = LocaleDisplayNames.getInstance(locale);
         long i = 0;
         for (String regionId : regionIds) {
             String name = localeDisplayNames.regionDisplayName(regionId);
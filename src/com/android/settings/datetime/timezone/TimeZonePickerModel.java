@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import android.content.Context;
+
+import com.android.settings.datetime.timezone.RegionSearchPicker.RegionItem;
+import com.android.settings.datetime.timezone.model.TimeZoneData;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Localized lists shown by the time zone pickers, with the search index of the regions.
+ *
+ * <p>The model of the last used locale is kept for the life of the process. It is built on a
+ * background thread when Date & time is opened, so the pickers don't sort and index the regions
+ * when they are shown.
+ */
+public class TimeZonePickerModel {
+
+    private static TimeZonePickerModel sInstance;
+
+    private final TimeZoneData mTimeZoneData;
+    private final Locale mLocale;
+    private final List<RegionItem> mRegionItems;
+    private final TimeZoneSearchIndex mRegionSearchIndex;
+    private final List<TimeZoneInfo> mFixedOffsets;
+
+    /**
+     * Returns the model of {@code timeZoneData} in {@code locale}. It may build the model, so it
+     * should not be called from the UI thread unless the model was preloaded.
+     */
+    public static synchronized TimeZonePickerModel getInstance(TimeZoneData timeZoneData,
+            Locale locale) {
+        if (sInstance == null || sInstance.mTimeZoneData != timeZoneData
+                || !sInstance.mLocale.equals(locale)) {
+            sInstance = new TimeZonePickerModel(timeZoneData, locale);
+        }
+        return sInstance;
+    }
+
+    /** Builds the model of the locale of {@code context} on a background thread. */
+    public static void preload(Context context) {
+        final Locale locale = context.getResources().getConfiguration().getLocales().get(0);
+        ThreadUtils.postOnBackgroundThread(
+                () -> getInstance(TimeZoneData.getInstance(), locale));
+    }
+
+    private TimeZonePickerModel(TimeZoneData timeZoneData, Locale locale) {
+        mTimeZoneData = timeZoneData;
+        mLocale = locale;
+        mRegionItems = Collections.unmodifiableList(
+                RegionSearchPicker.createRegionItems(timeZoneData.getRegionIds(), locale));
+        mRegionSearchIndex = TimeZoneSearchIndex.create(mRegionItems, locale);
+        mFixedOffsets = FixedOffsetPicker.loadFixedOffsets(locale);
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    public List<RegionItem> getRegionItems() {
+        return mRegionItems;
+    }
+
+    public TimeZoneSearchIndex getRegionSearchIndex() {
+        return mRegionSearchIndex;
+    }
+
+    /**
+     * Returns the fixed offset time zones, which don't observe daylight saving time and so can be
+     * formatted once.
+     */
+    public List<TimeZoneInfo> getFixedOffsets() {
+        return mFixedOffsets;
+    }
+}
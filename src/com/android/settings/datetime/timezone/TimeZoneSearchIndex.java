@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import android.icu.text.BreakIterator;
+import android.text.TextUtils;
+
+import com.android.settings.datetime.timezone.BaseTimeZoneAdapter.AdapterItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable prefix index of the search keys of a list of {@link AdapterItem}s.
+ *
+ * <p>An item matches a prefix if one of its search keys, lower cased in the locale, starts with
+ * the prefix, either from its beginning or from the beginning of one of its words. The keys are
+ * lower cased and split into words once, and the resulting suffixes are kept sorted, so a search
+ * is a binary search followed by a scan of the matching suffixes.
+ */
+public class TimeZoneSearchIndex {
+    private final Locale mLocale;
+    // Sorted suffixes of the search keys, and the position of the item of each suffix.
+    private final String[] mTokens;
+    private final int[] mPositions;
+
+    public static TimeZoneSearchIndex create(List<? extends AdapterItem> items, Locale locale) {
+        final List<String[]> searchKeys = new ArrayList<>(items.size());
+        for (AdapterItem item : items) {
+            searchKeys.add(item.getSearchKeys());
+        }
+        return new TimeZoneSearchIndex(searchKeys, locale);
+    }
+
+    /**
+     * @param searchKeys the search keys of each item, in the order of the items.
+     */
+    public TimeZoneSearchIndex(List<String[]> searchKeys, Locale locale) {
+        mLocale = locale;
+        final BreakIterator breakIterator = BreakIterator.getWordInstance(locale);
+        final List<Token> tokens = new ArrayList<>();
+        for (int position = 0, size = searchKeys.size(); position < size; position++) {
+            for (String searchKey : searchKeys.get(position)) {
+                if (searchKey == null) {
+                    continue;
+                }
+                final String foldedKey = searchKey.toLowerCase(locale);
+                tokens.add(new Token(foldedKey, position));
+                breakIterator.setText(foldedKey);
+                for (int wordStart = 0, wordLimit = breakIterator.next();
+                        wordLimit != BreakIterator.DONE;
+                        wordStart = wordLimit, wordLimit = breakIterator.next()) {
+                    if (wordStart > 0
+                            && breakIterator.getRuleStatus() != BreakIterator.WORD_NONE) {
+                        tokens.add(new Token(foldedKey.substring(wordStart), position));
+                    }
+                }
+            }
+        }
+        final Token[] sortedTokens = tokens.toArray(new Token[0]);
+        Arrays.sort(sortedTokens, (t1, t2) -> t1.text.compareTo(t2.text));
+        mTokens = new String[sortedTokens.length];
+        mPositions = new int[sortedTokens.length];
+        for (int i = 0; i < sortedTokens.length; i++) {
+            mTokens[i] = sortedTokens[i].text;
+            mPositions[i] = sortedTokens[i].position;
+        }
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Returns the positions of the items matching {@code prefix}, or {@code null} if the prefix
+     * is empty and every item matches.
+     */
+    public BitSet search(CharSequence prefix) {
+        if (TextUtils.isEmpty(prefix)) {
+            return null;
+        }
+        final String foldedPrefix = prefix.toString().toLowerCase(mLocale);
+        final BitSet positions = new BitSet();
+        int index = Arrays.binarySearch(mTokens, foldedPrefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < mTokens.length && mTokens[index].startsWith(foldedPrefix); index++) {
+            positions.set(mPositions[index]);
+        }
+        return positions;
+    }
+
+    private static class Token {
+        final String text;
+        final int position;
+
+        Token(String text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+    }
+}
@@ -22,7 +22,6 @@ import libcore.timezone.CountryTimeZones;
 import libcore.timezone.CountryZonesFinder;
 import libcore.timezone.TimeZoneFinder;
 
-import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -37,19 +36,17 @@ import java.util.Set;
  */
 public class TimeZoneData {
 
-    private static WeakReference<TimeZoneData> sCache = null;
+    // Kept for the life of the process, the underlying data only changes with a time zone update.
+    private static TimeZoneData sInstance;
 
     private final CountryZonesFinder mCountryZonesFinder;
     private final Set<String> mRegionIds;
 
     public static synchronized TimeZoneData getInstance() {
-        TimeZoneData data = sCache == null ? null : sCache.get();
-        if (data != null) {
-            return data;
+        if (sInstance == null) {
+            sInstance = new TimeZoneData(TimeZoneFinder.getInstance().getCountryZonesFinder());
         }
-        data = new TimeZoneData(TimeZoneFinder.getInstance().getCountryZonesFinder());
-        sCache = new WeakReference<>(data);
-        return data;
+        return sInstance;
     }
 
     @VisibleForTesting
@@ -39,6 +39,7 @@ import com.android.settings.Utils;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchPreferenceController;
 import com.android.settings.deviceinfo.storage.CachedStorageValuesHelper;
+import com.android.settings.deviceinfo.storage.PackageSizeCache;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
@@ -253,10 +254,29 @@ public class StorageDashboardFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.AppsStorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, context.getSystemService(UserManager.class),
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context,
+                context.getSystemService(UserManager.class),
                 mVolume.fsUuid,
                 new StorageStatsSource(context),
-                context.getPackageManager());
+                context.getPackageManager(),
+                PackageSizeCache.getInstance(context));
+        loader.setProgressListener(this::onAppsProgress);
+        return loader;
+    }
+
+    @VisibleForTesting
+    void onAppsProgress(SparseArray<StorageAsyncLoader.AppsStorageResult> result) {
+        // Sizes from an earlier load or from the cache are more accurate than partial ones.
+        // The category sizes are relative to the volume size.
+        if (mAppsResult != null || mStorageInfo == null
+                || result.get(UserHandle.myUserId()) == null) {
+            return;
+        }
+        mPreferenceController.onLoadFinished(result, UserHandle.myUserId());
+        updateSecondaryUserControllers(mSecondaryUsers, result);
+        if (getView().findViewById(R.id.loading_container).getVisibility() == View.VISIBLE) {
+            setLoading(false, true);
+        }
     }
 
     @Override
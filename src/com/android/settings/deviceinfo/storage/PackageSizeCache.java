@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide cache of the storage stats of each package of each user, persisted across
+ * processes so {@link StorageAsyncLoader} only queries the packages that changed.
+ *
+ * <p>An entry is used for the package version it was loaded for and is dropped when the package
+ * is added, changed, removed or has its data cleared. Broadcasts can't cover everything though:
+ * apps grow their data and cache without any, and broadcasts sent while Settings wasn't running
+ * are missed. So entries also expire after the clobber threshold, the same age up to which the
+ * storage screens already show the totals kept by {@link CachedStorageValuesHelper}.
+ */
+public class PackageSizeCache {
+    private static final String TAG = "PackageSizeCache";
+    private static final String FILE_NAME = "package_sizes";
+    private static final int FILE_VERSION = 1;
+
+    private static PackageSizeCache sInstance;
+
+    private final AtomicFile mFile;
+    private final LongSupplier mClock;
+    private final long mMaxAgeMs;
+    private final Object mLock = new Object();
+    // Entries of each user, by package name.
+    @GuardedBy("mLock")
+    private final SparseArray<ArrayMap<String, Entry>> mEntries = new SparseArray<>();
+    // Packages invalidated before the entries were read from disk.
+    @GuardedBy("mLock")
+    private final ArraySet<String> mPendingInvalidations = new ArraySet<>();
+    @GuardedBy("mLock")
+    private boolean mLoaded;
+    @GuardedBy("mLock")
+    private boolean mDirty;
+
+    public static synchronized PackageSizeCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new PackageSizeCache(new File(appContext.getCacheDir(), FILE_NAME),
+                    System::currentTimeMillis,
+                    Settings.Global.getLong(appContext.getContentResolver(),
+                            Settings.Global.STORAGE_SETTINGS_CLOBBER_THRESHOLD,
+                            TimeUnit.MINUTES.toMillis(5)));
+            sInstance.registerPackageReceiver(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PackageSizeCache(File file, LongSupplier clock, long maxAgeMs) {
+        mFile = new AtomicFile(file);
+        mClock = clock;
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Returns the stats of {@code packageName} for {@code userId} on the volume {@code uuid} if
+     * they were loaded for {@code versionCode} and are still valid, otherwise {@code null}.
+     */
+    public Entry get(String uuid, int userId, String packageName, long versionCode) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            final ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            final Entry entry = userEntries != null ? userEntries.get(packageName) : null;
+            if (entry == null || entry.versionCode != versionCode
+                    || !Objects.equals(entry.uuid, uuid)) {
+                return null;
+            }
+            final long age = mClock.getAsLong() - entry.loadedTime;
+            if (age < 0 || age >= mMaxAgeMs) {
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    public void put(int userId, String packageName, Entry entry) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            if (userEntries == null) {
+                userEntries = new ArrayMap<>();
+                mEntries.put(userId, userEntries);
+            }
+            userEntries.put(packageName, entry);
+            mDirty = true;
+        }
+    }
+
+    /**
+     * Drops the entries of {@code packageName} for every user. If the entries were not read from
+     * disk yet, they are dropped once read, so this never reads the file on the calling thread.
+     */
+    public void invalidate(String packageName) {
+        synchronized (mLock) {
+            if (!mLoaded) {
+                mPendingInvalidations.add(packageName);
+                return;
+            }
+            invalidateLocked(packageName);
+        }
+    }
+
+    /** Drops the entries of the packages of {@code userId} not in {@code installedPackages}. */
+    public void retainPackages(int userId, Collection<String> installedPackages) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            final ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+            if (userEntries != null && userEntries.retainAll(installedPackages)) {
+                mDirty = true;
+            }
+        }
+    }
+
+    /** Drops the entries of the users not in {@code userIds}. */
+    public void retainUsers(Collection<Integer> userIds) {
+        synchronized (mLock) {
+            ensureLoadedLocked();
+            for (int i = mEntries.size() - 1; i >= 0; i--) {
+                if (!userIds.contains(mEntries.keyAt(i))) {
+                    mEntries.removeAt(i);
+                    mDirty = true;
+                }
+            }
+        }
+    }
+
+    /** Writes the entries to disk if they changed. Must not be called on the main thread. */
+    public void save() {
+        synchronized (mLock) {
+            if (!mDirty) {
+                return;
+            }
+            FileOutputStream fos = null;
+            try {
+                fos = mFile.startWrite();
+                final DataOutputStream out = new DataOutputStream(fos);
+                out.writeInt(FILE_VERSION);
+                int count = 0;
+                for (int i = 0, size = mEntries.size(); i < size; i++) {
+                    count += mEntries.valueAt(i).size();
+                }
+                out.writeInt(count);
+                for (int i = 0, size = mEntries.size(); i < size; i++) {
+                    final int userId = mEntries.keyAt(i);
+                    final ArrayMap<String, Entry> userEntries = mEntries.valueAt(i);
+                    for (int j = 0, entryCount = userEntries.size(); j < entryCount; j++) {
+                        final Entry entry = userEntries.valueAt(j);
+                        out.writeInt(userId);
+                        out.writeUTF(userEntries.keyAt(j));
+                        out.writeUTF(entry.uuid != null ? entry.uuid : "");
+                        out.writeLong(entry.versionCode);
+                        out.writeLong(entry.codeBytes);
+                        out.writeLong(entry.dataBytes);
+                        out.writeLong(entry.cacheBytes);
+                        out.writeLong(entry.cacheQuotaBytes);
+                        out.writeLong(entry.loadedTime);
+                    }
+                }
+                out.flush();
+                mFile.finishWrite(fos);
+                mDirty = false;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write package sizes", e);
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void invalidateLocked(String packageName) {
+        for (int i = 0, size = mEntries.size(); i < size; i++) {
+            if (mEntries.valueAt(i).remove(packageName) != null) {
+                mDirty = true;
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void ensureLoadedLocked() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        readLocked();
+        for (int i = 0, size = mPendingInvalidations.size(); i < size; i++) {
+            invalidateLocked(mPendingInvalidations.valueAt(i));
+        }
+        mPendingInvalidations.clear();
+    }
+
+    @GuardedBy("mLock")
+    private void readLocked() {
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != FILE_VERSION) {
+                return;
+            }
+            for (int i = 0, count = in.readInt(); i < count; i++) {
+                final int userId = in.readInt();
+                final String packageName = in.readUTF();
+                final String uuid = in.readUTF();
+                final Entry entry = new Entry(uuid.isEmpty() ? null : uuid,
+                        in.readLong() /* versionCode */,
+                        in.readLong() /* codeBytes */, in.readLong() /* dataBytes */,
+                        in.readLong() /* cacheBytes */, in.readLong() /* cacheQuotaBytes */,
+                        in.readLong() /* loadedTime */);
+                ArrayMap<String, Entry> userEntries = mEntries.get(userId);
+                if (userEntries == null) {
+                    userEntries = new ArrayMap<>();
+                    mEntries.put(userId, userEntries);
+                }
+                userEntries.put(packageName, entry);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing cached yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read package sizes", e);
+            mEntries.clear();
+        }
+    }
+
+    private void registerPackageReceiver(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_DATA_CLEARED);
+        filter.addDataScheme("package");
+        // Registered for the life of the process so the cache never goes stale.
+        context.registerReceiverAsUser(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                final Uri data = intent.getData();
+                if (data != null) {
+                    invalidate(data.getSchemeSpecificPart());
+                }
+            }
+        }, UserHandle.ALL, filter, null /* permission */, null /* scheduler */);
+    }
+
+    /**
+     * Storage stats of a package for a user, as returned by
+     * {@link com.android.settingslib.applications.StorageStatsSource}.
+     */
+    public static class Entry {
+        public final String uuid;
+        public final long versionCode;
+        public final long codeBytes;
+        public final long dataBytes;
+        public final long cacheBytes;
+        public final long cacheQuotaBytes;
+        public final long loadedTime;
+
+        public Entry(String uuid, long versionCode, long codeBytes, long dataBytes,
+                long cacheBytes, long cacheQuotaBytes, long loadedTime) {
+            this.uuid = uuid;
+            this.versionCode = versionCode;
+            this.codeBytes = codeBytes;
+            this.dataBytes = dataBytes;
+            this.cacheBytes = cacheBytes;
+            this.cacheQuotaBytes = cacheQuotaBytes;
+            this.loadedTime = loadedTime;
+        }
+    }
+}
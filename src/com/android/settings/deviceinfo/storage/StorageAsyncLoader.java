@@ -32,13 +32,22 @@ import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.GuardedBy;
+
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -48,19 +57,56 @@ public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.AppsStorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    // Users are loaded in parallel, but each one already makes a binder call per package.
+    private static final int MAX_PARALLEL_USERS = 3;
+    // Number of apps sized before the first partial result of a user, and between two of them.
+    private static final int PROGRESS_INTERVAL = 32;
+
+    private static final ThreadPoolExecutor sUserExecutor = new ThreadPoolExecutor(
+            MAX_PARALLEL_USERS, MAX_PARALLEL_USERS, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "StorageAsyncLoader"));
+
+    static {
+        sUserExecutor.allowCoreThreadTimeOut(true);
+    }
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    private final PackageSizeCache mSizeCache;
+    private ProgressListener mProgressListener;
+    private final Object mProgressLock = new Object();
+    @GuardedBy("mProgressLock")
+    private final SparseArray<AppsStorageResult> mProgress = new SparseArray<>();
+    @GuardedBy("mProgressLock")
+    private boolean mProgressPosted;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
+        this(context, userManager, uuid, source, pm, null /* sizeCache */);
+    }
+
+    /**
+     * @param sizeCache cache of the stats of each package, or {@code null} to query the stats of
+     *                  every package.
+     */
+    public StorageAsyncLoader(Context context, UserManager userManager,
+            String uuid, StorageStatsSource source, PackageManager pm,
+            PackageSizeCache sizeCache) {
         super(context);
         mUserManager = userManager;
         mUuid = uuid;
         mStatsManager = source;
         mPackageManager = pm;
+        mSizeCache = sizeCache;
+    }
+
+    /**
+     * Sets the listener receiving the sizes of each user as they are loaded. Must be called
+     * before the loader starts.
+     */
+    public void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
     }
 
     @Override
@@ -69,8 +115,6 @@ public class StorageAsyncLoader
     }
 
     private SparseArray<AppsStorageResult> loadApps() {
-        mSeenPackages = new ArraySet<>();
-        SparseArray<AppsStorageResult> result = new SparseArray<>();
         List<UserInfo> infos = mUserManager.getUsers();
         // Sort the users by user id ascending.
         Collections.sort(
@@ -81,81 +125,195 @@ public class StorageAsyncLoader
                         return Integer.compare(userInfo.id, otherUser.id);
                     }
                 });
+        synchronized (mProgressLock) {
+            mProgress.clear();
+        }
+        final List<Future<UserPackageSizes>> futures = new ArrayList<>(infos.size());
         for (int i = 0, userCount = infos.size(); i < userCount; i++) {
-            UserInfo info = infos.get(i);
-            result.put(info.id, getStorageResultForUser(info.id));
+            final int userId = infos.get(i).id;
+            // The first user gets the code size of all of its apps, so its partial sizes can
+            // include it.
+            final boolean attributeCode = i == 0;
+            futures.add(sUserExecutor.submit(
+                    () -> getPackageSizesForUser(userId, attributeCode)));
+        }
+
+        // Code size is attributed to the first user by user id, so the totals are computed in
+        // order once the stats of every user are known.
+        final ArraySet<String> seenPackages = new ArraySet<>();
+        final SparseArray<AppsStorageResult> result = new SparseArray<>();
+        for (int i = 0, userCount = infos.size(); i < userCount; i++) {
+            final UserPackageSizes sizes;
+            try {
+                sizes = futures.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Failed to load user " + infos.get(i).id, e);
+            }
+            result.put(infos.get(i).id, getStorageResultForUser(sizes, seenPackages));
+        }
+
+        if (mSizeCache != null) {
+            final List<Integer> userIds = new ArrayList<>(infos.size());
+            for (int i = 0, userCount = infos.size(); i < userCount; i++) {
+                userIds.add(infos.get(i).id);
+            }
+            mSizeCache.retainUsers(userIds);
+            mSizeCache.save();
         }
         return result;
     }
 
-    private AppsStorageResult getStorageResultForUser(int userId) {
+    private UserPackageSizes getPackageSizesForUser(int userId, boolean attributeCode) {
+        Log.d(TAG, "Loading external stats");
+        StorageStatsSource.ExternalStorageStats externalStats = null;
+        try {
+            externalStats = mStatsManager.getExternalStorageStats(mUuid, UserHandle.of(userId));
+        } catch (IOException e) {
+            Log.w(TAG, e);
+        }
+        // Sizes of the categories known so far, only published if the external stats are known.
+        // Nothing is published before the first batch of apps is sized, so the screen doesn't
+        // stop loading just to show 0 B for every app category.
+        final AppsStorageResult progress = new AppsStorageResult();
+        progress.partial = true;
+        progress.externalStats = externalStats;
+
         Log.d(TAG, "Loading apps");
         List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        AppsStorageResult result = new AppsStorageResult();
+        final UserPackageSizes sizes = new UserPackageSizes(applicationInfos.size());
+        sizes.externalStats = externalStats;
+        final ArraySet<String> installedPackages = new ArraySet<>(applicationInfos.size());
         UserHandle myUser = UserHandle.of(userId);
+        int cacheHits = 0;
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             ApplicationInfo app = applicationInfos.get(i);
+            installedPackages.add(app.packageName);
 
-            StorageStatsSource.AppStorageStats stats;
-            try {
-                stats = mStatsManager.getStatsForPackage(mUuid, app.packageName, myUser);
-            } catch (NameNotFoundException | IOException e) {
-                // This may happen if the package was removed during our calculation.
-                Log.w(TAG, "App unexpectedly not found", e);
-                continue;
+            PackageSizeCache.Entry entry = mSizeCache != null
+                    ? mSizeCache.get(mUuid, userId, app.packageName, app.longVersionCode)
+                    : null;
+            if (entry != null) {
+                cacheHits++;
+            } else {
+                StorageStatsSource.AppStorageStats stats;
+                try {
+                    stats = mStatsManager.getStatsForPackage(mUuid, app.packageName, myUser);
+                } catch (NameNotFoundException | IOException e) {
+                    // This may happen if the package was removed during our calculation.
+                    Log.w(TAG, "App unexpectedly not found", e);
+                    continue;
+                }
+                entry = new PackageSizeCache.Entry(mUuid, app.longVersionCode,
+                        stats.getCodeBytes(), stats.getDataBytes(), stats.getCacheBytes(),
+                        mStatsManager.getCacheQuotaBytes(mUuid, app.uid),
+                        System.currentTimeMillis());
+                if (mSizeCache != null) {
+                    mSizeCache.put(userId, app.packageName, entry);
+                }
             }
+            sizes.apps.add(app);
+            sizes.entries.add(entry);
 
-            final long dataSize = stats.getDataBytes();
-            final long cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
-            final long cacheBytes = stats.getCacheBytes();
-            long blamedSize = dataSize;
-            // Technically, we could overages as freeable on the storage settings screen.
-            // If the app is using more cache than its quota, we would accidentally subtract the
-            // overage from the system size (because it shows up as unused) during our attribution.
-            // Thus, we cap the attribution at the quota size.
-            if (cacheQuota < cacheBytes) {
-                blamedSize = blamedSize - cacheBytes + cacheQuota;
+            addToCategory(progress, app,
+                    getBlamedDataSize(entry) + (attributeCode ? entry.codeBytes : 0));
+            if (sizes.apps.size() % PROGRESS_INTERVAL == 0) {
+                publishProgress(userId, progress);
             }
+        }
+        if (mSizeCache != null) {
+            mSizeCache.retainPackages(userId, installedPackages);
+        }
+        Log.d(TAG, "Loaded " + applicationInfos.size() + " apps, " + cacheHits + " cached");
+        publishProgress(userId, progress);
+        return sizes;
+    }
 
-            // This isn't quite right because it slams the first user by user id with the whole code
-            // size, but this ensures that we count all apps seen once.
-            if (!mSeenPackages.contains(app.packageName)) {
-                blamedSize += stats.getCodeBytes();
-                mSeenPackages.add(app.packageName);
+    /**
+     * Publishes a copy of {@code progress} to the {@link ProgressListener}. Progress published
+     * before the main thread gets to it is delivered together.
+     */
+    private void publishProgress(int userId, AppsStorageResult progress) {
+        if (mProgressListener == null || progress.externalStats == null) {
+            return;
+        }
+        synchronized (mProgressLock) {
+            mProgress.put(userId, progress.copy());
+            if (mProgressPosted) {
+                return;
             }
+            mProgressPosted = true;
+        }
+        ThreadUtils.postOnMainThread(this::deliverProgress);
+    }
+
+    private void deliverProgress() {
+        final SparseArray<AppsStorageResult> progress;
+        synchronized (mProgressLock) {
+            progress = mProgress.clone();
+            mProgressPosted = false;
+        }
+        if (!isReset() && mProgressListener != null) {
+            mProgressListener.onProgress(progress);
+        }
+    }
+
+    private static long getBlamedDataSize(PackageSizeCache.Entry entry) {
+        long blamedSize = entry.dataBytes;
+        // Technically, we could overages as freeable on the storage settings screen.
+        // If the app is using more cache than its quota, we would accidentally subtract the
+        // overage from the system size (because it shows up as unused) during our attribution.
+        // Thus, we cap the attribution at the quota size.
+        if (entry.cacheQuotaBytes < entry.cacheBytes) {
+            blamedSize = blamedSize - entry.cacheBytes + entry.cacheQuotaBytes;
+        }
+        return blamedSize;
+    }
 
-            switch (app.category) {
-                case CATEGORY_GAME:
+    private static void addToCategory(AppsStorageResult result, ApplicationInfo app,
+            long blamedSize) {
+        switch (app.category) {
+            case CATEGORY_GAME:
+                result.gamesSize += blamedSize;
+                break;
+            case CATEGORY_AUDIO:
+                result.musicAppsSize += blamedSize;
+                break;
+            case CATEGORY_VIDEO:
+                result.videoAppsSize += blamedSize;
+                break;
+            case CATEGORY_IMAGE:
+                result.photosAppsSize += blamedSize;
+                break;
+            default:
+                // The deprecated game flag does not set the category.
+                if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
                     result.gamesSize += blamedSize;
                     break;
-                case CATEGORY_AUDIO:
-                    result.musicAppsSize += blamedSize;
-                    break;
-                case CATEGORY_VIDEO:
-                    result.videoAppsSize += blamedSize;
-                    break;
-                case CATEGORY_IMAGE:
-                    result.photosAppsSize += blamedSize;
-                    break;
-                default:
-                    // The deprecated game flag does not set the category.
-                    if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
-                        result.gamesSize += blamedSize;
-                        break;
-                    }
-                    result.otherAppsSize += blamedSize;
-                    break;
-            }
+                }
+                result.otherAppsSize += blamedSize;
+                break;
         }
+    }
 
-        Log.d(TAG, "Loading external stats");
-        try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
-                    UserHandle.of(userId));
-        } catch (IOException e) {
-            Log.w(TAG, e);
+    private AppsStorageResult getStorageResultForUser(UserPackageSizes sizes,
+            ArraySet<String> seenPackages) {
+        AppsStorageResult result = new AppsStorageResult();
+        for (int i = 0, size = sizes.apps.size(); i < size; i++) {
+            final ApplicationInfo app = sizes.apps.get(i);
+            final PackageSizeCache.Entry entry = sizes.entries.get(i);
+            long blamedSize = getBlamedDataSize(entry);
+
+            // This isn't quite right because it slams the first user by user id with the whole code
+            // size, but this ensures that we count all apps seen once.
+            if (!seenPackages.contains(app.packageName)) {
+                blamedSize += entry.codeBytes;
+                seenPackages.add(app.packageName);
+            }
+
+            addToCategory(result, app, blamedSize);
         }
+        result.externalStats = sizes.externalStats;
         Log.d(TAG, "Obtaining result completed");
         return result;
     }
@@ -164,6 +322,18 @@ public class StorageAsyncLoader
     protected void onDiscardResult(SparseArray<AppsStorageResult> result) {
     }
 
+    /** Stats of the apps of a user, in the order of their {@link ApplicationInfo}. */
+    private static class UserPackageSizes {
+        final List<ApplicationInfo> apps;
+        final List<PackageSizeCache.Entry> entries;
+        StorageStatsSource.ExternalStorageStats externalStats;
+
+        UserPackageSizes(int capacity) {
+            apps = new ArrayList<>(capacity);
+            entries = new ArrayList<>(capacity);
+        }
+    }
+
     public static class AppsStorageResult {
         public long gamesSize;
         public long musicAppsSize;
@@ -172,6 +342,34 @@ public class StorageAsyncLoader
         public long otherAppsSize;
         public long cacheSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+        /**
+         * Whether the app sizes only include the apps sized so far, and the code size of apps
+         * shared with another user may be missing.
+         */
+        public boolean partial;
+
+        AppsStorageResult copy() {
+            final AppsStorageResult copy = new AppsStorageResult();
+            copy.gamesSize = gamesSize;
+            copy.musicAppsSize = musicAppsSize;
+            copy.photosAppsSize = photosAppsSize;
+            copy.videoAppsSize = videoAppsSize;
+            copy.otherAppsSize = otherAppsSize;
+            copy.cacheSize = cacheSize;
+            copy.externalStats = externalStats;
+            copy.partial = partial;
+            return copy;
+        }
+    }
+
+    /**
+     * Receives the sizes loaded by {@link StorageAsyncLoader} before the final result. Users
+     * whose external stats are not known yet are missing, and every result is
+     * {@link AppsStorageResult#partial}.
+     */
+    public interface ProgressListener {
+        /** Called on the main thread. */
+        void onProgress(SparseArray<AppsStorageResult> result);
     }
 
     /**
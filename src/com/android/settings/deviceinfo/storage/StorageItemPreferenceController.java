@@ -246,9 +246,17 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         setFilesPreferenceVisibility();
     }
 
+    /**
+     * Updates the sizes of the categories of {@code userId}. Results delivered by
+     * {@link StorageAsyncLoader.ProgressListener} may not contain the user yet, and don't update
+     * the system size since the apps of every user need to be attributed first.
+     */
     public void onLoadFinished(SparseArray<StorageAsyncLoader.AppsStorageResult> result,
             int userId) {
         final StorageAsyncLoader.AppsStorageResult data = result.get(userId);
+        if (data == null) {
+            return;
+        }
 
         // TODO(b/35927909): Figure out how to split out apps which are only installed for work
         //       profiles in order to attribute those app's code bytes only to that profile.
@@ -269,7 +277,7 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
                         - data.externalStats.appBytes;
         mFilePreference.setStorageSize(otherExternalBytes, mTotalSize);
 
-        if (mSystemPreference != null) {
+        if (mSystemPreference != null && !data.partial) {
             // Everything else that hasn't already been attributed is tracked as
             // belonging to system.
             long attributedSize = 0;
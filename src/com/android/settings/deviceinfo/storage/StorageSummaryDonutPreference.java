@@ -57,7 +57,12 @@ public class StorageSummaryDonutPreference extends Preference implements View.On
             return;
         }
 
-        mPercent = usedBytes / (double) totalBytes;
+        final double percent = usedBytes / (double) totalBytes;
+        if (percent != mPercent) {
+            mPercent = percent;
+            // The title may not change while the used size is animated.
+            notifyChanged();
+        }
     }
 
     @Override
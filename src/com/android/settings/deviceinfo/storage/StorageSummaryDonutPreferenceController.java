@@ -16,28 +16,38 @@
 
 package com.android.settings.deviceinfo.storage;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.os.storage.VolumeInfo;
 import android.text.TextUtils;
 import android.text.format.Formatter;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
+import com.android.settingslib.core.lifecycle.events.OnStop;
 import com.android.settingslib.deviceinfo.StorageVolumeProvider;
 
 /**
  * StorgaeSummaryPreferenceController updates the donut storage summary preference to have the
- * correct sizes showing.
+ * correct sizes showing. Once sizes are shown, e.g. cached ones, new sizes are animated to.
  */
 public class StorageSummaryDonutPreferenceController extends AbstractPreferenceController implements
-        PreferenceControllerMixin {
+        PreferenceControllerMixin, LifecycleObserver, OnStop {
+    @VisibleForTesting
+    static final long ANIMATION_DURATION_MS = 300;
+
     private long mUsedBytes;
     private long mTotalBytes;
     private StorageSummaryDonutPreference mSummary;
+    // Used bytes shown by mSummary, or -1 if no size is shown yet.
+    private long mShownUsedBytes = -1;
+    private ValueAnimator mAnimator;
 
     public StorageSummaryDonutPreferenceController(Context context) {
         super(context);
@@ -62,15 +72,34 @@ public class StorageSummaryDonutPreferenceController extends AbstractPreferenceC
         mSummary.setEnabled(true);
     }
 
+    @Override
+    public void onStop() {
+        // Jump to the new sizes, so the animation never updates a preference that isn't shown.
+        if (mAnimator != null) {
+            invalidateData();
+        }
+    }
+
     @Override
     public void updateState(Preference preference) {
         super.updateState(preference);
-        StorageSummaryDonutPreference summary = (StorageSummaryDonutPreference) preference;
-        summary.setTitle(convertUsedBytesToFormattedText(mContext, mUsedBytes));
+        if (mAnimator != null) {
+            mAnimator.cancel();
+            mAnimator = null;
+        }
+        bindBytes((StorageSummaryDonutPreference) preference, mUsedBytes, mTotalBytes);
+    }
+
+    private void bindBytes(StorageSummaryDonutPreference summary, long usedBytes,
+            long totalBytes) {
+        summary.setTitle(convertUsedBytesToFormattedText(mContext, usedBytes));
         summary.setSummary(mContext.getString(R.string.storage_volume_total,
-                Formatter.formatShortFileSize(mContext, mTotalBytes)));
-        summary.setPercent(mUsedBytes, mTotalBytes);
+                Formatter.formatShortFileSize(mContext, totalBytes)));
+        summary.setPercent(usedBytes, totalBytes);
         summary.setEnabled(true);
+        if (summary == mSummary) {
+            mShownUsedBytes = usedBytes;
+        }
     }
 
     /** Invalidates the data on the view and re-renders. */
@@ -97,9 +126,26 @@ public class StorageSummaryDonutPreferenceController extends AbstractPreferenceC
      * @param total Total number of bytes on the summarized volume.
      */
     public void updateBytes(long used, long total) {
+        final long shownUsedBytes = mShownUsedBytes;
         mUsedBytes = used;
         mTotalBytes = total;
-        invalidateData();
+        if (mSummary == null || shownUsedBytes < 0 || shownUsedBytes == used) {
+            invalidateData();
+            return;
+        }
+
+        if (mAnimator != null) {
+            mAnimator.cancel();
+        }
+        mAnimator = ValueAnimator.ofFloat(0f, 1f);
+        mAnimator.setDuration(ANIMATION_DURATION_MS);
+        mAnimator.addUpdateListener(animator -> {
+            final float fraction = animator.getAnimatedFraction();
+            bindBytes(mSummary,
+                    shownUsedBytes + (long) ((used - shownUsedBytes) * (double) fraction),
+                    total);
+        });
+        mAnimator.start();
     }
 
     /**
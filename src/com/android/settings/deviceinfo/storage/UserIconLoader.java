@@ -23,7 +23,7 @@ import android.os.UserManager;
 import android.util.SparseArray;
 
 import com.android.internal.util.Preconditions;
-import com.android.settings.Utils;
+import com.android.settings.users.UserIconCache;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 /**
@@ -66,8 +66,9 @@ public class UserIconLoader extends AsyncLoaderCompat<SparseArray<Drawable>> {
     public static SparseArray<Drawable> loadUserIconsWithContext(Context context) {
         SparseArray<Drawable> value = new SparseArray<>();
         UserManager um = context.getSystemService(UserManager.class);
+        UserIconCache iconCache = UserIconCache.getInstance();
         for (UserInfo userInfo : um.getUsers()) {
-            value.put(userInfo.id, Utils.getUserIcon(context, um, userInfo));
+            value.put(userInfo.id, iconCache.getUserIcon(context, um, userInfo));
         }
         return value;
     }
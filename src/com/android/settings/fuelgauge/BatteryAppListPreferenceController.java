@@ -31,7 +31,7 @@ import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
-import android.util.SparseArray;
+import android.util.SparseIntArray;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
@@ -44,13 +44,13 @@ import com.android.internal.os.BatteryStatsHelper;
 import com.android.internal.os.PowerProfile;
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
+import com.android.settings.Utils;
 import com.android.settings.core.InstrumentedPreferenceFragment;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settingslib.applications.AppUtils;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
-import com.android.settingslib.core.lifecycle.events.OnDestroy;
 import com.android.settingslib.core.lifecycle.events.OnPause;
 import com.android.settingslib.utils.StringUtil;
 
@@ -61,7 +61,7 @@ import java.util.List;
  * Controller that update the battery header view
  */
 public class BatteryAppListPreferenceController extends AbstractPreferenceController
-        implements PreferenceControllerMixin, LifecycleObserver, OnPause, OnDestroy {
+        implements PreferenceControllerMixin, LifecycleObserver, OnPause {
     @VisibleForTesting
     static final boolean USE_FAKE_DATA = false;
     private static final int MAX_ITEMS_TO_LIST = USE_FAKE_DATA ? 30 : 20;
@@ -73,6 +73,9 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
     PreferenceGroup mAppListGroup;
     private BatteryStatsHelper mBatteryStatsHelper;
     private ArrayMap<String, Preference> mPreferenceCache;
+    // Rows created, re-bound or removed by the last refresh.
+    @VisibleForTesting
+    int mLastRefreshRowsTouched;
     @VisibleForTesting
     BatteryUtils mBatteryUtils;
     private UserManager mUserManager;
@@ -90,6 +93,12 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
                             (PowerGaugePreference) mAppListGroup.findPreference(
                                     Integer.toString(entry.sipper.uidObj.getUid()));
                     if (pgp != null) {
+                        final BatteryEntry shownEntry = pgp.getInfo();
+                        if (shownEntry != null && shownEntry != entry) {
+                            // The row was refreshed with newer stats while the name loaded.
+                            shownEntry.name = entry.name;
+                            shownEntry.icon = entry.icon;
+                        }
                         final int userId = UserHandle.getUserId(entry.sipper.getUid());
                         final UserHandle userHandle = new UserHandle(userId);
                         pgp.setIcon(mUserManager.getBadgedIconForUser(entry.getIcon(), userHandle));
@@ -132,13 +141,6 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         mHandler.removeMessages(BatteryEntry.MSG_UPDATE_NAME_ICON);
     }
 
-    @Override
-    public void onDestroy() {
-        if (mActivity.isChangingConfigurations()) {
-            BatteryEntry.clearUidCache();
-        }
-    }
-
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
@@ -173,6 +175,8 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
             return;
         }
 
+        final long startTime = System.currentTimeMillis();
+        int rowsTouched = 0;
         mBatteryStatsHelper = statsHelper;
         mAppListGroup.setTitle(R.string.power_usage_list_summary);
 
@@ -193,11 +197,10 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
                     mBatteryUtils.removeHiddenBatterySippers(usageList);
             mBatteryUtils.sortUsageList(usageList);
 
+            final double totalPower = USE_FAKE_DATA ? 4000 : statsHelper.getTotalPower();
             final int numSippers = usageList.size();
             for (int i = 0; i < numSippers; i++) {
                 final BatterySipper sipper = usageList.get(i);
-                double totalPower = USE_FAKE_DATA ? 4000 : statsHelper.getTotalPower();
-
                 final double percentOfTotal = mBatteryUtils.calculateBatteryPercent(
                         sipper.totalPowerMah, totalPower, hiddenPowerMah, dischargeAmount);
 
@@ -207,32 +210,37 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
                 if (shouldHideSipper(sipper)) {
                     continue;
                 }
-                final UserHandle userHandle = new UserHandle(UserHandle.getUserId(sipper.getUid()));
-                final BatteryEntry entry = new BatteryEntry(mActivity, mHandler, mUserManager,
-                        sipper);
-                final Drawable badgedIcon = mUserManager.getBadgedIconForUser(entry.getIcon(),
-                        userHandle);
-                final CharSequence contentDescription = mUserManager.getBadgedLabelForUser(
-                        entry.getLabel(),
-                        userHandle);
+                sipper.percent = percentOfTotal;
+                if (sipper.usageTimeMs == 0 && sipper.drainType == DrainType.APP) {
+                    sipper.usageTimeMs = mBatteryUtils.getProcessTimeMs(
+                            BatteryUtils.StatusType.FOREGROUND, sipper.uidObj, STATS_TYPE);
+                }
 
                 final String key = extractKeyFromSipper(sipper);
                 PowerGaugePreference pref = (PowerGaugePreference) getCachedPreference(key);
                 if (pref == null) {
+                    final UserHandle userHandle =
+                            new UserHandle(UserHandle.getUserId(sipper.getUid()));
+                    final BatteryEntry entry = new BatteryEntry(mActivity, mHandler,
+                            mUserManager, sipper);
+                    final Drawable badgedIcon = mUserManager.getBadgedIconForUser(
+                            entry.getIcon(), userHandle);
+                    final CharSequence contentDescription = mUserManager.getBadgedLabelForUser(
+                            entry.getLabel(), userHandle);
                     pref = new PowerGaugePreference(mPrefContext, badgedIcon,
                             contentDescription, entry);
                     pref.setKey(key);
+                    pref.setTitle(entry.getLabel());
+                    bindRow(pref, sipper, i + 1, percentOfTotal);
+                    rowsTouched++;
+                } else {
+                    // Rows already shown keep their label and icon, but take the new stats so
+                    // the detail page opened from them shows current usage.
+                    pref.setInfo(new BatteryEntry(pref.getInfo(), sipper));
+                    if (bindRow(pref, sipper, i + 1, percentOfTotal)) {
+                        rowsTouched++;
+                    }
                 }
-                sipper.percent = percentOfTotal;
-                pref.setTitle(entry.getLabel());
-                pref.setOrder(i + 1);
-                pref.setPercent(percentOfTotal);
-                pref.shouldShowAnomalyIcon(false);
-                if (sipper.usageTimeMs == 0 && sipper.drainType == DrainType.APP) {
-                    sipper.usageTimeMs = mBatteryUtils.getProcessTimeMs(
-                            BatteryUtils.StatusType.FOREGROUND, sipper.uidObj, STATS_TYPE);
-                }
-                setUsageSummary(pref, sipper);
                 addedSome = true;
                 mAppListGroup.addPreference(pref);
                 if (mAppListGroup.getPreferenceCount() - getCachedCount()
@@ -244,9 +252,43 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         if (!addedSome) {
             addNotAvailableMessage();
         }
+        rowsTouched += getCachedCount();
         removeCachedPrefs(mAppListGroup);
 
         BatteryEntry.startRequestQueue();
+
+        mLastRefreshRowsTouched = rowsTouched;
+        BatteryUtils.logRuntime(TAG, "refreshAppListGroup, rows touched: " + rowsTouched
+                + "/" + mAppListGroup.getPreferenceCount(), startTime);
+    }
+
+    /**
+     * Binds the order, percentage and usage summary of {@code pref}, leaving the parts that
+     * didn't change alone.
+     *
+     * @return {@code true} if anything changed
+     */
+    private boolean bindRow(PowerGaugePreference pref, BatterySipper sipper, int order,
+            double percentOfTotal) {
+        boolean changed = false;
+        if (pref.getOrder() != order) {
+            pref.setOrder(order);
+            changed = true;
+        }
+        if (!TextUtils.equals(pref.getSubtitle(), Utils.formatPercentage(percentOfTotal, true))) {
+            pref.setPercent(percentOfTotal);
+            changed = true;
+        }
+        if (pref.showAnomalyIcon()) {
+            pref.shouldShowAnomalyIcon(false);
+            changed = true;
+        }
+        final CharSequence summary = getUsageSummary(sipper);
+        if (summary != null && !TextUtils.equals(summary, pref.getSummary())) {
+            pref.setSummary(summary);
+            changed = true;
+        }
+        return changed;
     }
 
     /**
@@ -256,78 +298,71 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
      *
      * @return A sorted list of apps using power.
      */
-    private List<BatterySipper> getCoalescedUsageList(final List<BatterySipper> sippers) {
-        final SparseArray<BatterySipper> uidList = new SparseArray<>();
-
-        final ArrayList<BatterySipper> results = new ArrayList<>();
+    @VisibleForTesting
+    List<BatterySipper> getCoalescedUsageList(final List<BatterySipper> sippers) {
         final int numSippers = sippers.size();
+        final ArrayList<BatterySipper> results = new ArrayList<>(numSippers);
+        // Sippers are grouped by real UID in a linked list threaded through nextInGroup, so
+        // only UIDs that actually need merging or remapping get a new BatterySipper.
+        final SparseIntArray groupHead = new SparseIntArray();
+        final SparseIntArray groupTail = new SparseIntArray();
+        final int[] nextInGroup = new int[numSippers];
         for (int i = 0; i < numSippers; i++) {
-            BatterySipper sipper = sippers.get(i);
-            if (sipper.getUid() > 0) {
-                int realUid = sipper.getUid();
-
-                // Check if this UID is a shared GID. If so, we combine it with the OWNER's
-                // actual app UID.
-                if (isSharedGid(sipper.getUid())) {
-                    realUid = UserHandle.getUid(UserHandle.USER_SYSTEM,
-                            UserHandle.getAppIdFromSharedAppGid(sipper.getUid()));
-                }
+            final BatterySipper sipper = sippers.get(i);
+            if (sipper.getUid() <= 0) {
+                results.add(sipper);
+                continue;
+            }
+            final int realUid = getRealUid(sipper);
+            nextInGroup[i] = -1;
+            final int tail = groupTail.get(realUid, -1);
+            if (tail < 0) {
+                groupHead.put(realUid, i);
+            } else {
+                nextInGroup[tail] = i;
+            }
+            groupTail.put(realUid, i);
+        }
 
-                // Check if this UID is a system UID (mediaserver, logd, nfc, drm, etc).
-                if (isSystemUid(realUid)
-                        && !"mediaserver".equals(sipper.packageWithHighestDrain)) {
-                    // Use the system UID for all UIDs running in their own sandbox that
-                    // are not apps. We exclude mediaserver because we already are expected to
-                    // report that as a separate item.
-                    realUid = Process.SYSTEM_UID;
-                }
+        final int numUids = groupHead.size();
+        for (int i = 0; i < numUids; i++) {
+            final int realUid = groupHead.keyAt(i);
+            final int head = groupHead.valueAt(i);
+            final BatterySipper first = sippers.get(head);
+            if (nextInGroup[head] < 0 && first.getUid() == realUid) {
+                results.add(first);
+                continue;
+            }
 
-                if (realUid != sipper.getUid()) {
-                    // Replace the BatterySipper with a new one with the real UID set.
-                    BatterySipper newSipper = new BatterySipper(sipper.drainType,
-                            new FakeUid(realUid), 0.0);
-                    newSipper.add(sipper);
-                    newSipper.packageWithHighestDrain = sipper.packageWithHighestDrain;
-                    newSipper.mPackages = sipper.mPackages;
-                    sipper = newSipper;
+            // Merge into a new BatterySipper, keeping the stats' own Uid when it has the real
+            // UID so per-process times can still be read from it.
+            final BatterySipper merged = new BatterySipper(first.drainType,
+                    first.getUid() == realUid ? first.uidObj : new FakeUid(realUid), 0.0);
+            int packageCount = 0;
+            for (int j = head; j >= 0; j = nextInGroup[j]) {
+                final BatterySipper sipper = sippers.get(j);
+                merged.add(sipper);
+                if (merged.packageWithHighestDrain == null) {
+                    merged.packageWithHighestDrain = sipper.packageWithHighestDrain;
                 }
-
-                int index = uidList.indexOfKey(realUid);
-                if (index < 0) {
-                    // New entry.
-                    uidList.put(realUid, sipper);
-                } else {
-                    // Combine BatterySippers if we already have one with this UID.
-                    final BatterySipper existingSipper = uidList.valueAt(index);
-                    existingSipper.add(sipper);
-                    if (existingSipper.packageWithHighestDrain == null
-                            && sipper.packageWithHighestDrain != null) {
-                        existingSipper.packageWithHighestDrain = sipper.packageWithHighestDrain;
-                    }
-
-                    final int existingPackageLen = existingSipper.mPackages != null ?
-                            existingSipper.mPackages.length : 0;
-                    final int newPackageLen = sipper.mPackages != null ?
-                            sipper.mPackages.length : 0;
-                    if (newPackageLen > 0) {
-                        String[] newPackages = new String[existingPackageLen + newPackageLen];
-                        if (existingPackageLen > 0) {
-                            System.arraycopy(existingSipper.mPackages, 0, newPackages, 0,
-                                    existingPackageLen);
-                        }
-                        System.arraycopy(sipper.mPackages, 0, newPackages, existingPackageLen,
-                                newPackageLen);
-                        existingSipper.mPackages = newPackages;
+                packageCount += sipper.mPackages != null ? sipper.mPackages.length : 0;
+            }
+            if (nextInGroup[head] < 0) {
+                merged.mPackages = first.mPackages;
+            } else if (packageCount > 0) {
+                final String[] packages = new String[packageCount];
+                int offset = 0;
+                for (int j = head; j >= 0; j = nextInGroup[j]) {
+                    final String[] sipperPackages = sippers.get(j).mPackages;
+                    if (sipperPackages != null) {
+                        System.arraycopy(sipperPackages, 0, packages, offset,
+                                sipperPackages.length);
+                        offset += sipperPackages.length;
                     }
                 }
-            } else {
-                results.add(sipper);
+                merged.mPackages = packages;
             }
-        }
-
-        final int numUidSippers = uidList.size();
-        for (int i = 0; i < numUidSippers; i++) {
-            results.add(uidList.valueAt(i));
+            results.add(merged);
         }
 
         // The sort order must have changed, so re-sort based on total power use.
@@ -335,19 +370,47 @@ public class BatteryAppListPreferenceController extends AbstractPreferenceContro
         return results;
     }
 
+    private static int getRealUid(BatterySipper sipper) {
+        int realUid = sipper.getUid();
+
+        // Check if this UID is a shared GID. If so, we combine it with the OWNER's
+        // actual app UID.
+        if (isSharedGid(sipper.getUid())) {
+            realUid = UserHandle.getUid(UserHandle.USER_SYSTEM,
+                    UserHandle.getAppIdFromSharedAppGid(sipper.getUid()));
+        }
+
+        // Check if this UID is a system UID (mediaserver, logd, nfc, drm, etc).
+        if (isSystemUid(realUid)
+                && !"mediaserver".equals(sipper.packageWithHighestDrain)) {
+            // Use the system UID for all UIDs running in their own sandbox that
+            // are not apps. We exclude mediaserver because we already are expected to
+            // report that as a separate item.
+            realUid = Process.SYSTEM_UID;
+        }
+        return realUid;
+    }
+
     @VisibleForTesting
     void setUsageSummary(Preference preference, BatterySipper sipper) {
+        final CharSequence summary = getUsageSummary(sipper);
+        if (summary != null) {
+            preference.setSummary(summary);
+        }
+    }
+
+    private CharSequence getUsageSummary(BatterySipper sipper) {
         // Only show summary when usage time is longer than one minute
         final long usageTimeMs = sipper.usageTimeMs;
-        if (usageTimeMs >= DateUtils.MINUTE_IN_MILLIS) {
-            final CharSequence timeSequence =
-                    StringUtil.formatElapsedTime(mContext, usageTimeMs, false);
-            preference.setSummary(
-                    (sipper.drainType != DrainType.APP || mBatteryUtils.shouldHideSipper(sipper))
-                            ? timeSequence
-                            : TextUtils.expandTemplate(mContext.getText(R.string.battery_used_for),
-                                    timeSequence));
+        if (usageTimeMs < DateUtils.MINUTE_IN_MILLIS) {
+            return null;
         }
+        final CharSequence timeSequence =
+                StringUtil.formatElapsedTime(mContext, usageTimeMs, false);
+        return (sipper.drainType != DrainType.APP || mBatteryUtils.shouldHideSipper(sipper))
+                ? timeSequence
+                : TextUtils.expandTemplate(mContext.getText(R.string.battery_used_for),
+                        timeSequence);
     }
 
     @VisibleForTesting
@@ -34,11 +34,13 @@ import android.util.Log;
 
 import com.android.internal.os.BatterySipper;
 import com.android.settings.R;
+import com.android.settings.utils.UidDetailCache;
 import com.android.settingslib.Utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Wraps the power usage data of a BatterySipper with information about package name
@@ -51,73 +53,103 @@ public class BatteryEntry {
     private static final String TAG = "BatteryEntry";
     private static final String PACKAGE_SYSTEM = "android";
 
-    static final HashMap<String,UidToDetail> sUidCache = new HashMap<String,UidToDetail>();
+    // Name and icon lookups mostly wait on the package manager, so a few run in parallel.
+    private static final int LOADER_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
     static final ArrayList<BatteryEntry> mRequestQueue = new ArrayList<BatteryEntry>();
     static Handler sHandler;
 
-    static Locale sCurrentLocale = null;
+    private static final ThreadPoolExecutor sLoaderExecutor = new ThreadPoolExecutor(
+            LOADER_THREADS, LOADER_THREADS, 1, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>(), runnable -> {
+                final Thread thread = new Thread(runnable, "BatteryUsage Icon Loader");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
 
-    static private class NameAndIconLoader extends Thread {
-        private boolean mAbort = false;
+    static {
+        sLoaderExecutor.allowCoreThreadTimeOut(true);
+    }
 
-        public NameAndIconLoader() {
-            super("BatteryUsage Icon Loader");
-        }
+    // Guarded by mRequestQueue.
+    private static int sRequestGeneration;
+    private static int sPendingRequests;
 
-        public void abort() {
-            mAbort = true;
+    /**
+     * Loads the name and icon of one entry. Requests from the most recent
+     * {@link #startRequestQueue()} run first, in the order their rows are shown, so the rows on
+     * screen are resolved before the ones further down.
+     */
+    private static class NameAndIconRequest implements Runnable,
+            Comparable<NameAndIconRequest> {
+        private final BatteryEntry mEntry;
+        private final int mGeneration;
+        private final int mPosition;
+
+        NameAndIconRequest(BatteryEntry entry, int generation, int position) {
+            mEntry = entry;
+            mGeneration = generation;
+            mPosition = position;
         }
 
         @Override
         public void run() {
-            while (true) {
-                BatteryEntry be;
+            try {
+                if (mEntry.loadCachedNameAndIcon()) {
+                    mEntry.notifyNameAndIconLoaded();
+                } else {
+                    mEntry.loadNameAndIcon();
+                }
+            } finally {
                 synchronized (mRequestQueue) {
-                    if (mRequestQueue.isEmpty() || mAbort) {
-                        if (sHandler != null) {
-                            sHandler.sendEmptyMessage(MSG_REPORT_FULLY_DRAWN);
-                        }
-                        mRequestQueue.clear();
-                        return;
+                    sPendingRequests--;
+                    if (sPendingRequests == 0 && sHandler != null) {
+                        sHandler.sendEmptyMessage(MSG_REPORT_FULLY_DRAWN);
                     }
-                    be = mRequestQueue.remove(0);
                 }
-                be.loadNameAndIcon();
             }
         }
-    }
 
-    private static NameAndIconLoader mRequestThread;
+        @Override
+        public int compareTo(NameAndIconRequest other) {
+            if (mGeneration != other.mGeneration) {
+                return Integer.compare(other.mGeneration, mGeneration);
+            }
+            return Integer.compare(mPosition, other.mPosition);
+        }
+    }
 
     public static void startRequestQueue() {
         if (sHandler != null) {
             synchronized (mRequestQueue) {
                 if (!mRequestQueue.isEmpty()) {
-                    if (mRequestThread != null) {
-                        mRequestThread.abort();
+                    final int generation = ++sRequestGeneration;
+                    final int size = mRequestQueue.size();
+                    sPendingRequests += size;
+                    for (int i = 0; i < size; i++) {
+                        sLoaderExecutor.execute(
+                                new NameAndIconRequest(mRequestQueue.get(i), generation, i));
                     }
-                    mRequestThread = new NameAndIconLoader();
-                    mRequestThread.setPriority(Thread.MIN_PRIORITY);
-                    mRequestThread.start();
-                    mRequestQueue.notify();
+                    mRequestQueue.clear();
                 }
             }
         }
     }
 
+    /**
+     * Stops reporting loaded names and icons. Requests already started keep filling the
+     * {@link UidDetailCache}, so the next battery screen finds them resolved.
+     */
     public static void stopRequestQueue() {
         synchronized (mRequestQueue) {
-            if (mRequestThread != null) {
-                mRequestThread.abort();
-                mRequestThread = null;
-                sHandler = null;
-            }
+            mRequestQueue.clear();
+            sHandler = null;
         }
     }
 
     public static void clearUidCache() {
-        sUidCache.clear();
+        UidDetailCache.getInstance().clear();
     }
 
     public final Context context;
@@ -128,12 +160,6 @@ public class BatteryEntry {
     public int iconId; // For passing to the detail screen.
     public String defaultPackageName;
 
-    static class UidToDetail {
-        String name;
-        String packageName;
-        Drawable icon;
-    }
-
     public BatteryEntry(Context context, Handler handler, UserManager um, BatterySipper sipper) {
         sHandler = handler;
         this.context = context;
@@ -222,6 +248,22 @@ public class BatteryEntry {
         }
     }
 
+    /**
+     * Creates an entry for {@code sipper}, which has newer stats for the same uid or drain type
+     * as {@code entry}, reusing the name and icon already loaded for {@code entry}.
+     */
+    public BatteryEntry(BatteryEntry entry, BatterySipper sipper) {
+        this.context = entry.context;
+        this.sipper = sipper;
+        name = entry.name;
+        icon = entry.icon;
+        iconId = entry.iconId;
+        defaultPackageName = entry.defaultPackageName;
+        if (sipper.mPackages == null) {
+            sipper.mPackages = entry.sipper.mPackages;
+        }
+    }
+
     public Drawable getIcon() {
         return icon;
     }
@@ -234,19 +276,7 @@ public class BatteryEntry {
     }
 
     void getQuickNameIconForUid(final int uid) {
-        // Locale sync to system config in Settings
-        final Locale locale = Locale.getDefault();
-        if (sCurrentLocale != locale) {
-            clearUidCache();
-            sCurrentLocale = locale;
-        }
-
-        final String uidString = Integer.toString(uid);
-        if (sUidCache.containsKey(uidString)) {
-            UidToDetail utd = sUidCache.get(uidString);
-            defaultPackageName = utd.packageName;
-            name = utd.name;
-            icon = utd.icon;
+        if (loadCachedNameAndIcon()) {
             return;
         }
         PackageManager pm = context.getPackageManager();
@@ -270,6 +300,29 @@ public class BatteryEntry {
         }
     }
 
+    /**
+     * Loads the app label and icon image from the {@link UidDetailCache}.
+     *
+     * @return {@code true} if they were cached
+     */
+    boolean loadCachedNameAndIcon() {
+        if (sipper.uidObj == null) {
+            return false;
+        }
+        final UidDetailCache.Entry entry =
+                UidDetailCache.getInstance().get(sipper.uidObj.getUid());
+        // Entries from data usage don't know which of a shared uid's packages to open.
+        if (entry == null || (entry.packageName == null && defaultPackageName == null)) {
+            return false;
+        }
+        if (entry.packageName != null) {
+            defaultPackageName = entry.packageName;
+        }
+        name = entry.label;
+        icon = entry.getIcon();
+        return true;
+    }
+
     /**
      * Loads the app label and icon image and stores into the cache.
      */
@@ -358,13 +411,15 @@ public class BatteryEntry {
             icon = pm.getDefaultActivityIcon();
         }
 
-        UidToDetail utd = new UidToDetail();
-        utd.name = name;
-        utd.icon = icon;
-        utd.packageName = defaultPackageName;
-        sUidCache.put(uidString, utd);
-        if (sHandler != null) {
-            sHandler.sendMessage(sHandler.obtainMessage(MSG_UPDATE_NAME_ICON, this));
+        UidDetailCache.getInstance().put(uid,
+                new UidDetailCache.Entry(name, defaultPackageName, icon));
+        notifyNameAndIconLoaded();
+    }
+
+    private void notifyNameAndIconLoaded() {
+        final Handler handler = sHandler;
+        if (handler != null) {
+            handler.sendMessage(handler.obtainMessage(MSG_UPDATE_NAME_ICON, this));
         }
     }
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The battery history that {@link BatteryInfo.BatteryDataParser}s use, read from
+ * {@link BatteryStats} in a single pass. Replaying it computes the wall time bounds up front, so
+ * parsers are fed without iterating the history a second time.
+ *
+ * <p>Every record is kept as a full copy of its {@link HistoryItem}, so parsers see the same
+ * fields, tags included, as they would when walking the stats.
+ *
+ * <p>The snapshot of the most recently parsed {@link BatteryStats} is kept until a different
+ * stats object is parsed. It is only softly reachable, so a multi-day history can be reclaimed
+ * under memory pressure and is read from the stats again the next time it is needed.
+ */
+public class BatteryHistorySnapshot {
+    private static WeakReference<BatteryStats> sCachedStats;
+    private static SoftReference<BatteryHistorySnapshot> sCachedSnapshot;
+
+    private final long mStartWalltime;
+    private final long mEndWalltime;
+    private final long mHistoryStart;
+    // Realtime of the last time change, where the old two-pass parser started its second pass.
+    private final long mInitialRealtime;
+    private final List<HistoryItem> mRecords;
+
+    private BatteryHistorySnapshot(long startWalltime, long endWalltime, long historyStart,
+            long initialRealtime, List<HistoryItem> records) {
+        mStartWalltime = startWalltime;
+        mEndWalltime = endWalltime;
+        mHistoryStart = historyStart;
+        mInitialRealtime = initialRealtime;
+        mRecords = records;
+    }
+
+    /**
+     * Returns the snapshot for {@code stats}, reading its history only if it was not the last
+     * stats object parsed.
+     */
+    public static synchronized BatteryHistorySnapshot get(BatteryStats stats) {
+        final BatteryHistorySnapshot cached =
+                sCachedSnapshot != null ? sCachedSnapshot.get() : null;
+        if (cached != null && sCachedStats != null && sCachedStats.get() == stats) {
+            return cached;
+        }
+        final BatteryHistorySnapshot snapshot = create(stats);
+        sCachedSnapshot = new SoftReference<>(snapshot);
+        sCachedStats = new WeakReference<>(stats);
+        return snapshot;
+    }
+
+    @VisibleForTesting
+    static synchronized void clearCache() {
+        sCachedStats = null;
+        sCachedSnapshot = null;
+    }
+
+    @VisibleForTesting
+    static BatteryHistorySnapshot create(BatteryStats stats) {
+        long startWalltime = 0;
+        long historyStart = 0;
+        long historyEnd = 0;
+        long lastWallTime = 0;
+        long lastRealtime = 0;
+        int lastInteresting = 0;
+        int pos = 0;
+        boolean first = true;
+
+        final List<HistoryItem> records = new ArrayList<>();
+
+        if (stats.startIteratingHistoryLocked()) {
+            final HistoryItem rec = new HistoryItem();
+            while (stats.getNextHistoryLocked(rec)) {
+                final HistoryItem copy = new HistoryItem();
+                copy.setTo(rec);
+                records.add(copy);
+                pos++;
+
+                if (first) {
+                    first = false;
+                    historyStart = rec.time;
+                }
+                if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                        || rec.cmd == HistoryItem.CMD_RESET) {
+                    // If there is a ridiculously large jump in time, then we won't be
+                    // able to create a good chart with that data, so just ignore the
+                    // times we got before and pretend like our data extends back from
+                    // the time we have now.
+                    // Also, if we are getting a time change and we are less than 5 minutes
+                    // since the start of the history real time, then also use this new
+                    // time to compute the base time, since whatever time we had before is
+                    // pretty much just noise.
+                    if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
+                            || rec.time < (historyStart + (5 * 60 * 1000L))) {
+                        startWalltime = 0;
+                    }
+                    lastWallTime = rec.currentTime;
+                    lastRealtime = rec.time;
+                    if (startWalltime == 0) {
+                        startWalltime = lastWallTime - (lastRealtime - historyStart);
+                    }
+                }
+                if (rec.isDeltaData()) {
+                    lastInteresting = pos;
+                    historyEnd = rec.time;
+                }
+            }
+        }
+        stats.finishIteratingHistoryLocked();
+        final long endWalltime = lastWallTime + historyEnd - lastRealtime;
+
+        // Records after the last data point don't affect any parser.
+        records.subList(lastInteresting, records.size()).clear();
+        return new BatteryHistorySnapshot(startWalltime, endWalltime, historyStart, lastRealtime,
+                records);
+    }
+
+    /**
+     * Returns the number of history records kept for replaying.
+     */
+    public int size() {
+        return mRecords.size();
+    }
+
+    /**
+     * Feeds the history to {@code parsers}, the same way a walk over {@link BatteryStats} would.
+     */
+    public void replay(BatteryInfo.BatteryDataParser... parsers) {
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingStarted(mStartWalltime, mEndWalltime);
+        }
+        if (mEndWalltime > mStartWalltime) {
+            // Parsers get a scratch record, like a walk over the stats, so they can't alter
+            // the snapshot.
+            final HistoryItem rec = new HistoryItem();
+            long curWalltime = 0;
+            long lastRealtime = mInitialRealtime;
+            for (int i = 0, size = mRecords.size(); i < size; i++) {
+                rec.setTo(mRecords.get(i));
+                if (rec.isDeltaData()) {
+                    curWalltime += rec.time - lastRealtime;
+                    lastRealtime = rec.time;
+                    long x = (curWalltime - mStartWalltime);
+                    if (x < 0) {
+                        x = 0;
+                    }
+                    for (int j = 0; j < parsers.length; j++) {
+                        parsers[j].onDataPoint(x, rec);
+                    }
+                } else {
+                    long lastWalltime = curWalltime;
+                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || rec.cmd == HistoryItem.CMD_RESET) {
+                        if (rec.currentTime >= mStartWalltime) {
+                            curWalltime = rec.currentTime;
+                        } else {
+                            curWalltime = mStartWalltime + (rec.time - mHistoryStart);
+                        }
+                        lastRealtime = rec.time;
+                    }
+
+                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
+                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
+                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                        for (int j = 0; j < parsers.length; j++) {
+                            parsers[j].onDataGap();
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < parsers.length; j++) {
+            parsers[j].onParsingDone();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import android.os.SystemClock;
 import android.text.format.Formatter;
 import android.util.SparseIntArray;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.internal.os.BatteryStatsHelper;
@@ -53,6 +54,9 @@ public class BatteryInfo {
     private boolean mCharging;
     private BatteryStats mStats;
     private static final String LOG_TAG = "BatteryInfo";
+    // The chart is only a few hundred pixels wide, so keep at most this many points per path.
+    @VisibleForTesting
+    static final int CHART_RESOLUTION = 500;
     private long timePeriod;
 
     public interface Callback {
@@ -66,11 +70,14 @@ public class BatteryInfo {
             long startTime;
             int lastTime = -1;
             byte lastLevel;
+            long bucketSize = 1;
+            long lastBucket = -1;
 
             @Override
             public void onParsingStarted(long startTime, long endTime) {
                 this.startTime = startTime;
                 timePeriod = endTime - startTime;
+                bucketSize = Math.max(1, timePeriod / CHART_RESOLUTION);
                 view.clearPaths();
                 // Initially configure the graph for history only.
                 view.configureGraph((int) timePeriod, 100);
@@ -80,6 +87,13 @@ public class BatteryInfo {
             public void onDataPoint(long time, HistoryItem record) {
                 lastTime = (int) time;
                 lastLevel = record.batteryLevel;
+                // Only the last point of each bucket is drawn; the rest would land on the
+                // same pixel.
+                final long bucket = time / bucketSize;
+                if (bucket == lastBucket && points.size() > 1) {
+                    points.removeAt(points.size() - 1);
+                }
+                lastBucket = bucket;
                 points.put(lastTime, lastLevel);
             }
 
@@ -89,6 +103,7 @@ public class BatteryInfo {
                     view.addPath(points);
                 }
                 points.clear();
+                lastBucket = -1;
             }
 
             @Override
@@ -306,101 +321,13 @@ public class BatteryInfo {
         void onParsingDone();
     }
 
+    /**
+     * Feeds the battery history of {@code stats} to {@code parsers}. The history is read once
+     * per stats object and replayed from a {@link BatteryHistorySnapshot} afterwards.
+     */
     public static void parse(BatteryStats stats, BatteryDataParser... parsers) {
-        long startWalltime = 0;
-        long endWalltime = 0;
-        long historyStart = 0;
-        long historyEnd = 0;
-        long curWalltime = startWalltime;
-        long lastWallTime = 0;
-        long lastRealtime = 0;
-        int lastInteresting = 0;
-        int pos = 0;
-        boolean first = true;
-        if (stats.startIteratingHistoryLocked()) {
-            final HistoryItem rec = new HistoryItem();
-            while (stats.getNextHistoryLocked(rec)) {
-                pos++;
-                if (first) {
-                    first = false;
-                    historyStart = rec.time;
-                }
-                if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
-                        || rec.cmd == HistoryItem.CMD_RESET) {
-                    // If there is a ridiculously large jump in time, then we won't be
-                    // able to create a good chart with that data, so just ignore the
-                    // times we got before and pretend like our data extends back from
-                    // the time we have now.
-                    // Also, if we are getting a time change and we are less than 5 minutes
-                    // since the start of the history real time, then also use this new
-                    // time to compute the base time, since whatever time we had before is
-                    // pretty much just noise.
-                    if (rec.currentTime > (lastWallTime + (180 * 24 * 60 * 60 * 1000L))
-                            || rec.time < (historyStart + (5 * 60 * 1000L))) {
-                        startWalltime = 0;
-                    }
-                    lastWallTime = rec.currentTime;
-                    lastRealtime = rec.time;
-                    if (startWalltime == 0) {
-                        startWalltime = lastWallTime - (lastRealtime - historyStart);
-                    }
-                }
-                if (rec.isDeltaData()) {
-                    lastInteresting = pos;
-                    historyEnd = rec.time;
-                }
-            }
-        }
-        stats.finishIteratingHistoryLocked();
-        endWalltime = lastWallTime + historyEnd - lastRealtime;
-
-        int i = 0;
-        final int N = lastInteresting;
-
-        for (int j = 0; j < parsers.length; j++) {
-            parsers[j].onParsingStarted(startWalltime, endWalltime);
-        }
-        if (endWalltime > startWalltime && stats.startIteratingHistoryLocked()) {
-            final HistoryItem rec = new HistoryItem();
-            while (stats.getNextHistoryLocked(rec) && i < N) {
-                if (rec.isDeltaData()) {
-                    curWalltime += rec.time - lastRealtime;
-                    lastRealtime = rec.time;
-                    long x = (curWalltime - startWalltime);
-                    if (x < 0) {
-                        x = 0;
-                    }
-                    for (int j = 0; j < parsers.length; j++) {
-                        parsers[j].onDataPoint(x, rec);
-                    }
-                } else {
-                    long lastWalltime = curWalltime;
-                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
-                            || rec.cmd == HistoryItem.CMD_RESET) {
-                        if (rec.currentTime >= startWalltime) {
-                            curWalltime = rec.currentTime;
-                        } else {
-                            curWalltime = startWalltime + (rec.time - historyStart);
-                        }
-                        lastRealtime = rec.time;
-                    }
-
-                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
-                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
-                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
-                        for (int j = 0; j < parsers.length; j++) {
-                            parsers[j].onDataGap();
-                        }
-                    }
-                }
-                i++;
-            }
-        }
-
-        stats.finishIteratingHistoryLocked();
-
-        for (int j = 0; j < parsers.length; j++) {
-            parsers[j].onParsingDone();
-        }
+        final long startTime = System.currentTimeMillis();
+        BatteryHistorySnapshot.get(stats).replay(parsers);
+        BatteryUtils.logRuntime(LOG_TAG, "time to parse history", startTime);
     }
 }
@@ -71,14 +71,6 @@ public class PowerUsageAdvanced extends PowerUsageBase {
         restoreSavedInstance(icicle);
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (getActivity().isChangingConfigurations()) {
-            BatteryEntry.clearUidCache();
-        }
-    }
-
     @Override
     public int getMetricsCategory() {
         return SettingsEnums.FUELGAUGE_BATTERY_HISTORY_DETAIL;
@@ -33,7 +33,9 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = "BatteryDatabaseHelper";
 
     private static final String DATABASE_NAME = "battery_settings.db";
-    private static final int DATABASE_VERSION = 5;
+    private static final int DATABASE_VERSION = 6;
+    // Last version whose tables are kept on upgrade; only the indices are added.
+    private static final int DATABASE_VERSION_WITHOUT_INDICES = 5;
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({State.NEW,
@@ -98,6 +100,16 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
                     + AnomalyColumns.ANOMALY_STATE + "," + AnomalyColumns.TIME_STAMP_MS + ")"
                     + ")";
 
+    // Anomalies are queried by state within a time range, so the state comes first.
+    private static final String CREATE_ANOMALY_STATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + Tables.TABLE_ANOMALY + "_state_time ON "
+                    + Tables.TABLE_ANOMALY + "(" + AnomalyColumns.ANOMALY_STATE + ","
+                    + AnomalyColumns.TIME_STAMP_MS + ")";
+
+    // Used by the cleanup job, which deletes anomalies by time only.
+    private static final String CREATE_ANOMALY_TIME_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + Tables.TABLE_ANOMALY + "_time ON "
+                    + Tables.TABLE_ANOMALY + "(" + AnomalyColumns.TIME_STAMP_MS + ")";
 
     public interface ActionColumns {
         /**
@@ -145,6 +157,8 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
 
     private AnomalyDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets the UI read anomalies while the detection job is writing them.
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -154,7 +168,9 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (oldVersion < DATABASE_VERSION) {
+        if (oldVersion == DATABASE_VERSION_WITHOUT_INDICES) {
+            createIndices(db);
+        } else if (oldVersion < DATABASE_VERSION) {
             Log.w(TAG, "Detected schema version '" + oldVersion + "'. " +
                     "Index needs to be rebuilt for schema version '" + newVersion + "'.");
             // We need to drop the tables and recreate them
@@ -178,9 +194,15 @@ public class AnomalyDatabaseHelper extends SQLiteOpenHelper {
     private void bootstrapDB(SQLiteDatabase db) {
         db.execSQL(CREATE_ANOMALY_TABLE);
         db.execSQL(CREATE_ACTION_TABLE);
+        createIndices(db);
         Log.i(TAG, "Bootstrapped database");
     }
 
+    private void createIndices(SQLiteDatabase db) {
+        db.execSQL(CREATE_ANOMALY_STATE_INDEX);
+        db.execSQL(CREATE_ANOMALY_TIME_INDEX);
+    }
+
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_ANOMALY);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_ACTION);
@@ -63,6 +63,9 @@ public class AnomalyDetectionJobService extends JobService {
     static final int STATSD_UID_FILED = 1;
     @VisibleForTesting
     static final long MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(30);
+    // Max number of work items whose anomalies are inserted in one database transaction.
+    @VisibleForTesting
+    static final int MAX_BATCH_SIZE = 32;
 
     private final Object mLock = new Object();
     @GuardedBy("mLock")
@@ -103,14 +106,21 @@ public class AnomalyDetectionJobService extends JobService {
             final MetricsFeatureProvider metricsFeatureProvider = FeatureFactory
                     .getFactory(this).getMetricsFeatureProvider();
 
+            final List<JobWorkItem> items = new ArrayList<>();
+            final List<BatteryDatabaseManager.AnomalyRecord> anomalies = new ArrayList<>();
+            final List<Runnable> actions = new ArrayList<>();
             for (JobWorkItem item = dequeueWork(params); item != null; item = dequeueWork(params)) {
                 saveAnomalyToDatabase(context, userManager,
-                        batteryDatabaseManager, batteryUtils, policy, powerWhitelistBackend,
+                        anomalies, actions, batteryUtils, policy, powerWhitelistBackend,
                         contentResolver, powerUsageFeatureProvider, metricsFeatureProvider,
                         item.getIntent().getExtras());
+                items.add(item);
 
-                completeWork(params, item);
+                if (items.size() >= MAX_BATCH_SIZE) {
+                    flushWork(params, batteryDatabaseManager, items, anomalies, actions);
+                }
             }
+            flushWork(params, batteryDatabaseManager, items, anomalies, actions);
         });
 
         return true;
@@ -124,11 +134,50 @@ public class AnomalyDetectionJobService extends JobService {
         return true; // Need to reschedule
     }
 
+    /**
+     * Insert {@code anomalies} in one transaction, run {@code actions}, then complete the work
+     * items they came from.
+     *
+     * <p>If the job was stopped, the batch is dropped instead: its work items are redelivered when
+     * the job is rescheduled, and their anomalies must not be saved, restricted or logged twice.
+     * The lock is only held to check that, so stopping the job never waits for the database. If
+     * the job stops while the batch is applied, its work items are not completed and are
+     * redelivered; inserting their anomalies again is ignored by the database.
+     */
+    @VisibleForTesting
+    void flushWork(JobParameters params, BatteryDatabaseManager databaseManager,
+            List<JobWorkItem> items, List<BatteryDatabaseManager.AnomalyRecord> anomalies,
+            List<Runnable> actions) {
+        final boolean jobCanceled;
+        synchronized (mLock) {
+            jobCanceled = mIsJobCanceled;
+        }
+        if (!jobCanceled) {
+            databaseManager.insertAnomalies(anomalies);
+            for (int i = 0, size = actions.size(); i < size; i++) {
+                actions.get(i).run();
+            }
+            for (int i = 0, size = items.size(); i < size; i++) {
+                // Skipped once the job is stopped.
+                completeWork(params, items.get(i));
+            }
+        }
+        items.clear();
+        anomalies.clear();
+        actions.clear();
+    }
+
+    /**
+     * Parse the anomaly in {@code bundle} and add it to {@code anomalies} if it should be saved.
+     * The restriction and metrics of the anomaly are added to {@code actions}, to run once the
+     * anomalies are saved.
+     */
     @VisibleForTesting
     void saveAnomalyToDatabase(Context context, UserManager userManager,
-            BatteryDatabaseManager databaseManager, BatteryUtils batteryUtils,
-            BatteryTipPolicy policy, PowerWhitelistBackend powerWhitelistBackend,
-            ContentResolver contentResolver, PowerUsageFeatureProvider powerUsageFeatureProvider,
+            List<BatteryDatabaseManager.AnomalyRecord> anomalies, List<Runnable> actions,
+            BatteryUtils batteryUtils, BatteryTipPolicy policy,
+            PowerWhitelistBackend powerWhitelistBackend, ContentResolver contentResolver,
+            PowerUsageFeatureProvider powerUsageFeatureProvider,
             MetricsFeatureProvider metricsFeatureProvider, Bundle bundle) {
         // The Example of intentDimsValue is: 35:{1:{1:{1:10013|}|}|}
         final StatsDimensionsValue intentDimsValue =
@@ -152,29 +201,29 @@ public class AnomalyDetectionJobService extends JobService {
             final long versionCode = batteryUtils.getAppLongVersionCode(packageName);
             final String versionedPackage = packageName + "/" + versionCode;
             if (batteryUtils.shouldHideAnomaly(powerWhitelistBackend, uid, anomalyInfo)) {
-                metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                actions.add(() -> metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                         SettingsEnums.ACTION_ANOMALY_IGNORED,
                         SettingsEnums.PAGE_UNKNOWN,
                         versionedPackage,
-                        anomalyInfo.anomalyType);
+                        anomalyInfo.anomalyType));
             } else {
                 if (autoFeatureOn && anomalyInfo.autoRestriction) {
                     // Auto restrict this app
-                    batteryUtils.setForceAppStandby(uid, packageName,
-                            AppOpsManager.MODE_IGNORED);
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.AUTO_HANDLED,
-                            timeMs);
+                    actions.add(() -> batteryUtils.setForceAppStandby(uid, packageName,
+                            AppOpsManager.MODE_IGNORED));
+                    anomalies.add(new BatteryDatabaseManager.AnomalyRecord(uid, packageName,
+                            anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.AUTO_HANDLED,
+                            timeMs));
                 } else {
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
-                            AnomalyDatabaseHelper.State.NEW,
-                            timeMs);
+                    anomalies.add(new BatteryDatabaseManager.AnomalyRecord(uid, packageName,
+                            anomalyInfo.anomalyType, AnomalyDatabaseHelper.State.NEW,
+                            timeMs));
                 }
-                metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                actions.add(() -> metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                         SettingsEnums.ACTION_ANOMALY_TRIGGERED,
                         SettingsEnums.PAGE_UNKNOWN,
                         versionedPackage,
-                        anomalyInfo.anomalyType);
+                        anomalyInfo.anomalyType));
             }
 
         } catch (NullPointerException | IndexOutOfBoundsException e) {
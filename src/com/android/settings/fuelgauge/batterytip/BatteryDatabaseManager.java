@@ -31,6 +31,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.SparseLongArray;
@@ -47,8 +48,9 @@ import java.util.Map;
 /**
  * Database manager for battery data. Now it only contains anomaly data stored in {@link AppInfo}.
  *
- * This manager may be accessed by multi-threads. All the database related methods are synchronized
- * so each operation won't be interfered by other threads.
+ * This manager may be accessed by multi-threads. All the methods writing to the database are
+ * synchronized so each write won't be interfered by other threads. The database uses write-ahead
+ * logging, so queries don't take that lock and can run while a write is in progress.
  */
 public class BatteryDatabaseManager {
     private static BatteryDatabaseManager sSingleton;
@@ -95,10 +97,47 @@ public class BatteryDatabaseManager {
         return db.insertWithOnConflict(TABLE_ANOMALY, null, values, CONFLICT_IGNORE) != -1;
     }
 
+    /**
+     * Insert anomaly logs to database in one transaction.
+     *
+     * @param anomalies the anomalies to insert
+     * @return the number of anomalies inserted, duplicated ones are ignored
+     */
+    public synchronized int insertAnomalies(List<AnomalyRecord> anomalies) {
+        if (anomalies.isEmpty()) {
+            return 0;
+        }
+        int inserted = 0;
+        final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement statement = db.compileStatement("INSERT OR IGNORE INTO "
+                + TABLE_ANOMALY + "(" + UID + "," + PACKAGE_NAME + "," + ANOMALY_TYPE + ","
+                + ANOMALY_STATE + "," + TIME_STAMP_MS + ") VALUES (?,?,?,?,?)")) {
+            for (int i = 0, size = anomalies.size(); i < size; i++) {
+                final AnomalyRecord anomaly = anomalies.get(i);
+                statement.clearBindings();
+                statement.bindLong(1, anomaly.uid);
+                if (anomaly.packageName != null) {
+                    statement.bindString(2, anomaly.packageName);
+                }
+                statement.bindLong(3, anomaly.type);
+                statement.bindLong(4, anomaly.anomalyState);
+                statement.bindLong(5, anomaly.timestampMs);
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return inserted;
+    }
+
     /**
      * Query all the anomalies that happened after {@code timestampMsAfter} and with {@code state}.
      */
-    public synchronized List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
+    public List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
         final List<AppInfo> appInfos = new ArrayList<>();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
         final String[] projection = {PACKAGE_NAME, ANOMALY_TYPE, UID};
@@ -165,7 +204,7 @@ public class BatteryDatabaseManager {
      * @param type of action been performed
      * @return {@link SparseLongArray} where key is uid and value is timestamp
      */
-    public synchronized SparseLongArray queryActionTime(
+    public SparseLongArray queryActionTime(
             @AnomalyDatabaseHelper.ActionType int type) {
         final SparseLongArray timeStamps = new SparseLongArray();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
@@ -217,4 +256,24 @@ public class BatteryDatabaseManager {
 
         return db.delete(TABLE_ACTION, where, whereArgs) != 0;
     }
+
+    /**
+     * An anomaly to be inserted by {@link #insertAnomalies(List)}.
+     */
+    public static class AnomalyRecord {
+        public final int uid;
+        public final String packageName;
+        public final int type;
+        public final int anomalyState;
+        public final long timestampMs;
+
+        public AnomalyRecord(int uid, String packageName, int type, int anomalyState,
+                long timestampMs) {
+            this.uid = uid;
+            this.packageName = packageName;
+            this.type = type;
+            this.anomalyState = anomalyState;
+            this.timestampMs = timestampMs;
+        }
+    }
 }
@@ -23,6 +23,7 @@ import androidx.annotation.VisibleForTesting;
 import com.android.internal.os.BatteryStatsHelper;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
@@ -34,10 +35,14 @@ import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.SummaryTip;
 import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
@@ -63,18 +68,41 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
+        final long startTime = System.currentTimeMillis();
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
-        final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(mBatteryStatsHelper, TAG);
         final Context context = getContext();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryStatsHelper,
-                batteryInfo.discharging).detect());
-        tips.add(new SmartBatteryDetector(policy, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new SummaryDetector(policy, batteryInfo.averageTimeToDischarge).detect());
-        tips.add(new RestrictAppDetector(context, policy).detect());
+        // Detectors that don't need the battery info start while it is computed.
+        final DetectorTask smartBatteryTask = startDetector(
+                () -> new SmartBatteryDetector(policy, context.getContentResolver()));
+        final DetectorTask earlyWarningTask = startDetector(
+                () -> new EarlyWarningDetector(policy, context));
+        final DetectorTask restrictAppTask = startDetector(
+                () -> new RestrictAppDetector(context, policy));
+
+        final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(mBatteryStatsHelper, TAG);
+        final DetectorTask highUsageTask = startDetector(
+                () -> new HighUsageDetector(context, policy, mBatteryStatsHelper,
+                        batteryInfo.discharging));
+
+        // The remaining detectors are cheap, so run them here instead of waiting idle.
+        final DetectorTask lowBatteryTask = new DetectorTask(
+                () -> new LowBatteryDetector(context, policy, batteryInfo));
+        lowBatteryTask.run();
+        final DetectorTask summaryTask = new DetectorTask(
+                () -> new SummaryDetector(policy, batteryInfo.averageTimeToDischarge));
+        summaryTask.run();
+
+        final DetectorTask[] tasks = {lowBatteryTask, highUsageTask, smartBatteryTask,
+                earlyWarningTask, summaryTask, restrictAppTask};
+        final List<BatteryTip> tips = new ArrayList<>(tasks.length);
+        final StringBuilder cost = new StringBuilder("detector cost:");
+        for (DetectorTask task : tasks) {
+            final DetectorResult result = task.getResult();
+            tips.add(result.tip);
+            cost.append(' ').append(result.name).append('=').append(result.costMs).append("ms");
+        }
+        BatteryUtils.logRuntime(TAG, cost.toString(), startTime);
 
         Collections.sort(tips);
         return tips;
@@ -84,6 +112,12 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     protected void onDiscardResult(List<BatteryTip> result) {
     }
 
+    private static DetectorTask startDetector(Supplier<BatteryTipDetector> detectorSupplier) {
+        final DetectorTask task = new DetectorTask(detectorSupplier);
+        ThreadUtils.postOnBackgroundThread(task);
+        return task;
+    }
+
     private List<BatteryTip> getFakeData() {
         final List<BatteryTip> tips = new ArrayList<>();
         tips.add(new SummaryTip(BatteryTip.StateType.NEW,
@@ -94,4 +128,55 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         return tips;
     }
 
+    /**
+     * Creates and runs a {@link BatteryTipDetector}, keeping how long it took.
+     */
+    private static class DetectorTask extends FutureTask<DetectorResult> {
+
+        DetectorTask(Supplier<BatteryTipDetector> detectorSupplier) {
+            super(() -> {
+                final long startTime = System.currentTimeMillis();
+                final BatteryTipDetector detector = detectorSupplier.get();
+                final BatteryTip tip = detector.detect();
+                return new DetectorResult(detector.getClass().getSimpleName(), tip,
+                        System.currentTimeMillis() - startTime);
+            });
+        }
+
+        DetectorResult getResult() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return get();
+                    } catch (InterruptedException e) {
+                        // Every tip is needed for a full length list, so keep waiting.
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        final Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new IllegalStateException(cause);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static class DetectorResult {
+        final String name;
+        final BatteryTip tip;
+        final long costMs;
+
+        DetectorResult(String name, BatteryTip tip, long costMs) {
+            this.name = name;
+            this.tip = tip;
+            this.costMs = costMs;
+        }
+    }
 }
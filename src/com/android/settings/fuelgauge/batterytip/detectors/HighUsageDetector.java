@@ -33,6 +33,7 @@ import com.android.settings.fuelgauge.batterytip.HighUsageDataParser;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -43,6 +44,10 @@ import java.util.concurrent.TimeUnit;
  * {@link BatteryTipDetector} since it need the most up-to-date {@code visibleTips}
  */
 public class HighUsageDetector implements BatteryTipDetector {
+    // High usage apps only change with the battery stats, so they are kept for the last stats
+    // snapshot and reused while the tips are reloaded with it.
+    private static CachedResult sCachedResult;
+
     private BatteryTipPolicy mPolicy;
     private BatteryStatsHelper mBatteryStatsHelper;
     private List<AppInfo> mHighUsageAppList;
@@ -68,6 +73,19 @@ public class HighUsageDetector implements BatteryTipDetector {
     public BatteryTip detect() {
         final long lastFullChargeTimeMs = mBatteryUtils.calculateLastFullChargeTime(
                 mBatteryStatsHelper, System.currentTimeMillis());
+        final BatteryStats stats = mBatteryStatsHelper.getStats();
+        final List<AppInfo> cachedAppList = getCachedAppList(stats);
+        if (cachedAppList != null) {
+            mHighUsageAppList.addAll(cachedAppList);
+        } else {
+            detectHighUsageApps();
+            putCachedAppList(stats, mHighUsageAppList);
+        }
+
+        return new HighUsageTip(lastFullChargeTimeMs, mHighUsageAppList);
+    }
+
+    private void detectHighUsageApps() {
         if (mPolicy.highUsageEnabled && mDischarging) {
             parseBatteryData();
             if (mDataParser.isDeviceHeavilyUsed() || mPolicy.testHighUsageTip) {
@@ -109,12 +127,66 @@ public class HighUsageDetector implements BatteryTipDetector {
                 }
             }
         }
+    }
 
-        return new HighUsageTip(lastFullChargeTimeMs, mHighUsageAppList);
+    private List<AppInfo> getCachedAppList(BatteryStats stats) {
+        synchronized (HighUsageDetector.class) {
+            final CachedResult result = sCachedResult;
+            return result != null && result.matches(stats, mDischarging, mPolicy)
+                    ? result.appList : null;
+        }
+    }
+
+    private void putCachedAppList(BatteryStats stats, List<AppInfo> appList) {
+        if (stats == null) {
+            return;
+        }
+        synchronized (HighUsageDetector.class) {
+            sCachedResult = new CachedResult(stats, mDischarging, mPolicy, appList);
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized void clearCache() {
+        sCachedResult = null;
     }
 
     @VisibleForTesting
     void parseBatteryData() {
         BatteryInfo.parse(mBatteryStatsHelper.getStats(), mDataParser);
     }
+
+    private static final class CachedResult {
+        final WeakReference<BatteryStats> stats;
+        final boolean discharging;
+        final boolean highUsageEnabled;
+        final long highUsagePeriodMs;
+        final int highUsageBatteryDraining;
+        final int highUsageAppCount;
+        final boolean testHighUsageTip;
+        final List<AppInfo> appList;
+
+        CachedResult(BatteryStats stats, boolean discharging, BatteryTipPolicy policy,
+                List<AppInfo> appList) {
+            this.stats = new WeakReference<>(stats);
+            this.discharging = discharging;
+            highUsageEnabled = policy.highUsageEnabled;
+            highUsagePeriodMs = policy.highUsagePeriodMs;
+            highUsageBatteryDraining = policy.highUsageBatteryDraining;
+            highUsageAppCount = policy.highUsageAppCount;
+            testHighUsageTip = policy.testHighUsageTip;
+            this.appList = Collections.unmodifiableList(new ArrayList<>(appList));
+        }
+
+        boolean matches(BatteryStats stats, boolean discharging, BatteryTipPolicy policy) {
+            return stats != null
+                    && this.stats.get() == stats
+                    && this.discharging == discharging
+                    && highUsageEnabled == policy.highUsageEnabled
+                    && highUsagePeriodMs == policy.highUsagePeriodMs
+                    && highUsageBatteryDraining == policy.highUsageBatteryDraining
+                    && highUsageAppCount == policy.highUsageAppCount
+                    && testHighUsageTip == policy.testHighUsageTip;
+        }
+    }
 }
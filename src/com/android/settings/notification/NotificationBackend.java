@@ -32,11 +32,14 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ParceledListSlice;
 import android.graphics.drawable.Drawable;
+import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.ServiceManager;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.service.notification.NotifyingApp;
 import android.text.format.DateUtils;
+import android.util.ArrayMap;
 import android.util.IconDrawableFactory;
 import android.util.Log;
 
@@ -47,9 +50,11 @@ import com.android.settingslib.Utils;
 import com.android.settingslib.utils.StringUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NotificationBackend {
     private static final String TAG = "NotificationBackend";
@@ -60,6 +65,12 @@ public class NotificationBackend {
     static INotificationManager sINM = INotificationManager.Stub.asInterface(
             ServiceManager.getService(Context.NOTIFICATION_SERVICE));
 
+    // Channels can also be changed by the app itself, so snapshots are only trusted briefly.
+    @VisibleForTesting
+    static final long CHANNEL_SNAPSHOT_TTL_MS = 5 * DateUtils.SECOND_IN_MILLIS;
+    private static final Map<String, ChannelSnapshot> sChannelSnapshots = new ArrayMap<>();
+    private static final AtomicInteger sBinderCallsSaved = new AtomicInteger();
+
     public AppRow loadAppRow(Context context, PackageManager pm, ApplicationInfo app) {
         final AppRow row = new AppRow();
         row.pkg = app.packageName;
@@ -163,6 +174,9 @@ public class NotificationBackend {
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
             return false;
+        } finally {
+            // After the write, so a snapshot loaded while writing is not kept.
+            invalidateChannelSnapshot(pkg, uid);
         }
     }
 
@@ -230,12 +244,117 @@ public class NotificationBackend {
     }
 
     public ParceledListSlice<NotificationChannelGroup> getGroups(String pkg, int uid) {
+        return new ParceledListSlice<>(getChannelSnapshot(pkg, uid).getGroups());
+    }
+
+    /**
+     * Returns the channel groups and channel counts of a package, fetched with a single NoMan
+     * query and shared between callers until the package's channels are updated.
+     */
+    public ChannelSnapshot getChannelSnapshot(String pkg, int uid) {
+        final String key = getSnapshotKey(pkg, uid);
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sChannelSnapshots) {
+            removeExpiredSnapshotsLocked(now);
+            final ChannelSnapshot cached = sChannelSnapshots.get(key);
+            if (cached != null) {
+                final int saved = sBinderCallsSaved.incrementAndGet();
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Channel snapshot hit for " + pkg + ", binder calls saved: "
+                            + saved);
+                }
+                return cached;
+            }
+        }
+        final ChannelSnapshot snapshot = loadChannelSnapshot(pkg, uid, now);
+        if (snapshot.mValid) {
+            synchronized (sChannelSnapshots) {
+                sChannelSnapshots.put(key, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the cached channel snapshot of a package, e.g. after it was changed elsewhere.
+     */
+    public void invalidateChannelSnapshot(String pkg, int uid) {
+        synchronized (sChannelSnapshots) {
+            sChannelSnapshots.remove(getSnapshotKey(pkg, uid));
+        }
+    }
+
+    /**
+     * Returns how many NoMan channel group queries were avoided by cached channel snapshots.
+     */
+    public static int getBinderCallsSaved() {
+        return sBinderCallsSaved.get();
+    }
+
+    @VisibleForTesting
+    static int getChannelSnapshotCount() {
+        synchronized (sChannelSnapshots) {
+            return sChannelSnapshots.size();
+        }
+    }
+
+    @VisibleForTesting
+    static void clearChannelSnapshots() {
+        synchronized (sChannelSnapshots) {
+            sChannelSnapshots.clear();
+        }
+        sBinderCallsSaved.set(0);
+    }
+
+    private static String getSnapshotKey(String pkg, int uid) {
+        return uid + ":" + pkg;
+    }
+
+    private static void removeExpiredSnapshotsLocked(long now) {
+        for (int i = sChannelSnapshots.size() - 1; i >= 0; i--) {
+            if (now - sChannelSnapshots.valueAt(i).mTimestamp >= CHANNEL_SNAPSHOT_TTL_MS) {
+                sChannelSnapshots.removeAt(i);
+            }
+        }
+    }
+
+    private ChannelSnapshot loadChannelSnapshot(String pkg, int uid, long timestamp) {
+        final List<NotificationChannelGroup> allGroups;
         try {
-            return sINM.getNotificationChannelGroupsForPackage(pkg, uid, false);
+            // Deleted channels are included only so they can be counted below.
+            allGroups = sINM.getNotificationChannelGroupsForPackage(pkg, uid, true).getList();
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
-            return ParceledListSlice.emptyList();
+            return new ChannelSnapshot(timestamp, Collections.emptyList(), 0, 0, 0,
+                    false /* valid */);
+        }
+        int channelCount = 0;
+        int blockedChannelCount = 0;
+        int deletedChannelCount = 0;
+        final List<NotificationChannelGroup> groups = new ArrayList<>(allGroups.size());
+        for (NotificationChannelGroup group : allGroups) {
+            final List<NotificationChannel> channels = new ArrayList<>();
+            for (NotificationChannel channel : group.getChannels()) {
+                if (channel.isDeleted()) {
+                    deletedChannelCount++;
+                    continue;
+                }
+                channelCount++;
+                if (channel.getImportance() == IMPORTANCE_NONE) {
+                    blockedChannelCount++;
+                }
+                channels.add(channel);
+            }
+            if (channels.isEmpty()) {
+                // Matches the non-deleted query, which leaves out groups with no channels.
+                continue;
+            }
+            final NotificationChannelGroup visibleGroup = group.clone();
+            visibleGroup.setChannels(channels);
+            groups.add(visibleGroup);
         }
+        return new ChannelSnapshot(timestamp, groups, channelCount, blockedChannelCount,
+                deletedChannelCount, true /* valid */);
     }
 
     /**
@@ -256,6 +375,8 @@ public class NotificationBackend {
             sINM.updateNotificationChannelForPackage(pkg, uid, channel);
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
+        } finally {
+            invalidateChannelSnapshot(pkg, uid);
         }
     }
 
@@ -264,25 +385,17 @@ public class NotificationBackend {
             sINM.updateNotificationChannelGroupForPackage(pkg, uid, group);
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
+        } finally {
+            invalidateChannelSnapshot(pkg, uid);
         }
     }
 
     public int getDeletedChannelCount(String pkg, int uid) {
-        try {
-            return sINM.getDeletedChannelCount(pkg, uid);
-        } catch (Exception e) {
-            Log.w(TAG, "Error calling NoMan", e);
-            return 0;
-        }
+        return getChannelSnapshot(pkg, uid).getDeletedChannelCount();
     }
 
     public int getBlockedChannelCount(String pkg, int uid) {
-        try {
-            return sINM.getBlockedChannelCount(pkg, uid);
-        } catch (Exception e) {
-            Log.w(TAG, "Error calling NoMan", e);
-            return 0;
-        }
+        return getChannelSnapshot(pkg, uid).getBlockedChannelCount();
     }
 
     public boolean onlyHasDefaultChannel(String pkg, int uid) {
@@ -295,12 +408,7 @@ public class NotificationBackend {
     }
 
     public int getChannelCount(String pkg, int uid) {
-        try {
-            return sINM.getNumNotificationChannelsForPackage(pkg, uid, false);
-        } catch (Exception e) {
-            Log.w(TAG, "Error calling NoMan", e);
-            return 0;
-        }
+        return getChannelSnapshot(pkg, uid).getChannelCount();
     }
 
     public int getNumAppsBypassingDnd(int uid) {
@@ -495,6 +603,70 @@ public class NotificationBackend {
         public int sentCount = 0;
     }
 
+    /**
+     * Channel groups and channel counts of a package at one point in time. Groups only contain
+     * channels that have not been deleted. The snapshot is shared between callers, so it never
+     * hands out the groups and channels it holds, only copies of them.
+     */
+    public static class ChannelSnapshot {
+        private final List<NotificationChannelGroup> mGroups;
+        private final int mChannelCount;
+        private final int mBlockedChannelCount;
+        private final int mDeletedChannelCount;
+        private final long mTimestamp;
+        private final boolean mValid;
+
+        ChannelSnapshot(long timestamp, List<NotificationChannelGroup> groups, int channelCount,
+                int blockedChannelCount, int deletedChannelCount, boolean valid) {
+            mTimestamp = timestamp;
+            mGroups = Collections.unmodifiableList(groups);
+            mChannelCount = channelCount;
+            mBlockedChannelCount = blockedChannelCount;
+            mDeletedChannelCount = deletedChannelCount;
+            mValid = valid;
+        }
+
+        /**
+         * Returns copies of the channel groups, which the caller is free to modify.
+         */
+        public List<NotificationChannelGroup> getGroups() {
+            final List<NotificationChannelGroup> groups = new ArrayList<>(mGroups.size());
+            for (NotificationChannelGroup group : mGroups) {
+                final List<NotificationChannel> channels = new ArrayList<>();
+                for (NotificationChannel channel : group.getChannels()) {
+                    channels.add(copyChannel(channel));
+                }
+                final NotificationChannelGroup copy = group.clone();
+                copy.setChannels(channels);
+                groups.add(copy);
+            }
+            return groups;
+        }
+
+        public int getChannelCount() {
+            return mChannelCount;
+        }
+
+        public int getBlockedChannelCount() {
+            return mBlockedChannelCount;
+        }
+
+        public int getDeletedChannelCount() {
+            return mDeletedChannelCount;
+        }
+
+        private static NotificationChannel copyChannel(NotificationChannel channel) {
+            final Parcel parcel = Parcel.obtain();
+            try {
+                channel.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                return NotificationChannel.CREATOR.createFromParcel(parcel);
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
     static class Row {
         public String section;
     }
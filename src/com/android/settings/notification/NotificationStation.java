@@ -26,13 +26,17 @@ import android.app.NotificationChannel;
 import android.app.PendingIntent;
 import android.app.settings.SettingsEnums;
 import android.content.ComponentName;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.IntentSender;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Parcel;
@@ -47,24 +51,33 @@ import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.style.StyleSpan;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.DateTimeView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
+import androidx.preference.PreferenceScreen;
 import androidx.preference.PreferenceViewHolder;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 public class NotificationStation extends SettingsPreferenceFragment {
     private static final String TAG = NotificationStation.class.getSimpleName();
@@ -76,6 +89,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
     private static class HistoricalNotificationInfo {
         public String key;
+        public String id;
         public String channel;
         public String pkg;
         public Drawable pkgicon;
@@ -86,13 +100,42 @@ public class NotificationStation extends SettingsPreferenceFragment {
         public int user;
         public long timestamp;
         public boolean active;
+        // Generated lazily from sbn and ranking the first time the row is expanded.
         public CharSequence extra;
+        public StatusBarNotification sbn;
+        public RankingMap ranking;
+    }
+
+    /**
+     * Icons and labels resolved for a (package, user) pair. Drawables are kept as constant
+     * states so that each row still gets its own drawable instance.
+     */
+    @VisibleForTesting
+    static class PackageInfoCacheEntry {
+        public String pkg;
+        public CharSequence pkgname;
+        public Drawable.ConstantState pkgicon;
+        public Resources resources;
+        public final SparseArray<Drawable.ConstantState> icons = new SparseArray<>();
     }
 
     private PackageManager mPm;
     private INotificationManager mNoMan;
     private RankingMap mRanking;
 
+    // Only touched from the loader, which never runs more than once at a time.
+    private final ArrayMap<String, PackageInfoCacheEntry> mPackageInfoCache = new ArrayMap<>();
+    // Packages installed, updated or removed since the last load, whose cached info is stale.
+    @GuardedBy("mChangedPackages")
+    private final Set<String> mChangedPackages = new ArraySet<>();
+    // Rows currently shown, keyed by HistoricalNotificationInfo#id.
+    private final ArrayMap<String, HistoricalNotificationPreference> mPreferences =
+            new ArrayMap<>();
+    private final Function<HistoricalNotificationInfo, CharSequence> mExtraTextGenerator =
+            info -> generateExtraText(info.sbn, info);
+    private boolean mLoading;
+    private boolean mReloadPending;
+
     private Runnable mRefreshListRunnable = new Runnable() {
         @Override
         public void run() {
@@ -134,6 +177,16 @@ public class NotificationStation extends SettingsPreferenceFragment {
         }
     };
 
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                onPackageChanged(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
     private void scheduleRefreshList() {
         if (mHandler != null) {
             mHandler.removeCallbacks(mRefreshListRunnable);
@@ -161,6 +214,15 @@ public class NotificationStation extends SettingsPreferenceFragment {
         mPm = mContext.getPackageManager();
         mNoMan = INotificationManager.Stub.asInterface(
                 ServiceManager.getService(Context.NOTIFICATION_SERVICE));
+
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        // Registered while attached, as long as the package info cache lives.
+        mContext.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, filter,
+                null /* permission */, null /* scheduler */);
     }
 
     @Override
@@ -168,6 +230,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
         logd("onDetach()");
         mHandler.removeCallbacks(mRefreshListRunnable);
         mHandler = null;
+        mContext.unregisterReceiver(mPackageReceiver);
+        mPreferences.clear();
         super.onDetach();
     }
 
@@ -208,21 +272,114 @@ public class NotificationStation extends SettingsPreferenceFragment {
         refreshList();
     }
 
+    /**
+     * Loads the notification log on a background thread. Requests made while a load is in
+     * flight are folded into a single reload once it completes.
+     */
     private void refreshList() {
-        List<HistoricalNotificationInfo> infos = loadNotifications();
+        if (mLoading) {
+            mReloadPending = true;
+            return;
+        }
+        mLoading = true;
+        mReloadPending = false;
+        final RankingMap ranking = mRanking;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final Set<String> changedPackages = removeChangedPackageInfo();
+            final List<HistoricalNotificationInfo> infos = loadNotifications(ranking);
+            if (infos != null) {
+                Collections.sort(infos, mNotificationSorter);
+            }
+            ThreadUtils.postOnMainThread(() -> onNotificationsLoaded(infos, changedPackages));
+        });
+    }
+
+    /**
+     * Marks the cached label and icons of {@code pkg} as stale, so the next load reads them
+     * again.
+     */
+    @VisibleForTesting
+    void onPackageChanged(String pkg) {
+        synchronized (mChangedPackages) {
+            mChangedPackages.add(pkg);
+        }
+        if (isResumed()) {
+            scheduleRefreshList();
+        }
+    }
+
+    /**
+     * Drops the cached info of packages changed since the last load, and returns their names.
+     * Only called from the loader.
+     */
+    @VisibleForTesting
+    Set<String> removeChangedPackageInfo() {
+        final Set<String> changedPackages;
+        synchronized (mChangedPackages) {
+            if (mChangedPackages.isEmpty()) {
+                return Collections.emptySet();
+            }
+            changedPackages = new ArraySet<>(mChangedPackages);
+            mChangedPackages.clear();
+        }
+        for (int i = mPackageInfoCache.size() - 1; i >= 0; i--) {
+            if (changedPackages.contains(mPackageInfoCache.valueAt(i).pkg)) {
+                mPackageInfoCache.removeAt(i);
+            }
+        }
+        return changedPackages;
+    }
+
+    private void onNotificationsLoaded(List<HistoricalNotificationInfo> infos,
+            Set<String> changedPackages) {
+        mLoading = false;
+        if (mHandler == null) {
+            // Detached while loading.
+            return;
+        }
         if (infos != null) {
-            final int N = infos.size();
-            logd("adding %d infos", N);
-            Collections.sort(infos, mNotificationSorter);
-            if (getPreferenceScreen() == null) {
-                setPreferenceScreen(getPreferenceManager().createPreferenceScreen(getContext()));
+            updatePreferences(infos, changedPackages);
+        }
+        if (mReloadPending) {
+            refreshList();
+        }
+    }
+
+    /**
+     * Inserts rows for new entries and drops rows for entries no longer in the log, leaving
+     * rows that are still present untouched. Rows of {@code changedPackages} are created again,
+     * so they show the new label and icon.
+     */
+    private void updatePreferences(List<HistoricalNotificationInfo> infos,
+            Set<String> changedPackages) {
+        if (getPreferenceScreen() == null) {
+            setPreferenceScreen(getPreferenceManager().createPreferenceScreen(getContext()));
+            getPreferenceScreen().setOrderingAsAdded(false);
+        }
+        final PreferenceScreen screen = getPreferenceScreen();
+        final Set<String> ids = new ArraySet<>(infos.size());
+        for (HistoricalNotificationInfo info : infos) {
+            ids.add(info.id);
+        }
+        for (int i = mPreferences.size() - 1; i >= 0; i--) {
+            final String id = mPreferences.keyAt(i);
+            if (!ids.contains(id)
+                    || changedPackages.contains(mPreferences.valueAt(i).mInfo.pkg)) {
+                screen.removePreference(mPreferences.remove(id));
             }
-            getPreferenceScreen().removeAll();
-            for (int i = 0; i < N; i++) {
-                getPreferenceScreen().addPreference(
-                        new HistoricalNotificationPreference(getPrefContext(), infos.get(i)));
+        }
+        int added = 0;
+        for (HistoricalNotificationInfo info : infos) {
+            if (mPreferences.containsKey(info.id)) {
+                continue;
             }
+            final HistoricalNotificationPreference pref = new HistoricalNotificationPreference(
+                    getPrefContext(), info, mExtraTextGenerator);
+            mPreferences.put(info.id, pref);
+            screen.addPreference(pref);
+            added++;
         }
+        logd("showing %d infos, %d new", infos.size(), added);
     }
 
     private static void logd(String msg, Object... args) {
@@ -265,7 +422,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return sb.toString();
     }
 
-    private List<HistoricalNotificationInfo> loadNotifications() {
+    private List<HistoricalNotificationInfo> loadNotifications(RankingMap ranking) {
         final int currentUserId = ActivityManager.getCurrentUser();
         try {
             StatusBarNotification[] active = mNoMan.getActiveNotifications(
@@ -287,12 +444,13 @@ public class NotificationStation extends SettingsPreferenceFragment {
                     final HistoricalNotificationInfo info = new HistoricalNotificationInfo();
                     info.pkg = sbn.getPackageName();
                     info.user = sbn.getUserId();
-                    info.icon = loadIconDrawable(info.pkg, info.user, n.icon);
-                    info.pkgicon = loadPackageIconDrawable(info.pkg, info.user);
-                    info.pkgname = loadPackageName(info.pkg);
+                    final PackageInfoCacheEntry entry = getPackageInfo(info.pkg, info.user);
+                    info.icon = loadIconDrawable(entry, info.pkg, n.icon);
+                    info.pkgicon = newDrawable(entry.pkgicon);
+                    info.pkgname = entry.pkgname;
                     info.title = getTitleString(n);
                     if (TextUtils.isEmpty(info.title)) {
-                        info.title = getString(R.string.notification_log_no_title);
+                        info.title = mContext.getString(R.string.notification_log_no_title);
                     }
                     info.timestamp = sbn.getPostTime();
                     info.priority = n.priority;
@@ -300,8 +458,9 @@ public class NotificationStation extends SettingsPreferenceFragment {
                     info.key = sbn.getKey();
 
                     info.active = (resultset == active);
-
-                    info.extra = generateExtraText(sbn, info);
+                    info.id = info.key + '|' + info.timestamp + (info.active ? "|active" : "");
+                    info.sbn = sbn;
+                    info.ranking = ranking;
 
                     logd("   [%d] %s: %s", info.timestamp, info.pkg, info.title);
                     list.add(info);
@@ -358,8 +517,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
             }
         }
         if (info.active) {
-            // mRanking only applies to active notifications
-            if (mRanking != null && mRanking.getRanking(sbn.getKey(), rank)) {
+            // ranking only applies to active notifications
+            if (info.ranking != null && info.ranking.getRanking(sbn.getKey(), rank)) {
                 if (rank.getLastAudiblyAlertedMillis() > 0) {
                     sb.append("\n")
                             .append(bold(getString(R.string.notification_log_details_alerted)));
@@ -421,8 +580,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
                 .append(delim)
                 .append(Notification.priorityToString(n.priority));
         if (info.active) {
-            // mRanking only applies to active notifications
-            if (mRanking != null && mRanking.getRanking(sbn.getKey(), rank)) {
+            // ranking only applies to active notifications
+            if (info.ranking != null && info.ranking.getRanking(sbn.getKey(), rank)) {
                 sb.append("\n")
                         .append(bold(getString(
                                 R.string.notification_log_details_importance)))
@@ -441,7 +600,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
                         .append(delim)
                         .append(Boolean.toString(rank.canShowBadge()));
             } else {
-                if (mRanking == null) {
+                if (info.ranking == null) {
                     sb.append("\n")
                             .append(bold(getString(
                                     R.string.notification_log_details_ranking_null)));
@@ -535,6 +694,26 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return sb;
     }
 
+    @VisibleForTesting
+    PackageInfoCacheEntry getPackageInfo(String pkg, int userId) {
+        final String cacheKey = userId + ":" + pkg;
+        PackageInfoCacheEntry entry = mPackageInfoCache.get(cacheKey);
+        if (entry == null) {
+            entry = new PackageInfoCacheEntry();
+            entry.pkg = pkg;
+            entry.resources = getResourcesForUserPackage(pkg, userId);
+            final Drawable pkgicon = loadPackageIconDrawable(pkg, userId);
+            entry.pkgicon = pkgicon != null ? pkgicon.getConstantState() : null;
+            entry.pkgname = loadPackageName(pkg);
+            mPackageInfoCache.put(cacheKey, entry);
+        }
+        return entry;
+    }
+
+    private static Drawable newDrawable(Drawable.ConstantState state) {
+        return state != null ? state.newDrawable() : null;
+    }
+
     private Resources getResourcesForUserPackage(String pkg, int userId) {
         Resources r = null;
 
@@ -576,32 +755,57 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return pkg;
     }
 
-    private Drawable loadIconDrawable(String pkg, int userId, int resId) {
-        Resources r = getResourcesForUserPackage(pkg, userId);
-
-        if (resId == 0) {
+    private Drawable loadIconDrawable(PackageInfoCacheEntry entry, String pkg, int resId) {
+        if (resId == 0 || entry.resources == null) {
             return null;
         }
 
+        final int index = entry.icons.indexOfKey(resId);
+        if (index >= 0) {
+            return newDrawable(entry.icons.valueAt(index));
+        }
+
+        Drawable icon = null;
         try {
-            return r.getDrawable(resId, null);
+            icon = entry.resources.getDrawable(resId, null);
         } catch (RuntimeException e) {
             Log.w(TAG, "Icon not found in "
                     + (pkg != null ? resId : "<system>")
                     + ": " + Integer.toHexString(resId), e);
         }
-
-        return null;
+        // Remember misses too, so a missing icon is only looked up once.
+        entry.icons.put(resId, icon != null ? icon.getConstantState() : null);
+        return icon;
     }
 
     private static class HistoricalNotificationPreference extends Preference {
         private final HistoricalNotificationInfo mInfo;
+        private final Function<HistoricalNotificationInfo, CharSequence> mExtraTextGenerator;
         private static long sLastExpandedTimestamp; // quick hack to keep things from collapsing
 
-        public HistoricalNotificationPreference(Context context, HistoricalNotificationInfo info) {
+        public HistoricalNotificationPreference(Context context, HistoricalNotificationInfo info,
+                Function<HistoricalNotificationInfo, CharSequence> extraTextGenerator) {
             super(context);
             setLayoutResource(R.layout.notification_log_row);
             mInfo = info;
+            mExtraTextGenerator = extraTextGenerator;
+        }
+
+        @Override
+        public int compareTo(Preference another) {
+            if (another instanceof HistoricalNotificationPreference) {
+                // Newest first, matching NotificationStation#mNotificationSorter.
+                return Long.compare(((HistoricalNotificationPreference) another).mInfo.timestamp,
+                        mInfo.timestamp);
+            }
+            return super.compareTo(another);
+        }
+
+        private CharSequence getExtra() {
+            if (mInfo.extra == null) {
+                mInfo.extra = mExtraTextGenerator.apply(mInfo);
+            }
+            return mInfo.extra;
         }
 
         @Override
@@ -620,16 +824,20 @@ public class NotificationStation extends SettingsPreferenceFragment {
             ((TextView) row.findViewById(R.id.pkgname)).setText(mInfo.pkgname);
 
             final TextView extra = (TextView) row.findViewById(R.id.extra);
-            extra.setText(mInfo.extra);
-            extra.setVisibility(mInfo.timestamp == sLastExpandedTimestamp
-                    ? View.VISIBLE : View.GONE);
+            final boolean expanded = mInfo.timestamp == sLastExpandedTimestamp;
+            extra.setText(expanded ? getExtra() : null);
+            extra.setVisibility(expanded ? View.VISIBLE : View.GONE);
 
             row.itemView.setOnClickListener(
                     new View.OnClickListener() {
                         @Override
                         public void onClick(View view) {
-                            extra.setVisibility(extra.getVisibility() == View.VISIBLE
-                                    ? View.GONE : View.VISIBLE);
+                            if (extra.getVisibility() == View.VISIBLE) {
+                                extra.setVisibility(View.GONE);
+                            } else {
+                                extra.setText(getExtra());
+                                extra.setVisibility(View.VISIBLE);
+                            }
                             sLastExpandedTimestamp = mInfo.timestamp;
                         }
                     });
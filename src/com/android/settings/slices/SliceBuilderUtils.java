@@ -47,6 +47,7 @@ import com.android.settings.SettingsActivity;
 import com.android.settings.SubSettings;
 import com.android.settings.Utils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.PreferenceControllerFactory;
 import com.android.settings.core.SliderPreferenceController;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.core.TogglePreferenceController;
@@ -352,13 +353,13 @@ public class SliceBuilderUtils {
 
     private static BasePreferenceController getPreferenceController(Context context,
             String controllerClassName, String controllerKey) {
-        try {
-            return BasePreferenceController.createInstance(context, controllerClassName);
-        } catch (IllegalStateException e) {
-            // Do nothing
+        final BasePreferenceController controller = PreferenceControllerFactory.createController(
+                context, controllerClassName, controllerKey);
+        if (controller == null) {
+            throw new IllegalStateException(
+                    "Invalid preference controller: " + controllerClassName);
         }
-
-        return BasePreferenceController.createInstance(context, controllerClassName, controllerKey);
+        return controller;
     }
 
     private static SliceAction getToggleAction(Context context, SliceData sliceData,
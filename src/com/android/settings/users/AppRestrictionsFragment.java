@@ -45,6 +45,7 @@ import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.Switch;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.ListPreference;
 import androidx.preference.MultiSelectListPreference;
 import androidx.preference.Preference;
@@ -66,6 +67,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class AppRestrictionsFragment extends SettingsPreferenceFragment implements
         OnPreferenceChangeListener, OnClickListener, OnPreferenceClickListener,
@@ -91,6 +97,18 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
 
     private static final String DELIMITER = ";";
 
+    private static final int LOAD_BATCH_SIZE = 16;
+
+    // Loads the package info of the apps in parallel.
+    private static final ThreadPoolExecutor sAppExecutor;
+
+    static {
+        final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        sAppExecutor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        sAppExecutor.allowCoreThreadTimeOut(true);
+    }
+
     /** Key for extra passed in from calling fragment for the userId of the user being edited */
     public static final String EXTRA_USER_ID = "user_id";
 
@@ -315,17 +333,118 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         }
     }
 
-    private class AppLoadingTask extends AsyncTask<Void, Void, Void> {
+    /** What is loaded in the background for a visible app. */
+    @VisibleForTesting
+    static class AppEntry {
+        final AppRestrictionsHelper.SelectableAppInfo app;
+        // Null for the settings app, or if the app is not installed.
+        final PackageInfo packageInfo;
+        final boolean hasSettings;
+        // The current restrictions of an app whose restrictions are requested when it is shown.
+        final Bundle restrictions;
+
+        AppEntry(AppRestrictionsHelper.SelectableAppInfo app, PackageInfo packageInfo,
+                boolean hasSettings, Bundle restrictions) {
+            this.app = app;
+            this.packageInfo = packageInfo;
+            this.hasSettings = hasSettings;
+            this.restrictions = restrictions;
+        }
+    }
+
+    /**
+     * Loads the visible apps and shows them in batches, in the order of their labels, so the apps
+     * already shown can be used while the others are loading.
+     */
+    @VisibleForTesting
+    class AppLoadingTask extends AsyncTask<Void, AppEntry, Void> {
+        private final String mSettingsPackageName = getActivity().getPackageName();
+        private boolean mAppsShown;
 
         @Override
         protected Void doInBackground(Void... params) {
             mHelper.fetchAndMergeApps();
+            final Set<String> restrictionsPackages = new HashSet<>();
+            final Intent restrictionsIntent = new Intent(Intent.ACTION_GET_RESTRICTION_ENTRIES);
+            final List<ResolveInfo> receivers =
+                    mPackageManager.queryBroadcastReceivers(restrictionsIntent, 0);
+            for (ResolveInfo info : receivers) {
+                restrictionsPackages.add(info.activityInfo.packageName);
+            }
+
+            final List<AppRestrictionsHelper.SelectableAppInfo> apps = mHelper.getVisibleApps();
+            final List<Future<AppEntry>> futures = new ArrayList<>(apps.size());
+            for (AppRestrictionsHelper.SelectableAppInfo app : apps) {
+                futures.add(sAppExecutor.submit(() -> loadAppEntry(app, restrictionsPackages)));
+            }
+            final List<AppEntry> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            try {
+                // Wait for the apps in order, the later ones are loaded in the meantime.
+                for (Future<AppEntry> future : futures) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    try {
+                        batch.add(future.get());
+                    } catch (ExecutionException e) {
+                        // Leave out the app, as if its package info couldn't be read.
+                        Log.w(TAG, "Couldn't load app", e.getCause());
+                        continue;
+                    }
+                    if (batch.size() == LOAD_BATCH_SIZE) {
+                        publishProgress(batch.toArray(new AppEntry[batch.size()]));
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return null;
+            } finally {
+                for (Future<AppEntry> future : futures) {
+                    future.cancel(true /* mayInterruptIfRunning */);
+                }
+            }
+            if (!batch.isEmpty()) {
+                publishProgress(batch.toArray(new AppEntry[batch.size()]));
+            }
             return null;
         }
 
+        private AppEntry loadAppEntry(AppRestrictionsHelper.SelectableAppInfo app,
+                Set<String> restrictionsPackages) {
+            final String packageName = app.packageName;
+            final boolean hasSettings = restrictionsPackages.contains(packageName);
+            if (packageName == null || packageName.equals(mSettingsPackageName)) {
+                return new AppEntry(app, null, hasSettings, null);
+            }
+            PackageInfo pi = null;
+            try {
+                pi = mIPm.getPackageInfo(packageName,
+                        PackageManager.MATCH_ANY_USER
+                        | PackageManager.GET_SIGNATURES, mUser.getIdentifier());
+            } catch (RemoteException e) {
+                // Ignore
+            }
+            Bundle restrictions = null;
+            if (pi != null && hasSettings && app.masterEntry == null
+                    && (pi.requiredForAllUsers || isPlatformSigned(pi))) {
+                restrictions = mUserManager.getApplicationRestrictions(packageName, mUser);
+            }
+            return new AppEntry(app, pi, hasSettings, restrictions);
+        }
+
+        @Override
+        protected void onProgressUpdate(AppEntry... apps) {
+            mAppsShown |= populateApps(apps, !mAppsShown /* firstBatch */);
+        }
+
         @Override
         protected void onPostExecute(Void result) {
-            populateApps();
+            if (!mAppsShown) {
+                mAppsShown = populateApps(new AppEntry[0], true /* firstBatch */);
+            }
+            if (mAppsShown) {
+                onAppsPopulated();
+            }
         }
     }
 
@@ -343,40 +462,35 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
                 && (privateFlags&ApplicationInfo.PRIVATE_FLAG_HIDDEN) == 0);
     }
 
-    private void populateApps() {
+    /**
+     * Adds the preferences of {@code apps}, after removing the preferences previously shown if
+     * this is the first batch. Returns false if the apps can't be shown.
+     */
+    private boolean populateApps(AppEntry[] apps, boolean firstBatch) {
         final Context context = getActivity();
-        if (context == null) return;
-        final PackageManager pm = mPackageManager;
-        final IPackageManager ipm = mIPm;
-        final int userId = mUser.getIdentifier();
+        if (context == null) return false;
 
-        // Check if the user was removed in the meantime.
-        if (Utils.getExistingUser(mUserManager, mUser) == null) {
-            return;
+        if (firstBatch) {
+            // Check if the user was removed in the meantime.
+            if (Utils.getExistingUser(mUserManager, mUser) == null) {
+                return false;
+            }
+            mAppList.removeAll();
         }
-        mAppList.removeAll();
-        Intent restrictionsIntent = new Intent(Intent.ACTION_GET_RESTRICTION_ENTRIES);
-        final List<ResolveInfo> receivers = pm.queryBroadcastReceivers(restrictionsIntent, 0);
-        for (AppRestrictionsHelper.SelectableAppInfo app : mHelper.getVisibleApps()) {
+        for (AppEntry entry : apps) {
+            final AppRestrictionsHelper.SelectableAppInfo app = entry.app;
             String packageName = app.packageName;
             if (packageName == null) continue;
             final boolean isSettingsApp = packageName.equals(context.getPackageName());
             AppRestrictionsPreference p = new AppRestrictionsPreference(getPrefContext(), this);
-            final boolean hasSettings = resolveInfoListHasPackage(receivers, packageName);
+            final boolean hasSettings = entry.hasSettings;
             if (isSettingsApp) {
                 addLocationAppRestrictionsPreference(app, p);
                 // Settings app should be available to restricted user
                 mHelper.setPackageSelected(packageName, true);
                 continue;
             }
-            PackageInfo pi = null;
-            try {
-                pi = ipm.getPackageInfo(packageName,
-                        PackageManager.MATCH_ANY_USER
-                        | PackageManager.GET_SIGNATURES, userId);
-            } catch (RemoteException e) {
-                // Ignore
-            }
+            final PackageInfo pi = entry.packageInfo;
             if (pi == null) {
                 continue;
             }
@@ -402,7 +516,7 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
                 // Only do this for restricted profiles, not single-user restrictions
                 // Also don't do this for slave icons
                 if (app.masterEntry == null) {
-                    requestRestrictionsForApp(packageName, p, false);
+                    requestRestrictionsForApp(packageName, p, entry.restrictions, false);
                 }
             } else if (!mNewUser && isAppEnabledForUser(pi)) {
                 p.setChecked(true);
@@ -415,6 +529,11 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
             mHelper.setPackageSelected(packageName, p.isChecked());
             mAppList.addPreference(p);
         }
+        return true;
+    }
+
+    @VisibleForTesting
+    void onAppsPopulated() {
         mAppListChanged = true;
         // If this is the first time for a new profile, install/uninstall default apps for profile
         // to avoid taking the hit in onPause(), which can cause race conditions on user switch.
@@ -469,15 +588,6 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
         return PKG_PREFIX + packageName;
     }
 
-    private boolean resolveInfoListHasPackage(List<ResolveInfo> receivers, String packageName) {
-        for (ResolveInfo info : receivers) {
-            if (info.activityInfo.packageName.equals(packageName)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private void updateAllEntries(String prefKey, boolean checked) {
         for (int i = 0; i < mAppList.getPreferenceCount(); i++) {
             Preference pref = mAppList.getPreference(i);
@@ -594,8 +704,16 @@ public class AppRestrictionsFragment extends SettingsPreferenceFragment implemen
      */
     private void requestRestrictionsForApp(String packageName,
             AppRestrictionsPreference preference, boolean invokeIfCustom) {
-        Bundle oldEntries =
-                mUserManager.getApplicationRestrictions(packageName, mUser);
+        requestRestrictionsForApp(packageName, preference,
+                mUserManager.getApplicationRestrictions(packageName, mUser), invokeIfCustom);
+    }
+
+    /**
+     * Send a broadcast to the app to query its restrictions
+     * @param oldEntries the current restrictions of the app
+     */
+    private void requestRestrictionsForApp(String packageName,
+            AppRestrictionsPreference preference, Bundle oldEntries, boolean invokeIfCustom) {
         Intent intent = new Intent(Intent.ACTION_GET_RESTRICTION_ENTRIES);
         intent.setPackage(packageName);
         intent.putExtra(Intent.EXTRA_RESTRICTIONS_BUNDLE, oldEntries);
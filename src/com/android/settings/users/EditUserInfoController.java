@@ -170,6 +170,8 @@ public class EditUserInfoController {
                                     protected Void doInBackground(Void... params) {
                                         mUserManager.setUserIcon(mUser.getIdentifier(),
                                                 mEditUserPhotoController.getNewUserPhotoBitmap());
+                                        UserIconCache.getInstance().invalidate(
+                                                mUser.getIdentifier());
                                         return null;
                                     }
                                 }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void[]) null);
@@ -312,10 +312,15 @@ public class EditUserPhotoController {
                     Canvas canvas = new Canvas(croppedImage);
                     Bitmap fullImage = null;
                     try {
-                        InputStream imageStream = mContext.getContentResolver()
-                                .openInputStream(data);
-                        fullImage = BitmapFactory.decodeStream(imageStream);
-                    } catch (FileNotFoundException fe) {
+                        // Don't decode more pixels than the photo has, camera images are large.
+                        final BitmapFactory.Options options = new BitmapFactory.Options();
+                        options.inJustDecodeBounds = true;
+                        decodeImage(data, options);
+                        options.inJustDecodeBounds = false;
+                        options.inSampleSize = UserIconCache.getSampleSize(options.outWidth,
+                                options.outHeight, mPhotoSize);
+                        fullImage = decodeImage(data, options);
+                    } catch (IOException e) {
                         return null;
                     }
                     if (fullImage != null) {
@@ -350,6 +355,12 @@ public class EditUserPhotoController {
         }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void[]) null);
     }
 
+    private Bitmap decodeImage(Uri data, BitmapFactory.Options options) throws IOException {
+        try (InputStream imageStream = mContext.getContentResolver().openInputStream(data)) {
+            return BitmapFactory.decodeStream(imageStream, null, options);
+        }
+    }
+
     private static int getPhotoSize(Context context) {
         Cursor cursor = context.getContentResolver().query(
                 DisplayPhoto.CONTENT_MAX_DIMENSIONS_URI,
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import android.content.Context;
+import android.content.pm.UserInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.os.UserManager;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.Utils;
+import com.android.settingslib.drawable.UserIconDrawable;
+
+import java.io.File;
+
+/**
+ * Process wide cache of the user photos shown by the user and storage screens, so they are not
+ * decoded again every time the screens are shown.
+ *
+ * <p>The photos are decoded at the size they are shown at, and the cache is bounded by the memory
+ * used by the bitmaps. An entry is only used for the version of the photo it was decoded from,
+ * which is the time the photo file was last written.
+ */
+public class UserIconCache {
+
+    // The photos are about 160px wide in lists, so this holds a few dozens.
+    @VisibleForTesting
+    static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static UserIconCache sInstance;
+
+    // Entries by user id and size.
+    private final LruCache<String, Entry> mEntries;
+
+    public static synchronized UserIconCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new UserIconCache(MAX_SIZE_BYTES);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    UserIconCache(int maxSizeBytes) {
+        mEntries = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.photo.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the photo of {@code user} at most {@code size} pixels wide and high, or {@code null}
+     * if the user has no photo.
+     */
+    @WorkerThread
+    public Bitmap getUserPhoto(Context context, UserInfo user, int size) {
+        if (user.iconPath == null) {
+            return null;
+        }
+        final String key = getKey(user.id, size);
+        final long version = new File(user.iconPath).lastModified();
+        final Entry entry = mEntries.get(key);
+        if (entry != null && entry.version == version) {
+            return entry.photo;
+        }
+        final Bitmap photo = decodeUserPhoto(context.getSystemService(UserManager.class), user,
+                size);
+        if (photo != null) {
+            mEntries.put(key, new Entry(version, photo));
+        }
+        return photo;
+    }
+
+    /**
+     * Returns the photo of {@code userId} at {@code size} last loaded, whether or not it is still
+     * the current photo, or {@code null} if it was not loaded.
+     */
+    public Bitmap peekUserPhoto(int userId, int size) {
+        final Entry entry = mEntries.get(getKey(userId, size));
+        return entry != null ? entry.photo : null;
+    }
+
+    /**
+     * Returns the icon of {@code user} for lists, like {@link Utils#getUserIcon} but with the
+     * photo from this cache.
+     */
+    @WorkerThread
+    public Drawable getUserIcon(Context context, UserManager um, UserInfo user) {
+        if (!user.isManagedProfile()) {
+            final int size = UserIconDrawable.getSizeForList(context);
+            final Bitmap photo = getUserPhoto(context, user, size);
+            if (photo != null) {
+                return new UserIconDrawable(size).setIcon(photo).bake();
+            }
+        }
+        return Utils.getUserIcon(context, um, user);
+    }
+
+    /** Drops the photos of {@code userId}, for when they changed. */
+    public void invalidate(int userId) {
+        final String prefix = userId + "/";
+        for (String key : mEntries.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mEntries.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(int userId, int size) {
+        return userId + "/" + size;
+    }
+
+    @VisibleForTesting
+    Bitmap decodeUserPhoto(UserManager um, UserInfo user, int size) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(user.iconPath, options);
+        Bitmap photo = null;
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+            photo = BitmapFactory.decodeFile(user.iconPath, options);
+        }
+        if (photo == null) {
+            // The photo file can't be read, get it from the user manager.
+            photo = um.getUserIcon(user.id);
+        }
+        return photo != null ? scaleDown(photo, size) : null;
+    }
+
+    /**
+     * Returns the sample size to decode an image of {@code width} by {@code height} pixels with,
+     * so its shorter side is still at least {@code size} pixels.
+     */
+    static int getSampleSize(int width, int height, int size) {
+        final int shortSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (size > 0 && shortSide / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleDown(Bitmap photo, int size) {
+        final int shortSide = Math.min(photo.getWidth(), photo.getHeight());
+        if (size <= 0 || shortSide <= size) {
+            return photo;
+        }
+        return Bitmap.createScaledBitmap(photo, photo.getWidth() * size / shortSide,
+                photo.getHeight() * size / shortSide, true /* filter */);
+    }
+
+    private static class Entry {
+        final long version;
+        final Bitmap photo;
+
+        Entry(long version, Bitmap photo) {
+            this.version = version;
+            this.photo = photo;
+        }
+    }
+}
@@ -75,6 +75,7 @@ import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
 import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.RestrictedPreference;
 import com.android.settingslib.drawable.CircleFramedDrawable;
+import com.android.settingslib.drawable.UserIconDrawable;
 import com.android.settingslib.search.SearchIndexable;
 
 import java.io.IOException;
@@ -197,6 +198,7 @@ public class UserSettings extends SettingsPreferenceFragment
                 int userHandle = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, -1);
                 if (userHandle != -1) {
                     mUserIcons.remove(userHandle);
+                    UserIconCache.getInstance().invalidate(userHandle);
                 }
             }
             mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
@@ -384,10 +386,14 @@ public class UserSettings extends SettingsPreferenceFragment
             return;
         }
 
+        final Context context = getActivity();
+        final int iconSize = getUserIconSize();
         new AsyncTask<Void, Void, String>() {
+            private Bitmap mIcon;
+
             @Override
             protected void onPostExecute(String result) {
-                finishLoadProfile(result);
+                finishLoadProfile(result, mIcon);
             }
 
             @Override
@@ -395,21 +401,21 @@ public class UserSettings extends SettingsPreferenceFragment
                 UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
                 if (user.iconPath == null || user.iconPath.equals("")) {
                     // Assign profile photo.
-                    copyMeProfilePhoto(getActivity(), user);
+                    copyMeProfilePhoto(context, user);
+                    user = mUserManager.getUserInfo(UserHandle.myUserId());
                 }
+                mIcon = UserIconCache.getInstance().getUserPhoto(context, user, iconSize);
                 return user.name;
             }
         }.execute();
     }
 
-    private void finishLoadProfile(String profileName) {
+    private void finishLoadProfile(String profileName, Bitmap icon) {
         if (getActivity() == null) return;
         mMePreference.setTitle(getString(R.string.user_you, profileName));
-        int myUserId = UserHandle.myUserId();
-        Bitmap b = mUserManager.getUserIcon(myUserId);
-        if (b != null) {
-            mMePreference.setIcon(encircle(b));
-            mUserIcons.put(myUserId, b);
+        if (icon != null) {
+            mMePreference.setIcon(encircle(icon));
+            mUserIcons.put(UserHandle.myUserId(), icon);
         }
     }
 
@@ -809,7 +815,7 @@ public class UserSettings extends SettingsPreferenceFragment
         final List<UserInfo> users = mUserManager.getUsers(true);
 
         final boolean voiceCapable = Utils.isVoiceCapable(context);
-        final ArrayList<Integer> missingIcons = new ArrayList<>();
+        final ArrayList<UserInfo> missingIcons = new ArrayList<>();
         final ArrayList<UserPreference> userPreferences = new ArrayList<>();
         int guestId = UserPreference.USERID_GUEST_DEFAULTS;
         userPreferences.add(mMePreference);
@@ -871,9 +877,12 @@ public class UserSettings extends SettingsPreferenceFragment
             }
             if (user.iconPath != null) {
                 if (mUserIcons.get(user.id) == null) {
-                    // Icon not loaded yet, print a placeholder
-                    missingIcons.add(user.id);
-                    pref.setIcon(getEncircledDefaultIcon());
+                    // Icon not loaded yet, print the one last loaded or a placeholder
+                    missingIcons.add(user);
+                    final Bitmap cachedIcon = UserIconCache.getInstance().peekUserPhoto(user.id,
+                            getUserIconSize());
+                    pref.setIcon(cachedIcon != null
+                            ? encircle(cachedIcon) : getEncircledDefaultIcon());
                 } else {
                     setPhotoId(pref, user);
                 }
@@ -1008,27 +1017,38 @@ public class UserSettings extends SettingsPreferenceFragment
         return maxUsersAndGuest - managedProfiles;
     }
 
-    private void loadIconsAsync(List<Integer> missingIcons) {
-        new AsyncTask<List<Integer>, Void, Void>() {
+    private void loadIconsAsync(List<UserInfo> missingIcons) {
+        final Context context = getContext();
+        final int iconSize = getUserIconSize();
+        new AsyncTask<List<UserInfo>, Void, SparseArray<Bitmap>>() {
             @Override
-            protected void onPostExecute(Void result) {
+            protected void onPostExecute(SparseArray<Bitmap> result) {
+                for (int i = 0; i < result.size(); i++) {
+                    mUserIcons.append(result.keyAt(i), result.valueAt(i));
+                }
                 updateUserList();
             }
 
             @Override
-            protected Void doInBackground(List<Integer>... values) {
-                for (int userId : values[0]) {
-                    Bitmap bitmap = mUserManager.getUserIcon(userId);
+            protected SparseArray<Bitmap> doInBackground(List<UserInfo>... values) {
+                final SparseArray<Bitmap> icons = new SparseArray<>();
+                for (UserInfo user : values[0]) {
+                    Bitmap bitmap = UserIconCache.getInstance().getUserPhoto(context, user,
+                            iconSize);
                     if (bitmap == null) {
-                        bitmap = getDefaultUserIconAsBitmap(getContext().getResources(), userId);
+                        bitmap = getDefaultUserIconAsBitmap(context.getResources(), user.id);
                     }
-                    mUserIcons.append(userId, bitmap);
+                    icons.append(user.id, bitmap);
                 }
-                return null;
+                return icons;
             }
         }.execute(missingIcons);
     }
 
+    private int getUserIconSize() {
+        return UserIconDrawable.getSizeForList(getContext());
+    }
+
     private Drawable getEncircledDefaultIcon() {
         if (mDefaultIconDrawable == null) {
             mDefaultIconDrawable = encircle(
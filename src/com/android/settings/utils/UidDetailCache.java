@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Locale;
+
+/**
+ * Process wide cache of the label and icon resolved for a uid. Battery usage and data usage
+ * both list apps by uid, so a uid resolved by one screen is shown right away by the others.
+ *
+ * <p>The cache is bounded by the estimated memory of its icons and is cleared when the locale,
+ * display density or UI mode changes.
+ */
+public class UidDetailCache {
+    private static final int MAX_SIZE_BYTES =
+            (int) Math.min(Runtime.getRuntime().maxMemory() / 32, 16 * 1024 * 1024);
+    // Size assumed for icons that don't report an intrinsic size.
+    private static final int DEFAULT_ICON_BYTES = 48 * 48 * 4;
+
+    private static UidDetailCache sInstance;
+
+    private final LruCache<Integer, Entry> mCache;
+    private Locale mLocale;
+    private int mDensityDpi;
+    private int mUiMode;
+
+    public static synchronized UidDetailCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new UidDetailCache(MAX_SIZE_BYTES);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    UidDetailCache(int maxSizeBytes) {
+        mCache = new LruCache<Integer, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Integer uid, Entry entry) {
+                return entry.mSizeBytes;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached entry for {@code uid}, or {@code null} if it has not been resolved
+     * since the configuration last changed.
+     */
+    public Entry get(int uid) {
+        checkConfiguration();
+        return mCache.get(uid);
+    }
+
+    public void put(int uid, Entry entry) {
+        checkConfiguration();
+        mCache.put(uid, entry);
+    }
+
+    public void remove(int uid) {
+        mCache.remove(uid);
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    private synchronized void checkConfiguration() {
+        // Locale sync to system config in Settings
+        final Locale locale = Locale.getDefault();
+        final Configuration config = Resources.getSystem().getConfiguration();
+        if (mLocale != locale || mDensityDpi != config.densityDpi || mUiMode != config.uiMode) {
+            mCache.evictAll();
+            mLocale = locale;
+            mDensityDpi = config.densityDpi;
+            mUiMode = config.uiMode;
+        }
+    }
+
+    /**
+     * Label, icon and package name resolved for a uid. Each caller of {@link #getIcon()} gets
+     * its own drawable, so entries can be shared between views and threads.
+     */
+    public static class Entry {
+        public final String label;
+        public final String packageName;
+        private final Drawable.ConstantState mIconState;
+        private final Drawable mIcon;
+        private final int mSizeBytes;
+
+        public Entry(String label, String packageName, Drawable icon) {
+            this.label = label;
+            this.packageName = packageName;
+            mIconState = icon != null ? icon.getConstantState() : null;
+            mIcon = mIconState == null ? icon : null;
+            mSizeBytes = Math.max(1,
+                    (label != null ? label.length() * 2 : 0) + getIconBytes(icon));
+        }
+
+        public Drawable getIcon() {
+            return mIconState != null ? mIconState.newDrawable() : mIcon;
+        }
+
+        private static int getIconBytes(Drawable icon) {
+            if (icon == null) {
+                return 0;
+            }
+            if (icon instanceof BitmapDrawable) {
+                final Bitmap bitmap = ((BitmapDrawable) icon).getBitmap();
+                if (bitmap != null) {
+                    return bitmap.getAllocationByteCount();
+                }
+            }
+            final int width = icon.getIntrinsicWidth();
+            final int height = icon.getIntrinsicHeight();
+            return width > 0 && height > 0 ? width * height * 4 : DEFAULT_ICON_BYTES;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
@@ -124,6 +125,12 @@ public class WifiSettings extends RestrictedSettingsFragment
 
     private static final int REQUEST_CODE_WIFI_DPP_ENROLLEE_QR_CODE_SCANNER = 0;
 
+    // Delay before applying a scan, doubled while scans keep arriving right after an update.
+    @VisibleForTesting
+    static final long MIN_UPDATE_DELAY_MS = 100;
+    @VisibleForTesting
+    static final long MAX_UPDATE_DELAY_MS = 1600;
+
     private static boolean isVerboseLoggingEnabled() {
         return WifiTracker.sVerboseLogging || Log.isLoggable(TAG, Log.VERBOSE);
     }
@@ -131,6 +138,14 @@ public class WifiSettings extends RestrictedSettingsFragment
     private final Runnable mUpdateAccessPointsRunnable = () -> {
         updateAccessPointPreferences();
     };
+    @VisibleForTesting
+    long mUpdateDelayMs = MIN_UPDATE_DELAY_MS;
+    private long mLastUpdateTime;
+    // Number of scans received and rows created since the page was created.
+    @VisibleForTesting
+    int mScansReceived;
+    @VisibleForTesting
+    int mRowsCreated;
     private final Runnable mHideProgressBarRunnable = () -> {
         setProgressBarVisible(false);
     };
@@ -179,8 +194,10 @@ public class WifiSettings extends RestrictedSettingsFragment
 
     private AccessPointPreference.UserBadgeCache mUserBadgeCache;
 
-    private PreferenceCategory mConnectedAccessPointPreferenceCategory;
-    private PreferenceCategory mAccessPointsPreferenceCategory;
+    @VisibleForTesting
+    PreferenceCategory mConnectedAccessPointPreferenceCategory;
+    @VisibleForTesting
+    PreferenceCategory mAccessPointsPreferenceCategory;
     @VisibleForTesting
     AddWifiNetworkPreference mAddWifiNetworkPreference;
     @VisibleForTesting
@@ -189,7 +206,8 @@ public class WifiSettings extends RestrictedSettingsFragment
     Preference mSavedNetworksPreference;
     @VisibleForTesting
     DataUsagePreference mDataUsagePreference;
-    private LinkablePreference mStatusMessagePreference;
+    @VisibleForTesting
+    LinkablePreference mStatusMessagePreference;
 
     // For Search
     public static final String DATA_KEY_REFERENCE = "main_toggle_wifi";
@@ -632,12 +650,14 @@ public class WifiSettings extends RestrictedSettingsFragment
     @Override
     public void onAccessPointsChanged() {
         Log.d(TAG, "onAccessPointsChanged (WifiTracker) callback initiated");
+        mScansReceived++;
         updateAccessPointsDelayed();
     }
 
     /**
      * Updates access points from {@link WifiManager#getScanResults()}. Adds a delay to have
-     * progress bar displayed before starting to modify APs.
+     * progress bar displayed before starting to modify APs. Scans arriving during the delay are
+     * applied together, and the delay grows while scans keep coming in right after an update.
      */
     private void updateAccessPointsDelayed() {
         // Safeguard from some delayed event handling
@@ -648,8 +668,19 @@ public class WifiSettings extends RestrictedSettingsFragment
                 return;
             }
             setProgressBarVisible(true);
-            view.postDelayed(mUpdateAccessPointsRunnable, 300 /* delay milliseconds */);
+            view.postDelayed(mUpdateAccessPointsRunnable,
+                    getUpdateDelayMs(SystemClock.uptimeMillis()));
+        }
+    }
+
+    @VisibleForTesting
+    long getUpdateDelayMs(long now) {
+        if (now - mLastUpdateTime < MAX_UPDATE_DELAY_MS) {
+            mUpdateDelayMs = Math.min(mUpdateDelayMs * 2, MAX_UPDATE_DELAY_MS);
+        } else {
+            mUpdateDelayMs = MIN_UPDATE_DELAY_MS;
         }
+        return mUpdateDelayMs;
     }
 
     /** Called when the state of Wifi has changed. */
@@ -709,7 +740,8 @@ public class WifiSettings extends RestrictedSettingsFragment
         return WifiConfiguration.NetworkSelectionStatus.DISABLED_BY_WRONG_PASSWORD == reason;
     }
 
-    private void updateAccessPointPreferences() {
+    @VisibleForTesting
+    void updateAccessPointPreferences() {
         // in case state has changed
         if (!mWifiManager.isWifiEnabled()) {
             return;
@@ -725,8 +757,11 @@ public class WifiSettings extends RestrictedSettingsFragment
         mConnectedAccessPointPreferenceCategory.setVisible(true);
         mAccessPointsPreferenceCategory.setVisible(true);
 
+        mLastUpdateTime = SystemClock.uptimeMillis();
         cacheRemoveAllPrefs(mAccessPointsPreferenceCategory);
 
+        int rowsShown = 0;
+        int rowsCreated = 0;
         int index =
                 configureConnectedAccessPointPreferenceCategory(accessPoints) ? 1 : 0;
         int numAccessPoints = accessPoints.size();
@@ -736,12 +771,19 @@ public class WifiSettings extends RestrictedSettingsFragment
             if (accessPoint.isReachable()) {
                 String key = accessPoint.getKey();
                 hasAvailableAccessPoints = true;
+                rowsShown++;
                 LongPressAccessPointPreference pref =
                         (LongPressAccessPointPreference) getCachedPreference(key);
-                if (pref != null) {
+                if (pref != null && pref.getAccessPoint() == accessPoint) {
+                    // The access point refreshes its row itself when it changes.
                     pref.setOrder(index);
                     continue;
                 }
+                if (pref != null) {
+                    // The tracker replaced the access point, the row must be bound to the new one.
+                    mAccessPointsPreferenceCategory.removePreference(pref);
+                }
+                rowsCreated++;
                 LongPressAccessPointPreference preference =
                         createLongPressAccessPointPreference(accessPoint);
                 preference.setKey(key);
@@ -760,6 +802,12 @@ public class WifiSettings extends RestrictedSettingsFragment
             }
         }
         removeCachedPrefs(mAccessPointsPreferenceCategory);
+        mRowsCreated += rowsCreated;
+        if (isVerboseLoggingEnabled()) {
+            Log.i(TAG, "Created " + rowsCreated + " of " + rowsShown
+                    + " access point rows, scans received: " + mScansReceived
+                    + ", rows created: " + mRowsCreated);
+        }
         mAddWifiNetworkPreference.setOrder(index);
         mAccessPointsPreferenceCategory.addPreference(mAddWifiNetworkPreference);
         setAdditionalSettingsSummaries();
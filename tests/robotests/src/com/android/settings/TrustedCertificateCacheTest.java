@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class TrustedCertificateCacheTest {
+    private static final int USER_ID = 0;
+    private static final String SYSTEM_ALIAS = "system:1234abcd.0";
+    private static final String USER_ALIAS = "user:1234abcd.0";
+    private static final String FINGERPRINT = "fingerprint";
+
+    private File mFile;
+    private TrustedCertificateCache mCache;
+
+    @Before
+    public void setUp() {
+        mFile = new File(RuntimeEnvironment.application.getCacheDir(), "trusted_certificates");
+        mFile.delete();
+        mCache = new TrustedCertificateCache(mFile, FINGERPRINT);
+    }
+
+    @Test
+    public void get_otherDigest_returnNull() {
+        mCache.put(USER_ID, createEntry(USER_ALIAS, false /* system */));
+
+        assertThat(mCache.get(USER_ID, USER_ALIAS, digest("cert"))).isNotNull();
+        assertThat(mCache.get(USER_ID, USER_ALIAS, digest("other cert"))).isNull();
+        assertThat(mCache.get(USER_ID + 10, USER_ALIAS, digest("cert"))).isNull();
+    }
+
+    @Test
+    public void retainAliases_onlyDropRemovedAliasesOfSameKind() {
+        mCache.put(USER_ID, createEntry(SYSTEM_ALIAS, true /* system */));
+        mCache.put(USER_ID, createEntry(USER_ALIAS, false /* system */));
+
+        mCache.retainAliases(USER_ID, false /* system */, Arrays.asList());
+
+        assertThat(mCache.get(USER_ID, SYSTEM_ALIAS)).isNotNull();
+        assertThat(mCache.get(USER_ID, USER_ALIAS)).isNull();
+    }
+
+    @Test
+    public void save_entriesReadByNextProcess() {
+        mCache.put(USER_ID, createEntry(SYSTEM_ALIAS, true /* system */));
+        mCache.save();
+
+        final TrustedCertificateCache cache = new TrustedCertificateCache(mFile, FINGERPRINT);
+
+        final TrustedCertificateCache.Entry entry = cache.get(USER_ID, SYSTEM_ALIAS);
+        assertThat(entry.system).isTrue();
+        assertThat(entry.digest).isEqualTo(digest("cert"));
+        assertThat(entry.subjectPrimary).isEqualTo("Example Org");
+        assertThat(entry.subjectSecondary).isEqualTo("Example CA");
+    }
+
+    @Test
+    public void save_readAfterSystemUpdate_dropEntries() {
+        mCache.put(USER_ID, createEntry(SYSTEM_ALIAS, true /* system */));
+        mCache.save();
+
+        final TrustedCertificateCache cache =
+                new TrustedCertificateCache(mFile, "other fingerprint");
+
+        assertThat(cache.get(USER_ID, SYSTEM_ALIAS)).isNull();
+    }
+
+    private static TrustedCertificateCache.Entry createEntry(String alias, boolean system) {
+        return new TrustedCertificateCache.Entry(alias, system, digest("cert"), "Example Org",
+                "Example CA");
+    }
+
+    private static byte[] digest(String certificate) {
+        return TrustedCertificateCache.digest(certificate.getBytes());
+    }
+}
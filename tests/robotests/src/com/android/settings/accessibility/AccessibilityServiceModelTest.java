@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import com.android.settings.accessibility.AccessibilityServiceModel.ServiceEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AccessibilityServiceModelTest {
+
+    private static final String PACKAGE_NAME = "com.android.settings.fake";
+    private static final String CLASS_NAME = "com.android.settings.fake.classname";
+    private static final String OTHER_CLASS_NAME = "com.android.settings.fake.other";
+    private static final String LABEL = "Fake service";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void getServiceEntry_samePackageVersion_reuseEntry() throws Exception {
+        final ServiceEntry entry =
+                AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1));
+
+        assertThat(entry.componentName).isEqualTo(new ComponentName(PACKAGE_NAME, CLASS_NAME));
+        assertThat(entry.title).isEqualTo(LABEL);
+        assertThat(AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1)))
+                .isSameAs(entry);
+    }
+
+    @Test
+    public void getServiceEntry_packageUpdated_loadEntryAgain() throws Exception {
+        final ServiceEntry entry =
+                AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1));
+
+        assertThat(AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(2)))
+                .isNotSameAs(entry);
+    }
+
+    @Test
+    public void retainServiceEntries_serviceUninstalled_dropEntry() throws Exception {
+        final ServiceEntry entry =
+                AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1));
+        final ServiceEntry otherEntry = AccessibilityServiceModel.getServiceEntry(mContext,
+                createServiceInfo(OTHER_CLASS_NAME, 1));
+
+        AccessibilityServiceModel.retainServiceEntries(Collections.singletonList(entry));
+
+        assertThat(AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1)))
+                .isSameAs(entry);
+        assertThat(AccessibilityServiceModel.getServiceEntry(mContext,
+                createServiceInfo(OTHER_CLASS_NAME, 1))).isNotSameAs(otherEntry);
+    }
+
+    @Test
+    public void hasSameState_enabledStateChanged_returnFalseForChangedServiceOnly()
+            throws Exception {
+        final ServiceEntry entry =
+                AccessibilityServiceModel.getServiceEntry(mContext, createServiceInfo(1));
+        final ServiceEntry otherEntry = AccessibilityServiceModel.getServiceEntry(mContext,
+                createServiceInfo(OTHER_CLASS_NAME, 1));
+        final List<ServiceEntry> services = Arrays.asList(entry, otherEntry);
+        final AccessibilityServiceModel oldModel = createModel(services);
+        final AccessibilityServiceModel model = createModel(services, entry.componentName);
+
+        assertThat(model.isEnabled(entry)).isTrue();
+        assertThat(model.isEnabled(otherEntry)).isFalse();
+        assertThat(model.hasSameState(entry, oldModel)).isFalse();
+        assertThat(model.hasSameState(otherEntry, oldModel)).isTrue();
+    }
+
+    static AccessibilityServiceModel createModel(List<ServiceEntry> services,
+            ComponentName... enabledServices) {
+        return new AccessibilityServiceModel(services,
+                new ArraySet<>(Arrays.asList(enabledServices)),
+                Collections.emptyList() /* enabledServiceInfos */,
+                null /* permittedServices */, new ArrayMap<>() /* disallowingAdmins */);
+    }
+
+    private AccessibilityServiceInfo createServiceInfo(long versionCode) throws Exception {
+        return createServiceInfo(CLASS_NAME, versionCode);
+    }
+
+    private AccessibilityServiceInfo createServiceInfo(String className, long versionCode)
+            throws Exception {
+        return createServiceInfo(mContext, PACKAGE_NAME, className, LABEL, versionCode);
+    }
+
+    static AccessibilityServiceInfo createServiceInfo(Context context, String packageName,
+            String className, String label, long versionCode) throws Exception {
+        final ApplicationInfo applicationInfo = new ApplicationInfo();
+        applicationInfo.packageName = packageName;
+        applicationInfo.longVersionCode = versionCode;
+
+        final ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.packageName = packageName;
+        serviceInfo.name = className;
+        serviceInfo.applicationInfo = applicationInfo;
+
+        final ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.serviceInfo = serviceInfo;
+        resolveInfo.nonLocalizedLabel = label;
+
+        final AccessibilityServiceInfo info = new AccessibilityServiceInfo(resolveInfo, context);
+        info.setComponentName(new ComponentName(packageName, className));
+        return info;
+    }
+}
@@ -29,8 +29,12 @@ import android.provider.DeviceConfig;
 import android.provider.Settings;
 
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.accessibility.AccessibilityServiceModel.ServiceEntry;
 import com.android.settings.testutils.XmlTestUtils;
 import com.android.settings.testutils.shadow.ShadowDeviceConfig;
 
@@ -41,8 +45,11 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class AccessibilitySettingsTest {
@@ -51,6 +58,12 @@ public class AccessibilitySettingsTest {
             "accessibility_control_timeout_preference_fragment";
     private static final String DARK_UI_MODE_PREFERENCE =
             "dark_ui_mode_accessibility";
+    private static final String CATEGORY_DOWNLOADED_SERVICES = "user_installed_services_category";
+    private static final String[] SERVICE_CATEGORIES = new String[] {
+            "screen_reader_category", "audio_and_captions_category", "display_category",
+            "interaction_control_category", CATEGORY_DOWNLOADED_SERVICES
+    };
+    private static final String SERVICE_PACKAGE_NAME = "com.android.settings.fake";
 
     private Context mContext;
     private ContentResolver mContentResolver;
@@ -164,6 +177,92 @@ public class AccessibilitySettingsTest {
       assertThat(AccessibilitySettings.isRampingRingerEnabled(mContext)).isFalse();
     }
 
+    @Test
+    public void showServices_installedServicesChanged_addAndRemoveRows() throws Exception {
+        final PreferenceCategory category = setUpServiceCategories();
+        final ServiceEntry serviceA = createServiceEntry("A");
+        final ServiceEntry serviceB = createServiceEntry("B");
+        final ServiceEntry serviceC = createServiceEntry("C");
+        mSettings.showServices(createModel(serviceA, serviceB));
+        final Preference rowB = findServicePreference(category, serviceB);
+
+        mSettings.showServices(createModel(serviceB, serviceC));
+
+        assertThat(category.getPreferenceCount()).isEqualTo(2);
+        assertThat(findServicePreference(category, serviceA)).isNull();
+        assertThat(findServicePreference(category, serviceB)).isSameAs(rowB);
+        assertThat(findServicePreference(category, serviceC).getTitle().toString())
+                .isEqualTo("C");
+    }
+
+    @Test
+    public void showServices_sameEntries_keepRowsBound() throws Exception {
+        final PreferenceCategory category = setUpServiceCategories();
+        final ServiceEntry serviceA = createServiceEntry("A");
+        mSettings.showServices(createModel(serviceA));
+        final Preference rowA = findServicePreference(category, serviceA);
+        rowA.setTitle("bound once");
+
+        mSettings.showServices(createModel(serviceA));
+
+        assertThat(findServicePreference(category, serviceA)).isSameAs(rowA);
+        assertThat(rowA.getTitle().toString()).isEqualTo("bound once");
+    }
+
+    @Test
+    public void showServiceStates_onlyUpdateRowsWithChangedState() throws Exception {
+        final PreferenceCategory category = setUpServiceCategories();
+        final ServiceEntry serviceA = createServiceEntry("A");
+        final ServiceEntry serviceB = createServiceEntry("B");
+        final AccessibilityServiceModel oldModel = createModel(serviceA, serviceB);
+        mSettings.showServices(oldModel);
+        final Preference rowA = findServicePreference(category, serviceA);
+        final Preference rowB = findServicePreference(category, serviceB);
+        rowA.setSummary("not updated");
+        rowB.setSummary("not updated");
+
+        mSettings.showServiceStates(oldModel, AccessibilityServiceModelTest.createModel(
+                Arrays.asList(serviceA, serviceB), serviceA.componentName));
+
+        assertThat(rowA.getSummary().toString())
+                .isEqualTo(mContext.getString(R.string.accessibility_summary_state_enabled));
+        assertThat(rowA.getExtras().getBoolean(AccessibilitySettings.EXTRA_CHECKED)).isTrue();
+        assertThat(rowB.getSummary().toString()).isEqualTo("not updated");
+        assertThat(rowB.getExtras().getBoolean(AccessibilitySettings.EXTRA_CHECKED)).isFalse();
+    }
+
+    private PreferenceCategory setUpServiceCategories() {
+        final PreferenceScreen screen =
+                new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        final Map<String, PreferenceCategory> categories =
+                ReflectionHelpers.getField(mSettings, "mCategoryToPrefCategoryMap");
+        for (String key : SERVICE_CATEGORIES) {
+            final PreferenceCategory category = new PreferenceCategory(mContext);
+            category.setKey(key);
+            screen.addPreference(category);
+            categories.put(key, category);
+        }
+        doReturn(screen).when(mSettings).getPreferenceScreen();
+        final PreferenceCategory downloadedServices = categories.get(CATEGORY_DOWNLOADED_SERVICES);
+        doReturn(downloadedServices).when(mSettings).findPreference(CATEGORY_DOWNLOADED_SERVICES);
+        return downloadedServices;
+    }
+
+    private ServiceEntry createServiceEntry(String name) throws Exception {
+        return AccessibilityServiceModel.getServiceEntry(mContext,
+                AccessibilityServiceModelTest.createServiceInfo(mContext, SERVICE_PACKAGE_NAME,
+                        SERVICE_PACKAGE_NAME + "." + name, name, 1 /* versionCode */));
+    }
+
+    private static AccessibilityServiceModel createModel(ServiceEntry... services) {
+        return AccessibilityServiceModelTest.createModel(Arrays.asList(services));
+    }
+
+    private static Preference findServicePreference(PreferenceCategory category,
+            ServiceEntry entry) {
+        return category.findPreference(entry.componentName.flattenToString());
+    }
+
     private void verifyAccessibilityTimeoutSummary(String preferenceKey, int resId) {
         final Preference preference = new Preference(mContext);
         doReturn(preference).when(mSettings).findPreference(preferenceKey);
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accounts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.accounts.AuthenticatorDescription;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.UserHandle;
+
+import com.android.settingslib.accounts.AuthenticatorHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class AccountTypeInfoCacheTest {
+    private static final String ACCOUNT_TYPE = "com.example.account";
+    private static final String PACKAGE_NAME = "com.example";
+
+    @Mock
+    private AuthenticatorHelper mHelper;
+
+    private Context mContext;
+    private AccountTypeInfoCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = getContext(Locale.US);
+        mCache = new AccountTypeInfoCache();
+        when(mHelper.getAccountTypeDescription(ACCOUNT_TYPE))
+                .thenReturn(createDescription(1 /* labelId */));
+        when(mHelper.getLabelForType(any(Context.class), eq(ACCOUNT_TYPE))).thenReturn("Example");
+    }
+
+    @Test
+    public void get_sameDescriptionAndLocale_returnCachedEntry() {
+        final AccountTypeInfoCache.Entry entry =
+                mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+
+        assertThat(mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE))
+                .isSameAs(entry);
+        verify(mHelper, times(1)).getLabelForType(any(Context.class), eq(ACCOUNT_TYPE));
+    }
+
+    @Test
+    public void get_otherUser_loadAgain() {
+        mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+        mCache.get(mContext, mHelper, UserHandle.of(10), ACCOUNT_TYPE);
+
+        verify(mHelper, times(2)).getLabelForType(any(Context.class), eq(ACCOUNT_TYPE));
+    }
+
+    @Test
+    public void get_descriptionChanged_loadAgain() {
+        mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+        when(mHelper.getAccountTypeDescription(ACCOUNT_TYPE))
+                .thenReturn(createDescription(2 /* labelId */));
+
+        mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+
+        verify(mHelper, times(2)).getLabelForType(any(Context.class), eq(ACCOUNT_TYPE));
+    }
+
+    @Test
+    public void get_localeChanged_loadLabelOfNewLocale() {
+        mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+        final Context frenchContext = getContext(Locale.FRANCE);
+        when(mHelper.getLabelForType(frenchContext, ACCOUNT_TYPE)).thenReturn("Exemple");
+
+        final AccountTypeInfoCache.Entry entry =
+                mCache.get(frenchContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE);
+
+        assertThat(entry.label.toString()).isEqualTo("Exemple");
+        assertThat(mCache.get(frenchContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE))
+                .isSameAs(entry);
+    }
+
+    @Test
+    public void get_noLabel_returnNull() {
+        when(mHelper.getLabelForType(any(Context.class), eq(ACCOUNT_TYPE))).thenReturn(null);
+
+        assertThat(mCache.get(mContext, mHelper, UserHandle.SYSTEM, ACCOUNT_TYPE)).isNull();
+    }
+
+    private static Context getContext(Locale locale) {
+        final Configuration configuration = new Configuration(
+                RuntimeEnvironment.application.getResources().getConfiguration());
+        configuration.setLocale(locale);
+        return RuntimeEnvironment.application.createConfigurationContext(configuration);
+    }
+
+    private static AuthenticatorDescription createDescription(int labelId) {
+        return new AuthenticatorDescription(ACCOUNT_TYPE, PACKAGE_NAME, labelId, 0 /* iconId */,
+                0 /* smallIconId */, 0 /* prefId */);
+    }
+}
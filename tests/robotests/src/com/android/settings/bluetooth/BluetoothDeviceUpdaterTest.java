@@ -25,6 +25,7 @@ import static org.mockito.Mockito.when;
 
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
 import android.content.Context;
 import android.content.Intent;
 
@@ -48,6 +49,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -250,4 +252,36 @@ public class BluetoothDeviceUpdaterTest {
         verify(mDevicePreferenceCallback).onDeviceRemoved(mPreference);
         assertThat(mBluetoothDeviceUpdater.mPreferenceMap.containsKey(mBluetoothDevice)).isFalse();
     }
+
+    @Test
+    public void onProfileConnectionStateChanged_severalEventsInFrame_addPreferenceOnce() {
+        ShadowLooper.pauseMainLooper();
+
+        mBluetoothDeviceUpdater.onAclConnectionStateChanged(mCachedBluetoothDevice,
+                BluetoothAdapter.STATE_CONNECTED);
+        mBluetoothDeviceUpdater.onProfileConnectionStateChanged(mCachedBluetoothDevice,
+                BluetoothProfile.STATE_CONNECTED, BluetoothProfile.HEADSET);
+        mBluetoothDeviceUpdater.onProfileConnectionStateChanged(mCachedBluetoothDevice,
+                BluetoothProfile.STATE_CONNECTED, BluetoothProfile.A2DP);
+
+        verify(mDevicePreferenceCallback, never()).onDeviceAdded(any(Preference.class));
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(mDevicePreferenceCallback).onDeviceAdded(any(Preference.class));
+        assertThat(mBluetoothDeviceUpdater.mLastFrameEventCount).isEqualTo(3);
+    }
+
+    @Test
+    public void onBluetoothStateChanged_bluetoothStateIsOff_dropPendingUpdates() {
+        ShadowLooper.pauseMainLooper();
+        mBluetoothDeviceUpdater.onDeviceBondStateChanged(mCachedBluetoothDevice,
+                BluetoothDevice.BOND_BONDED);
+
+        mBluetoothDeviceUpdater.onBluetoothStateChanged(BluetoothAdapter.STATE_OFF);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(mDevicePreferenceCallback, never()).onDeviceAdded(any(Preference.class));
+        assertThat(mBluetoothDeviceUpdater.mPreferenceMap).isEmpty();
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.settings.R;
+import com.android.settings.slices.FakeContextOnlyPreferenceController;
+import com.android.settings.slices.FakePreferenceController;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceControllerFactoryTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceControllerFactory.setTableEnabled(true);
+    }
+
+    @Test
+    public void createController_contextOnlyController_ignoreKey() {
+        final BasePreferenceController controller = PreferenceControllerFactory.createController(
+                mContext, FakeContextOnlyPreferenceController.class.getName(), "key");
+
+        assertThat(controller).isInstanceOf(FakeContextOnlyPreferenceController.class);
+        assertThat(controller.getPreferenceKey())
+                .isEqualTo(FakeContextOnlyPreferenceController.KEY);
+    }
+
+    @Test
+    public void createController_keyController_useKey() {
+        final BasePreferenceController controller = PreferenceControllerFactory.createController(
+                mContext, FakePreferenceController.class.getName(), "key");
+
+        assertThat(controller).isInstanceOf(FakePreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo("key");
+    }
+
+    @Test
+    public void createController_contextConstructorFails_useKeyConstructor() {
+        final BasePreferenceController controller = PreferenceControllerFactory.createController(
+                mContext, FailingContextOnlyController.class.getName(), "key");
+
+        assertThat(controller).isInstanceOf(FailingContextOnlyController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo("key");
+    }
+
+    @Test
+    public void createController_contextConstructorFailsWithoutKey_returnNull() {
+        assertThat(PreferenceControllerFactory.createController(mContext,
+                FailingContextOnlyController.class.getName(), null /* key */)).isNull();
+    }
+
+    @Test
+    public void createController_keyControllerWithoutKey_returnNull() {
+        assertThat(PreferenceControllerFactory.createController(mContext,
+                FakePreferenceController.class.getName(), null /* key */)).isNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void createController_unknownClass_shouldCrash() {
+        PreferenceControllerFactory.createController(mContext, "com.android.UnknownController",
+                "key");
+    }
+
+    @Test
+    public void getPreferenceControllersFromXml_tableAndReflection_sameControllers() {
+        final List<String> fromTable = getControllers(R.xml.display_settings);
+        PreferenceControllerFactory.setTableEnabled(false);
+        final List<String> fromReflection = getControllers(R.xml.display_settings);
+
+        assertThat(fromTable).isNotEmpty();
+        assertThat(fromTable).containsExactlyElementsIn(fromReflection).inOrder();
+    }
+
+    private List<String> getControllers(int xmlResId) {
+        final List<String> controllers = new ArrayList<>();
+        for (BasePreferenceController controller
+                : PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                xmlResId)) {
+            controllers.add(controller.getClass().getName() + "/" + controller.getPreferenceKey());
+        }
+        return controllers;
+    }
+
+    public static class FailingContextOnlyController extends BasePreferenceController {
+
+        public FailingContextOnlyController(Context context) {
+            super(context, "context_only");
+            throw new IllegalArgumentException("Needs a key");
+        }
+
+        public FailingContextOnlyController(Context context, String key) {
+            super(context, key);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            return AVAILABLE;
+        }
+    }
+}
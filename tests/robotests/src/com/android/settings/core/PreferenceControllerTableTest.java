@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.Xml;
+
+import com.android.settings.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+import java.util.TreeSet;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceControllerTableTest {
+
+    private static final String MISSING_CONTROLLERS_ERROR =
+            "Controllers added in XML need to be in PreferenceControllerTable, run"
+                    + " tools/generate_controller_table.py.\nThese controllers are missing:\n";
+
+    private static final String STALE_CONSTRUCTORS_ERROR =
+            "The constructors of these controllers changed since PreferenceControllerTable was"
+                    + " generated, run tools/generate_controller_table.py:\n";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void allXmlControllers_inTableWithTheirConstructors() throws Exception {
+        final Set<String> missingControllers = new TreeSet<>();
+        final Set<String> staleControllers = new TreeSet<>();
+        final Set<String> controllers = getAllXmlControllers();
+
+        for (String controllerName : controllers) {
+            if (!PreferenceControllerTable.contains(controllerName)) {
+                missingControllers.add(controllerName);
+            } else if (PreferenceControllerTable.hasContextConstructor(controllerName)
+                    != hasContextConstructor(controllerName)) {
+                staleControllers.add(controllerName);
+            }
+        }
+
+        assertThat(controllers).isNotEmpty();
+        assertWithMessage(MISSING_CONTROLLERS_ERROR + TextUtils.join("\n", missingControllers))
+                .that(missingControllers).isEmpty();
+        assertWithMessage(STALE_CONSTRUCTORS_ERROR + TextUtils.join("\n", staleControllers))
+                .that(staleControllers).isEmpty();
+    }
+
+    private Set<String> getAllXmlControllers() throws Exception {
+        final Set<String> controllers = new TreeSet<>();
+        for (Field field : R.xml.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != int.class) {
+                continue;
+            }
+            try (XmlResourceParser parser = mContext.getResources().getXml(field.getInt(null))) {
+                final AttributeSet attrs = Xml.asAttributeSet(parser);
+                int type;
+                while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                    if (type != XmlPullParser.START_TAG) {
+                        continue;
+                    }
+                    final String controllerName =
+                            PreferenceXmlParserUtils.getController(mContext, attrs);
+                    if (!TextUtils.isEmpty(controllerName)) {
+                        controllers.add(controllerName);
+                    }
+                }
+            }
+        }
+        return controllers;
+    }
+
+    private static boolean hasContextConstructor(String controllerName) throws Exception {
+        try {
+            Class.forName(controllerName).getConstructor(Context.class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
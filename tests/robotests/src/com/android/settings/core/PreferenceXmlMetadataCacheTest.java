@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Rect;
+
+import com.android.settings.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private Context mContext;
+    private PreferenceXmlMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new PreferenceXmlMetadataCache();
+    }
+
+    @Test
+    public void get_sameXml_parseOnce() throws Exception {
+        final Object metadata = mCache.get(mContext, R.xml.display_settings);
+
+        assertThat(mCache.get(mContext, R.xml.display_settings)).isSameAs(metadata);
+        assertThat(mCache.getParseCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_otherConfiguration_parseAgain() throws Exception {
+        final Object metadata = mCache.get(mContext, R.xml.display_settings);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.setLocale(Locale.FRANCE);
+        final Context otherContext = mContext.createConfigurationContext(configuration);
+
+        assertThat(mCache.get(otherContext, R.xml.display_settings)).isNotSameAs(metadata);
+        assertThat(mCache.getParseCount()).isEqualTo(2);
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void get_onlyWindowAndAssetsChanged_returnCached() throws Exception {
+        final Object metadata = mCache.get(mContext, R.xml.display_settings);
+        final Configuration configuration =
+                new Configuration(mContext.getResources().getConfiguration());
+        configuration.windowConfiguration.setBounds(new Rect(0, 0, 100, 200));
+        configuration.assetsSeq++;
+        final Resources resources = spy(mContext.getResources());
+        doReturn(configuration).when(resources).getConfiguration();
+        final Context otherContext = spy(mContext);
+        doReturn(resources).when(otherContext).getResources();
+
+        assertThat(mCache.get(otherContext, R.xml.display_settings)).isSameAs(metadata);
+        assertThat(mCache.getParseCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+    }
+}
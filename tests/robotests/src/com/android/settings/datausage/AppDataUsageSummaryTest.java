@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.TrafficStats.UID_REMOVED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.UserInfo;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageSummaryTest {
+    private static final int CURRENT_USER = 0;
+    private static final int MANAGED_USER = 10;
+    private static final int OTHER_USER = 11;
+    private static final int REMOVED_USER = 12;
+    private static final int APP_ID = Process.FIRST_APPLICATION_UID + 1;
+
+    @Mock
+    private UserManager mUserManager;
+
+    private SparseBooleanArray mProfileIds;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mProfileIds = new SparseBooleanArray();
+        mProfileIds.put(CURRENT_USER, true);
+        mProfileIds.put(MANAGED_USER, true);
+        when(mUserManager.getUserInfo(OTHER_USER)).thenReturn(new UserInfo());
+    }
+
+    @Test
+    public void create_collapsesUidsByUser() {
+        final SparseLongArray usageByUid = new SparseLongArray();
+        usageByUid.put(UserHandle.getUid(CURRENT_USER, APP_ID), 100);
+        usageByUid.put(UserHandle.getUid(MANAGED_USER, APP_ID), 200);
+        usageByUid.put(UserHandle.getUid(OTHER_USER, APP_ID), 300);
+        usageByUid.put(UserHandle.getUid(OTHER_USER, APP_ID + 1), 400);
+        usageByUid.put(UserHandle.getUid(REMOVED_USER, APP_ID), 50);
+        usageByUid.put(Process.NFC_UID, 10);
+        usageByUid.put(Process.SYSTEM_UID, 20);
+
+        final AppDataUsageSummary summary = AppDataUsageSummary.create(usageByUid, new int[0],
+                CURRENT_USER, mProfileIds, mUserManager);
+        final List<AppItem> items = summary.getItems();
+
+        assertThat(items).hasSize(6);
+        // Users are listed first, by usage
+        assertThat(items.get(0).key).isEqualTo(UidDetailProvider.buildKeyForUser(OTHER_USER));
+        assertThat(items.get(0).total).isEqualTo(700);
+        assertThat(items.get(1).key).isEqualTo(UidDetailProvider.buildKeyForUser(MANAGED_USER));
+        assertThat(items.get(1).total).isEqualTo(200);
+        assertThat(items.get(2).key).isEqualTo(UserHandle.getUid(MANAGED_USER, APP_ID));
+        assertThat(items.get(3).key).isEqualTo(UserHandle.getUid(CURRENT_USER, APP_ID));
+        assertThat(items.get(4).key).isEqualTo(UID_REMOVED);
+        assertThat(items.get(5).key).isEqualTo(Process.SYSTEM_UID);
+        assertThat(items.get(5).total).isEqualTo(30);
+        assertThat(summary.getLargest()).isEqualTo(700);
+        // Looked up once, even though the user has two uids
+        verify(mUserManager, times(1)).getUserInfo(OTHER_USER);
+    }
+
+    @Test
+    public void create_restrictedUid_spliceInOnlyForProfiles() {
+        final SparseLongArray usageByUid = new SparseLongArray();
+        usageByUid.put(UserHandle.getUid(CURRENT_USER, APP_ID), 100);
+        final int[] restrictedUids = {
+                UserHandle.getUid(CURRENT_USER, APP_ID),
+                UserHandle.getUid(MANAGED_USER, APP_ID),
+                UserHandle.getUid(OTHER_USER, APP_ID)
+        };
+
+        final List<AppItem> items = AppDataUsageSummary.create(usageByUid, restrictedUids,
+                CURRENT_USER, mProfileIds, mUserManager).getItems();
+
+        assertThat(items).hasSize(2);
+        final AppItem currentUserApp = findItem(items, UserHandle.getUid(CURRENT_USER, APP_ID));
+        assertThat(currentUserApp.restricted).isTrue();
+        assertThat(currentUserApp.total).isEqualTo(100);
+        final AppItem managedUserApp = findItem(items, UserHandle.getUid(MANAGED_USER, APP_ID));
+        assertThat(managedUserApp.restricted).isTrue();
+        assertThat(managedUserApp.total).isEqualTo(-1);
+    }
+
+    @Test
+    public void create_noUsage_emptySummary() {
+        final AppDataUsageSummary summary = AppDataUsageSummary.create(new SparseLongArray(),
+                new int[0], CURRENT_USER, mProfileIds, mUserManager);
+
+        assertThat(summary.getItems()).isEmpty();
+        assertThat(summary.getLargest()).isEqualTo(0);
+    }
+
+    private static AppItem findItem(List<AppItem> items, int key) {
+        for (AppItem item : items) {
+            if (item.key == key) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
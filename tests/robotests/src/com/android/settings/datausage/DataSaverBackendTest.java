@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_ALLOW_METERED_BACKGROUND;
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.net.NetworkPolicyManager;
+
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowApplication;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataSaverBackendTest {
+    private static final int UID = 10001;
+    private static final String PACKAGE_NAME = "com.example.app";
+
+    @Mock
+    private NetworkPolicyManager mPolicyManager;
+    @Mock
+    private DataSaverBackend.Listener mTogglingListener;
+    @Mock
+    private DataSaverBackend.Listener mOtherListener;
+
+    private UidPolicySnapshot mSnapshot;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        FakeFeatureFactory.setupForTest();
+        ShadowApplication.getInstance().setSystemService(Context.NETWORK_POLICY_SERVICE,
+                mPolicyManager);
+        when(mPolicyManager.getUidsWithPolicy(anyInt())).thenReturn(new int[0]);
+        mContext = RuntimeEnvironment.application;
+        mSnapshot = new UidPolicySnapshot(mPolicyManager);
+        UidPolicySnapshot.setInstance(mSnapshot);
+    }
+
+    @After
+    public void tearDown() {
+        UidPolicySnapshot.setInstance(null);
+    }
+
+    @Test
+    public void setIsWhitelisted_otherBackendListenerNotified() {
+        final DataSaverBackend togglingBackend = new DataSaverBackend(mContext);
+        final DataSaverBackend otherBackend = new DataSaverBackend(mContext);
+        togglingBackend.addListener(mTogglingListener);
+        otherBackend.addListener(mOtherListener);
+
+        togglingBackend.setIsWhitelisted(UID, PACKAGE_NAME, true /* whitelisted */);
+        mSnapshot.flushPendingChanges();
+        // The system reports the policy set by Settings back.
+        mSnapshot.handleUidPoliciesChanged(UID, POLICY_ALLOW_METERED_BACKGROUND);
+        mSnapshot.flushPendingChanges();
+
+        verify(mOtherListener, times(1)).onWhitelistStatusChanged(UID, true);
+        verify(mOtherListener, never()).onBlacklistStatusChanged(anyInt(), anyBoolean());
+        assertThat(otherBackend.isWhitelisted(UID)).isTrue();
+    }
+
+    @Test
+    public void setIsBlacklisted_otherBackendListenerNotified() {
+        final DataSaverBackend togglingBackend = new DataSaverBackend(mContext);
+        final DataSaverBackend otherBackend = new DataSaverBackend(mContext);
+        togglingBackend.addListener(mTogglingListener);
+        otherBackend.addListener(mOtherListener);
+
+        togglingBackend.setIsBlacklisted(UID, PACKAGE_NAME, true /* blacklisted */);
+        mSnapshot.flushPendingChanges();
+        mSnapshot.handleUidPoliciesChanged(UID, POLICY_REJECT_METERED_BACKGROUND);
+        mSnapshot.flushPendingChanges();
+
+        verify(mOtherListener, times(1)).onBlacklistStatusChanged(UID, true);
+        verify(mOtherListener, never()).onWhitelistStatusChanged(anyInt(), anyBoolean());
+        assertThat(otherBackend.isBlacklisted(UID)).isTrue();
+    }
+}
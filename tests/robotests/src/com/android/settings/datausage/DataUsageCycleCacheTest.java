@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.NetworkTemplate;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.net.DataUsageController.DataUsageInfo;
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataUsageCycleCacheTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 100 * DAY;
+    private static final int APP_KEY = 10001;
+
+    private final NetworkTemplate mTemplate = NetworkTemplate.buildTemplateWifiWildcard();
+    private long mTime;
+    private DataUsageCycleCache mCache;
+
+    @Before
+    public void setUp() {
+        mTime = NOW;
+        mCache = new DataUsageCycleCache(() -> mTime);
+    }
+
+    @Test
+    public void getUsageByUid_endedCycle_keptAfterTtl() {
+        final SparseLongArray usage = new SparseLongArray();
+        mCache.putUsageByUid(mTemplate, NOW - 30 * DAY, NOW - DAY, usage);
+
+        mTime += DAY;
+
+        assertThat(mCache.getUsageByUid(mTemplate, NOW - 30 * DAY, NOW - DAY))
+                .isSameAs(usage);
+    }
+
+    @Test
+    public void getUsageByUid_currentCycle_expiresAfterTtl() {
+        final SparseLongArray usage = new SparseLongArray();
+        mCache.putUsageByUid(mTemplate, NOW - DAY, NOW + 29 * DAY, usage);
+
+        assertThat(mCache.getUsageByUid(mTemplate, NOW - DAY, NOW + 29 * DAY)).isSameAs(usage);
+
+        mTime += DataUsageCycleCache.CURRENT_CYCLE_TTL_MS;
+
+        assertThat(mCache.getUsageByUid(mTemplate, NOW - DAY, NOW + 29 * DAY)).isNull();
+    }
+
+    @Test
+    public void getAppUsage_cycleWithoutUsage_cachedAsNoUsage() {
+        final List<Long> cycles = Arrays.asList(NOW - DAY, NOW - 11 * DAY, NOW - 21 * DAY);
+        final NetworkCycleDataForUid data = new NetworkCycleDataForUid.Builder()
+                .setStartTime(NOW - 21 * DAY).setEndTime(NOW - 11 * DAY).setTotalUsage(1234L)
+                .build();
+        final List<NetworkCycleDataForUid> loaded = new ArrayList<>();
+        loaded.add(data);
+
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY, cycles)).isNull();
+
+        mCache.putAppUsage(mTemplate, APP_KEY, cycles, loaded);
+
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY, cycles)).containsExactly(data);
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY + 1, cycles)).isNull();
+    }
+
+    @Test
+    public void getAppUsage_differentCycles_returnNull() {
+        final List<Long> cycles = Arrays.asList(NOW - DAY, NOW - 11 * DAY, NOW - 21 * DAY);
+        mCache.putAppUsage(mTemplate, APP_KEY, cycles, new ArrayList<>());
+
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY, cycles)).isEmpty();
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY,
+                Arrays.asList(NOW - DAY, NOW - 11 * DAY))).isNull();
+    }
+
+    @Test
+    public void getAppUsage_currentCycle_expiresAfterTtl() {
+        final List<Long> cycles = Arrays.asList(NOW + 9 * DAY, NOW - DAY);
+        mCache.putAppUsage(mTemplate, APP_KEY, cycles, new ArrayList<>());
+
+        mTime += DataUsageCycleCache.CURRENT_CYCLE_TTL_MS;
+
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY, cycles)).isNull();
+    }
+
+    @Test
+    public void putAppUsage_tooManyApps_evictLeastRecentlyUsed() {
+        final List<Long> cycles = Arrays.asList(NOW - DAY, NOW - 11 * DAY);
+        for (int i = 0; i <= DataUsageCycleCache.MAX_APP_USAGES; i++) {
+            mCache.putAppUsage(mTemplate, APP_KEY + i, cycles, new ArrayList<>());
+        }
+
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY, cycles)).isNull();
+        assertThat(mCache.getAppUsage(mTemplate, APP_KEY + 1, cycles)).isNotNull();
+    }
+
+    @Test
+    public void putUsageByUid_tooManyEndedCycles_evictLeastRecentlyUsed() {
+        for (int i = 0; i <= DataUsageCycleCache.MAX_USAGE_BY_UID_CYCLES; i++) {
+            mCache.putUsageByUid(mTemplate, NOW - (i + 1) * DAY, NOW - i * DAY,
+                    new SparseLongArray());
+        }
+
+        assertThat(mCache.getUsageByUid(mTemplate, NOW - DAY, NOW)).isNull();
+        assertThat(mCache.getUsageByUid(mTemplate, NOW - 2 * DAY, NOW - DAY)).isNotNull();
+    }
+
+    @Test
+    public void getDataUsageInfo_differentCycleRule_returnNull() {
+        final DataUsageInfo info = new DataUsageInfo();
+        info.cycleEnd = NOW + DAY;
+        mCache.putDataUsageInfo(mTemplate, null /* cycleRule */, info);
+
+        assertThat(mCache.getDataUsageInfo(mTemplate, null /* cycleRule */)).isNotNull();
+        assertThat(mCache.getDataUsageInfo(NetworkTemplate.buildTemplateMobileWildcard(),
+                null /* cycleRule */)).isNull();
+    }
+
+    @Test
+    public void getDataUsageInfo_limitsAppliedToReturnedInfo_cachedInfoUnchanged() {
+        final DataUsageInfo info = new DataUsageInfo();
+        info.cycleEnd = NOW + DAY;
+        info.usageLevel = 100;
+        mCache.putDataUsageInfo(mTemplate, null /* cycleRule */, info);
+        // The loaded info is changed after it was cached, as well as the cached one.
+        info.limitLevel = 1000;
+        final DataUsageInfo cached = mCache.getDataUsageInfo(mTemplate, null /* cycleRule */);
+        cached.warningLevel = 500;
+        cached.limitLevel = 2000;
+
+        final DataUsageInfo result = mCache.getDataUsageInfo(mTemplate, null /* cycleRule */);
+
+        assertThat(result).isNotSameAs(cached);
+        assertThat(result.usageLevel).isEqualTo(100);
+        assertThat(result.cycleEnd).isEqualTo(NOW + DAY);
+        assertThat(result.warningLevel).isEqualTo(0);
+        assertThat(result.limitLevel).isEqualTo(0);
+    }
+}
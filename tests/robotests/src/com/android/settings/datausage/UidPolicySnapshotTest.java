@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_ALLOW_METERED_BACKGROUND;
+import static android.net.NetworkPolicyManager.POLICY_NONE;
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.net.NetworkPolicyManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+public class UidPolicySnapshotTest {
+    private static final int UID_ALLOWED = 10001;
+    private static final int UID_REJECTED = 10002;
+    private static final int UID_OTHER = 10003;
+
+    @Mock
+    private NetworkPolicyManager mPolicyManager;
+    @Mock
+    private UidPolicySnapshot.Callback mCallback;
+
+    private UidPolicySnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mPolicyManager.getUidsWithPolicy(POLICY_ALLOW_METERED_BACKGROUND))
+                .thenReturn(new int[] {UID_ALLOWED});
+        when(mPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND))
+                .thenReturn(new int[] {UID_REJECTED});
+        mSnapshot = new UidPolicySnapshot(mPolicyManager);
+        mSnapshot.addCallback(mCallback);
+    }
+
+    @Test
+    public void getPolicy_loadsPoliciesOnce() {
+        assertThat(mSnapshot.getPolicy(UID_ALLOWED)).isEqualTo(POLICY_ALLOW_METERED_BACKGROUND);
+        assertThat(mSnapshot.getPolicy(UID_REJECTED))
+                .isEqualTo(POLICY_REJECT_METERED_BACKGROUND);
+        assertThat(mSnapshot.getPolicy(UID_OTHER)).isEqualTo(POLICY_NONE);
+
+        verify(mPolicyManager, times(1)).getUidsWithPolicy(POLICY_ALLOW_METERED_BACKGROUND);
+        verify(mPolicyManager, times(1)).getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND);
+    }
+
+    @Test
+    public void handleUidPoliciesChanged_severalChanges_reportNetChangeOnce() {
+        mSnapshot.ensureLoaded();
+        // Keep the flush posted by the first change pending
+        ShadowLooper.pauseMainLooper();
+
+        mSnapshot.handleUidPoliciesChanged(UID_OTHER, POLICY_REJECT_METERED_BACKGROUND);
+        mSnapshot.handleUidPoliciesChanged(UID_OTHER, POLICY_ALLOW_METERED_BACKGROUND);
+        mSnapshot.handleUidPoliciesChanged(UID_ALLOWED, POLICY_NONE);
+        mSnapshot.handleUidPoliciesChanged(UID_ALLOWED, POLICY_ALLOW_METERED_BACKGROUND);
+        mSnapshot.flushPendingChanges();
+
+        verify(mCallback).onUidPolicyChanged(UID_OTHER, POLICY_NONE,
+                POLICY_ALLOW_METERED_BACKGROUND);
+        verify(mCallback, never()).onUidPolicyChanged(UID_ALLOWED, POLICY_ALLOW_METERED_BACKGROUND,
+                POLICY_NONE);
+        assertThat(mSnapshot.getPolicy(UID_OTHER)).isEqualTo(POLICY_ALLOW_METERED_BACKGROUND);
+    }
+
+    @Test
+    public void setPolicy_reportedOnce() {
+        mSnapshot.setPolicy(UID_OTHER, POLICY_REJECT_METERED_BACKGROUND);
+        mSnapshot.flushPendingChanges();
+        // The system reports the policy set by Settings back.
+        mSnapshot.handleUidPoliciesChanged(UID_OTHER, POLICY_REJECT_METERED_BACKGROUND);
+        mSnapshot.flushPendingChanges();
+
+        verify(mCallback, times(1)).onUidPolicyChanged(UID_OTHER, POLICY_NONE,
+                POLICY_REJECT_METERED_BACKGROUND);
+        verify(mCallback, times(1)).onUidPolicyChanged(anyInt(), anyInt(), anyInt());
+        assertThat(mSnapshot.getPolicy(UID_OTHER)).isEqualTo(POLICY_REJECT_METERED_BACKGROUND);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class PackageSizeCacheTest {
+    private static final String UUID = null;
+    private static final int USER_ID = 0;
+    private static final String PACKAGE_NAME = "com.example.app";
+    private static final long VERSION = 3L;
+    private static final long MAX_AGE_MS = 1000L;
+
+    private File mFile;
+    private long mTime;
+    private PackageSizeCache mCache;
+
+    @Before
+    public void setUp() {
+        mFile = new File(RuntimeEnvironment.application.getCacheDir(), "package_sizes");
+        mFile.delete();
+        mTime = 5000L;
+        mCache = new PackageSizeCache(mFile, () -> mTime, MAX_AGE_MS);
+    }
+
+    @Test
+    public void get_otherVersion_returnNull() {
+        mCache.put(USER_ID, PACKAGE_NAME, createEntry());
+
+        assertThat(mCache.get(UUID, USER_ID, PACKAGE_NAME, VERSION)).isNotNull();
+        assertThat(mCache.get(UUID, USER_ID, PACKAGE_NAME, VERSION + 1)).isNull();
+        assertThat(mCache.get("other_volume", USER_ID, PACKAGE_NAME, VERSION)).isNull();
+    }
+
+    @Test
+    public void get_olderThanMaxAge_returnNull() {
+        mCache.put(USER_ID, PACKAGE_NAME, createEntry());
+
+        mTime += MAX_AGE_MS;
+
+        assertThat(mCache.get(UUID, USER_ID, PACKAGE_NAME, VERSION)).isNull();
+    }
+
+    @Test
+    public void invalidate_removeEntryOfEveryUser() {
+        mCache.put(USER_ID, PACKAGE_NAME, createEntry());
+        mCache.put(USER_ID + 10, PACKAGE_NAME, createEntry());
+
+        mCache.invalidate(PACKAGE_NAME);
+
+        assertThat(mCache.get(UUID, USER_ID, PACKAGE_NAME, VERSION)).isNull();
+        assertThat(mCache.get(UUID, USER_ID + 10, PACKAGE_NAME, VERSION)).isNull();
+    }
+
+    @Test
+    public void invalidate_beforeEntriesRead_dropEntryFromDisk() {
+        mCache.put(USER_ID, PACKAGE_NAME, createEntry());
+        mCache.save();
+        final PackageSizeCache cache = new PackageSizeCache(mFile, () -> mTime, MAX_AGE_MS);
+
+        cache.invalidate(PACKAGE_NAME);
+
+        assertThat(cache.get(UUID, USER_ID, PACKAGE_NAME, VERSION)).isNull();
+        cache.save();
+        assertThat(new PackageSizeCache(mFile, () -> mTime, MAX_AGE_MS)
+                .get(UUID, USER_ID, PACKAGE_NAME, VERSION)).isNull();
+    }
+
+    @Test
+    public void save_entriesReadByNextProcess() {
+        mCache.put(USER_ID, PACKAGE_NAME, createEntry());
+        mCache.put(USER_ID, "com.example.removed", createEntry());
+        mCache.retainPackages(USER_ID, Arrays.asList(PACKAGE_NAME));
+        mCache.save();
+
+        final PackageSizeCache cache = new PackageSizeCache(mFile, () -> mTime, MAX_AGE_MS);
+
+        final PackageSizeCache.Entry entry = cache.get(UUID, USER_ID, PACKAGE_NAME, VERSION);
+        assertThat(entry.codeBytes).isEqualTo(10L);
+        assertThat(entry.dataBytes).isEqualTo(20L);
+        assertThat(entry.cacheBytes).isEqualTo(5L);
+        assertThat(entry.cacheQuotaBytes).isEqualTo(100L);
+        assertThat(cache.get(UUID, USER_ID, "com.example.removed", VERSION)).isNull();
+    }
+
+    private PackageSizeCache.Entry createEntry() {
+        return new PackageSizeCache.Entry(UUID, VERSION, 10L /* codeBytes */,
+                20L /* dataBytes */, 5L /* cacheBytes */, 100L /* cacheQuotaBytes */, mTime);
+    }
+}
@@ -23,9 +23,11 @@ import static com.android.settings.utils.FileSizeFormatter.MEGABYTE_IN_BYTES;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -328,6 +330,58 @@ public class StorageItemPreferenceControllerTest {
         assertThat(files.getSummary().toString()).isEqualTo("0.05 GB");
     }
 
+    @Test
+    public void onLoadFinished_partialResult_doNotUpdateSystemSize() {
+        final StorageItemPreference audio = new StorageItemPreference(mContext);
+        final StorageItemPreference image = new StorageItemPreference(mContext);
+        final StorageItemPreference games = new StorageItemPreference(mContext);
+        final StorageItemPreference movies = new StorageItemPreference(mContext);
+        final StorageItemPreference apps = new StorageItemPreference(mContext);
+        final StorageItemPreference system = spy(new StorageItemPreference(mContext));
+        final StorageItemPreference files = new StorageItemPreference(mContext);
+        final PreferenceScreen screen = mock(PreferenceScreen.class);
+        when(screen.findPreference(eq(StorageItemPreferenceController.GAME_KEY)))
+            .thenReturn(games);
+        when(screen.findPreference(eq(StorageItemPreferenceController.AUDIO_KEY)))
+            .thenReturn(audio);
+        when(screen.findPreference(eq(StorageItemPreferenceController.PHOTO_KEY)))
+            .thenReturn(image);
+        when(screen.findPreference(eq(StorageItemPreferenceController.FILES_KEY)))
+            .thenReturn(files);
+        when(screen.findPreference(eq(StorageItemPreferenceController.MOVIES_KEY)))
+            .thenReturn(movies);
+        when(screen.findPreference(eq(StorageItemPreferenceController.SYSTEM_KEY)))
+            .thenReturn(system);
+        when(screen.findPreference(eq(StorageItemPreferenceController.OTHER_APPS_KEY)))
+            .thenReturn(apps);
+        mController.displayPreference(screen);
+
+        mController.setUsedSize(MEGABYTE_IN_BYTES * 970);
+        final StorageAsyncLoader.AppsStorageResult result =
+            new StorageAsyncLoader.AppsStorageResult();
+        result.partial = true;
+        result.gamesSize = MEGABYTE_IN_BYTES * 80;
+        result.externalStats =
+                new StorageStatsSource.ExternalStorageStats(
+                        MEGABYTE_IN_BYTES * 500, // total
+                        MEGABYTE_IN_BYTES * 100, // audio
+                        MEGABYTE_IN_BYTES * 150, // video
+                        MEGABYTE_IN_BYTES * 200, 0); // image
+
+        final SparseArray<StorageAsyncLoader.AppsStorageResult> results = new SparseArray<>();
+        results.put(0, result);
+        mController.onLoadFinished(results, 0);
+
+        assertThat(games.getSummary().toString()).isEqualTo("0.08 GB");
+        verify(system, never()).setStorageSize(anyLong(), anyLong());
+    }
+
+    @Test
+    public void onLoadFinished_userNotLoadedYet_doNothing() {
+        // Shouldn't crash
+        mController.onLoadFinished(new SparseArray<>(), 0);
+    }
+
     @Test
     public void settingUserIdAppliesNewIcons() {
         final StorageItemPreference audio = spy(new StorageItemPreference(mContext));
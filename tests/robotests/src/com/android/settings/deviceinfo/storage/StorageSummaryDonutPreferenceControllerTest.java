@@ -23,6 +23,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -37,6 +38,7 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
 
+import androidx.preference.PreferenceScreen;
 import androidx.preference.PreferenceViewHolder;
 
 import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
@@ -51,6 +53,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.io.File;
 
@@ -94,6 +97,24 @@ public class StorageSummaryDonutPreferenceControllerTest {
                 .isEqualTo("Used of " + Formatter.formatShortFileSize(mContext, totalSpace));
     }
 
+    @Test
+    public void onStop_animating_showNewSizesAndStopAnimation() {
+        final PreferenceScreen screen = mock(PreferenceScreen.class);
+        when(screen.findPreference("pref_summary")).thenReturn(mPreference);
+        mController.displayPreference(screen);
+        mController.updateBytes(KILOBYTE, 10 * KILOBYTE);
+        mController.updateBytes(5 * KILOBYTE, 10 * KILOBYTE);
+
+        mController.onStop();
+
+        assertThat(mPreference.getTitle().toString()).isEqualTo(
+                StorageSummaryDonutPreferenceController.convertUsedBytesToFormattedText(
+                        mContext, 5 * KILOBYTE).toString());
+        mPreference.setTitle("stopped");
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertThat(mPreference.getTitle().toString()).isEqualTo("stopped");
+    }
+
     @Test
     public void testTotalStorage() {
         final long totalSpace = KILOBYTE * 10;
@@ -28,6 +28,8 @@ import android.content.Context;
 import android.content.pm.ModuleInfo;
 import android.content.pm.PackageManager;
 import android.os.BatteryStats;
+import android.os.Process;
+import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
@@ -215,4 +217,31 @@ public class BatteryAppListPreferenceControllerTest {
     public void testNeverUseFakeData() {
         assertThat(BatteryAppListPreferenceController.USE_FAKE_DATA).isFalse();
     }
+
+    @Test
+    public void testGetCoalescedUsageList_sharedGid_mergedWithoutModifyingSippers() {
+        final int appUid = Process.FIRST_APPLICATION_UID;
+        final BatterySipper appSipper = new BatterySipper(BatterySipper.DrainType.APP,
+                new FakeUid(appUid), 10);
+        appSipper.mPackages = new String[] {PACKAGE_NAMES[0]};
+        final BatterySipper dex2oatSipper = new BatterySipper(BatterySipper.DrainType.APP,
+                new FakeUid(UserHandle.getSharedAppGid(appUid)), 5);
+        dex2oatSipper.packageWithHighestDrain = "dex2oat";
+        final BatterySipper otherSipper = new BatterySipper(BatterySipper.DrainType.APP,
+                new FakeUid(appUid + 1), 3);
+        final List<BatterySipper> sippers = new ArrayList<>();
+        sippers.add(appSipper);
+        sippers.add(otherSipper);
+        sippers.add(dex2oatSipper);
+
+        final List<BatterySipper> result = mPreferenceController.getCoalescedUsageList(sippers);
+
+        assertThat(result).hasSize(2);
+        assertThat(result).contains(otherSipper);
+        final BatterySipper merged = result.get(0) == otherSipper ? result.get(1) : result.get(0);
+        assertThat(merged.uidObj).isSameAs(appSipper.uidObj);
+        assertThat(merged.totalPowerMah).isEqualTo(15);
+        assertThat(merged.mPackages).isEqualTo(new String[] {PACKAGE_NAMES[0]});
+        assertThat(appSipper.totalPowerMah).isEqualTo(10);
+    }
 }
@@ -31,7 +31,9 @@ import android.os.UserManager;
 import com.android.internal.os.BatterySipper;
 import com.android.internal.os.BatterySipper.DrainType;
 import com.android.settings.R;
+import com.android.settings.utils.UidDetailCache;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -78,6 +80,12 @@ public class BatteryEntryTest {
         when(mockPackageManager.getApplicationLabel(appInfo)).thenReturn(APP_LABEL);
     }
 
+    @After
+    public void tearDown() {
+        BatteryEntry.stopRequestQueue();
+        BatteryEntry.clearUidCache();
+    }
+
     private BatteryEntry createBatteryEntryForApp() {
         return new BatteryEntry(mockContext, mockHandler, mockUserManager, createSipperForApp());
     }
@@ -150,6 +158,22 @@ public class BatteryEntryTest {
         assertThat(entry.name).isEqualTo("Ambient display");
     }
 
+    @Test
+    public void batteryEntryFromEntry_newSipper_keepNameAndIconWithNewStats() {
+        final BatteryEntry entry = createBatteryEntryForApp();
+        final BatterySipper newSipper =
+                new BatterySipper(DrainType.APP, new FakeUid(APP_UID), 10 /* power use */);
+        newSipper.usageTimeMs = 20000;
+
+        final BatteryEntry newEntry = new BatteryEntry(entry, newSipper);
+
+        assertThat(newEntry.sipper).isSameAs(newSipper);
+        assertThat(newEntry.sipper.usageTimeMs).isEqualTo(20000);
+        assertThat(newEntry.getLabel()).isEqualTo(APP_LABEL);
+        assertThat(newEntry.defaultPackageName).isEqualTo(APP_DEFAULT_PACKAGE_NAME);
+        assertThat(newEntry.sipper.mPackages).isEqualTo(entry.sipper.mPackages);
+    }
+
     @Test
     public void extractPackageFromSipper_systemSipper_returnSystemPackage() {
         BatteryEntry entry = createBatteryEntryForSystem();
@@ -170,11 +194,23 @@ public class BatteryEntryTest {
         BatteryEntry.stopRequestQueue();
 
         Locale.setDefault(new Locale("en_US"));
-        BatteryEntry.sUidCache.put(Integer.toString(APP_UID), null);
-        assertThat(BatteryEntry.sUidCache).isNotEmpty();
+        UidDetailCache.getInstance().put(APP_UID,
+                new UidDetailCache.Entry(APP_LABEL, APP_DEFAULT_PACKAGE_NAME, null));
+        assertThat(UidDetailCache.getInstance().size()).isEqualTo(1);
 
         Locale.setDefault(new Locale("zh_TW"));
         createBatteryEntryForApp();
-        assertThat(BatteryEntry.sUidCache).isEmpty(); // check if cache is clear
+        assertThat(UidDetailCache.getInstance().size()).isEqualTo(0); // check if cache is clear
+    }
+
+    @Test
+    public void testUidCache_cachedUid_shouldNotQueueRequest() {
+        UidDetailCache.getInstance().put(APP_UID,
+                new UidDetailCache.Entry("Cached Name", APP_DEFAULT_PACKAGE_NAME, null));
+
+        final BatteryEntry entry = createBatteryEntryForApp();
+
+        assertThat(entry.getLabel()).isEqualTo("Cached Name");
+        assertThat(BatteryEntry.mRequestQueue).doesNotContain(entry);
     }
 }
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.os.BatteryStats;
+import android.os.BatteryStats.HistoryItem;
+import android.os.BatteryStats.HistoryTag;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryHistorySnapshotTest {
+
+    private static final String TAG = "BatteryHistorySnapshotTest";
+    private static final long START_WALL_TIME = 1546300800000L;
+    private static final long HISTORY_DURATION = TimeUnit.DAYS.toMillis(3);
+    private static final long RECORD_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long TIME_CHANGE_INTERVAL = TimeUnit.HOURS.toMillis(10);
+    private static final int ITERATIONS = 5;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private BatteryStats mBatteryStats;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        BatteryHistorySnapshot.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        BatteryHistorySnapshot.clearCache();
+    }
+
+    @Test
+    public void replay_feedWallTimesDataPointsAndGaps() {
+        mockShortHistory();
+        final RecordingParser parser = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, parser);
+
+        assertThat(parser.mEvents).containsExactly(
+                "start " + START_WALL_TIME + " " + (START_WALL_TIME + 4000),
+                // The first clock update jumps from 0 to the wall time.
+                "gap",
+                dataPoint(1000, 1000, 99),
+                dataPoint(2000, 2000, 98),
+                // The device restarted.
+                "gap",
+                // The second clock update moves the wall time by less than an hour.
+                dataPoint(4000, 4000, 97),
+                "done").inOrder();
+    }
+
+    @Test
+    public void create_recordsAfterLastDataPoint_dropped() {
+        mockShortHistory();
+
+        final BatteryHistorySnapshot snapshot = BatteryHistorySnapshot.create(mBatteryStats);
+
+        assertThat(snapshot.size()).isEqualTo(6);
+    }
+
+    @Test
+    public void replay_parserChangesRecord_snapshotUnchanged() {
+        mockShortHistory();
+        final RecordingParser expected = new RecordingParser();
+        final RecordingParser actual = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, expected);
+        BatteryInfo.parse(mBatteryStats, new RecordingParser() {
+            @Override
+            public void onDataPoint(long time, HistoryItem record) {
+                record.batteryLevel = 0;
+                record.wakelockTag = null;
+            }
+        });
+        BatteryInfo.parse(mBatteryStats, actual);
+
+        assertThat(actual.mEvents).containsExactlyElementsIn(expected.mEvents).inOrder();
+    }
+
+    @Test
+    public void replay_multiDayHistory_sameAsFirstParse() {
+        mockMultiDayHistory();
+        final RecordingParser expected = new RecordingParser();
+        final RecordingParser actual = new RecordingParser();
+
+        BatteryInfo.parse(mBatteryStats, expected);
+        BatteryInfo.parse(mBatteryStats, actual);
+
+        assertThat(actual.mEvents).isNotEmpty();
+        assertThat(actual.mEvents).containsExactlyElementsIn(expected.mEvents).inOrder();
+        verify(mBatteryStats, times(1)).startIteratingHistoryLocked();
+    }
+
+    @Test
+    public void parse_sameStats_iteratesHistoryOnce() {
+        mockMultiDayHistory();
+
+        BatteryInfo.parse(mBatteryStats, new RecordingParser());
+        BatteryInfo.parse(mBatteryStats, new RecordingParser(), new RecordingParser());
+
+        verify(mBatteryStats, times(1)).startIteratingHistoryLocked();
+    }
+
+    @Test
+    public void parse_cacheCleared_readHistoryAgain() {
+        mockMultiDayHistory();
+
+        BatteryInfo.parse(mBatteryStats, new RecordingParser());
+        BatteryHistorySnapshot.clearCache();
+        BatteryInfo.parse(mBatteryStats, new RecordingParser());
+
+        verify(mBatteryStats, times(2)).startIteratingHistoryLocked();
+    }
+
+    @Test
+    public void parse_multiDayHistory_logTimes() {
+        mockMultiDayHistory();
+        long createTime = 0;
+        long replayTime = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            BatteryHistorySnapshot.clearCache();
+            long startTime = System.nanoTime();
+            BatteryInfo.parse(mBatteryStats, new RecordingParser(), new RecordingParser(),
+                    new RecordingParser());
+            createTime += System.nanoTime() - startTime;
+
+            // Every screen creates its own parsers for the same stats, so only the first
+            // round reads the history.
+            startTime = System.nanoTime();
+            BatteryInfo.parse(mBatteryStats, new RecordingParser(), new RecordingParser(),
+                    new RecordingParser());
+            replayTime += System.nanoTime() - startTime;
+        }
+        Log.d(TAG, "records: " + BatteryHistorySnapshot.get(mBatteryStats).size()
+                + ", first parse: " + TimeUnit.NANOSECONDS.toMillis(createTime / ITERATIONS)
+                + "ms, replay: " + TimeUnit.NANOSECONDS.toMillis(replayTime / ITERATIONS)
+                + "ms");
+    }
+
+    private static String dataPoint(long x, long time, int level) {
+        return x + " " + HistoryItem.CMD_UPDATE + " " + time + " 0 " + level
+                + " 0 0 0 0 0 0 0 0 null null " + HistoryItem.EVENT_NONE + " null";
+    }
+
+    // A clock update, two data points, a restart, another clock update and a data point,
+    // followed by a clock update that no parser sees.
+    private void mockShortHistory() {
+        final List<HistoryItem> history = new ArrayList<>();
+        history.add(createRecord(HistoryItem.CMD_CURRENT_TIME, 0, 0));
+        history.add(createRecord(HistoryItem.CMD_UPDATE, 1000, 99));
+        history.add(createRecord(HistoryItem.CMD_UPDATE, 2000, 98));
+        history.add(createRecord(HistoryItem.CMD_START, 2500, 0));
+        history.add(createRecord(HistoryItem.CMD_CURRENT_TIME, 3000, 0));
+        history.add(createRecord(HistoryItem.CMD_UPDATE, 4000, 97));
+        history.add(createRecord(HistoryItem.CMD_CURRENT_TIME, 5000, 0));
+        doAnswer(invocation -> {
+            doAnswer(new Answer<Boolean>() {
+                private int mCount = 0;
+
+                @Override
+                public Boolean answer(InvocationOnMock invocation) {
+                    if (mCount == history.size()) {
+                        return false;
+                    }
+                    final HistoryItem record = invocation.getArgument(0);
+                    record.setTo(history.get(mCount++));
+                    return true;
+                }
+            }).when(mBatteryStats).getNextHistoryLocked(any(HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+    }
+
+    private static HistoryItem createRecord(byte cmd, long time, int level) {
+        final HistoryItem record = new HistoryItem();
+        record.cmd = cmd;
+        record.time = time;
+        record.batteryLevel = (byte) level;
+        if (cmd == HistoryItem.CMD_CURRENT_TIME) {
+            record.currentTime = START_WALL_TIME + time;
+        }
+        return record;
+    }
+
+    // Three days of discharge and charge cycles, with a clock update every few hours.
+    private void mockMultiDayHistory() {
+        doAnswer(invocation -> {
+            doAnswer(new Answer<Boolean>() {
+                private long mTime = 0;
+                private long mLastTimeChange = -TIME_CHANGE_INTERVAL;
+
+                @Override
+                public Boolean answer(InvocationOnMock invocation) {
+                    if (mTime > HISTORY_DURATION) {
+                        return false;
+                    }
+                    final HistoryItem record = invocation.getArgument(0);
+                    record.time = mTime;
+                    record.currentTime = START_WALL_TIME + mTime;
+                    if (mTime - mLastTimeChange >= TIME_CHANGE_INTERVAL) {
+                        record.cmd = HistoryItem.CMD_CURRENT_TIME;
+                        mLastTimeChange = mTime;
+                        return true;
+                    }
+                    final int step = (int) (mTime / RECORD_INTERVAL);
+                    record.cmd = HistoryItem.CMD_UPDATE;
+                    record.batteryLevel = (byte) Math.abs(100 - step % 200);
+                    record.batteryStatus = (byte) (step % 5);
+                    record.batteryHealth = (byte) (step % 7);
+                    record.batteryPlugType = (byte) (step % 3);
+                    record.batteryTemperature = (short) (250 + step % 100);
+                    record.batteryVoltage = (char) (3800 + step % 400);
+                    record.batteryChargeUAh = 3000000 - step % 1000;
+                    record.states = ((step % 7 == 0) ? HistoryItem.STATE_SCREEN_ON_FLAG : 0)
+                            | ((step % 13 == 0) ? HistoryItem.STATE_GPS_ON_FLAG : 0)
+                            | ((step % 17 == 0) ? HistoryItem.STATE_WIFI_FULL_LOCK_FLAG : 0);
+                    record.states2 = ((step % 11 == 0) ? HistoryItem.STATE2_CHARGING_FLAG : 0)
+                            | ((step % 19 == 0) ? HistoryItem.STATE2_FLASHLIGHT_FLAG : 0);
+                    record.wakelockTag = (step % 3 == 0)
+                            ? setTag(record.localWakelockTag, "wakelock" + step % 4, step % 5)
+                            : null;
+                    record.wakeReasonTag = (step % 23 == 0)
+                            ? setTag(record.localWakeReasonTag, "reason" + step % 2, 0)
+                            : null;
+                    record.eventCode = (step % 29 == 0)
+                            ? HistoryItem.EVENT_TOP_START : HistoryItem.EVENT_NONE;
+                    record.eventTag = (step % 29 == 0)
+                            ? setTag(record.localEventTag, "com.example", 10000 + step % 3)
+                            : null;
+                    mTime += RECORD_INTERVAL;
+                    return true;
+                }
+            }).when(mBatteryStats).getNextHistoryLocked(any(HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+    }
+
+    private static HistoryTag setTag(HistoryTag tag, String string, int uid) {
+        tag.string = string;
+        tag.uid = uid;
+        return tag;
+    }
+
+    // Records every field of the history the parsers in settings read.
+    private static class RecordingParser implements BatteryInfo.BatteryDataParser {
+        private final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onParsingStarted(long startTime, long endTime) {
+            mEvents.add("start " + startTime + " " + endTime);
+        }
+
+        @Override
+        public void onDataPoint(long time, HistoryItem record) {
+            mEvents.add(time + " " + record.cmd + " " + record.time + " " + record.currentTime
+                    + " " + record.batteryLevel + " " + record.batteryStatus + " "
+                    + record.batteryHealth + " " + record.batteryPlugType + " "
+                    + record.batteryTemperature + " " + (int) record.batteryVoltage + " "
+                    + record.batteryChargeUAh + " " + record.states + " " + record.states2 + " "
+                    + describe(record.wakelockTag) + " " + describe(record.wakeReasonTag) + " "
+                    + record.eventCode + " " + describe(record.eventTag));
+        }
+
+        private static String describe(HistoryTag tag) {
+            return tag == null ? "null" : tag.string + "/" + tag.uid;
+        }
+
+        @Override
+        public void onDataGap() {
+            mEvents.add("gap");
+        }
+
+        @Override
+        public void onParsingDone() {
+            mEvents.add("done");
+        }
+    }
+}
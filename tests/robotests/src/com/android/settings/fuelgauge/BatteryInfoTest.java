@@ -56,6 +56,8 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @RunWith(RobolectricTestRunner.class)
@@ -74,6 +76,8 @@ public class BatteryInfoTest {
             "1 min left until fully charged";
     private static final String TEST_BATTERY_LEVEL_10 = "10%";
     private static final String FIFTEEN_MIN_FORMATTED = "15 min";
+    private static final int LONG_HISTORY_POINTS = BatteryInfo.CHART_RESOLUTION * 10;
+    private static final long LONG_HISTORY_INTERVAL = TimeUnit.SECONDS.toMillis(30);
     private static final Estimate DUMMY_ESTIMATE = new Estimate(
             1000, /* estimateMillis */
             false, /* isBasedOnUsage */
@@ -366,4 +370,88 @@ public class BatteryInfoTest {
         info = getBatteryInfo(true /* charging */, true /* enhanced */, true /* estimate */);
         assertHistoryAndLinearProjection(info);
     }
+
+    @Test
+    public void bindHistory_shortHistory_keepEveryPoint() {
+        mockBatteryStatsHistory();
+        final BatteryInfo info =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+
+        final List<SparseIntArray> paths = bindHistoryPaths(info);
+
+        assertThat(paths).hasSize(1);
+        final SparseIntArray points = paths.get(0);
+        assertThat(points.size()).isEqualTo(3);
+        assertThat(points.keyAt(0)).isEqualTo(1000);
+        assertThat(points.keyAt(1)).isEqualTo(1500);
+        assertThat(points.keyAt(2)).isEqualTo(2000);
+        assertThat(points.valueAt(2)).isEqualTo(97);
+    }
+
+    @Test
+    public void bindHistory_longHistory_keepLastPointOfEachBucket() {
+        mockLongBatteryStatsHistory();
+        final BatteryInfo info =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        final long lastTime = (LONG_HISTORY_POINTS - 1) * LONG_HISTORY_INTERVAL;
+        final long bucketSize = lastTime / BatteryInfo.CHART_RESOLUTION;
+
+        final List<SparseIntArray> paths = bindHistoryPaths(info);
+
+        assertThat(paths).hasSize(1);
+        final SparseIntArray points = paths.get(0);
+        // One point per bucket, plus the first point of the path.
+        assertThat(points.size()).isAtMost(BatteryInfo.CHART_RESOLUTION + 2);
+        assertThat(points.size()).isAtLeast(BatteryInfo.CHART_RESOLUTION);
+        assertThat(points.keyAt(0)).isEqualTo(0);
+        assertThat(points.keyAt(points.size() - 1)).isEqualTo((int) lastTime);
+        for (int i = 0; i < points.size(); i++) {
+            final long time = points.keyAt(i);
+            assertThat(points.valueAt(i)).isEqualTo(getLongHistoryLevel(time));
+            if (i > 0 && time != lastTime) {
+                assertThat((time + LONG_HISTORY_INTERVAL) / bucketSize)
+                        .isGreaterThan(time / bucketSize);
+            }
+        }
+    }
+
+    private List<SparseIntArray> bindHistoryPaths(BatteryInfo info) {
+        final List<SparseIntArray> paths = new ArrayList<>();
+        final UsageView view = mock(UsageView.class);
+        when(view.getContext()).thenReturn(mContext);
+        // The path is cleared once it was added, so keep a copy.
+        doAnswer(invocation -> {
+            paths.add(((SparseIntArray) invocation.getArgument(0)).clone());
+            return null;
+        }).when(view).addPath(any(SparseIntArray.class));
+
+        info.bindHistory(view);
+        return paths;
+    }
+
+    private static int getLongHistoryLevel(long time) {
+        return 100 - (int) (time / LONG_HISTORY_INTERVAL / 50);
+    }
+
+    private void mockLongBatteryStatsHistory() {
+        doAnswer(invocation -> {
+            doAnswer(new Answer() {
+                private int mCount = 0;
+
+                @Override
+                public Object answer(InvocationOnMock invocation) throws Throwable {
+                    if (mCount == LONG_HISTORY_POINTS) {
+                        return false;
+                    }
+                    BatteryStats.HistoryItem record = invocation.getArgument(0);
+                    record.cmd = BatteryStats.HistoryItem.CMD_UPDATE;
+                    record.time = mCount * LONG_HISTORY_INTERVAL;
+                    record.batteryLevel = (byte) getLongHistoryLevel(record.time);
+                    mCount++;
+                    return true;
+                }
+            }).when(mBatteryStats).getNextHistoryLocked(any(BatteryStats.HistoryItem.class));
+            return true;
+        }).when(mBatteryStats).startIteratingHistoryLocked();
+    }
 }
@@ -25,12 +25,12 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -38,6 +38,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.robolectric.RuntimeEnvironment.application;
 
+import android.app.AppOpsManager;
 import android.app.StatsManager;
 import android.app.job.JobInfo;
 import android.app.job.JobParameters;
@@ -62,6 +63,7 @@ import com.android.settingslib.fuelgauge.PowerWhitelistBackend;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.Robolectric;
@@ -101,6 +103,8 @@ public class AnomalyDetectionJobServiceTest {
     private JobWorkItem mJobWorkItem;
 
     private BatteryTipPolicy mPolicy;
+    private List<BatteryDatabaseManager.AnomalyRecord> mAnomalies;
+    private List<Runnable> mActions;
     private Bundle mBundle;
     private AnomalyDetectionJobService mAnomalyDetectionJobService;
     private FakeFeatureFactory mFeatureFactory;
@@ -112,6 +116,8 @@ public class AnomalyDetectionJobServiceTest {
 
         mContext = RuntimeEnvironment.application;
         mPolicy = new BatteryTipPolicy(mContext);
+        mAnomalies = new ArrayList<>();
+        mActions = new ArrayList<>();
         mBundle = new Bundle();
         mBundle.putParcelable(StatsManager.EXTRA_STATS_DIMENSIONS_VALUE, mStatsDimensionsValue);
         mFeatureFactory = FakeFeatureFactory.setupForTest();
@@ -143,13 +149,12 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(true).when(mPowerWhitelistBackend).isWhitelisted(any(String[].class));
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider,
                 mFeatureFactory.metricsFeatureProvider, mBundle);
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        assertThat(mAnomalies).isEmpty();
     }
 
     @Test
@@ -164,13 +169,13 @@ public class AnomalyDetectionJobServiceTest {
         doReturn(true).when(mBatteryUtils).shouldHideAnomaly(any(), anyInt(), any());
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider,
                 mFeatureFactory.metricsFeatureProvider, mBundle);
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        assertThat(mAnomalies).isEmpty();
+        runActions();
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_IGNORED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -184,13 +189,12 @@ public class AnomalyDetectionJobServiceTest {
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
                 mBundle);
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        assertThat(mAnomalies).isEmpty();
     }
 
     @Test
@@ -199,13 +203,12 @@ public class AnomalyDetectionJobServiceTest {
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
                 mBundle);
 
-        verify(mBatteryDatabaseManager, never()).insertAnomaly(anyInt(), anyString(), anyInt(),
-                anyInt(), anyLong());
+        assertThat(mAnomalies).isEmpty();
     }
 
     @Test
@@ -219,13 +222,18 @@ public class AnomalyDetectionJobServiceTest {
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
                 mBundle);
 
-        verify(mBatteryDatabaseManager).insertAnomaly(anyInt(), anyString(), eq(6),
-                eq(AnomalyDatabaseHelper.State.AUTO_HANDLED), anyLong());
+        assertThat(mAnomalies).hasSize(1);
+        assertThat(mAnomalies.get(0).type).isEqualTo(ANOMALY_TYPE);
+        assertThat(mAnomalies.get(0).anomalyState)
+                .isEqualTo(AnomalyDatabaseHelper.State.AUTO_HANDLED);
+        runActions();
+        verify(mBatteryUtils).setForceAppStandby(Process.FIRST_APPLICATION_UID, SYSTEM_PACKAGE,
+                AppOpsManager.MODE_IGNORED);
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -244,13 +252,15 @@ public class AnomalyDetectionJobServiceTest {
                 mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
 
         mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
-                mUserManager, mBatteryDatabaseManager, mBatteryUtils, mPolicy,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
                 mPowerWhitelistBackend, mContext.getContentResolver(),
                 mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
                 mBundle);
 
-        verify(mBatteryDatabaseManager).insertAnomaly(anyInt(), anyString(), eq(6),
-                eq(AnomalyDatabaseHelper.State.NEW), anyLong());
+        assertThat(mAnomalies).hasSize(1);
+        assertThat(mAnomalies.get(0).type).isEqualTo(ANOMALY_TYPE);
+        assertThat(mAnomalies.get(0).anomalyState).isEqualTo(AnomalyDatabaseHelper.State.NEW);
+        runActions();
         verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
                 MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
                 SettingsEnums.PAGE_UNKNOWN,
@@ -258,6 +268,105 @@ public class AnomalyDetectionJobServiceTest {
                 ANOMALY_TYPE);
     }
 
+    @Test
+    public void saveAnomalyToDatabase_autoRestriction_restrictAndLogOnlyAfterFlush() {
+        final ArrayList<String> cookies = new ArrayList<>();
+        cookies.add(SUBSCRIBER_COOKIES_AUTO_RESTRICTION);
+        mBundle.putStringArrayList(StatsManager.EXTRA_STATS_BROADCAST_SUBSCRIBER_COOKIES, cookies);
+        doReturn(SYSTEM_PACKAGE).when(mBatteryUtils).getPackageName(anyInt());
+        doReturn(Process.FIRST_APPLICATION_UID).when(
+                mAnomalyDetectionJobService).extractUidFromStatsDimensionsValue(any());
+        final List<JobWorkItem> items = new ArrayList<>();
+        items.add(mJobWorkItem);
+
+        mAnomalyDetectionJobService.saveAnomalyToDatabase(mContext,
+                mUserManager, mAnomalies, mActions, mBatteryUtils, mPolicy,
+                mPowerWhitelistBackend, mContext.getContentResolver(),
+                mFeatureFactory.powerUsageFeatureProvider, mFeatureFactory.metricsFeatureProvider,
+                mBundle);
+
+        verify(mBatteryUtils, never()).setForceAppStandby(anyInt(), any(), anyInt());
+        verify(mFeatureFactory.metricsFeatureProvider, never()).action(anyInt(), anyInt(),
+                anyInt(), any(), anyInt());
+
+        mAnomalyDetectionJobService.flushWork(mJobParameters, mBatteryDatabaseManager, items,
+                mAnomalies, mActions);
+
+        verify(mBatteryUtils).setForceAppStandby(Process.FIRST_APPLICATION_UID, SYSTEM_PACKAGE,
+                AppOpsManager.MODE_IGNORED);
+        verify(mFeatureFactory.metricsFeatureProvider).action(SettingsEnums.PAGE_UNKNOWN,
+                MetricsProto.MetricsEvent.ACTION_ANOMALY_TRIGGERED,
+                SettingsEnums.PAGE_UNKNOWN,
+                SYSTEM_PACKAGE + "/" + VERSION_CODE,
+                ANOMALY_TYPE);
+    }
+
+    @Test
+    public void flushWork_insertAnomaliesAndRunActionsBeforeCompletingWork() {
+        final List<JobWorkItem> items = new ArrayList<>();
+        items.add(mJobWorkItem);
+        mAnomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID, SYSTEM_PACKAGE,
+                ANOMALY_TYPE, AnomalyDatabaseHelper.State.NEW, 0));
+        final Runnable action = mock(Runnable.class);
+        mActions.add(action);
+        final InOrder inOrder = inOrder(mBatteryDatabaseManager, action, mJobParameters);
+
+        mAnomalyDetectionJobService.flushWork(mJobParameters, mBatteryDatabaseManager, items,
+                mAnomalies, mActions);
+
+        inOrder.verify(mBatteryDatabaseManager).insertAnomalies(anyList());
+        inOrder.verify(action).run();
+        inOrder.verify(mJobParameters).completeWork(mJobWorkItem);
+        assertThat(items).isEmpty();
+        assertThat(mAnomalies).isEmpty();
+        assertThat(mActions).isEmpty();
+    }
+
+    @Test
+    public void flushWork_jobStopped_dropBatch() {
+        final List<JobWorkItem> items = new ArrayList<>();
+        items.add(mJobWorkItem);
+        mAnomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID, SYSTEM_PACKAGE,
+                ANOMALY_TYPE, AnomalyDatabaseHelper.State.NEW, 0));
+        final Runnable action = mock(Runnable.class);
+        mActions.add(action);
+        mAnomalyDetectionJobService.onStopJob(mJobParameters);
+
+        mAnomalyDetectionJobService.flushWork(mJobParameters, mBatteryDatabaseManager, items,
+                mAnomalies, mActions);
+
+        // The work items are redelivered, so nothing of the batch may be applied.
+        verify(mBatteryDatabaseManager, never()).insertAnomalies(anyList());
+        verify(action, never()).run();
+        verify(mJobParameters, never()).completeWork(any());
+        assertThat(items).isEmpty();
+        assertThat(mAnomalies).isEmpty();
+        assertThat(mActions).isEmpty();
+    }
+
+    @Test
+    public void flushWork_jobStoppedDuringInsert_stopWithoutWaitingAndKeepWork()
+            throws Exception {
+        final List<JobWorkItem> items = new ArrayList<>();
+        items.add(mJobWorkItem);
+        mAnomalies.add(new BatteryDatabaseManager.AnomalyRecord(UID, SYSTEM_PACKAGE,
+                ANOMALY_TYPE, AnomalyDatabaseHelper.State.NEW, 0));
+        final Thread stopThread =
+                new Thread(() -> mAnomalyDetectionJobService.onStopJob(mJobParameters));
+        doAnswer(invocation -> {
+            stopThread.start();
+            stopThread.join(TimeUnit.SECONDS.toMillis(5));
+            return 1;
+        }).when(mBatteryDatabaseManager).insertAnomalies(anyList());
+
+        mAnomalyDetectionJobService.flushWork(mJobParameters, mBatteryDatabaseManager, items,
+                mAnomalies, mActions);
+
+        assertThat(stopThread.isAlive()).isFalse();
+        // The work items are redelivered when the job is rescheduled.
+        verify(mJobParameters, never()).completeWork(any());
+    }
+
     @Test
     public void extractUidFromStatsDimensionsValue_extractCorrectUid() {
         // Build an integer dimensions value.
@@ -316,4 +425,10 @@ public class AnomalyDetectionJobServiceTest {
 
         assertThat(mAnomalyDetectionJobService.mIsJobCanceled).isFalse();
     }
+
+    private void runActions() {
+        for (Runnable action : mActions) {
+            action.run();
+        }
+    }
 }
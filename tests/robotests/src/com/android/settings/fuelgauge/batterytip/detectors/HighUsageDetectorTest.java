@@ -22,7 +22,9 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -38,6 +40,7 @@ import com.android.settings.fuelgauge.batterytip.HighUsageDataParser;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -117,6 +120,11 @@ public class HighUsageDetectorTest {
         when(mBatteryStatsHelper.getUsageList()).thenReturn(mUsageList);
     }
 
+    @After
+    public void tearDown() {
+        HighUsageDetector.clearCache();
+    }
+
     @Test
     public void testDetect_disabledByPolicy_tipInvisible() {
         ReflectionHelpers.setField(mPolicy, "highUsageEnabled", false);
@@ -153,4 +161,19 @@ public class HighUsageDetectorTest {
         assertThat(appInfos).containsExactly(mLowAppInfo, mHighAppInfo);
         assertThat(appInfos.get(0)).isEqualTo(mHighAppInfo);
     }
+
+    @Test
+    public void testDetect_sameStats_reusesHighUsageApps() {
+        doReturn(true).when(mDataParser).isDeviceHeavilyUsed();
+        mHighUsageDetector.detect();
+
+        final HighUsageDetector detector = spy(new HighUsageDetector(mContext, mPolicy,
+                mBatteryStatsHelper, true /* mDischarging */));
+        detector.mBatteryUtils = mBatteryUtils;
+        final HighUsageTip highUsageTip = (HighUsageTip) detector.detect();
+
+        verify(detector, never()).parseBatteryData();
+        assertThat(highUsageTip.getHighUsageAppList()).containsExactly(mHighAppInfo,
+                mLowAppInfo).inOrder();
+    }
 }
@@ -20,30 +20,54 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.app.INotificationManager;
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.app.NotificationManager;
 import android.app.role.RoleManager;
 import android.app.usage.UsageEvents;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.content.pm.ParceledListSlice;
 import android.os.Parcel;
+import android.os.SystemClock;
 
 import com.android.settings.notification.NotificationBackend.AppRow;
+import com.android.settings.notification.NotificationBackend.ChannelSnapshot;
 
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
 public class NotificationBackendTest {
 
+    private final INotificationManager mOriginalINM = NotificationBackend.sINM;
+
+    @After
+    public void tearDown() {
+        NotificationBackend.sINM = mOriginalINM;
+        NotificationBackend.clearChannelSnapshots();
+    }
+
     @Test
     public void testMarkAppRow_unblockablePackage() {
         AppRow appRow = new AppRow();
@@ -138,4 +162,113 @@ public class NotificationBackendTest {
         parcel.setDataPosition(0);
         return UsageEvents.CREATOR.createFromParcel(parcel);
     }
+
+    @Test
+    public void getChannelSnapshot_countsChannelsInOneQuery() throws Exception {
+        final INotificationManager inm = mockChannelGroups();
+
+        final NotificationBackend backend = new NotificationBackend();
+        final ChannelSnapshot snapshot = backend.getChannelSnapshot("pkg", 1);
+
+        assertThat(snapshot.getChannelCount()).isEqualTo(2);
+        assertThat(snapshot.getBlockedChannelCount()).isEqualTo(1);
+        assertThat(snapshot.getDeletedChannelCount()).isEqualTo(1);
+        assertThat(snapshot.getGroups()).hasSize(1);
+        assertThat(snapshot.getGroups().get(0).getChannels()).hasSize(2);
+
+        assertThat(backend.getChannelCount("pkg", 1)).isEqualTo(2);
+        assertThat(backend.getBlockedChannelCount("pkg", 1)).isEqualTo(1);
+        assertThat(backend.getDeletedChannelCount("pkg", 1)).isEqualTo(1);
+        verify(inm, times(1)).getNotificationChannelGroupsForPackage(eq("pkg"), eq(1), eq(true));
+        // The three counts after the first query came from the snapshot.
+        assertThat(NotificationBackend.getBinderCallsSaved()).isEqualTo(3);
+    }
+
+    @Test
+    public void getGroups_modifyReturnedGroups_snapshotUnchanged() throws Exception {
+        mockChannelGroups();
+        final NotificationBackend backend = new NotificationBackend();
+
+        final NotificationChannelGroup group = backend.getGroups("pkg", 1).getList().get(0);
+        group.getChannels().get(0).setImportance(NotificationManager.IMPORTANCE_NONE);
+        Collections.reverse(group.getChannels());
+        group.setChannels(new ArrayList<>());
+
+        final List<NotificationChannel> channels =
+                backend.getGroups("pkg", 1).getList().get(0).getChannels();
+        assertThat(channels).hasSize(2);
+        assertThat(channels.get(0).getId()).isEqualTo("a");
+        assertThat(channels.get(0).getImportance())
+                .isEqualTo(NotificationManager.IMPORTANCE_LOW);
+    }
+
+    @Test
+    public void getChannelSnapshot_expired_reloadAndEvictOtherPackages() throws Exception {
+        final INotificationManager inm = mockChannelGroups();
+        final NotificationBackend backend = new NotificationBackend();
+        backend.getChannelSnapshot("pkg", 1);
+        backend.getChannelSnapshot("other", 2);
+        assertThat(NotificationBackend.getChannelSnapshotCount()).isEqualTo(2);
+
+        SystemClock.sleep(NotificationBackend.CHANNEL_SNAPSHOT_TTL_MS);
+        backend.getChannelSnapshot("pkg", 1);
+
+        verify(inm, times(2)).getNotificationChannelGroupsForPackage(eq("pkg"), eq(1), eq(true));
+        assertThat(NotificationBackend.getChannelSnapshotCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void updateChannel_snapshotLoadedDuringWrite_invalidated() throws Exception {
+        final INotificationManager inm = mockChannelGroups();
+        final NotificationBackend backend = new NotificationBackend();
+        doAnswer(invocation -> {
+            // A reader loads the snapshot while the channel is being written.
+            backend.getChannelSnapshot("pkg", 1);
+            return null;
+        }).when(inm).updateNotificationChannelForPackage(eq("pkg"), eq(1),
+                any(NotificationChannel.class));
+
+        backend.updateChannel("pkg", 1, new NotificationChannel("a", "a",
+                NotificationManager.IMPORTANCE_LOW));
+        backend.getChannelSnapshot("pkg", 1);
+
+        verify(inm, times(2)).getNotificationChannelGroupsForPackage(eq("pkg"), eq(1), eq(true));
+    }
+
+    @Test
+    public void updateChannel_invalidatesSnapshot() throws Exception {
+        final INotificationManager inm = mockChannelGroups();
+
+        final NotificationBackend backend = new NotificationBackend();
+        backend.getChannelSnapshot("pkg", 1);
+        backend.updateChannel("pkg", 1, new NotificationChannel("a", "a",
+                NotificationManager.IMPORTANCE_LOW));
+        backend.getChannelSnapshot("pkg", 1);
+
+        verify(inm, times(2)).getNotificationChannelGroupsForPackage(eq("pkg"), eq(1), eq(true));
+    }
+
+    private INotificationManager mockChannelGroups() throws Exception {
+        final NotificationChannel visible =
+                new NotificationChannel("a", "a", NotificationManager.IMPORTANCE_LOW);
+        final NotificationChannel blocked =
+                new NotificationChannel("b", "b", NotificationManager.IMPORTANCE_NONE);
+        final NotificationChannel deleted =
+                new NotificationChannel("c", "c", NotificationManager.IMPORTANCE_LOW);
+        deleted.setDeleted(true);
+        final NotificationChannelGroup group = new NotificationChannelGroup("group", "group");
+        group.addChannel(visible);
+        group.addChannel(blocked);
+        final NotificationChannelGroup deletedOnly = new NotificationChannelGroup("old", "old");
+        deletedOnly.addChannel(deleted);
+        final List<NotificationChannelGroup> groups = new ArrayList<>();
+        groups.add(group);
+        groups.add(deletedOnly);
+
+        final INotificationManager inm = mock(INotificationManager.class);
+        when(inm.getNotificationChannelGroupsForPackage(anyString(), anyInt(), anyBoolean()))
+                .thenReturn(new ParceledListSlice<>(groups));
+        NotificationBackend.sINM = inm;
+        return inm;
+    }
 }
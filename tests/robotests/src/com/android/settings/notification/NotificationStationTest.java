@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationStationTest {
+    private static final String PACKAGE_NAME = "com.example.app";
+    private static final String OTHER_PACKAGE_NAME = "com.example.other";
+    private static final int USER_ID = 0;
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private ApplicationInfo mApplicationInfo;
+    private NotificationStation mFragment;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mApplicationInfo = new ApplicationInfo();
+        mApplicationInfo.packageName = PACKAGE_NAME;
+        when(mPackageManager.getApplicationInfo(PACKAGE_NAME, PackageManager.MATCH_ANY_USER))
+                .thenReturn(mApplicationInfo);
+        when(mPackageManager.getApplicationLabel(mApplicationInfo)).thenReturn("App");
+
+        mFragment = new NotificationStation();
+        ReflectionHelpers.setField(mFragment, "mContext", mContext);
+        ReflectionHelpers.setField(mFragment, "mPm", mPackageManager);
+    }
+
+    @Test
+    public void getPackageInfo_samePackageAndUser_loadOnce() throws Exception {
+        final NotificationStation.PackageInfoCacheEntry entry =
+                mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+
+        assertThat(mFragment.getPackageInfo(PACKAGE_NAME, USER_ID)).isSameAs(entry);
+        assertThat(entry.pkgname.toString()).isEqualTo("App");
+        verify(mPackageManager, times(1)).getApplicationIcon(PACKAGE_NAME);
+        verify(mPackageManager, times(1))
+                .getApplicationInfo(PACKAGE_NAME, PackageManager.MATCH_ANY_USER);
+    }
+
+    @Test
+    public void getPackageInfo_otherUser_loadAgain() throws Exception {
+        mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+        mFragment.getPackageInfo(PACKAGE_NAME, 10);
+
+        verify(mPackageManager, times(2)).getApplicationIcon(PACKAGE_NAME);
+    }
+
+    @Test
+    public void getPackageInfo_packageUpdated_loadNewLabel() throws Exception {
+        mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+        when(mPackageManager.getApplicationLabel(mApplicationInfo)).thenReturn("Updated app");
+
+        mFragment.onPackageChanged(PACKAGE_NAME);
+        assertThat(mFragment.removeChangedPackageInfo()).containsExactly(PACKAGE_NAME);
+        final NotificationStation.PackageInfoCacheEntry entry =
+                mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+
+        assertThat(entry.pkgname.toString()).isEqualTo("Updated app");
+        verify(mPackageManager, times(2)).getApplicationIcon(PACKAGE_NAME);
+    }
+
+    @Test
+    public void getPackageInfo_otherPackageChanged_keepCachedInfo() throws Exception {
+        final NotificationStation.PackageInfoCacheEntry entry =
+                mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+
+        mFragment.onPackageChanged(OTHER_PACKAGE_NAME);
+        mFragment.removeChangedPackageInfo();
+
+        assertThat(mFragment.getPackageInfo(PACKAGE_NAME, USER_ID)).isSameAs(entry);
+        verify(mPackageManager, times(1)).getApplicationIcon(PACKAGE_NAME);
+    }
+
+    @Test
+    public void getPackageInfo_packageRemoved_fallBackToPackageName() throws Exception {
+        mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+        when(mPackageManager.getApplicationInfo(PACKAGE_NAME, PackageManager.MATCH_ANY_USER))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        when(mPackageManager.getResourcesForApplicationAsUser(PACKAGE_NAME, USER_ID))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        mFragment.onPackageChanged(PACKAGE_NAME);
+        mFragment.removeChangedPackageInfo();
+        final NotificationStation.PackageInfoCacheEntry entry =
+                mFragment.getPackageInfo(PACKAGE_NAME, USER_ID);
+
+        assertThat(entry.pkgname.toString()).isEqualTo(PACKAGE_NAME);
+        assertThat(entry.resources).isNull();
+    }
+
+    @Test
+    public void removeChangedPackageInfo_nothingChanged_returnEmpty() {
+        assertThat(mFragment.removeChangedPackageInfo()).isEmpty();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.UserInfo;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import androidx.fragment.app.FragmentActivity;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settingslib.users.AppRestrictionsHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppRestrictionsFragmentTest {
+    private static final int USER_ID = 10;
+
+    @Mock
+    private UserManager mUserManager;
+    @Mock
+    private AppRestrictionsHelper mHelper;
+
+    private Context mContext;
+    private PreferenceScreen mAppList;
+    private AppRestrictionsFragment mFragment;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        mAppList = preferenceManager.createPreferenceScreen(mContext);
+        final UserInfo userInfo = new UserInfo();
+        userInfo.id = USER_ID;
+        when(mUserManager.getUsers(true /* excludeDying */))
+                .thenReturn(Collections.singletonList(userInfo));
+
+        mFragment = spy(new AppRestrictionsFragment());
+        ReflectionHelpers.setField(mFragment, "mUserManager", mUserManager);
+        ReflectionHelpers.setField(mFragment, "mUser", new UserHandle(USER_ID));
+        ReflectionHelpers.setField(mFragment, "mHelper", mHelper);
+        ReflectionHelpers.setField(mFragment, "mAppList", mAppList);
+        doReturn(ActivityController.of(new FragmentActivity()).get())
+                .when(mFragment).getActivity();
+        doReturn(preferenceManager).when(mFragment).getPreferenceManager();
+    }
+
+    @Test
+    public void appLoadingTask_batches_showAppsInOrderAfterStaleRows() {
+        final Preference staleRow = new Preference(mContext);
+        staleRow.setKey("pkg_com.example.removed");
+        mAppList.addPreference(staleRow);
+        final AppRestrictionsFragment.AppLoadingTask task = mFragment.new AppLoadingTask();
+
+        task.onProgressUpdate(createAppEntry("com.example.a"), createAppEntry("com.example.b"));
+        task.onProgressUpdate(createAppEntry("com.example.c"));
+        task.onPostExecute(null);
+
+        assertThat(mAppList.getPreferenceCount()).isEqualTo(3);
+        assertThat(mAppList.findPreference("pkg_com.example.removed")).isNull();
+        assertThat(mAppList.getPreference(0).getKey()).isEqualTo("pkg_com.example.a");
+        assertThat(mAppList.getPreference(1).getKey()).isEqualTo("pkg_com.example.b");
+        assertThat(mAppList.getPreference(2).getKey()).isEqualTo("pkg_com.example.c");
+        assertThat(mAppList.getPreference(0).getOrder())
+                .isLessThan(mAppList.getPreference(1).getOrder());
+        assertThat(mAppList.getPreference(1).getOrder())
+                .isLessThan(mAppList.getPreference(2).getOrder());
+        verify(mFragment, times(1)).onAppsPopulated();
+    }
+
+    @Test
+    public void appLoadingTask_noApps_clearStaleRowsAndPopulateOnce() {
+        final Preference staleRow = new Preference(mContext);
+        staleRow.setKey("pkg_com.example.removed");
+        mAppList.addPreference(staleRow);
+        final AppRestrictionsFragment.AppLoadingTask task = mFragment.new AppLoadingTask();
+
+        task.onPostExecute(null);
+
+        assertThat(mAppList.getPreferenceCount()).isEqualTo(0);
+        verify(mFragment, times(1)).onAppsPopulated();
+    }
+
+    @Test
+    public void appLoadingTask_userRemoved_keepRowsAndDontPopulate() {
+        when(mUserManager.getUsers(true /* excludeDying */)).thenReturn(Collections.emptyList());
+        final Preference staleRow = new Preference(mContext);
+        staleRow.setKey("pkg_com.example.removed");
+        mAppList.addPreference(staleRow);
+        final AppRestrictionsFragment.AppLoadingTask task = mFragment.new AppLoadingTask();
+
+        task.onProgressUpdate(createAppEntry("com.example.a"));
+        task.onPostExecute(null);
+
+        assertThat(mAppList.getPreferenceCount()).isEqualTo(1);
+        verify(mFragment, never()).onAppsPopulated();
+    }
+
+    private static AppRestrictionsFragment.AppEntry createAppEntry(String packageName) {
+        final AppRestrictionsHelper.SelectableAppInfo app =
+                new AppRestrictionsHelper.SelectableAppInfo();
+        app.packageName = packageName;
+        app.activityName = packageName;
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = new ApplicationInfo();
+        packageInfo.applicationInfo.flags = ApplicationInfo.FLAG_INSTALLED;
+        return new AppRestrictionsFragment.AppEntry(app, packageInfo, false /* hasSettings */,
+                null /* restrictions */);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.content.pm.UserInfo;
+import android.graphics.Bitmap;
+import android.os.UserManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserIconCacheTest {
+    private static final int SIZE = 160;
+    private static final int USER_ID = 10;
+    private static final int OTHER_USER_ID = 11;
+
+    private Context mContext;
+    private File mIconFile;
+    private UserIconCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = RuntimeEnvironment.application;
+        mIconFile = new File(mContext.getCacheDir(), "photo.png");
+        mIconFile.createNewFile();
+        mIconFile.setLastModified(1000);
+        mCache = createCache(UserIconCache.MAX_SIZE_BYTES, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mIconFile.delete();
+    }
+
+    @Test
+    public void getUserPhoto_versionUnchanged_reuseDecodedPhoto() {
+        final UserInfo user = createUser(USER_ID);
+
+        final Bitmap photo = mCache.getUserPhoto(mContext, user, SIZE);
+
+        assertThat(photo).isNotNull();
+        assertThat(mCache.getUserPhoto(mContext, user, SIZE)).isSameAs(photo);
+        assertThat(mCache.peekUserPhoto(USER_ID, SIZE)).isSameAs(photo);
+        verify(mCache, times(1)).decodeUserPhoto(any(UserManager.class), any(UserInfo.class),
+                anyInt());
+    }
+
+    @Test
+    public void getUserPhoto_iconFileRewritten_decodeAgain() {
+        final UserInfo user = createUser(USER_ID);
+        final Bitmap photo = mCache.getUserPhoto(mContext, user, SIZE);
+
+        mIconFile.setLastModified(2000);
+        final Bitmap newPhoto = mCache.getUserPhoto(mContext, user, SIZE);
+
+        assertThat(newPhoto).isNotSameAs(photo);
+        assertThat(mCache.getUserPhoto(mContext, user, SIZE)).isSameAs(newPhoto);
+        verify(mCache, times(2)).decodeUserPhoto(any(UserManager.class), any(UserInfo.class),
+                anyInt());
+    }
+
+    @Test
+    public void getUserPhoto_otherSize_decodeAgain() {
+        final UserInfo user = createUser(USER_ID);
+
+        mCache.getUserPhoto(mContext, user, SIZE);
+        mCache.getUserPhoto(mContext, user, SIZE * 2);
+
+        verify(mCache, times(2)).decodeUserPhoto(any(UserManager.class), any(UserInfo.class),
+                anyInt());
+    }
+
+    @Test
+    public void invalidate_removeOnlyPhotosOfUser() {
+        final UserInfo user = createUser(USER_ID);
+        mCache.getUserPhoto(mContext, user, SIZE);
+        mCache.getUserPhoto(mContext, user, SIZE * 2);
+        mCache.getUserPhoto(mContext, createUser(OTHER_USER_ID), SIZE);
+
+        mCache.invalidate(USER_ID);
+
+        assertThat(mCache.peekUserPhoto(USER_ID, SIZE)).isNull();
+        assertThat(mCache.peekUserPhoto(USER_ID, SIZE * 2)).isNull();
+        assertThat(mCache.peekUserPhoto(OTHER_USER_ID, SIZE)).isNotNull();
+        mCache.getUserPhoto(mContext, user, SIZE);
+        verify(mCache, times(4)).decodeUserPhoto(any(UserManager.class), any(UserInfo.class),
+                anyInt());
+    }
+
+    @Test
+    public void getUserPhoto_overMaxSize_evictLeastRecentlyUsed() {
+        // Each photo takes 1MB, so four of them fit in the cache.
+        final int side = 512;
+        final UserIconCache cache = createCache(UserIconCache.MAX_SIZE_BYTES, side);
+        for (int userId = 0; userId < 5; userId++) {
+            cache.getUserPhoto(mContext, createUser(userId), side);
+        }
+
+        assertThat(cache.peekUserPhoto(0, side)).isNull();
+        for (int userId = 1; userId < 5; userId++) {
+            assertThat(cache.peekUserPhoto(userId, side)).isNotNull();
+        }
+    }
+
+    @Test
+    public void getSampleSize_keepShortSideAtLeastSize() {
+        assertThat(UserIconCache.getSampleSize(160, 160, 160)).isEqualTo(1);
+        assertThat(UserIconCache.getSampleSize(400, 300, 160)).isEqualTo(1);
+        assertThat(UserIconCache.getSampleSize(4000, 3000, 160)).isEqualTo(16);
+    }
+
+    @Test
+    public void getSampleSize_invalidSize_returnOne() {
+        assertThat(UserIconCache.getSampleSize(-1, -1, 160)).isEqualTo(1);
+        assertThat(UserIconCache.getSampleSize(4000, 3000, 0)).isEqualTo(1);
+    }
+
+    @Test
+    public void getUserPhoto_noPhoto_returnNull() {
+        final UserIconCache cache = new UserIconCache(1024 /* maxSizeBytes */);
+        final UserInfo user = new UserInfo(10, "user", null /* iconPath */, 0 /* flags */);
+
+        assertThat(cache.getUserPhoto(RuntimeEnvironment.application, user, 160)).isNull();
+        assertThat(cache.peekUserPhoto(user.id, 160)).isNull();
+    }
+
+    private UserInfo createUser(int userId) {
+        return new UserInfo(userId, "user", mIconFile.getPath(), 0 /* flags */);
+    }
+
+    // Every decode returns a new photo of side by side pixels.
+    private static UserIconCache createCache(int maxSizeBytes, int side) {
+        final UserIconCache cache = spy(new UserIconCache(maxSizeBytes));
+        doAnswer(invocation -> Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888))
+                .when(cache).decodeUserPhoto(any(UserManager.class), any(UserInfo.class),
+                anyInt());
+        return cache;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class UidDetailCacheTest {
+    private static final int ICON_SIZE = 10;
+    private static final int ICON_BYTES = ICON_SIZE * ICON_SIZE * 4;
+
+    private UidDetailCache mCache;
+
+    @Before
+    public void setUp() {
+        // Room for two entries with an icon
+        mCache = new UidDetailCache(ICON_BYTES * 2 + 100);
+    }
+
+    @Test
+    public void put_overMemoryLimit_evictsLeastRecentlyUsed() {
+        mCache.put(1, new UidDetailCache.Entry("one", "pkg.one", createIcon()));
+        mCache.put(2, new UidDetailCache.Entry("two", "pkg.two", createIcon()));
+        mCache.get(1);
+
+        mCache.put(3, new UidDetailCache.Entry("three", "pkg.three", createIcon()));
+
+        assertThat(mCache.get(1)).isNotNull();
+        assertThat(mCache.get(2)).isNull();
+        assertThat(mCache.get(3)).isNotNull();
+    }
+
+    @Test
+    public void getIcon_returnsNewDrawableEachTime() {
+        mCache.put(1, new UidDetailCache.Entry("one", "pkg.one", createIcon()));
+
+        final Drawable first = mCache.get(1).getIcon();
+        final Drawable second = mCache.get(1).getIcon();
+
+        assertThat(first).isNotNull();
+        assertThat(first).isNotSameAs(second);
+    }
+
+    private Drawable createIcon() {
+        return new BitmapDrawable(RuntimeEnvironment.application.getResources(),
+                Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888));
+    }
+}
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -45,6 +46,9 @@ import android.view.ContextMenu;
 import android.view.View;
 import androidx.fragment.app.FragmentActivity;
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.datausage.DataUsagePreference;
@@ -62,7 +66,9 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
 
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -127,6 +133,81 @@ public class WifiSettingsTest {
         verify(wifiSettings).handleAddNetworkRequest(anyInt(), any(Intent.class));
     }
 
+    @Test
+    public void getUpdateDelayMs_scansRightAfterUpdate_backOffUntilQuiet() {
+        final long lastUpdateTime = 10000L;
+        ReflectionHelpers.setField(mWifiSettings, "mLastUpdateTime", lastUpdateTime);
+
+        assertThat(mWifiSettings.getUpdateDelayMs(lastUpdateTime + 50))
+                .isEqualTo(WifiSettings.MIN_UPDATE_DELAY_MS * 2);
+        assertThat(mWifiSettings.getUpdateDelayMs(lastUpdateTime + 100))
+                .isEqualTo(WifiSettings.MIN_UPDATE_DELAY_MS * 4);
+        for (int i = 0; i < 10; i++) {
+            mWifiSettings.getUpdateDelayMs(lastUpdateTime + 100);
+        }
+        assertThat(mWifiSettings.mUpdateDelayMs).isEqualTo(WifiSettings.MAX_UPDATE_DELAY_MS);
+
+        assertThat(mWifiSettings.getUpdateDelayMs(
+                lastUpdateTime + WifiSettings.MAX_UPDATE_DELAY_MS))
+                .isEqualTo(WifiSettings.MIN_UPDATE_DELAY_MS);
+    }
+
+    @Test
+    public void updateAccessPointPreferences_twoScans_reuseAndRemovePreferences() {
+        setUpForUpdateAccessPoints();
+        final AccessPoint kept = createMockAccessPoint("kept");
+        final AccessPoint lost = createMockAccessPoint("lost");
+        final AccessPoint replaced = createMockAccessPoint("replaced");
+        final AccessPoint replacement = createMockAccessPoint("replaced");
+        final AccessPoint found = createMockAccessPoint("found");
+
+        when(mWifiTracker.getAccessPoints()).thenReturn(Arrays.asList(kept, lost, replaced));
+        mWifiSettings.updateAccessPointPreferences();
+        final Preference keptPreference = findAccessPointPreference("kept");
+        final Preference replacedPreference = findAccessPointPreference("replaced");
+
+        when(mWifiTracker.getAccessPoints())
+                .thenReturn(Arrays.asList(found, replacement, kept));
+        mWifiSettings.updateAccessPointPreferences();
+
+        assertThat(findAccessPointPreference("kept")).isSameAs(keptPreference);
+        assertThat(keptPreference.getOrder()).isEqualTo(2);
+        assertThat(findAccessPointPreference("lost")).isNull();
+        assertThat(findAccessPointPreference("found")).isNotNull();
+        final LongPressAccessPointPreference newPreference =
+                (LongPressAccessPointPreference) findAccessPointPreference("replaced");
+        assertThat(newPreference).isNotSameAs(replacedPreference);
+        assertThat(newPreference.getAccessPoint()).isSameAs(replacement);
+        // A reused row is refreshed by its access point, not bound again.
+        verify(kept, times(1)).setListener(mWifiSettings);
+        assertThat(mWifiSettings.mRowsCreated).isEqualTo(5);
+    }
+
+    private void setUpForUpdateAccessPoints() {
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        final PreferenceScreen screen = preferenceManager.createPreferenceScreen(mContext);
+        doReturn(preferenceManager).when(mWifiSettings).getPreferenceManager();
+        doReturn(mock(View.class)).when(mWifiSettings).getView();
+        when(mWifiManager.isWifiEnabled()).thenReturn(true);
+        mWifiSettings.mStatusMessagePreference = new LinkablePreference(mContext);
+        mWifiSettings.mConnectedAccessPointPreferenceCategory = new PreferenceCategory(mContext);
+        mWifiSettings.mAccessPointsPreferenceCategory = new PreferenceCategory(mContext);
+        screen.addPreference(mWifiSettings.mConnectedAccessPointPreferenceCategory);
+        screen.addPreference(mWifiSettings.mAccessPointsPreferenceCategory);
+    }
+
+    private AccessPoint createMockAccessPoint(String key) {
+        final AccessPoint accessPoint = mock(AccessPoint.class);
+        when(accessPoint.getKey()).thenReturn(key);
+        when(accessPoint.getTitle()).thenReturn(key);
+        when(accessPoint.isReachable()).thenReturn(true);
+        return accessPoint;
+    }
+
+    private Preference findAccessPointPreference(String key) {
+        return mWifiSettings.mAccessPointsPreferenceCategory.findPreference(key);
+    }
+
     private List<WifiConfiguration> createMockWifiConfigurations(int count) {
         final List<WifiConfiguration> mockConfigs = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures how long creating the controllers of a few top pages takes when a page attaches, with
+ * the generated {@link PreferenceControllerTable} and with reflection only. The times are only
+ * logged, since they vary too much between devices and runs to be compared in a test.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PreferenceControllerFactoryBenchmarkTest {
+    private static final String TAG = "PrefCtrlFactoryBenchmark";
+    private static final int[] XML_RES_IDS = {
+            R.xml.top_level_settings,
+            R.xml.network_and_internet,
+            R.xml.connected_devices,
+            R.xml.app_and_notification,
+            R.xml.power_usage_summary,
+            R.xml.display_settings,
+            R.xml.sound_settings,
+            R.xml.security_dashboard_settings,
+    };
+    private static final int RUNS = 20;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        // Parse the xml once, so only creating the controllers is measured.
+        getControllers();
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceControllerFactory.setTableEnabled(true);
+    }
+
+    @Test
+    public void timeToCreateControllers_tableAndReflection_logTimes() {
+        final long reflectionNanos = timeToCreateControllers(false /* tableEnabled */);
+        final long tableNanos = timeToCreateControllers(true /* tableEnabled */);
+
+        Log.i(TAG, "pages: " + XML_RES_IDS.length
+                + ", reflection: " + reflectionNanos / RUNS / 1000 + "us"
+                + ", table: " + tableNanos / RUNS / 1000 + "us");
+    }
+
+    private long timeToCreateControllers(boolean tableEnabled) {
+        long totalNanos = 0;
+        for (int i = 0; i < RUNS; i++) {
+            // Each run is a first attach, the constructors found through reflection are dropped.
+            PreferenceControllerFactory.setTableEnabled(tableEnabled);
+            final long start = SystemClock.elapsedRealtimeNanos();
+            final int count = getControllers();
+            totalNanos += SystemClock.elapsedRealtimeNanos() - start;
+            assertThat(count).isGreaterThan(0);
+        }
+        return totalNanos;
+    }
+
+    private int getControllers() {
+        int count = 0;
+        for (int xmlResId : XML_RES_IDS) {
+            count += PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                    xmlResId).size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settingslib.applications.StorageStatsSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link StorageAsyncLoader} takes to report the first category sizes and the
+ * final result, with a stats source as slow as a device with many apps.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StorageAsyncLoaderBenchmarkTest {
+    private static final String TAG = "StorageLoaderBenchmark";
+    private static final int[] USER_IDS = {0, 10};
+    private static final int APP_COUNT = 200;
+    private static final long STATS_QUERY_MS = 2;
+    private static final int RUNS = 5;
+
+    @Mock
+    private StorageStatsSource mSource;
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private UserManager mUserManager;
+    private Context mContext;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = InstrumentationRegistry.getTargetContext();
+
+        final List<ApplicationInfo> apps = new ArrayList<>();
+        for (int i = 0; i < APP_COUNT; i++) {
+            final ApplicationInfo app = new ApplicationInfo();
+            app.packageName = "com.example.app" + i;
+            app.category = i % 5;
+            apps.add(app);
+        }
+        final List<UserInfo> users = new ArrayList<>();
+        for (int userId : USER_IDS) {
+            final UserInfo user = new UserInfo();
+            user.id = userId;
+            users.add(user);
+        }
+        when(mUserManager.getUsers()).thenReturn(users);
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), anyInt())).thenReturn(apps);
+
+        final StorageStatsSource.AppStorageStats stats =
+                mock(StorageStatsSource.AppStorageStats.class);
+        when(stats.getCodeBytes()).thenReturn(1000L);
+        when(stats.getDataBytes()).thenReturn(2000L);
+        when(mSource.getStatsForPackage(anyString(), anyString(), any(UserHandle.class)))
+                .thenAnswer(invocation -> {
+                    SystemClock.sleep(STATS_QUERY_MS);
+                    return stats;
+                });
+        when(mSource.getCacheQuotaBytes(anyString(), anyInt())).thenReturn(Long.MAX_VALUE);
+        when(mSource.getExternalStorageStats(anyString(), any(UserHandle.class)))
+                .thenReturn(new StorageStatsSource.ExternalStorageStats(9, 2, 3, 4, 0));
+    }
+
+    @Test
+    public void timeToFirstNumberAndTimeToComplete() throws Exception {
+        long firstNumberMs = 0;
+        long completeMs = 0;
+        for (int i = 0; i < RUNS; i++) {
+            final StorageAsyncLoader loader = new StorageAsyncLoader(mContext, mUserManager,
+                    "id", mSource, mPackageManager) {
+                @Override
+                protected void onStartLoading() {
+                    // The load runs on the test thread below.
+                }
+            };
+            // Progress is only delivered to a started loader.
+            loader.startLoading();
+            final CountDownLatch firstNumber = new CountDownLatch(1);
+            final long[] firstNumberTime = new long[1];
+            loader.setProgressListener(result -> {
+                if (firstNumber.getCount() > 0) {
+                    firstNumberTime[0] = SystemClock.elapsedRealtime();
+                    firstNumber.countDown();
+                }
+            });
+
+            final long start = SystemClock.elapsedRealtime();
+            final SparseArray<StorageAsyncLoader.AppsStorageResult> result =
+                    loader.loadInBackground();
+            final long end = SystemClock.elapsedRealtime();
+
+            assertThat(result.size()).isEqualTo(USER_IDS.length);
+            assertThat(firstNumber.await(1, TimeUnit.SECONDS)).isTrue();
+            firstNumberMs += firstNumberTime[0] - start;
+            completeMs += end - start;
+        }
+
+        Log.i(TAG, "users: " + USER_IDS.length + ", apps: " + APP_COUNT
+                + ", time to first number: " + firstNumberMs / RUNS + "ms"
+                + ", time to complete: " + completeMs / RUNS + "ms");
+    }
+}
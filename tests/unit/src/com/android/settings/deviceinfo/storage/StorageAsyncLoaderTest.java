@@ -23,6 +23,8 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -35,6 +37,7 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.SparseArray;
 
+import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
 
@@ -47,6 +50,7 @@ import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -221,6 +225,51 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(DEFAULT_QUOTA + 11);
     }
 
+    @Test
+    public void testCachedPackageIsNotQueriedAgain() throws Exception {
+        final File file = File.createTempFile("package_sizes", null);
+        file.delete();
+        final PackageSizeCache cache = new PackageSizeCache(file, System::currentTimeMillis,
+                Long.MAX_VALUE);
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager,
+                cache);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        mLoader.loadInBackground();
+        SparseArray<StorageAsyncLoader.AppsStorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.get(PRIMARY_USER_ID).otherAppsSize).isEqualTo(11L);
+        verify(mSource, times(1)).getStatsForPackage(anyString(), eq(PACKAGE_NAME_1),
+                any(UserHandle.class));
+        file.delete();
+    }
+
+    @Test
+    public void testProgressIsNotPublishedBeforeAppsAreSized() throws Exception {
+        when(mSource.getExternalStorageStats(anyString(), any(UserHandle.class)))
+                .thenReturn(new StorageStatsSource.ExternalStorageStats(9, 2, 3, 4, 0));
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        final List<StorageAsyncLoader.AppsStorageResult> progress = new ArrayList<>();
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager) {
+            @Override
+            protected void onStartLoading() {
+                // The load runs on the test thread below.
+            }
+        };
+        mLoader.setProgressListener(result -> progress.add(result.get(PRIMARY_USER_ID)));
+        // Progress is only delivered to a started loader.
+        mLoader.startLoading();
+
+        mLoader.loadInBackground();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertThat(progress).isNotEmpty();
+        for (StorageAsyncLoader.AppsStorageResult result : progress) {
+            assertThat(result.partial).isTrue();
+            assertThat(result.otherAppsSize).isEqualTo(11L);
+        }
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
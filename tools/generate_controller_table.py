@@ -0,0 +1,239 @@
+#!/usr/bin/env python
+#
+# Copyright (C) 2019 The Android Open Source Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+"""Generates PreferenceControllerTable.java from the controllers declared in res/xml.
+
+PreferenceControllerFactory creates the controllers in the table with a direct constructor call
+instead of reflection. Run this after adding, removing or changing the constructors of a
+controller declared with settings:controller in res/xml:
+    python tools/generate_controller_table.py
+
+Every controller declared in xml must be a public, concrete subclass of BasePreferenceController
+with a public (Context) or (Context, String) constructor, and a nested controller must be static.
+The script fails without writing the table if a controller can't be put in it, and
+PreferenceControllerTableTest fails if the checked in table misses a controller.
+
+Controllers that are only created from code are not in the table, and are still created through
+reflection.
+"""
+
+from __future__ import print_function
+
+import glob
+import io
+import os
+import re
+import sys
+
+BASE_CLASS = "BasePreferenceController"
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+OUTPUT = "src/com/android/settings/core/PreferenceControllerTable.java"
+PARAM = r"\s*(?:@\w+\s+)?(?:final\s+)?"
+
+HEADER = """/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+
+/**
+ * Creates the preference controllers declared in res/xml without reflection.
+ *
+ * <p>Generated by tools/generate_controller_table.py, do not edit.
+ */
+final class PreferenceControllerTable {
+
+    private PreferenceControllerTable() {
+    }
+
+"""
+
+
+def read(path):
+    with io.open(path, encoding="utf-8") as f:
+        return f.read()
+
+
+def find_source(class_name):
+    parts = class_name.replace("$", ".").split(".")
+    for i in range(len(parts), 0, -1):
+        path = os.path.join("src", *parts[:i]) + ".java"
+        if os.path.exists(path):
+            return path
+    return None
+
+
+EXTENDS = r"class\s+(\w+)(?:<[^>]*>)?\s+extends\s+(\w+)"
+
+
+def index_superclasses():
+    """Returns the superclasses of the classes declared in src, by simple name.
+
+    Different classes can have the same simple name, so each name maps to all their superclasses.
+    """
+    superclasses = {}
+    for root, dirs, files in os.walk("src"):
+        for name in files:
+            if not name.endswith(".java"):
+                continue
+            for match in re.finditer(EXTENDS, read(os.path.join(root, name))):
+                superclasses.setdefault(match.group(1), set()).add(match.group(2))
+    return superclasses
+
+
+def is_controller(superclass, superclasses):
+    """Returns whether BASE_CLASS is an ancestor of, or is, the class named superclass."""
+    seen = set()
+    pending = [superclass]
+    while pending:
+        simple_name = pending.pop()
+        if simple_name == BASE_CLASS:
+            return True
+        if simple_name in seen:
+            continue
+        seen.add(simple_name)
+        pending.extend(superclasses.get(simple_name, ()))
+    return False
+
+
+def get_shapes(class_name, superclasses):
+    """Returns whether the controller has a public (Context) and (Context, String) constructor.
+
+    Raises ValueError if the controller can't be created from the table.
+    """
+    path = find_source(class_name)
+    if path is None:
+        raise ValueError("no source found")
+    source = read(path)
+    simple_name = re.split(r"[.$]", class_name)[-1]
+    declaration = re.search(r"((?:\w+\s+)*)class\s+" + simple_name
+                            + r"(?:<[^>]*>)?\s+extends\s+(\w+)", source)
+    if declaration is None:
+        raise ValueError("not a subclass of " + BASE_CLASS)
+    modifiers = declaration.group(1).split()
+    if "public" not in modifiers:
+        raise ValueError("not public")
+    if "abstract" in modifiers:
+        raise ValueError("abstract")
+    # A nested class needs an instance of its outer class unless it is static.
+    if "$" in class_name and "static" not in modifiers:
+        raise ValueError("non-static inner class")
+    if not is_controller(declaration.group(2), superclasses):
+        raise ValueError("not a subclass of " + BASE_CLASS)
+    # Constructors declaring checked exceptions are left to reflection.
+    constructor = r"public\s+" + simple_name + r"\s*\("
+    context = PARAM + r"Context\s+\w+"
+    key = r"\s*," + PARAM + r"String\s+\w+"
+    end = r"\s*\)\s*\{"
+    has_context = re.search(constructor + context + end, source) is not None
+    has_context_and_key = re.search(constructor + context + key + end, source) is not None
+    if not has_context and not has_context_and_key:
+        raise ValueError("no public (Context) or (Context, String) constructor")
+    return has_context, has_context_and_key
+
+
+def append_contains(lines, method, doc, names):
+    lines.append("    /** %s */\n"
+                 "    static boolean %s(String className) {\n"
+                 "        switch (className) {\n" % (doc, method))
+    for name in names:
+        lines.append('            case "%s":\n' % name)
+    lines.append("                return true;\n"
+                 "            default:\n"
+                 "                return false;\n"
+                 "        }\n"
+                 "    }\n\n")
+
+
+def main():
+    os.chdir(ROOT)
+    names = set()
+    for path in glob.glob("res*/xml*/*.xml"):
+        for match in re.finditer(r'settings:controller="([^"]+)"', read(path)):
+            names.add(match.group(1))
+
+    superclasses = index_superclasses()
+    context_controllers = []
+    context_and_key_controllers = []
+    errors = []
+    for name in sorted(names):
+        try:
+            has_context, has_context_and_key = get_shapes(name, superclasses)
+        except ValueError as e:
+            errors.append("%s: %s" % (name, e))
+            continue
+        if has_context:
+            context_controllers.append(name)
+        if has_context_and_key:
+            context_and_key_controllers.append(name)
+
+    if errors:
+        print("Can't create these controllers declared in res/xml:", file=sys.stderr)
+        for error in errors:
+            print("    " + error, file=sys.stderr)
+        sys.exit(1)
+
+    lines = [HEADER]
+    append_contains(lines, "contains", "Returns whether {@code className} is in the table.",
+                    sorted(set(context_controllers + context_and_key_controllers)))
+    append_contains(lines, "hasContextConstructor",
+                    "Returns whether {@code className} is in the table with a (Context) constructor.",
+                    context_controllers)
+    lines.append("    /**\n"
+                 "     * Returns a new controller of {@code className} created with its (Context)\n"
+                 "     * constructor, or {@code null} if it is not in the table.\n"
+                 "     */\n"
+                 "    static BasePreferenceController createWithContext(Context context,"
+                 " String className) {\n"
+                 "        switch (className) {\n")
+    for name in context_controllers:
+        lines.append('            case "%s":\n                return new %s(context);\n'
+                     % (name, name.replace("$", ".")))
+    lines.append("            default:\n                return null;\n        }\n    }\n\n")
+    lines.append("    /**\n"
+                 "     * Returns a new controller of {@code className} created with its (Context, String)\n"
+                 "     * constructor, or {@code null} if it is not in the table.\n"
+                 "     */\n"
+                 "    static BasePreferenceController createWithContextAndKey(Context context,\n"
+                 "            String className, String key) {\n"
+                 "        switch (className) {\n")
+    for name in context_and_key_controllers:
+        lines.append('            case "%s":\n                return new %s(context, key);\n'
+                     % (name, name.replace("$", ".")))
+    lines.append("            default:\n                return null;\n        }\n    }\n}\n")
+
+    with io.open(OUTPUT, "w", encoding="utf-8") as f:
+        f.write(u"".join(lines))
+    print("%d controllers with a (Context) constructor, %d with a (Context, String) one"
+          % (len(context_controllers), len(context_and_key_controllers)))
+
+
+if __name__ == "__main__":
+    main()